@@ -0,0 +1,51 @@
+package com.ligh.example.redisdemo.benchmark;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName BenchmarkDto
+ * @Description 基准测试使用的业务对象，包含常见的嵌套集合和时间字段
+ * @Author 李光华
+ * @Date 2020/12/9 10:12
+ **/
+@Data
+public class BenchmarkDto {
+
+    private long id;
+
+    private String name;
+
+    private int status;
+
+    private double price;
+
+    private LocalDateTime createTime;
+
+    private List<String> tags;
+
+    private Map<String, Long> counters;
+
+    public static BenchmarkDto sample(long id) {
+        BenchmarkDto dto = new BenchmarkDto();
+        dto.setId(id);
+        dto.setName("item-" + id);
+        dto.setStatus(1);
+        dto.setPrice(99.5);
+        dto.setCreateTime(LocalDateTime.of(2020, 12, 9, 10, 0, 0));
+        List<String> tags = new ArrayList<>();
+        Map<String, Long> counters = new HashMap<>();
+        for (int i = 0; i < 8; i++) {
+            tags.add("tag-" + i);
+            counters.put("counter-" + i, id * i);
+        }
+        dto.setTags(tags);
+        dto.setCounters(counters);
+        return dto;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ligh.example.redisdemo.benchmark;
+
+import com.ligh.example.redisdemo.config.RedisConfig;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisServer;
+import com.ligh.example.redisdemo.impl.LockNotifier;
+import com.ligh.example.redisdemo.impl.RedisHelper;
+import com.ligh.example.redisdemo.impl.RedisLock;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * @ClassName RedisBackend
+ * @Description 基准测试使用的redis连接，不启动spring容器
+ * 默认启动进程内的 EmbeddedRedisServer，可以离线运行；
+ * 通过 -Dredis.host、-Dredis.port、-Dredis.password 指定真实的redis
+ * @Author 李光华
+ * @Date 2020/12/9 10:05
+ **/
+public class RedisBackend {
+
+    private final EmbeddedRedisServer embeddedServer;
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final RedisHelper redisHelper;
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final LockNotifier lockNotifier;
+
+    private final RedisLock redisLock;
+
+    public RedisBackend() {
+        String host = System.getProperty("redis.host");
+        RedisStandaloneConfiguration configuration;
+        if (host == null) {
+            try {
+                embeddedServer = EmbeddedRedisServer.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            configuration = new RedisStandaloneConfiguration(embeddedServer.getHost(), embeddedServer.getPort());
+        } else {
+            embeddedServer = null;
+            configuration = new RedisStandaloneConfiguration(host, Integer.getInteger("redis.port", 6379));
+        }
+        String password = System.getProperty("redis.password");
+        if (password != null) {
+            configuration.setPassword(password);
+        }
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        RedisConfig redisConfig = new RedisConfig();
+        redisTemplate = redisConfig.redisTemplate(connectionFactory);
+        redisHelper = new RedisHelper(redisTemplate, redisConfig.opsForHash(redisTemplate), "bench:");
+        lockNotifier = redisConfig.lockNotifier();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(lockNotifier, new ChannelTopic(LockNotifier.CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        redisLock = new RedisLock(redisHelper, lockNotifier);
+    }
+
+    public RedisTemplate<String, Object> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    public RedisHelper getRedisHelper() {
+        return redisHelper;
+    }
+
+    public RedisLock getRedisLock() {
+        return redisLock;
+    }
+
+    public LockNotifier getLockNotifier() {
+        return lockNotifier;
+    }
+
+    public void close() {
+        listenerContainer.stop();
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            //不处理
+        }
+        connectionFactory.destroy();
+        if (embeddedServer != null) {
+            embeddedServer.stop();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ligh.example.redisdemo.benchmark;
+
+import com.ligh.example.redisdemo.impl.HotKeyDetector;
+import com.ligh.example.redisdemo.impl.RedisCommandMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName RedisCommandMetricsBenchmark
+ * @Description RedisHelper每个命令的指标记录（begin/end）开销，不需要redis。
+ * 用 -prof gc 运行，gc.alloc.rate.norm 为每次记录分配的字节数，稳定状态下应接近0：
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="RedisCommandMetricsBenchmark -prof gc"
+ * @Author 李光华
+ * @Date 2020/12/23 15:10
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisCommandMetricsBenchmark {
+
+    /**
+     * 是否同时做热点key采样（按默认配置每10次采样一次）
+     */
+    @Param({"false", "true"})
+    private boolean hotKeys;
+
+    private RedisCommandMetrics metrics;
+
+    @Setup
+    public void setup() {
+        metrics = new RedisCommandMetrics(new SimpleMeterRegistry(), Arrays.asList("user:", "order:"),
+                new double[]{0.5, 0.99}, true);
+        if (hotKeys) {
+            metrics.setHotKeyDetector(new HotKeyDetector(10, 20, 10_000L, 4, 1024, 1000L));
+        }
+    }
+
+    @Benchmark
+    public void command() {
+        long begin = metrics.begin();
+        metrics.end("get", "user:1", begin);
+    }
+
+    /**
+     * RedisHelper内部方法互相调用，只有最外层记录
+     */
+    @Benchmark
+    public void nestedCommand() {
+        long outer = metrics.begin();
+        long inner = metrics.begin();
+        metrics.end("get", "order:1", inner);
+        metrics.end("getInt", "order:1", outer);
+    }
+}
@@ -0,0 +1,125 @@
+package com.ligh.example.redisdemo.benchmark;
+
+import com.ligh.example.redisdemo.IZSetTuple;
+import com.ligh.example.redisdemo.impl.RedisHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName RedisHelperBenchmark
+ * @Description RedisHelper常用命令的吞吐量和延迟分布（SampleTime模式下输出p99）
+ * @Author 李光华
+ * @Date 2020/12/9 10:35
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RedisHelperBenchmark {
+
+    private static final String STRING_KEY = "bench:string";
+
+    private static final String DTO_KEY = "bench:dto";
+
+    private static final String HASH_KEY = "bench:hash";
+
+    private static final String ZSET_KEY = "bench:zset";
+
+    private static final String LIST_KEY = "bench:list";
+
+    private RedisBackend backend;
+
+    private RedisHelper redisHelper;
+
+    private BenchmarkDto dto;
+
+    @Setup
+    public void setup() {
+        backend = new RedisBackend();
+        redisHelper = backend.getRedisHelper();
+        dto = BenchmarkDto.sample(1L);
+        redisHelper.set(STRING_KEY, "ligh");
+        redisHelper.set(DTO_KEY, dto);
+        Map<String, Object> hash = new HashMap<>();
+        Map<String, Long> zset = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            hash.put("field-" + i, i);
+            zset.put("member-" + i, (long) i);
+        }
+        redisHelper.hmset(HASH_KEY, hash);
+        redisHelper.zadd(ZSET_KEY, zset);
+    }
+
+    @TearDown
+    public void tearDown() {
+        redisHelper.del(STRING_KEY);
+        redisHelper.del(DTO_KEY);
+        redisHelper.del(HASH_KEY);
+        redisHelper.del(ZSET_KEY);
+        redisHelper.del(LIST_KEY);
+        backend.close();
+    }
+
+    @Benchmark
+    public String getString() {
+        return redisHelper.getString(STRING_KEY);
+    }
+
+    @Benchmark
+    public BenchmarkDto getDto() {
+        return redisHelper.get(DTO_KEY, BenchmarkDto.class);
+    }
+
+    @Benchmark
+    public boolean setDto() {
+        return redisHelper.set(DTO_KEY, dto, 600);
+    }
+
+    @Benchmark
+    public boolean hset() {
+        return redisHelper.hset(HASH_KEY, "field-0", 0);
+    }
+
+    @Benchmark
+    public Map<String, Object> hgetall() {
+        return redisHelper.hgetall(HASH_KEY);
+    }
+
+    @Benchmark
+    public Set<String> zrange() {
+        return redisHelper.zrange(ZSET_KEY, 0, 19);
+    }
+
+    @Benchmark
+    public Set<IZSetTuple> zrevrangeWithScores() {
+        return redisHelper.zrevrangeWithScores(ZSET_KEY, 0, 19);
+    }
+
+    @Benchmark
+    public Set<IZSetTuple> zrangeByScoreWithScores() {
+        return redisHelper.zrangeByScoreWithScores(ZSET_KEY, 10, 50, true, false);
+    }
+
+    @Benchmark
+    public long lpushTrim() {
+        long len = redisHelper.lpush(LIST_KEY, "item");
+        if (len > 1000) {
+            redisHelper.ltrim(LIST_KEY, 0, 99);
+        }
+        return len;
+    }
+
+    @Benchmark
+    public List<Object> mget() {
+        return redisHelper.mget(Arrays.asList(STRING_KEY, DTO_KEY));
+    }
+}
@@ -0,0 +1,111 @@
+package com.ligh.example.redisdemo.benchmark;
+
+import com.ligh.example.redisdemo.impl.RedisLock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName RedisLockBenchmark
+ * @Description RedisLock加锁、解锁的性能，分为所有线程抢同一把锁和每个线程各自一把锁两种场景
+ * contended、uncontended的maxWaitSeconds为0，抢不到锁立即返回，结果中包含失败的尝试；
+ * contendedWaiting 等到拿到锁为止，衡量解锁后唤醒等待者、交接锁的开销，分别测开启和关闭JVM内加锁合并
+ * @Author 李光华
+ * @Date 2020/12/9 11:02
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RedisLockBenchmark {
+
+    private static final String CONTENDED_KEY = "bench:lock:contended";
+
+    private static final String WAITING_KEY = "bench:lock:waiting";
+
+    private static final long MAX_WAIT_SECONDS = 10;
+
+    private static final int MAX_LOCAL_HANDOFFS = 5;
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private RedisBackend backend;
+
+    private RedisLock redisLock;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        String salt;
+        String ownKey;
+
+        @Setup
+        public void setup() {
+            int seq = THREAD_SEQ.incrementAndGet();
+            salt = "salt-" + seq;
+            ownKey = "bench:lock:own:" + seq;
+        }
+    }
+
+    /**
+     * 等待加锁用的锁，localCoalescing为false时等待者只靠解锁通知唤醒后去redis抢锁
+     */
+    @State(Scope.Benchmark)
+    public static class WaitingLock {
+
+        @Param({"true", "false"})
+        public boolean localCoalescing;
+
+        RedisLock lock;
+
+        @Setup
+        public void setup(RedisLockBenchmark benchmark) {
+            RedisBackend backend = benchmark.backend;
+            lock = new RedisLock(backend.getRedisHelper(), backend.getLockNotifier());
+            lock.setLocalCoalescing(localCoalescing, MAX_LOCAL_HANDOFFS);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        backend = new RedisBackend();
+        redisLock = backend.getRedisLock();
+    }
+
+    @TearDown
+    public void tearDown() {
+        backend.getRedisHelper().del(CONTENDED_KEY);
+        backend.getRedisHelper().del(WAITING_KEY);
+        backend.close();
+    }
+
+    @Benchmark
+    public boolean contended(ThreadState state) {
+        boolean locked = redisLock.tryLock(CONTENDED_KEY, state.salt, 0);
+        if (locked) {
+            redisLock.unLock(CONTENDED_KEY, state.salt);
+        }
+        return locked;
+    }
+
+    @Benchmark
+    public boolean contendedWaiting(WaitingLock waitingLock, ThreadState state) {
+        boolean locked = waitingLock.lock.tryLock(WAITING_KEY, state.salt, MAX_WAIT_SECONDS);
+        if (locked) {
+            waitingLock.lock.unLock(WAITING_KEY, state.salt);
+        }
+        return locked;
+    }
+
+    @Benchmark
+    public boolean uncontended(ThreadState state) {
+        boolean locked = redisLock.tryLock(state.ownKey, state.salt, 0);
+        if (locked) {
+            redisLock.unLock(state.ownKey, state.salt);
+        }
+        return locked;
+    }
+}
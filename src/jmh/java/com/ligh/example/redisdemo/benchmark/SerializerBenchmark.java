@@ -0,0 +1,78 @@
+package com.ligh.example.redisdemo.benchmark;
+
+import com.ligh.example.redisdemo.config.RedisConfig;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.serializer.MigratingRedisSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName SerializerBenchmark
+ * @Description RedisConfig中value序列化器的编码、解码性能，不需要redis
+ * format=json为原来的带@class的json，format=binary为注册了BenchmarkDto的二进制格式，setup时打印编码后的字节数
+ * @Author 李光华
+ * @Date 2020/12/9 10:20
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"json", "binary"})
+    private String format;
+
+    private RedisSerializer<Object> serializer;
+
+    private BenchmarkDto dto;
+
+    private List<BenchmarkDto> dtoList;
+
+    private byte[] dtoBytes;
+
+    private byte[] dtoListBytes;
+
+    @Setup
+    public void setup() {
+        RedisHelperProperties properties = new RedisHelperProperties();
+        properties.getSerializer().setFormat(MigratingRedisSerializer.Format.valueOf(format.toUpperCase()));
+        properties.getSerializer().getRegisteredClasses().put(1, BenchmarkDto.class.getName());
+        RedisConfig redisConfig = new RedisConfig();
+        redisConfig.setProperties(properties);
+        serializer = redisConfig.getValueSerializer();
+        dto = BenchmarkDto.sample(1L);
+        dtoList = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            dtoList.add(BenchmarkDto.sample(i));
+        }
+        dtoBytes = serializer.serialize(dto);
+        dtoListBytes = serializer.serialize(dtoList);
+        System.out.println(format + " dto bytes: " + dtoBytes.length + ", dto list bytes: " + dtoListBytes.length);
+    }
+
+    @Benchmark
+    public byte[] serializeDto() {
+        return serializer.serialize(dto);
+    }
+
+    @Benchmark
+    public Object deserializeDto() {
+        return serializer.deserialize(dtoBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeDtoList() {
+        return serializer.serialize(dtoList);
+    }
+
+    @Benchmark
+    public Object deserializeDtoList() {
+        return serializer.deserialize(dtoListBytes);
+    }
+}
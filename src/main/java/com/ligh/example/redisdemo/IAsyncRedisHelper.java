@@ -0,0 +1,464 @@
+package com.ligh.example.redisdemo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * redis常用接口的异步版本，每个方法立即返回CompletableFuture，命令在共享连接上以pipeline方式发出，不额外占用线程。
+ * 适合非响应式代码里并发发出多个命令再统一等待，例如同时 hget、zrange、get 后 CompletableFuture.allOf(...).join()，
+ * 耗时取最慢的一个而不是三者之和。不存在的值以null完成
+ */
+public interface IAsyncRedisHelper {
+
+    /**
+     * 设置缓存（无过期时间）
+     * @param key
+     * @param value
+     * @return
+     */
+    CompletableFuture<Boolean> set(String key, Object value);
+
+    /**
+     * 设置缓存（有过期时间）
+     * @param key
+     * @param value
+     * @param expire 过期时间，单位 秒
+     * @return
+     */
+    CompletableFuture<Boolean> set(String key, Object value, long expire);
+
+    /**
+     * value 不存在时set
+     * @param key
+     * @param value
+     * @param expire 过期时间，单位 秒
+     * @return
+     */
+    CompletableFuture<Boolean> setIfValueAbSent(String key, Object value, long expire);
+
+    /**
+     * 获取缓存，不存在时为null
+     * @param key
+     * @return
+     */
+    CompletableFuture<Object> get(String key);
+
+    /**
+     * 获取缓存对象
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<T> get(String key, Class<T> clazz);
+
+    /**
+     * 设置新值并返回旧值
+     * @param key
+     * @param value
+     * @return
+     */
+    CompletableFuture<Object> getSet(String key, Object value);
+
+    /**
+     * 批量获取缓存，返回结果与keys顺序一致，不存在的位置为null
+     * @param keys
+     * @return
+     */
+    CompletableFuture<List<Object>> mget(List<String> keys);
+
+    /**
+     * 自增1
+     * @param key
+     * @return
+     */
+    CompletableFuture<Long> incr(String key);
+
+    /**
+     * 增加指定值
+     * @param key
+     * @param increment
+     * @return
+     */
+    CompletableFuture<Long> incrby(String key, long increment);
+
+    /**
+     * 自减1
+     * @param key
+     * @return
+     */
+    CompletableFuture<Long> decr(String key);
+
+    /**
+     * 删除缓存
+     * @param key
+     * @return
+     */
+    CompletableFuture<Boolean> del(String key);
+
+    /**
+     * 判断缓存key是否存在
+     * @param key
+     * @return
+     */
+    CompletableFuture<Boolean> exists(String key);
+
+    /**
+     * 设置过期时间
+     * @param key
+     * @param expire 秒
+     * @return
+     */
+    CompletableFuture<Boolean> expire(String key, long expire);
+
+    /**
+     * 移除过期时间
+     * @param key
+     * @return
+     */
+    CompletableFuture<Boolean> persist(String key);
+
+    /**
+     * 剩余过期时间
+     * @param key
+     * @return 秒，-1表示没有过期时间，-2表示key不存在
+     */
+    CompletableFuture<Long> ttl(String key);
+
+    /**
+     * 列表长度
+     * @param key
+     * @return
+     */
+    CompletableFuture<Long> listLen(String key);
+
+    /**
+     * 获取列表指定位置的元素
+     * @param key
+     * @param index
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<T> lindex(String key, long index, Class<T> clazz);
+
+    /**
+     * 获取列表指定范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<List<T>> lrange(String key, long start, long stop, Class<T> clazz);
+
+    /**
+     * 从列表左边插入
+     * @param key
+     * @param objects
+     * @return 插入后列表长度
+     */
+    CompletableFuture<Long> lpush(String key, Object... objects);
+
+    /**
+     * 从列表右边插入
+     * @param key
+     * @param objects
+     * @return 插入后列表长度
+     */
+    CompletableFuture<Long> rpush(String key, Object... objects);
+
+    /**
+     * 从列表左边弹出
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<T> lpop(String key, Class<T> clazz);
+
+    /**
+     * 从列表右边弹出
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<T> rpop(String key, Class<T> clazz);
+
+    /**
+     * 只保留列表指定范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    CompletableFuture<Boolean> ltrim(String key, long start, long stop);
+
+    /**
+     * 设置哈希表字段
+     * @param key
+     * @param field
+     * @param value
+     * @return
+     */
+    CompletableFuture<Boolean> hset(String key, String field, Object value);
+
+    /**
+     * 字段不存在时设置哈希表字段
+     * @param key
+     * @param field
+     * @param value
+     * @return
+     */
+    CompletableFuture<Boolean> hsetnx(String key, String field, Object value);
+
+    /**
+     * 获取哈希表字段
+     * @param key
+     * @param field
+     * @return
+     */
+    CompletableFuture<Object> hget(String key, String field);
+
+    /**
+     * 获取哈希表字段
+     * @param key
+     * @param field
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<T> hget(String key, String field, Class<T> clazz);
+
+    /**
+     * 批量设置哈希表字段
+     * @param key
+     * @param map
+     * @return
+     */
+    CompletableFuture<Boolean> hmset(String key, Map<String, Object> map);
+
+    /**
+     * 批量获取哈希表字段，结果与fieldList顺序一致，不存在的位置为null
+     * @param key
+     * @param fieldList
+     * @return
+     */
+    CompletableFuture<List<Object>> hmget(String key, List<String> fieldList);
+
+    /**
+     * 获取哈希表所有字段
+     * @param key
+     * @return
+     */
+    CompletableFuture<Map<String, Object>> hgetall(String key);
+
+    /**
+     * 判断哈希表字段是否存在
+     * @param key
+     * @param field
+     * @return
+     */
+    CompletableFuture<Boolean> hexists(String key, String field);
+
+    /**
+     * 删除哈希表字段
+     * @param key
+     * @param fields
+     * @return 删除的字段数量
+     */
+    CompletableFuture<Long> hdel(String key, String... fields);
+
+    /**
+     * 哈希表字段增加指定值
+     * @param key
+     * @param field
+     * @param increment
+     * @return
+     */
+    CompletableFuture<Long> hincrby(String key, String field, long increment);
+
+    /**
+     * 哈希表所有字段名
+     * @param key
+     * @return
+     */
+    CompletableFuture<List<String>> hkeys(String key);
+
+    /**
+     * 哈希表所有字段值
+     * @param key
+     * @return
+     */
+    CompletableFuture<List<Object>> hvals(String key);
+
+    /**
+     * 哈希表字段数量
+     * @param key
+     * @return
+     */
+    CompletableFuture<Long> hlen(String key);
+
+    /**
+     * 集合添加元素
+     * @param key
+     * @param members
+     * @return 新增的元素数量
+     */
+    CompletableFuture<Long> sadd(String key, Object... members);
+
+    /**
+     * 集合元素数量
+     * @param key
+     * @return
+     */
+    CompletableFuture<Long> scard(String key);
+
+    /**
+     * 判断是否是集合元素
+     * @param key
+     * @param member
+     * @return
+     */
+    CompletableFuture<Boolean> sismember(String key, Object member);
+
+    /**
+     * 集合所有元素
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<List<T>> smembers(String key, Class<T> clazz);
+
+    /**
+     * 随机弹出一个元素
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> CompletableFuture<T> spop(String key, Class<T> clazz);
+
+    /**
+     * 删除集合元素
+     * @param key
+     * @param members
+     * @return 删除的元素数量
+     */
+    CompletableFuture<Long> srem(String key, Object... members);
+
+    /**
+     * 有序集合添加元素
+     * @param key
+     * @param member
+     * @param score
+     * @return
+     */
+    CompletableFuture<Boolean> zadd(String key, String member, long score);
+
+    /**
+     * 元素的分数
+     * @param key
+     * @param member
+     * @return 元素不存在时为null
+     */
+    CompletableFuture<Long> zscore(String key, String member);
+
+    /**
+     * 有序集合元素数量
+     * @param key
+     * @return
+     */
+    CompletableFuture<Long> zcard(String key);
+
+    /**
+     * 分数在[min,max]之间的元素数量
+     * @param key
+     * @param min
+     * @param max
+     * @return
+     */
+    CompletableFuture<Long> zcount(String key, long min, long max);
+
+    /**
+     * 元素分数增加指定值
+     * @param key
+     * @param member
+     * @param increment
+     * @return 增加后的分数
+     */
+    CompletableFuture<Long> zincrby(String key, String member, long increment);
+
+    /**
+     * 元素按分数从小到大的排名，从0开始
+     * @param key
+     * @param member
+     * @return
+     */
+    CompletableFuture<Long> zrank(String key, String member);
+
+    /**
+     * 元素按分数从大到小的排名，从0开始
+     * @param key
+     * @param member
+     * @return
+     */
+    CompletableFuture<Long> zrevrank(String key, String member);
+
+    /**
+     * 按分数从小到大获取指定排名范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    CompletableFuture<List<String>> zrange(String key, long start, long stop);
+
+    /**
+     * 按分数从小到大获取指定排名范围的元素和分数
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    CompletableFuture<List<IZSetTuple>> zrangeWithScores(String key, long start, long stop);
+
+    /**
+     * 按分数从小到大获取分数在[min,max]之间的元素
+     * @param key
+     * @param min
+     * @param max
+     * @return
+     */
+    CompletableFuture<List<String>> zrangeByScore(String key, long min, long max);
+
+    /**
+     * 按分数从大到小获取指定排名范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    CompletableFuture<List<String>> zrevrange(String key, long start, long stop);
+
+    /**
+     * 按分数从大到小获取指定排名范围的元素和分数
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    CompletableFuture<List<IZSetTuple>> zrevrangeWithScores(String key, long start, long stop);
+
+    /**
+     * 删除有序集合元素
+     * @param key
+     * @param members
+     * @return 删除的元素数量
+     */
+    CompletableFuture<Long> zrem(String key, String... members);
+}
@@ -0,0 +1,48 @@
+package com.ligh.example.redisdemo;
+
+import java.util.List;
+
+/**
+ * 布隆过滤器接口，用于拦截一定不存在的key（缓存穿透），判断存在时有一定误判率，判断不存在时一定不存在
+ */
+public interface IBloomFilter {
+
+    /**
+     * 添加元素
+     * @param item
+     * @return 是否新加入，已存在（或误判为已存在）时返回false
+     */
+    boolean add(String item);
+
+    /**
+     * 批量添加，一次往返
+     * @param items
+     * @return 与items一一对应，是否新加入
+     */
+    List<Boolean> addAll(List<String> items);
+
+    /**
+     * 是否可能存在
+     * @param item
+     * @return false时一定不存在
+     */
+    boolean mightContain(String item);
+
+    /**
+     * 批量判断，一次往返
+     * @param items
+     * @return 与items一一对应
+     */
+    List<Boolean> mightContainAll(List<String> items);
+
+    /**
+     * 已加入的元素个数（近似值）
+     * @return
+     */
+    long count();
+
+    /**
+     * 删除过滤器
+     */
+    void delete();
+}
@@ -0,0 +1,59 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 计数器写缓冲接口，增量先在本地累加，定时或攒够一批后用pipeline批量写入redis；
+ * 适合浏览数、点赞数这类允许短暂延迟的高频计数，进程异常退出时最多丢失一个刷新周期的增量
+ */
+public interface ICounterBuffer {
+
+    /**
+     * 字符串计数器增加increment，相当于异步的 INCRBY
+     * @param key
+     * @param increment
+     */
+    void incrby(String key, long increment);
+
+    /**
+     * 哈希表字段增加increment，相当于异步的 HINCRBY
+     * @param key
+     * @param field
+     * @param increment
+     */
+    void hincrby(String key, String field, long increment);
+
+    /**
+     * 有序集合成员分数增加increment，相当于异步的 ZINCRBY
+     * @param key
+     * @param member
+     * @param increment
+     */
+    void zincrby(String key, String member, long increment);
+
+    /**
+     * 读取字符串计数器，包含本地还没写入redis的增量
+     * @param key
+     * @return
+     */
+    long get(String key);
+
+    /**
+     * 读取哈希表字段计数器，包含本地还没写入redis的增量
+     * @param key
+     * @param field
+     * @return
+     */
+    long hget(String key, String field);
+
+    /**
+     * 读取有序集合成员分数，包含本地还没写入redis的增量
+     * @param key
+     * @param member
+     * @return
+     */
+    long zscore(String key, String member);
+
+    /**
+     * 立即把本地增量写入redis
+     */
+    void flush();
+}
@@ -0,0 +1,14 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 分布式ID生成接口，同一个key生成的ID全局唯一、单节点内递增
+ */
+public interface IIdGenerator {
+
+    /**
+     * 生成下一个ID
+     * @param key 业务标识，不同key的ID互相独立
+     * @return
+     */
+    long nextId(String key);
+}
@@ -0,0 +1,38 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 分布式限流接口，每次判断是一个原子的lua脚本，一次往返；被拒绝的key在本地记住最早可能通过的时间，
+ * 在此之前的请求直接在本地拒绝，不访问redis
+ */
+public interface IRateLimiter {
+
+    /**
+     * 令牌桶，允许突发 capacity 个请求，之后按 permitsPerSecond 匀速放行
+     * @param key
+     * @param capacity 桶容量
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param permits 本次需要的令牌数，不能超过capacity
+     * @return 是否放行
+     */
+    boolean tryAcquire(String key, long capacity, double permitsPerSecond, int permits);
+
+    /**
+     * 滑动窗口日志，精确限制任意 windowMillis 内最多 limit 次，每次请求在zset里记一条，适合limit不大的场景
+     * @param key
+     * @param limit 窗口内最多放行次数
+     * @param windowMillis 窗口长度，单位 毫秒
+     * @param permits 本次占用的次数，不能超过limit
+     * @return 是否放行
+     */
+    boolean tryAcquireSlidingLog(String key, int limit, long windowMillis, int permits);
+
+    /**
+     * 滑动窗口计数，用当前窗口计数加上一个窗口按剩余比例折算的计数估算，只存两个计数，适合limit很大的场景
+     * @param key
+     * @param limit 窗口内最多放行次数
+     * @param windowMillis 窗口长度，单位 毫秒
+     * @param permits 本次占用的次数，不能超过limit
+     * @return 是否放行
+     */
+    boolean tryAcquireSlidingWindow(String key, long limit, long windowMillis, int permits);
+}
@@ -0,0 +1,465 @@
+package com.ligh.example.redisdemo;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * redis常用接口的响应式版本，与 IRedisHelper 使用相同的序列化方式，两边读写的数据互通
+ * 结果可能很大的命令（lrange、hgetall、smembers、zrange等）返回Flux，逐条下发
+ */
+public interface IReactiveRedisHelper {
+
+    /**
+     * 设置缓存（无过期时间）
+     * @param key
+     * @param value
+     * @return
+     */
+    Mono<Boolean> set(String key, Object value);
+
+    /**
+     * 设置缓存（有过期时间）
+     * @param key
+     * @param value
+     * @param expire 过期时间，单位 秒
+     * @return
+     */
+    Mono<Boolean> set(String key, Object value, long expire);
+
+    /**
+     * value 不存在时set
+     * @param key
+     * @param value
+     * @param expire 过期时间，单位 秒
+     * @return
+     */
+    Mono<Boolean> setIfValueAbSent(String key, Object value, long expire);
+
+    /**
+     * 获取缓存，不存在时为空的Mono
+     * @param key
+     * @return
+     */
+    Mono<Object> get(String key);
+
+    /**
+     * 获取缓存对象
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Mono<T> get(String key, Class<T> clazz);
+
+    /**
+     * 设置新值并返回旧值
+     * @param key
+     * @param value
+     * @return
+     */
+    Mono<Object> getSet(String key, Object value);
+
+    /**
+     * 批量获取缓存，返回结果与keys顺序一致，不存在的位置为null
+     * @param keys
+     * @return
+     */
+    Mono<List<Object>> mget(List<String> keys);
+
+    /**
+     * 自增1
+     * @param key
+     * @return
+     */
+    Mono<Long> incr(String key);
+
+    /**
+     * 增加指定值
+     * @param key
+     * @param increment
+     * @return
+     */
+    Mono<Long> incrby(String key, long increment);
+
+    /**
+     * 自减1
+     * @param key
+     * @return
+     */
+    Mono<Long> decr(String key);
+
+    /**
+     * 删除缓存
+     * @param key
+     * @return
+     */
+    Mono<Boolean> del(String key);
+
+    /**
+     * 判断缓存key是否存在
+     * @param key
+     * @return
+     */
+    Mono<Boolean> exists(String key);
+
+    /**
+     * 设置过期时间
+     * @param key
+     * @param expire 秒
+     * @return
+     */
+    Mono<Boolean> expire(String key, long expire);
+
+    /**
+     * 移除过期时间
+     * @param key
+     * @return
+     */
+    Mono<Boolean> persist(String key);
+
+    /**
+     * 剩余过期时间
+     * @param key
+     * @return 秒，-1表示没有过期时间，-2表示key不存在
+     */
+    Mono<Long> ttl(String key);
+
+    /**
+     * 列表长度
+     * @param key
+     * @return
+     */
+    Mono<Long> listLen(String key);
+
+    /**
+     * 获取列表指定位置的元素
+     * @param key
+     * @param index
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Mono<T> lindex(String key, long index, Class<T> clazz);
+
+    /**
+     * 获取列表指定范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Flux<T> lrange(String key, long start, long stop, Class<T> clazz);
+
+    /**
+     * 从列表左边插入
+     * @param key
+     * @param objects
+     * @return 插入后列表长度
+     */
+    Mono<Long> lpush(String key, Object... objects);
+
+    /**
+     * 从列表右边插入
+     * @param key
+     * @param objects
+     * @return 插入后列表长度
+     */
+    Mono<Long> rpush(String key, Object... objects);
+
+    /**
+     * 从列表左边弹出
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Mono<T> lpop(String key, Class<T> clazz);
+
+    /**
+     * 从列表右边弹出
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Mono<T> rpop(String key, Class<T> clazz);
+
+    /**
+     * 只保留列表指定范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    Mono<Boolean> ltrim(String key, long start, long stop);
+
+    /**
+     * 设置哈希表字段
+     * @param key
+     * @param field
+     * @param value
+     * @return
+     */
+    Mono<Boolean> hset(String key, String field, Object value);
+
+    /**
+     * 字段不存在时设置哈希表字段
+     * @param key
+     * @param field
+     * @param value
+     * @return
+     */
+    Mono<Boolean> hsetnx(String key, String field, Object value);
+
+    /**
+     * 获取哈希表字段
+     * @param key
+     * @param field
+     * @return
+     */
+    Mono<Object> hget(String key, String field);
+
+    /**
+     * 获取哈希表字段
+     * @param key
+     * @param field
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Mono<T> hget(String key, String field, Class<T> clazz);
+
+    /**
+     * 批量设置哈希表字段
+     * @param key
+     * @param map
+     * @return
+     */
+    Mono<Boolean> hmset(String key, Map<String, Object> map);
+
+    /**
+     * 批量获取哈希表字段，结果与fieldList顺序一致，不存在的位置为null
+     * @param key
+     * @param fieldList
+     * @return
+     */
+    Mono<List<Object>> hmget(String key, List<String> fieldList);
+
+    /**
+     * 获取哈希表所有字段，逐条下发
+     * @param key
+     * @return
+     */
+    Flux<Map.Entry<String, Object>> hgetall(String key);
+
+    /**
+     * 判断哈希表字段是否存在
+     * @param key
+     * @param field
+     * @return
+     */
+    Mono<Boolean> hexists(String key, String field);
+
+    /**
+     * 删除哈希表字段
+     * @param key
+     * @param fields
+     * @return 删除的字段数量
+     */
+    Mono<Long> hdel(String key, String... fields);
+
+    /**
+     * 哈希表字段增加指定值
+     * @param key
+     * @param field
+     * @param increment
+     * @return
+     */
+    Mono<Long> hincrby(String key, String field, long increment);
+
+    /**
+     * 哈希表所有字段名
+     * @param key
+     * @return
+     */
+    Flux<String> hkeys(String key);
+
+    /**
+     * 哈希表所有字段值
+     * @param key
+     * @return
+     */
+    Flux<Object> hvals(String key);
+
+    /**
+     * 哈希表字段数量
+     * @param key
+     * @return
+     */
+    Mono<Long> hlen(String key);
+
+    /**
+     * 集合添加元素
+     * @param key
+     * @param members
+     * @return 新增的元素数量
+     */
+    Mono<Long> sadd(String key, Object... members);
+
+    /**
+     * 集合元素数量
+     * @param key
+     * @return
+     */
+    Mono<Long> scard(String key);
+
+    /**
+     * 判断是否是集合元素
+     * @param key
+     * @param member
+     * @return
+     */
+    Mono<Boolean> sismember(String key, Object member);
+
+    /**
+     * 集合所有元素，逐条下发
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Flux<T> smembers(String key, Class<T> clazz);
+
+    /**
+     * 随机弹出一个元素
+     * @param key
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Mono<T> spop(String key, Class<T> clazz);
+
+    /**
+     * 删除集合元素
+     * @param key
+     * @param members
+     * @return 删除的元素数量
+     */
+    Mono<Long> srem(String key, Object... members);
+
+    /**
+     * 有序集合添加元素
+     * @param key
+     * @param member
+     * @param score
+     * @return
+     */
+    Mono<Boolean> zadd(String key, String member, long score);
+
+    /**
+     * 元素的分数
+     * @param key
+     * @param member
+     * @return 元素不存在时为空的Mono
+     */
+    Mono<Long> zscore(String key, String member);
+
+    /**
+     * 有序集合元素数量
+     * @param key
+     * @return
+     */
+    Mono<Long> zcard(String key);
+
+    /**
+     * 分数在[min,max]之间的元素数量
+     * @param key
+     * @param min
+     * @param max
+     * @return
+     */
+    Mono<Long> zcount(String key, long min, long max);
+
+    /**
+     * 元素分数增加指定值
+     * @param key
+     * @param member
+     * @param increment
+     * @return 增加后的分数
+     */
+    Mono<Long> zincrby(String key, String member, long increment);
+
+    /**
+     * 元素按分数从小到大的排名，从0开始
+     * @param key
+     * @param member
+     * @return
+     */
+    Mono<Long> zrank(String key, String member);
+
+    /**
+     * 元素按分数从大到小的排名，从0开始
+     * @param key
+     * @param member
+     * @return
+     */
+    Mono<Long> zrevrank(String key, String member);
+
+    /**
+     * 按分数从小到大获取指定排名范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    Flux<String> zrange(String key, long start, long stop);
+
+    /**
+     * 按分数从小到大获取指定排名范围的元素和分数
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    Flux<IZSetTuple> zrangeWithScores(String key, long start, long stop);
+
+    /**
+     * 按分数从小到大获取分数在[min,max]之间的元素
+     * @param key
+     * @param min
+     * @param max
+     * @return
+     */
+    Flux<String> zrangeByScore(String key, long min, long max);
+
+    /**
+     * 按分数从大到小获取指定排名范围的元素
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    Flux<String> zrevrange(String key, long start, long stop);
+
+    /**
+     * 按分数从大到小获取指定排名范围的元素和分数
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     */
+    Flux<IZSetTuple> zrevrangeWithScores(String key, long start, long stop);
+
+    /**
+     * 删除有序集合元素
+     * @param key
+     * @param members
+     * @return 删除的元素数量
+     */
+    Mono<Long> zrem(String key, String... members);
+}
@@ -0,0 +1,42 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 分布式读写锁接口，读锁之间不互斥，写锁与读锁、写锁互斥，读写锁都可重入
+ * 持有写锁时可以再加读锁（降级），持有读锁时不能再加写锁
+ */
+public interface IReadWriteLock {
+
+    /**
+     * 获取读锁
+     * @param key
+     * @param salt 持有者标识
+     * @param maxWaitSeconds 最大等待时间 单位（秒）
+     * @return
+     */
+    boolean tryReadLock(String key, String salt, long maxWaitSeconds);
+
+    /**
+     * 释放一次读锁
+     * @param key
+     * @param salt
+     * @return 不是持有者时返回false
+     */
+    boolean unReadLock(String key, String salt);
+
+    /**
+     * 获取写锁
+     * @param key
+     * @param salt 持有者标识
+     * @param maxWaitSeconds 最大等待时间 单位（秒）
+     * @return
+     */
+    boolean tryWriteLock(String key, String salt, long maxWaitSeconds);
+
+    /**
+     * 释放一次写锁
+     * @param key
+     * @param salt
+     * @return 不是持有者时返回false
+     */
+    boolean unWriteLock(String key, String salt);
+}
@@ -1,8 +1,15 @@
 package com.ligh.example.redisdemo;
 
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * redis常用接口
@@ -65,6 +72,29 @@ public interface IRedisHelper {
      */
     <T> T get(String key,Class<T> clazz);
 
+    /**
+     * 先用布隆过滤器判断key是否可能存在，一定不存在时直接返回null，不查redis
+     * @param key
+     * @param clazz
+     * @param filter 以key为元素的布隆过滤器
+     * @param <T>
+     * @return
+     */
+    <T> T get(String key, Class<T> clazz, IBloomFilter filter);
+
+    /**
+     * 获取缓存，不存在时调用loader加载并写入缓存（cache-aside）。
+     * 同一个JVM内同一个key同时只有一个线程调用loader，其他线程等待并共享结果；loader返回null时不写缓存。
+     * 写入的过期时间带随机抖动，快过期时按加载耗时概率性提前加载（可配置为后台加载）
+     * @param key
+     * @param loader 缓存不存在或提前加载时加载数据
+     * @param expire 过期时间上限，单位 秒
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> T getOrLoad(String key, Supplier<T> loader, long expire, Class<T> clazz);
+
     /**
      * 获取缓存，读取为list形式
      * @param key
@@ -310,6 +340,18 @@ public interface IRedisHelper {
      */
     <T> Map<String, T> hmgetall(String key, Class<T> clazz);
 
+    /**
+     * 用HSCAN逐批遍历哈希表，适合字段很多的哈希表，客户端内存只与count有关。
+     * 返回的Stream占用一个连接，必须关闭，建议用 try-with-resources
+     * @param key
+     * @param match 字段名的glob匹配，为null时遍历全部字段
+     * @param count 每次HSCAN的COUNT参数
+     * @param clazz 字段值的类型，类型不匹配的值为null
+     * @param <T>
+     * @return
+     */
+    <T> Stream<Map.Entry<String, T>> hscan(String key, String match, int count, Class<T> clazz);
+
     /**
      * 查看哈希表 key 中，指定的字段是否存在
      * @param key
@@ -404,6 +446,17 @@ public interface IRedisHelper {
      */
     <T> Set<T> smembers(String key, Class<T> clazz);
 
+    /**
+     * 用SSCAN逐批遍历集合，返回的Stream必须关闭，同一个成员可能返回多次（遍历期间集合有修改时）
+     * @param key
+     * @param match 成员的glob匹配，为null时遍历全部成员
+     * @param count 每次SSCAN的COUNT参数
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> Stream<T> sscan(String key, String match, int count, Class<T> clazz);
+
     /**
      * 返回集合中一个随机数
      * @param key
@@ -570,6 +623,15 @@ public interface IRedisHelper {
      */
     Set<IZSetTuple> zrangeWithScores(String key, long start, long stop);
 
+    /**
+     * 用ZSCAN逐批遍历有序集合的成员和分数，不保证按分数排序，返回的Stream必须关闭
+     * @param key
+     * @param match 成员的glob匹配，为null时遍历全部成员
+     * @param count 每次ZSCAN的COUNT参数
+     * @return
+     */
+    Stream<IZSetTuple> zscan(String key, String match, int count);
+
     /**
      * 返回正序有序集合中指定分数区间的成员列表
      * @param key
@@ -650,11 +712,21 @@ public interface IRedisHelper {
     int zrem(String key, String... members);
 
     /**
-     * 根据正则表达式删除缓存
-     * @param pattern
+     * 删除以pattern开头的所有key，SCAN + UNLINK 分批删除，不会像KEYS一样阻塞redis
+     * @param pattern key前缀，支持glob通配符
+     * @return 是否删除了key
      */
     boolean delByPattern(String pattern);
 
+    /**
+     * 删除以pattern开头的所有key，每次SCAN取一批key后用pipeline分块UNLINK，客户端内存只与batchSize有关
+     * @param pattern key前缀，支持glob通配符
+     * @param batchSize 每批key数量，同时作为SCAN的COUNT参数
+     * @param progress 每批删除后回调，参数为累计删除的key数量，可以为null
+     * @return 删除的key数量
+     */
+    long delByPattern(String pattern, int batchSize, LongConsumer progress);
+
     /**
      * 根据KEY移除缓存
      * @param key
@@ -697,4 +769,97 @@ public interface IRedisHelper {
      */
     long ttl(String key);
 
+    /**
+     * 批量获取缓存，一次MGET完成，返回结果与keys顺序一致，不存在的key对应位置为null
+     * @param keys
+     * @return
+     */
+    List<Object> mget(List<String> keys);
+
+    /**
+     * 批量获取缓存对象，返回结果与keys顺序一致，不存在或类型不匹配的位置为null
+     * @param keys
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> List<T> mget(List<String> keys, Class<T> clazz);
+
+    /**
+     * 批量设置缓存，通过pipeline一次往返完成
+     * @param map key-value
+     * @param expire 过期时间，单位 秒，小于等于0表示不过期
+     * @return
+     */
+    boolean mset(Map<String, Object> map, long expire);
+
+    /**
+     * 批量获取多个哈希表的指定字段，通过pipeline一次往返完成
+     * @param keys
+     * @param fieldList
+     * @return 与keys顺序一致，每个元素为 field-value，field顺序与fieldList一致
+     */
+    List<Map<String, Object>> hmget(List<String> keys, List<String> fieldList);
+
+    /**
+     * 批量判断缓存key是否存在，通过pipeline一次往返完成
+     * @param keys
+     * @return 与keys顺序一致
+     */
+    List<Boolean> exists(List<String> keys);
+
+    /**
+     * 批量删除缓存
+     * @param keys
+     * @return 被删除的key数量
+     */
+    long del(List<String> keys);
+
+    /**
+     * 批量设置缓存过期时间，通过pipeline一次往返完成
+     * @param keys
+     * @param expire 秒
+     * @return 与keys顺序一致
+     */
+    List<Boolean> expire(List<String> keys, long expire);
+
+    /**
+     * 在一个pipeline中执行多条不同的命令，一次往返完成
+     * 回调中的命令返回值均为null，真正的结果按命令顺序放在返回的列表中
+     * 例：pipelined(ops -> { ops.opsForValue().get("a"); ops.opsForHash().get("b", "f"); })
+     * @param commands
+     * @return 按命令顺序排列的结果
+     */
+    List<Object> pipelined(Consumer<RedisOperations<String, Object>> commands);
+
+    /**
+     * 发布消息，channel和message都按字符串写入
+     * @param channel
+     * @param message
+     * @return 收到消息的订阅者数量
+     */
+    long publish(String channel, String message);
+
+    /**
+     * 执行lua脚本，优先EVALSHA，服务端没有缓存脚本时自动退回EVAL
+     * keys按字符串写入，args和返回值使用value的序列化器
+     * @param script 脚本，需要复用同一个实例才能缓存sha1
+     * @param keys
+     * @param args
+     * @param <T>
+     * @return
+     */
+    <T> T eval(RedisScript<T> script, List<String> keys, Object... args);
+
+    /**
+     * 执行lua脚本，args和字符串返回值都按原样的字符串读写，不经过value的序列化器，
+     * 脚本里需要 tonumber 的参数用这个方法传，不受 redis.helper.serializer.format 影响
+     * @param script 脚本，需要复用同一个实例才能缓存sha1
+     * @param keys
+     * @param args
+     * @param <T>
+     * @return
+     */
+    <T> T evalString(RedisScript<T> script, List<String> keys, String... args);
+
 }
@@ -0,0 +1,15 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 可重入分布式锁接口，同一个salt可以多次加锁，解锁相同次数后才真正释放
+ */
+public interface IReentrantLock extends ILock {
+
+    /**
+     * 当前持有次数
+     * @param key
+     * @param salt
+     * @return 未持有时为0
+     */
+    int holdCount(String key, String salt);
+}
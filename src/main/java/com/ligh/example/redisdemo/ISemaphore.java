@@ -0,0 +1,33 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 分布式信号量接口，每个许可有自己的标识和过期时间，持有者宕机后许可到期自动收回
+ */
+public interface ISemaphore {
+
+    /**
+     * 获取一个许可，同一个permitId重复获取只占一个许可并刷新过期时间
+     * @param key
+     * @param permitId 许可标识
+     * @param maxPermits 许可总数
+     * @param maxWaitSeconds 最大等待时间 单位（秒）
+     * @return
+     */
+    boolean tryAcquire(String key, String permitId, int maxPermits, long maxWaitSeconds);
+
+    /**
+     * 归还许可
+     * @param key
+     * @param permitId
+     * @return 许可不存在（已归还或已过期）时返回false
+     */
+    boolean release(String key, String permitId);
+
+    /**
+     * 剩余可用许可数
+     * @param key
+     * @param maxPermits 许可总数
+     * @return
+     */
+    int availablePermits(String key, int maxPermits);
+}
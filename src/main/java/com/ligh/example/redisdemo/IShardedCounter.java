@@ -0,0 +1,51 @@
+package com.ligh.example.redisdemo;
+
+/**
+ * 分片计数器接口，一个逻辑计数器拆成多个子key，写入随机落到其中一个，读取时汇总，
+ * 热点计数器的写压力分散到多个key（集群模式下分散到多个分片）
+ */
+public interface IShardedCounter {
+
+    /**
+     * 计数器增加increment，随机写入一个子key
+     * @param key
+     * @param increment
+     */
+    void incrby(String key, long increment);
+
+    /**
+     * 哈希表字段计数器增加increment，随机写入一个子哈希表
+     * @param key
+     * @param field
+     * @param increment
+     */
+    void hincrby(String key, String field, int increment);
+
+    /**
+     * 汇总所有子key，一次往返
+     * @param key
+     * @return
+     */
+    long get(String key);
+
+    /**
+     * 汇总所有子哈希表的字段，一次往返
+     * @param key
+     * @param field
+     * @return
+     */
+    long hget(String key, String field);
+
+    /**
+     * 在线调整分片数，各节点在本地缓存刷新后按新分片数写入；缩小分片数时旧的子key保留并继续参与汇总
+     * @param key
+     * @param shards
+     */
+    void reshard(String key, int shards);
+
+    /**
+     * 删除计数器的所有子key
+     * @param key
+     */
+    void delete(String key);
+}
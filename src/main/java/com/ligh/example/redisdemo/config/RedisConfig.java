@@ -8,6 +8,23 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.impl.CacheRefresher;
+import com.ligh.example.redisdemo.impl.HotKeyDetector;
+import com.ligh.example.redisdemo.impl.LockNotifier;
+import com.ligh.example.redisdemo.impl.LockWatchdog;
+import com.ligh.example.redisdemo.impl.NearCache;
+import com.ligh.example.redisdemo.impl.RedisCommandMetrics;
+import com.ligh.example.redisdemo.impl.RedisCounterBuffer;
+import com.ligh.example.redisdemo.serializer.BinaryRedisSerializer;
+import com.ligh.example.redisdemo.serializer.CompressingRedisSerializer;
+import com.ligh.example.redisdemo.serializer.CompressionStats;
+import com.ligh.example.redisdemo.serializer.MigratingRedisSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.support.NullValue;
@@ -17,15 +34,26 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @ClassName RedisConfig
@@ -37,6 +65,13 @@ import java.text.SimpleDateFormat;
 @EnableCaching
 public class RedisConfig {
 
+    @Autowired(required = false)
+    private RedisHelperProperties properties;
+
+    public void setProperties(RedisHelperProperties properties) {
+        this.properties = properties;
+    }
+
     public ObjectMapper getObjectMapper(){
         ObjectMapper om = new ObjectMapper();
         // List<LocalDateTime>类型的反序列化会出问题，这里需要处理一下
@@ -49,6 +84,78 @@ public class RedisConfig {
         return om;
     }
 
+    /**
+     * 压缩统计，按 redis.helper.compression.stat-prefixes 分组
+     * @return
+     */
+    @Bean
+    public CompressionStats compressionStats() {
+        return new CompressionStats(properties == null ? null : properties.getCompression().getStatPrefixes());
+    }
+
+    /**
+     * RedisHelper命令指标，有MeterRegistry时注册到容器里的registry，否则注册到micrometer的全局registry；
+     * 开启热点key探测时由它把命令的key交给探测器采样
+     * @param meterRegistry
+     * @param hotKeyDetector
+     * @return
+     */
+    @Bean
+    public RedisCommandMetrics redisCommandMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                                   ObjectProvider<HotKeyDetector> hotKeyDetector) {
+        RedisHelperProperties.MetricsProperties metrics = properties == null
+                ? new RedisHelperProperties.MetricsProperties() : properties.getMetrics();
+        HotKeyDetector detector = hotKeyDetector.getIfAvailable();
+        if (!metrics.isEnabled() && detector == null) {
+            return RedisCommandMetrics.NOOP;
+        }
+        double[] percentiles = new double[metrics.getPercentiles().size()];
+        for (int i = 0; i < percentiles.length; i++) {
+            percentiles[i] = metrics.getPercentiles().get(i);
+        }
+        MeterRegistry registry = metrics.isEnabled() ? meterRegistry.getIfAvailable(() -> Metrics.globalRegistry) : null;
+        RedisCommandMetrics commandMetrics = new RedisCommandMetrics(registry, metrics.getGroupPrefixes(), percentiles,
+                metrics.isPercentileHistogram());
+        commandMetrics.setHotKeyDetector(detector);
+        return commandMetrics;
+    }
+
+    /**
+     * 热点key探测，redis.helper.hot-key.enabled=true 时开启
+     * @param properties
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.helper.hot-key", name = "enabled", havingValue = "true")
+    public HotKeyDetector hotKeyDetector(RedisHelperProperties properties) {
+        RedisHelperProperties.HotKeyProperties hotKey = properties.getHotKey();
+        return new HotKeyDetector(hotKey.getSampleRate(), hotKey.getTopK(),
+                TimeUnit.SECONDS.toMillis(hotKey.getWindowSeconds()), hotKey.getSketchDepth(),
+                hotKey.getSketchWidth(), hotKey.getThreshold());
+    }
+
+    /**
+     * value序列化器，按 redis.helper.serializer.format 选择写入格式，读取时json和二进制都支持
+     * 外层是压缩，超过阈值的value压缩后写入，读取时自动识别是否压缩过
+     * @return
+     */
+    public RedisSerializer<Object> getValueSerializer(){
+        RedisHelperProperties.SerializerProperties serializerProperties = properties == null
+                ? new RedisHelperProperties.SerializerProperties() : properties.getSerializer();
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(getObjectMapper());
+        Map<Integer, Class<?>> registeredClasses = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> entry : serializerProperties.getRegisteredClasses().entrySet()) {
+            registeredClasses.put(entry.getKey(), ClassUtils.resolveClassName(entry.getValue(), getClass().getClassLoader()));
+        }
+        BinaryRedisSerializer binarySerializer = new BinaryRedisSerializer(jsonSerializer, registeredClasses);
+        MigratingRedisSerializer migratingSerializer = new MigratingRedisSerializer(jsonSerializer, binarySerializer,
+                serializerProperties.getFormat());
+        RedisHelperProperties.CompressionProperties compression = properties == null
+                ? new RedisHelperProperties.CompressionProperties() : properties.getCompression();
+        return new CompressingRedisSerializer(migratingSerializer, compression.isEnabled(), compression.getCodec(),
+                compression.getThreshold(), compressionStats());
+    }
+
     /**
      * 设置redisTemplate的序列化器
      * @param redisConnectionFactory
@@ -56,7 +163,7 @@ public class RedisConfig {
      */
     @Bean
     public RedisTemplate<String,Object> redisTemplate(RedisConnectionFactory redisConnectionFactory){
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(getObjectMapper());
+        RedisSerializer<Object> serializer = getValueSerializer();
         RedisTemplate<String,Object> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         // 设置key的序列化规则
@@ -71,6 +178,24 @@ public class RedisConfig {
         return redisTemplate;
     }
 
+    /**
+     * 响应式redisTemplate，序列化方式与redisTemplate一致
+     * @param reactiveRedisConnectionFactory
+     * @return
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        RedisSerializer<Object> serializer = getValueSerializer();
+        RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
+                .<String, Object>newSerializationContext(serializer)
+                .key(RedisSerializer.string())
+                .value(serializer)
+                .hashKey(RedisSerializer.string())
+                .hashValue(serializer)
+                .build();
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, serializationContext);
+    }
+
     @Bean
     public HashOperations<String, String, Object> opsForHash(RedisTemplate<String, Object> redisTemplate) {
         return redisTemplate.opsForHash();
@@ -105,4 +230,88 @@ public class RedisConfig {
         RedisCacheManager cacheManager = new RedisCacheManager(writer, config);
         return cacheManager;
     }
+
+    /**
+     * 本地近端缓存，redis.helper.near-cache.enabled=true 时开启
+     * @param properties
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.helper.near-cache", name = "enabled", havingValue = "true")
+    public NearCache nearCache(RedisHelperProperties properties) {
+        return new NearCache(properties.getNearCache());
+    }
+
+    /**
+     * getOrLoad的过期抖动和提前加载，按 redis.helper.loader 配置
+     * @return
+     */
+    @Bean
+    public CacheRefresher cacheRefresher() {
+        return new CacheRefresher(properties == null
+                ? new RedisHelperProperties.LoaderProperties() : properties.getLoader());
+    }
+
+    /**
+     * 分布式锁释放通知
+     * @return
+     */
+    @Bean
+    public LockNotifier lockNotifier() {
+        return new LockNotifier();
+    }
+
+    /**
+     * 锁续期看门狗，redis.helper.lock.watchdog-enabled=true 时开启
+     * @param redisHelper
+     * @param properties
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.helper.lock", name = "watchdog-enabled", havingValue = "true")
+    public LockWatchdog lockWatchdog(IRedisHelper redisHelper, RedisHelperProperties properties) {
+        return new LockWatchdog(redisHelper, properties.getLock().getLeaseSeconds());
+    }
+
+    /**
+     * 计数器写缓冲，redis.helper.counter-buffer.enabled=true 时开启，容器关闭时写入剩余增量
+     * @param redisHelper
+     * @param properties
+     * @return
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "redis.helper.counter-buffer", name = "enabled", havingValue = "true")
+    public RedisCounterBuffer counterBuffer(IRedisHelper redisHelper, RedisHelperProperties properties) {
+        return new RedisCounterBuffer(redisHelper, properties.getCounterBuffer());
+    }
+
+    /**
+     * 订阅锁释放通知；开启近端缓存时还订阅keyspace通知，其他节点修改key时失效本地近端缓存
+     * @param redisConnectionFactory
+     * @param lockNotifier
+     * @param nearCacheProvider
+     * @param properties
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       LockNotifier lockNotifier,
+                                                                       ObjectProvider<NearCache> nearCacheProvider,
+                                                                       RedisHelperProperties properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(lockNotifier, new ChannelTopic(LockNotifier.CHANNEL));
+        NearCache nearCache = nearCacheProvider.getIfAvailable();
+        if (nearCache != null && properties.getNearCache().isListenKeyspaceEvents()) {
+            List<String> prefixes = properties.getNearCache().getPrefixes();
+            if (prefixes == null || prefixes.isEmpty()) {
+                container.addMessageListener(nearCache, new PatternTopic("__keyspace@*__:*"));
+            } else {
+                for (String prefix : prefixes) {
+                    container.addMessageListener(nearCache, new PatternTopic("__keyspace@*__:" + prefix + "*"));
+                }
+            }
+        }
+        return container;
+    }
 }
@@ -0,0 +1,378 @@
+package com.ligh.example.redisdemo.config;
+
+import com.ligh.example.redisdemo.serializer.CompressingRedisSerializer;
+import com.ligh.example.redisdemo.serializer.MigratingRedisSerializer;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName RedisHelperProperties
+ * @Description RedisHelper相关的可选功能配置，前缀 redis.helper
+ * @Author 李光华
+ * @Date 2020/12/8 10:12
+ **/
+@Data
+@Component
+@ConfigurationProperties(prefix = "redis.helper")
+public class RedisHelperProperties {
+
+    /**
+     * 本地近端缓存（L1）配置
+     */
+    private NearCacheProperties nearCache = new NearCacheProperties();
+
+    /**
+     * value序列化配置
+     */
+    private SerializerProperties serializer = new SerializerProperties();
+
+    /**
+     * 大value压缩配置
+     */
+    private CompressionProperties compression = new CompressionProperties();
+
+    /**
+     * 分布式锁配置
+     */
+    private LockProperties lock = new LockProperties();
+
+    /**
+     * 命令指标配置
+     */
+    private MetricsProperties metrics = new MetricsProperties();
+
+    /**
+     * 热点key探测配置
+     */
+    private HotKeyProperties hotKey = new HotKeyProperties();
+
+    /**
+     * 并发读合并配置
+     */
+    private SingleFlightProperties singleFlight = new SingleFlightProperties();
+
+    /**
+     * getOrLoad加载配置
+     */
+    private LoaderProperties loader = new LoaderProperties();
+
+    /**
+     * 计数器写缓冲配置
+     */
+    private CounterBufferProperties counterBuffer = new CounterBufferProperties();
+
+    /**
+     * 限流配置
+     */
+    private RateLimiterProperties rateLimiter = new RateLimiterProperties();
+
+    /**
+     * 号段ID生成器配置
+     */
+    private IdGeneratorProperties idGenerator = new IdGeneratorProperties();
+
+    /**
+     * 分片计数器配置
+     */
+    private ShardedCounterProperties shardedCounter = new ShardedCounterProperties();
+
+    @Data
+    public static class NearCacheProperties {
+
+        /**
+         * 是否开启近端缓存，默认关闭
+         */
+        private boolean enabled = false;
+
+        /**
+         * 需要近端缓存的key前缀，为空表示所有key都缓存
+         */
+        private List<String> prefixes = new ArrayList<>();
+
+        /**
+         * 缓存总权重上限，按序列化后的字节数计算，默认64M
+         */
+        private long maximumWeight = 64L * 1024 * 1024;
+
+        /**
+         * 本地缓存最长存活时间，单位 秒，redis剩余过期时间更短时以redis为准
+         */
+        private long maxTtlSeconds = 60L;
+
+        /**
+         * 是否订阅keyspace通知，用于其他节点写入时失效本地缓存
+         * 需要redis服务端开启 notify-keyspace-events（至少包含 K 和 A）
+         */
+        private boolean listenKeyspaceEvents = true;
+    }
+
+    @Data
+    public static class SerializerProperties {
+
+        /**
+         * 写入格式，json或binary，读取时两种格式都能识别，便于灰度切换和回滚
+         */
+        private MigratingRedisSerializer.Format format = MigratingRedisSerializer.Format.JSON;
+
+        /**
+         * binary格式下注册的类，class id -> 全类名，id一旦使用就不能再分配给其他类
+         */
+        private Map<Integer, String> registeredClasses = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class CompressionProperties {
+
+        /**
+         * 是否压缩写入的数据，默认关闭；关闭时仍能读取之前压缩过的数据
+         */
+        private boolean enabled = false;
+
+        /**
+         * 压缩算法，lz4速度优先，deflate压缩率优先
+         */
+        private CompressingRedisSerializer.Codec codec = CompressingRedisSerializer.Codec.LZ4;
+
+        /**
+         * 序列化后超过多少字节才压缩，默认1K
+         */
+        private int threshold = 1024;
+
+        /**
+         * 按key前缀分组统计压缩率和耗时，没有匹配的key统计到 other
+         */
+        private List<String> statPrefixes = new ArrayList<>();
+    }
+
+    @Data
+    public static class LockProperties {
+
+        /**
+         * 等待锁时的兜底轮询间隔，单位 毫秒；正常情况下由释放通知唤醒，
+         * 持有者宕机或锁自然过期时没有通知，最多等这么久再抢一次
+         */
+        private long fallbackPollMillis = 1000L;
+
+        /**
+         * 是否开启锁续期看门狗，开启后锁的过期时间为 leaseSeconds，持有期间自动续期
+         */
+        private boolean watchdogEnabled = false;
+
+        /**
+         * 看门狗模式下锁的过期时间，单位 秒，持有者宕机后最多这么久锁自动释放
+         */
+        private long leaseSeconds = 30L;
+
+        /**
+         * 是否开启JVM内同key加锁合并，同一个key每个JVM只有一个线程去redis抢锁，其余线程本地排队
+         */
+        private boolean localCoalescing = true;
+
+        /**
+         * 连续本地交接的最大次数，达到后真正释放一次锁，让其他JVM的等待者公平竞争
+         */
+        private int maxLocalHandoffs = 5;
+    }
+
+    @Data
+    public static class MetricsProperties {
+
+        /**
+         * 是否记录RedisHelper命令的耗时、次数、失败次数和value字节数，默认开启
+         */
+        private boolean enabled = true;
+
+        /**
+         * 按key前缀分组打标签，按顺序匹配第一个，没有匹配的key和多key命令归到 other
+         */
+        private List<String> groupPrefixes = new ArrayList<>();
+
+        /**
+         * 客户端计算的耗时百分位
+         */
+        private List<Double> percentiles = new ArrayList<>(Arrays.asList(0.5, 0.95, 0.99));
+
+        /**
+         * 是否输出直方图桶，监控系统需要跨实例聚合百分位时开启
+         */
+        private boolean percentileHistogram = false;
+    }
+
+    @Data
+    public static class HotKeyProperties {
+
+        /**
+         * 是否开启热点key探测，默认关闭
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每多少次访问采样一次，1表示全部记录
+         */
+        private int sampleRate = 10;
+
+        /**
+         * 每个窗口最多产出多少个热点key
+         */
+        private int topK = 20;
+
+        /**
+         * 统计窗口长度，单位 秒
+         */
+        private long windowSeconds = 10L;
+
+        /**
+         * 窗口内估算访问次数达到多少才算热点
+         */
+        private long threshold = 1000L;
+
+        /**
+         * count-min sketch 的行数和每行计数器个数，越大误差越小，内存为 depth * width * 8 字节
+         */
+        private int sketchDepth = 4;
+
+        private int sketchWidth = 4096;
+    }
+
+    @Data
+    public static class SingleFlightProperties {
+
+        /**
+         * 是否合并同一个JVM内对同一个key的并发get、hget，默认关闭；
+         * 开启后并发读拿到的是同一个反序列化对象，调用方不能修改返回值。getOrLoad的加载合并始终开启
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class LoaderProperties {
+
+        /**
+         * 过期时间随机缩短的最大比例，0.1表示在 [0.9*expire, expire] 之间随机，0表示不抖动
+         */
+        private double ttlJitter = 0.1D;
+
+        /**
+         * 是否按XFetch算法在过期前概率性提前加载
+         */
+        private boolean earlyRefresh = true;
+
+        /**
+         * XFetch的beta，越大越早加载，1为论文推荐值
+         */
+        private double beta = 1D;
+
+        /**
+         * 是否把提前加载交给后台线程，调用方直接返回旧值；关闭时由命中提前加载的调用方同步加载
+         */
+        private boolean backgroundRefresh = false;
+
+        /**
+         * 后台加载线程数
+         */
+        private int refreshThreads = 2;
+
+        /**
+         * 后台加载队列长度，满了之后跳过这次提前加载
+         */
+        private int refreshQueueSize = 1000;
+
+        /**
+         * 本地最多记录多少个key的加载耗时
+         */
+        private long maxTrackedKeys = 10000L;
+    }
+
+    @Data
+    public static class CounterBufferProperties {
+
+        /**
+         * 是否开启计数器写缓冲，默认关闭
+         */
+        private boolean enabled = false;
+
+        /**
+         * 刷新间隔，单位 毫秒，也是进程异常退出时最多丢失增量的时间窗口
+         */
+        private long flushIntervalMillis = 1000L;
+
+        /**
+         * 本地计数器个数达到多少时提前刷新
+         */
+        private int maxCells = 10000;
+
+        /**
+         * 每个pipeline最多写入多少个计数器
+         */
+        private int batchSize = 500;
+
+        /**
+         * 连续多少次刷新没有增量的计数器从本地移除
+         */
+        private int idleFlushes = 60;
+    }
+
+    @Data
+    public static class RateLimiterProperties {
+
+        /**
+         * 是否开启本地预判，被拒绝的key在最早可能放行之前直接在本地拒绝
+         */
+        private boolean localPrecheck = true;
+
+        /**
+         * 本地最多记录多少个被拒绝的key
+         */
+        private long maxLocalKeys = 100000L;
+    }
+
+    @Data
+    public static class IdGeneratorProperties {
+
+        /**
+         * 第一次领取的号段长度
+         */
+        private long initialStep = 1000L;
+
+        /**
+         * 号段长度下限
+         */
+        private long minStep = 100L;
+
+        /**
+         * 号段长度上限，也是节点重启时最多浪费的ID数
+         */
+        private long maxStep = 1_000_000L;
+
+        /**
+         * 当前号段用掉多少比例后预取下一段
+         */
+        private double prefetchRatio = 0.1D;
+
+        /**
+         * 期望一个号段用多久，单位 毫秒，号段长度按实际消耗时间向它靠拢
+         */
+        private long targetSegmentMillis = 60_000L;
+    }
+
+    @Data
+    public static class ShardedCounterProperties {
+
+        /**
+         * 没有调整过分片数的计数器默认分片数
+         */
+        private int defaultShards = 8;
+
+        /**
+         * 本地缓存分片数的时间，单位 毫秒，调整分片数后各节点最多这么久生效
+         */
+        private long metaRefreshMillis = 5000L;
+    }
+}
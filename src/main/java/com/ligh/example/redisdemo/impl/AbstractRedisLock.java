@@ -0,0 +1,160 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.ILock;
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @ClassName AbstractRedisLock
+ * @Description 分布式锁的公共部分：抢锁失败后等待释放通知，收不到通知时按 fallbackPollMillis 兜底重试
+ * @Author 李光华
+ * @Date 2020/12/18 9:40
+ **/
+public abstract class AbstractRedisLock {
+
+    @Autowired
+    protected IRedisHelper redisHelper;
+
+    /**
+     * 锁释放通知，没有时退化为按 fallbackPollMillis 轮询
+     */
+    protected LockNotifier lockNotifier;
+
+    /**
+     * 兜底轮询间隔，单位 毫秒，收不到释放通知（如持有者宕机、锁过期）时最多等这么久再抢一次
+     */
+    protected long fallbackPollMillis = 1000L;
+
+    /**
+     * 锁的过期时间，单位 秒
+     */
+    protected long leaseSeconds = ILock.MAX_HOLD_SECONDS;
+
+    protected AbstractRedisLock() {
+    }
+
+    protected AbstractRedisLock(IRedisHelper redisHelper, LockNotifier lockNotifier) {
+        this.redisHelper = redisHelper;
+        this.lockNotifier = lockNotifier;
+    }
+
+    @Autowired(required = false)
+    public void setLockNotifier(LockNotifier lockNotifier) {
+        this.lockNotifier = lockNotifier;
+    }
+
+    @Autowired(required = false)
+    public void setProperties(RedisHelperProperties properties) {
+        this.fallbackPollMillis = properties.getLock().getFallbackPollMillis();
+    }
+
+    public void setFallbackPollMillis(long fallbackPollMillis) {
+        this.fallbackPollMillis = fallbackPollMillis;
+    }
+
+    public void setLeaseSeconds(long leaseSeconds) {
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    protected static long deadline(long maxWaitSeconds) {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(0L, maxWaitSeconds));
+    }
+
+    /**
+     * 反复尝试直到成功或超过deadline，两次尝试之间等待key的释放通知
+     * @param key
+     * @param deadline 截止时间戳，单位 毫秒
+     * @param attempt 一次尝试
+     * @return
+     */
+    protected boolean await(String key, long deadline, BooleanSupplier attempt) throws InterruptedException {
+        LockNotifier.Waiter waiter = lockNotifier == null ? null : lockNotifier.waiter(key);
+        try {
+            while (true) {
+                //先进入等待队列再抢锁，抢锁失败后的释放通知不会丢
+                if (waiter != null) {
+                    waiter.arm();
+                }
+                if (attempt.getAsBoolean()) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                long timeout = Math.min(remaining, pollMillis());
+                if (waiter != null) {
+                    waiter.await(timeout);
+                } else {
+                    Thread.sleep(timeout);
+                }
+            }
+        } finally {
+            if (waiter != null) {
+                waiter.close();
+            }
+        }
+    }
+
+    /**
+     * 两次尝试之间最长等待时间
+     */
+    protected long pollMillis() {
+        return fallbackPollMillis;
+    }
+
+    /**
+     * 等待直到成功或超时，被中断时返回false
+     * @param key
+     * @param maxWaitSeconds 最大等待时间，单位 秒，0表示只尝试一次
+     * @param attempt
+     * @return
+     */
+    protected boolean tryAcquire(String key, long maxWaitSeconds, BooleanSupplier attempt) {
+        try {
+            return await(key, deadline(maxWaitSeconds), attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 执行返回0/1的脚本
+     */
+    protected boolean evalFlag(RedisScript<Long> script, String key, Object... args) {
+        return evalFlag(script, Collections.singletonList(key), args);
+    }
+
+    protected boolean evalFlag(RedisScript<Long> script, List<String> keys, Object... args) {
+        Long result = redisHelper.eval(script, keys, args);
+        return result != null && result == 1L;
+    }
+
+    protected long leaseMillis() {
+        return TimeUnit.SECONDS.toMillis(leaseSeconds);
+    }
+
+    /**
+     * 辅助key的前缀，加上后缀后与key在同一个slot：key没有hash tag时用 {key} 作为tag，它和key本身算出的slot相同；
+     * key带大括号但不是有效的hash tag（如 "{}a"）时无法推出同slot的key，直接拒绝
+     */
+    protected static String slotPrefix(String key) {
+        int open = key.indexOf('{');
+        int close = open < 0 ? -1 : key.indexOf('}', open + 1);
+        if (close > open + 1) {
+            return key;
+        }
+        if (key.indexOf('}') < 0) {
+            return "{" + key + "}";
+        }
+        throw new IllegalArgumentException("lock key needs a non-empty hash tag or no braces: " + key);
+    }
+}
@@ -0,0 +1,303 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IAsyncRedisHelper;
+import com.ligh.example.redisdemo.IReactiveRedisHelper;
+import com.ligh.example.redisdemo.IZSetTuple;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @ClassName AsyncRedisHelper
+ * @Description redis常用接口的异步封装，复用响应式封装的lettuce非阻塞连接，订阅后立即返回CompletableFuture，
+ * 多个命令在同一条连接上排队发出，回调在lettuce的IO线程上完成，耗时的后续处理请用 thenApplyAsync 切到业务线程池
+ * @Author 李光华
+ * @Date 2020/12/22 15:40
+ **/
+@Repository
+public class AsyncRedisHelper implements IAsyncRedisHelper {
+
+    private final IReactiveRedisHelper reactiveRedisHelper;
+
+    public AsyncRedisHelper(IReactiveRedisHelper reactiveRedisHelper) {
+        this.reactiveRedisHelper = reactiveRedisHelper;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> set(String key, Object value) {
+        return reactiveRedisHelper.set(key, value).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> set(String key, Object value, long expire) {
+        return reactiveRedisHelper.set(key, value, expire).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setIfValueAbSent(String key, Object value, long expire) {
+        return reactiveRedisHelper.setIfValueAbSent(key, value, expire).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Object> get(String key) {
+        return reactiveRedisHelper.get(key).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String key, Class<T> clazz) {
+        return reactiveRedisHelper.get(key, clazz).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Object> getSet(String key, Object value) {
+        return reactiveRedisHelper.getSet(key, value).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> mget(List<String> keys) {
+        return reactiveRedisHelper.mget(keys).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> incr(String key) {
+        return reactiveRedisHelper.incr(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> incrby(String key, long increment) {
+        return reactiveRedisHelper.incrby(key, increment).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> decr(String key) {
+        return reactiveRedisHelper.decr(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> del(String key) {
+        return reactiveRedisHelper.del(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        return reactiveRedisHelper.exists(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> expire(String key, long expire) {
+        return reactiveRedisHelper.expire(key, expire).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> persist(String key) {
+        return reactiveRedisHelper.persist(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> ttl(String key) {
+        return reactiveRedisHelper.ttl(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> listLen(String key) {
+        return reactiveRedisHelper.listLen(key).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> lindex(String key, long index, Class<T> clazz) {
+        return reactiveRedisHelper.lindex(key, index, clazz).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> lrange(String key, long start, long stop, Class<T> clazz) {
+        return reactiveRedisHelper.lrange(key, start, stop, clazz).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> lpush(String key, Object... objects) {
+        return reactiveRedisHelper.lpush(key, objects).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> rpush(String key, Object... objects) {
+        return reactiveRedisHelper.rpush(key, objects).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> lpop(String key, Class<T> clazz) {
+        return reactiveRedisHelper.lpop(key, clazz).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> rpop(String key, Class<T> clazz) {
+        return reactiveRedisHelper.rpop(key, clazz).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> ltrim(String key, long start, long stop) {
+        return reactiveRedisHelper.ltrim(key, start, stop).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hset(String key, String field, Object value) {
+        return reactiveRedisHelper.hset(key, field, value).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hsetnx(String key, String field, Object value) {
+        return reactiveRedisHelper.hsetnx(key, field, value).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Object> hget(String key, String field) {
+        return reactiveRedisHelper.hget(key, field).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> hget(String key, String field, Class<T> clazz) {
+        return reactiveRedisHelper.hget(key, field, clazz).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hmset(String key, Map<String, Object> map) {
+        return reactiveRedisHelper.hmset(key, map).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> hmget(String key, List<String> fieldList) {
+        return reactiveRedisHelper.hmget(key, fieldList).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> hgetall(String key) {
+        return reactiveRedisHelper.hgetall(key)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hexists(String key, String field) {
+        return reactiveRedisHelper.hexists(key, field).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> hdel(String key, String... fields) {
+        return reactiveRedisHelper.hdel(key, fields).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> hincrby(String key, String field, long increment) {
+        return reactiveRedisHelper.hincrby(key, field, increment).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> hkeys(String key) {
+        return reactiveRedisHelper.hkeys(key).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> hvals(String key) {
+        return reactiveRedisHelper.hvals(key).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> hlen(String key) {
+        return reactiveRedisHelper.hlen(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> sadd(String key, Object... members) {
+        return reactiveRedisHelper.sadd(key, members).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> scard(String key) {
+        return reactiveRedisHelper.scard(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sismember(String key, Object member) {
+        return reactiveRedisHelper.sismember(key, member).toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> smembers(String key, Class<T> clazz) {
+        return reactiveRedisHelper.smembers(key, clazz).collectList().toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> spop(String key, Class<T> clazz) {
+        return reactiveRedisHelper.spop(key, clazz).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> srem(String key, Object... members) {
+        return reactiveRedisHelper.srem(key, members).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> zadd(String key, String member, long score) {
+        return reactiveRedisHelper.zadd(key, member, score).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zscore(String key, String member) {
+        return reactiveRedisHelper.zscore(key, member).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zcard(String key) {
+        return reactiveRedisHelper.zcard(key).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zcount(String key, long min, long max) {
+        return reactiveRedisHelper.zcount(key, min, max).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zincrby(String key, String member, long increment) {
+        return reactiveRedisHelper.zincrby(key, member, increment).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zrank(String key, String member) {
+        return reactiveRedisHelper.zrank(key, member).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zrevrank(String key, String member) {
+        return reactiveRedisHelper.zrevrank(key, member).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> zrange(String key, long start, long stop) {
+        return reactiveRedisHelper.zrange(key, start, stop).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<IZSetTuple>> zrangeWithScores(String key, long start, long stop) {
+        return reactiveRedisHelper.zrangeWithScores(key, start, stop).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> zrangeByScore(String key, long min, long max) {
+        return reactiveRedisHelper.zrangeByScore(key, min, max).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> zrevrange(String key, long start, long stop) {
+        return reactiveRedisHelper.zrevrange(key, start, stop).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<IZSetTuple>> zrevrangeWithScores(String key, long start, long stop) {
+        return reactiveRedisHelper.zrevrangeWithScores(key, start, stop).collectList().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> zrem(String key, String... members) {
+        return reactiveRedisHelper.zrem(key, members).toFuture();
+    }
+}
@@ -0,0 +1,200 @@
+package com.ligh.example.redisdemo.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * @ClassName BigKeyReport
+ * @Description 大key扫描结果，按类型和key前缀汇总数量、内存，并保留每种类型内存最大的topN个key
+ * @Author 李光华
+ * @Date 2020/12/24 10:20
+ **/
+public class BigKeyReport {
+
+    /**
+     * 没有分隔符的key归到这个前缀
+     */
+    public static final String NO_PREFIX = "(none)";
+
+    private static final Comparator<BigKey> BY_MEMORY = Comparator.comparingLong(BigKey::getMemoryBytes);
+
+    private final int topN;
+
+    private final String delimiter;
+
+    private final Map<String, Stats> types = new TreeMap<>();
+
+    private final Map<String, Stats> prefixes = new TreeMap<>();
+
+    private long scannedKeys;
+
+    private long elapsedMillis;
+
+    BigKeyReport(int topN, String delimiter) {
+        this.topN = Math.max(1, topN);
+        this.delimiter = delimiter;
+    }
+
+    void add(BigKey bigKey) {
+        scannedKeys++;
+        types.computeIfAbsent(bigKey.getType(), k -> new Stats(topN)).add(bigKey);
+        prefixes.computeIfAbsent(prefixOf(bigKey.getKey()), k -> new Stats(1)).add(bigKey);
+    }
+
+    String prefixOf(String key) {
+        int index = delimiter == null || delimiter.isEmpty() ? -1 : key.indexOf(delimiter);
+        return index < 0 ? NO_PREFIX : key.substring(0, index + delimiter.length());
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getScannedKeys() {
+        return scannedKeys;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 按类型汇总，类型为 redis TYPE 命令的返回值（string、list、hash、set、zset等）
+     * @return
+     */
+    public Map<String, Stats> getTypes() {
+        return types;
+    }
+
+    /**
+     * 按key前缀汇总，前缀为第一个分隔符及之前的部分
+     * @return
+     */
+    public Map<String, Stats> getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * 可读的文本报告
+     * @return
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("scanned ").append(scannedKeys).append(" keys in ").append(elapsedMillis).append("ms\n");
+        sb.append("== by type ==\n");
+        for (Map.Entry<String, Stats> entry : types.entrySet()) {
+            Stats stats = entry.getValue();
+            sb.append(String.format("%-8s keys=%d memory=%d%n", entry.getKey(), stats.count, stats.totalMemoryBytes));
+            for (BigKey bigKey : stats.getLargest()) {
+                sb.append("    ").append(bigKey).append('\n');
+            }
+        }
+        sb.append("== by prefix ==\n");
+        for (Map.Entry<String, Stats> entry : prefixes.entrySet()) {
+            Stats stats = entry.getValue();
+            sb.append(String.format("%-20s keys=%d memory=%d largest=%s%n", entry.getKey(), stats.count,
+                    stats.totalMemoryBytes, stats.getLargest().get(0)));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    public static final class Stats {
+
+        private final int topN;
+
+        private final PriorityQueue<BigKey> largest = new PriorityQueue<>(BY_MEMORY);
+
+        private long count;
+
+        private long totalMemoryBytes;
+
+        private Stats(int topN) {
+            this.topN = topN;
+        }
+
+        private void add(BigKey bigKey) {
+            count++;
+            totalMemoryBytes += bigKey.getMemoryBytes();
+            if (largest.size() < topN) {
+                largest.add(bigKey);
+            } else if (largest.peek().getMemoryBytes() < bigKey.getMemoryBytes()) {
+                largest.poll();
+                largest.add(bigKey);
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMemoryBytes() {
+            return totalMemoryBytes;
+        }
+
+        /**
+         * 内存最大的几个key，从大到小
+         * @return
+         */
+        public List<BigKey> getLargest() {
+            List<BigKey> list = new ArrayList<>(largest);
+            list.sort(BY_MEMORY.reversed());
+            return list;
+        }
+    }
+
+    public static final class BigKey {
+
+        private final String key;
+
+        private final String type;
+
+        private final long length;
+
+        private final long memoryBytes;
+
+        public BigKey(String key, String type, long length, long memoryBytes) {
+            this.key = key;
+            this.type = type;
+            this.length = length;
+            this.memoryBytes = memoryBytes;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * 元素个数，string为字节长度
+         * @return
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * MEMORY USAGE 估算的内存，单位 字节
+         * @return
+         */
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        @Override
+        public String toString() {
+            return key + " (" + type + ", length=" + length + ", memory=" + memoryBytes + ")";
+        }
+    }
+}
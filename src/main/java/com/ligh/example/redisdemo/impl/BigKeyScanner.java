@@ -0,0 +1,188 @@
+package com.ligh.example.redisdemo.impl;
+
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.output.IntegerOutput;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName BigKeyScanner
+ * @Description 大key扫描，用SCAN增量遍历keyspace，每批key用pipeline取TYPE、长度和MEMORY USAGE，
+ * 按 keysPerSecond 限速，可以在生产数据上低峰运行。命令行入口见 {@link BigKeyScannerCli}
+ * @Author 李光华
+ * @Date 2020/12/24 10:40
+ **/
+@Slf4j
+@Component
+public class BigKeyScanner {
+
+    private static final byte[] MEMORY_USAGE = "USAGE".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] SAMPLES = "SAMPLES".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public BigKeyScanner(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 扫描并生成报告，期间占用一个连接
+     * @param options
+     * @return
+     */
+    public BigKeyReport scan(Options options) {
+        return redisTemplate.execute((RedisCallback<BigKeyReport>) connection -> scan(connection, options), true);
+    }
+
+    private BigKeyReport scan(RedisConnection connection, Options options) {
+        BigKeyReport report = new BigKeyReport(options.getTopN(), options.getPrefixDelimiter());
+        long start = System.currentTimeMillis();
+        int batchSize = Math.max(1, options.getBatchSize());
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        ScanOptions scanOptions = ScanOptions.scanOptions().match(options.getPattern()).count(batchSize).build();
+        try (Cursor<byte[]> cursor = connection.scan(scanOptions)) {
+            while (cursor.hasNext() && (options.getMaxKeys() <= 0 || report.getScannedKeys() + batch.size() < options.getMaxKeys())) {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize) {
+                    inspect(connection, batch, options, report);
+                    batch.clear();
+                    throttle(start, report.getScannedKeys(), options.getKeysPerSecond());
+                }
+            }
+            if (!batch.isEmpty()) {
+                inspect(connection, batch, options, report);
+            }
+        } catch (IOException e) {
+            log.warn("close scan cursor failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("big key scan interrupted after {} keys", report.getScannedKeys());
+        }
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    /**
+     * 一批key先用一个pipeline取类型，再用一个pipeline取长度和内存
+     */
+    private void inspect(RedisConnection connection, List<byte[]> keys, Options options, BigKeyReport report) {
+        connection.openPipeline();
+        for (byte[] key : keys) {
+            connection.type(key);
+        }
+        List<Object> types = connection.closePipeline();
+
+        byte[] samples = String.valueOf(options.getMemorySamples()).getBytes(StandardCharsets.UTF_8);
+        connection.openPipeline();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            DataType type = (DataType) types.get(i);
+            if (type == DataType.STRING) {
+                connection.strLen(key);
+            } else if (type == DataType.LIST) {
+                connection.lLen(key);
+            } else if (type == DataType.HASH) {
+                connection.hLen(key);
+            } else if (type == DataType.SET) {
+                connection.sCard(key);
+            } else if (type == DataType.ZSET) {
+                connection.zCard(key);
+            } else {
+                // 其他类型和已经删除的key不取长度，占位保持结果对齐
+                connection.exists(key);
+            }
+            memoryUsage(connection, key, samples);
+        }
+        List<Object> results = connection.closePipeline();
+        for (int i = 0; i < keys.size(); i++) {
+            DataType type = (DataType) types.get(i);
+            if (type == null || type == DataType.NONE) {
+                continue;
+            }
+            Object length = results.get(i * 2);
+            Object memory = results.get(i * 2 + 1);
+            report.add(new BigKeyReport.BigKey(new String(keys.get(i), StandardCharsets.UTF_8), type.code(),
+                    length instanceof Long ? (Long) length : 0L, memory instanceof Long ? (Long) memory : 0L));
+        }
+    }
+
+    /**
+     * MEMORY USAGE 返回整数，lettuce默认按字节数组解析会失败，需要指定输出类型
+     */
+    private void memoryUsage(RedisConnection connection, byte[] key, byte[] samples) {
+        if (connection instanceof LettuceConnection) {
+            ((LettuceConnection) connection).execute("MEMORY", new IntegerOutput<>(ByteArrayCodec.INSTANCE),
+                    MEMORY_USAGE, key, SAMPLES, samples);
+        } else {
+            connection.execute("MEMORY", MEMORY_USAGE, key, SAMPLES, samples);
+        }
+    }
+
+    /**
+     * 按每秒key数限速
+     */
+    private void throttle(long start, long scanned, int keysPerSecond) throws InterruptedException {
+        if (keysPerSecond <= 0) {
+            return;
+        }
+        long expected = scanned * 1000L / keysPerSecond;
+        long elapsed = System.currentTimeMillis() - start;
+        if (expected > elapsed) {
+            TimeUnit.MILLISECONDS.sleep(expected - elapsed);
+        }
+    }
+
+    @Data
+    public static class Options {
+
+        /**
+         * SCAN的MATCH参数
+         */
+        private String pattern = "*";
+
+        /**
+         * SCAN的COUNT参数，同时也是每批pipeline的key数量
+         */
+        private int batchSize = 100;
+
+        /**
+         * 每秒最多检查多少个key，小于等于0不限速
+         */
+        private int keysPerSecond = 1000;
+
+        /**
+         * 最多检查多少个key，小于等于0表示扫完整个keyspace
+         */
+        private long maxKeys = 0L;
+
+        /**
+         * 每种类型保留内存最大的几个key
+         */
+        private int topN = 10;
+
+        /**
+         * MEMORY USAGE 的 SAMPLES 参数，集合类型抽样多少个元素估算内存，0表示全部
+         */
+        private int memorySamples = 5;
+
+        /**
+         * key前缀分隔符，按第一个分隔符之前的部分分组
+         */
+        private String prefixDelimiter = ":";
+    }
+}
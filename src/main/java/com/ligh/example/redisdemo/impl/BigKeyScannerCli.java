@@ -0,0 +1,62 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisConfig;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @ClassName BigKeyScannerCli
+ * @Description 大key扫描的命令行入口，不启动spring容器，直接连redis扫描后把报告打印到标准输出
+ * 用法：java -cp ... com.ligh.example.redisdemo.impl.BigKeyScannerCli --host=127.0.0.1 --port=6379 --pattern=user:* --rate=500
+ * 参数：host、port、password、database、pattern、batch、rate（每秒key数）、max-keys、top、samples、delimiter
+ * @Author 李光华
+ * @Date 2020/12/24 11:30
+ **/
+public class BigKeyScannerCli {
+
+    public static void main(String[] args) {
+        Map<String, String> params = parse(args);
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                params.getOrDefault("host", "127.0.0.1"), Integer.parseInt(params.getOrDefault("port", "6379")));
+        configuration.setDatabase(Integer.parseInt(params.getOrDefault("database", "0")));
+        if (params.containsKey("password")) {
+            configuration.setPassword(RedisPassword.of(params.get("password")));
+        }
+        BigKeyScanner.Options options = new BigKeyScanner.Options();
+        options.setPattern(params.getOrDefault("pattern", options.getPattern()));
+        options.setBatchSize(Integer.parseInt(params.getOrDefault("batch", String.valueOf(options.getBatchSize()))));
+        options.setKeysPerSecond(Integer.parseInt(params.getOrDefault("rate", String.valueOf(options.getKeysPerSecond()))));
+        options.setMaxKeys(Long.parseLong(params.getOrDefault("max-keys", String.valueOf(options.getMaxKeys()))));
+        options.setTopN(Integer.parseInt(params.getOrDefault("top", String.valueOf(options.getTopN()))));
+        options.setMemorySamples(Integer.parseInt(params.getOrDefault("samples", String.valueOf(options.getMemorySamples()))));
+        options.setPrefixDelimiter(params.getOrDefault("delimiter", options.getPrefixDelimiter()));
+
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        try {
+            BigKeyScanner scanner = new BigKeyScanner(new RedisConfig().redisTemplate(connectionFactory));
+            System.out.print(scanner.scan(options).format());
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("unknown argument: " + arg);
+            }
+            int index = arg.indexOf('=');
+            if (index < 0) {
+                throw new IllegalArgumentException("argument must be --name=value: " + arg);
+            }
+            params.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        return params;
+    }
+}
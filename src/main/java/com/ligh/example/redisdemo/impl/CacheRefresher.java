@@ -0,0 +1,149 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName CacheRefresher
+ * @Description getOrLoad的过期策略：写入时给过期时间加随机抖动，避免同一批key同时过期；
+ * 读取时按XFetch算法（概率性提前过期）决定是否提前重新加载，加载越慢、剩余时间越短越可能提前加载，
+ * 可选交给后台线程加载，调用方直接返回旧值。加载耗时只记录在本地，没有在本节点加载过的key不会提前加载
+ * @Author 李光华
+ * @Date 2020/12/25 15:10
+ **/
+@Slf4j
+public class CacheRefresher {
+
+    private final double ttlJitter;
+
+    private final boolean earlyRefresh;
+
+    private final double beta;
+
+    /**
+     * 后台加载线程池，未开启时为null
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * key -> 最近一次加载耗时，单位 纳秒
+     */
+    private final Cache<String, Long> recomputeNanos;
+
+    /**
+     * 正在后台加载的key，同一个key只提交一次
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public CacheRefresher(RedisHelperProperties.LoaderProperties properties) {
+        this.ttlJitter = Math.max(0D, Math.min(1D, properties.getTtlJitter()));
+        this.earlyRefresh = properties.isEarlyRefresh();
+        this.beta = properties.getBeta();
+        this.recomputeNanos = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedKeys())
+                .build();
+        if (properties.isBackgroundRefresh()) {
+            AtomicInteger index = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(properties.getRefreshThreads(), properties.getRefreshThreads(),
+                    60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getRefreshQueueSize()), r -> {
+                Thread thread = new Thread(r, "redis-cache-refresh-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * 加上随机抖动后的过期时间，只会缩短，不会超过调用方给的过期时间
+     * @param expire 单位 秒
+     * @return
+     */
+    public long jitter(long expire) {
+        long range = (long) (expire * ttlJitter);
+        if (range <= 0) {
+            return expire;
+        }
+        return Math.max(1L, expire - ThreadLocalRandom.current().nextLong(range + 1));
+    }
+
+    /**
+     * 记录一次加载耗时
+     * @param key
+     * @param nanos
+     */
+    public void recordRecompute(String key, long nanos) {
+        recomputeNanos.put(key, nanos);
+    }
+
+    /**
+     * XFetch：剩余时间 <= 加载耗时 * beta * -ln(rand) 时提前加载
+     * @param key
+     * @param ttlMillis 剩余过期时间，单位 毫秒
+     * @return
+     */
+    public boolean shouldRefresh(String key, long ttlMillis) {
+        if (!earlyRefresh || ttlMillis <= 0) {
+            return false;
+        }
+        Long nanos = recomputeNanos.getIfPresent(key);
+        if (nanos == null) {
+            return false;
+        }
+        double gapMillis = nanos / 1_000_000D * beta * -Math.log(1D - ThreadLocalRandom.current().nextDouble());
+        return gapMillis >= ttlMillis;
+    }
+
+    /**
+     * 提交后台加载
+     * @param key
+     * @param task
+     * @return 是否已经在后台加载，false时由调用方同步加载
+     */
+    public boolean refreshAsync(String key, Runnable task) {
+        if (executor == null) {
+            return false;
+        }
+        if (!refreshing.add(key)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("redis cache refresh failed, key:{}", key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            //队列满了，旧值还没过期，这次不刷新
+            refreshing.remove(key);
+            return true;
+        }
+    }
+
+    /**
+     * 停止后台加载线程
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
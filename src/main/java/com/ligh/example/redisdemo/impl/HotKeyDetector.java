@@ -0,0 +1,243 @@
+package com.ligh.example.redisdemo.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName HotKeyDetector
+ * @Description 热点key探测，按比例采样key访问，写入count-min sketch估算次数，同时维护固定容量的top-K候选。
+ * 按时间窗口统计，窗口结束后产出上一窗口的热点key，打印日志并通知监听者；内存占用只与sketch大小和K有关，与key数量无关
+ * @Author 李光华
+ * @Date 2020/12/23 15:10
+ **/
+@Slf4j
+public class HotKeyDetector {
+
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0x27D4EB2F165667C5L, 0x85EBCA77C2B2AE63L, 0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL};
+
+    private final int sampleRate;
+
+    private final int topK;
+
+    private final long windowMillis;
+
+    private final int depth;
+
+    private final int width;
+
+    /**
+     * 窗口内估算访问次数达到这个值才算热点（按采样比例放大后）
+     */
+    private final long threshold;
+
+    private volatile Window current;
+
+    private volatile List<HotKey> lastHotKeys = Collections.emptyList();
+
+    private volatile Consumer<List<HotKey>> listener;
+
+    /**
+     * @param sampleRate 每多少次访问采样一次，1表示全部记录
+     * @param topK 每个窗口最多产出多少个热点key
+     * @param windowMillis 窗口长度，单位 毫秒
+     * @param depth sketch行数，最多8
+     * @param width sketch每行计数器个数，向上取2的幂
+     * @param threshold 窗口内估算访问次数达到多少才算热点
+     */
+    public HotKeyDetector(int sampleRate, int topK, long windowMillis, int depth, int width, long threshold) {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.topK = Math.max(1, topK);
+        this.windowMillis = Math.max(1L, windowMillis);
+        this.depth = Math.min(SEEDS.length, Math.max(1, depth));
+        int w = Integer.highestOneBit(Math.max(16, width));
+        this.width = w < width ? w << 1 : w;
+        this.threshold = threshold;
+        this.current = new Window(System.currentTimeMillis() + this.windowMillis);
+    }
+
+    public void setListener(Consumer<List<HotKey>> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 记录一次key访问，未采样到时直接返回
+     * @param key
+     */
+    public void record(String key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        Window window = current(System.currentTimeMillis());
+        long estimate = window.add(key);
+        window.offer(key, estimate);
+    }
+
+    /**
+     * 上一个完整窗口的热点key，按访问次数从高到低
+     * @return
+     */
+    public List<HotKey> hotKeys() {
+        current(System.currentTimeMillis());
+        return lastHotKeys;
+    }
+
+    /**
+     * 当前窗口到目前为止的热点key
+     * @return
+     */
+    public List<HotKey> currentHotKeys() {
+        return current(System.currentTimeMillis()).top();
+    }
+
+    private Window current(long now) {
+        Window window = current;
+        if (now < window.endMillis) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (now < window.endMillis) {
+                return window;
+            }
+            List<HotKey> hotKeys = window.top();
+            // 中间没有访问的窗口直接跳过
+            long end = window.endMillis + windowMillis;
+            if (end <= now) {
+                end = now + windowMillis;
+            }
+            current = new Window(end);
+            lastHotKeys = hotKeys;
+            publish(hotKeys);
+            return current;
+        }
+    }
+
+    private void publish(List<HotKey> hotKeys) {
+        if (hotKeys.isEmpty()) {
+            return;
+        }
+        log.info("redis hot keys in last {}ms: {}", windowMillis, hotKeys);
+        Consumer<List<HotKey>> listener = this.listener;
+        if (listener != null) {
+            try {
+                listener.accept(hotKeys);
+            } catch (RuntimeException e) {
+                log.warn("hot key listener failed", e);
+            }
+        }
+    }
+
+    private final class Window {
+
+        private final long endMillis;
+
+        private final AtomicLongArray counters = new AtomicLongArray(depth * width);
+
+        /**
+         * top-K候选，容量为2K，候选满了以后新key的估算次数超过最小候选才替换
+         */
+        private final ConcurrentHashMap<String, AtomicLong> candidates = new ConcurrentHashMap<>();
+
+        private volatile long minCandidate;
+
+        private Window(long endMillis) {
+            this.endMillis = endMillis;
+        }
+
+        private long add(String key) {
+            int hash = key.hashCode();
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                long count = counters.incrementAndGet(row * width + index(hash, row));
+                estimate = Math.min(estimate, count);
+            }
+            return estimate;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+            return (int) (h ^ (h >>> 32)) & (width - 1);
+        }
+
+        private void offer(String key, long estimate) {
+            AtomicLong count = candidates.get(key);
+            if (count != null) {
+                count.set(Math.max(count.get(), estimate));
+                return;
+            }
+            if (candidates.size() >= topK * 2 && estimate <= minCandidate) {
+                return;
+            }
+            synchronized (this) {
+                if (candidates.size() >= topK * 2) {
+                    String minKey = null;
+                    long min = Long.MAX_VALUE;
+                    for (Map.Entry<String, AtomicLong> entry : candidates.entrySet()) {
+                        long value = entry.getValue().get();
+                        if (value < min) {
+                            min = value;
+                            minKey = entry.getKey();
+                        }
+                    }
+                    if (estimate <= min) {
+                        minCandidate = min;
+                        return;
+                    }
+                    candidates.remove(minKey);
+                }
+                candidates.putIfAbsent(key, new AtomicLong(estimate));
+            }
+        }
+
+        private List<HotKey> top() {
+            List<HotKey> list = new ArrayList<>(candidates.size());
+            for (Map.Entry<String, AtomicLong> entry : candidates.entrySet()) {
+                long count = entry.getValue().get() * sampleRate;
+                if (count >= threshold) {
+                    list.add(new HotKey(entry.getKey(), count));
+                }
+            }
+            list.sort((a, b) -> Long.compare(b.count, a.count));
+            return list.size() > topK ? new ArrayList<>(list.subList(0, topK)) : list;
+        }
+    }
+
+    public static final class HotKey {
+
+        private final String key;
+
+        private final long count;
+
+        public HotKey(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 窗口内估算的访问次数，已按采样比例放大
+         * @return
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+}
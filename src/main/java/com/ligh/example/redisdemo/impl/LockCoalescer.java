@@ -0,0 +1,282 @@
+package com.ligh.example.redisdemo.impl;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName LockCoalescer
+ * @Description 同一个JVM内对同一个key的加锁请求先在本地排队，只有队首的线程去redis抢锁；
+ * 持有者解锁时如果本地还有等待者，直接把redis里的锁改成下一个等待者的salt（本地交接），不经过删除和重新抢锁。
+ * 连续本地交接 maxLocalHandoffs 次后必须真正释放一次，让其他JVM的等待者有机会拿到锁
+ * @Author 李光华
+ * @Date 2020/12/17 16:20
+ **/
+class LockCoalescer {
+
+    private static final int WAITING = 0;
+
+    /**
+     * 轮到去redis抢锁
+     */
+    private static final int TURN = 1;
+
+    /**
+     * 锁已经本地交接过来了
+     */
+    private static final int HANDED_OFF = 2;
+
+    private static final int TIMEOUT = 3;
+
+    private final RedisLock redisLock;
+
+    private final int maxLocalHandoffs;
+
+    private final ConcurrentHashMap<String, LocalQueue> queues = new ConcurrentHashMap<>();
+
+    LockCoalescer(RedisLock redisLock, int maxLocalHandoffs) {
+        this.redisLock = redisLock;
+        this.maxLocalHandoffs = maxLocalHandoffs;
+    }
+
+    boolean tryLock(String key, String salt, long expire, long deadline) throws InterruptedException {
+        LocalQueue queue = queues.compute(key, (k, q) -> {
+            if (q == null) {
+                q = new LocalQueue();
+            }
+            q.refs++;
+            return q;
+        });
+        try {
+            queue.lock.lock();
+            try {
+                if (!queue.owned) {
+                    queue.owned = true;
+                    queue.acquiring = true;
+                } else {
+                    if (deadline <= System.currentTimeMillis()) {
+                        return false;
+                    }
+                    Waiter waiter = new Waiter(salt, expire, deadline, queue.lock.newCondition());
+                    queue.waiters.add(waiter);
+                    int state = awaitTurn(key, queue, waiter);
+                    if (state != TURN) {
+                        return state == HANDED_OFF;
+                    }
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+            //只有拿到本地令牌的线程去redis抢锁
+            boolean locked = false;
+            try {
+                locked = redisLock.acquire(key, salt, expire, deadline);
+            } finally {
+                queue.lock.lock();
+                try {
+                    queue.acquiring = false;
+                    if (locked) {
+                        queue.holderSalt = salt;
+                        queue.ownerExpireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expire);
+                        queue.handoffs = 0;
+                        //等待者在抢锁期间没有过期时间可等，按新的过期时间重新计时
+                        for (Waiter waiter : queue.waiters) {
+                            waiter.condition.signal();
+                        }
+                    } else {
+                        passTurn(queue);
+                    }
+                } finally {
+                    queue.lock.unlock();
+                }
+            }
+            return locked;
+        } finally {
+            release(key, queue);
+        }
+    }
+
+    boolean unLock(String key, String salt) {
+        LocalQueue queue = queues.computeIfPresent(key, (k, q) -> {
+            q.refs++;
+            return q;
+        });
+        if (queue == null) {
+            return redisLock.release(key, salt);
+        }
+        try {
+            boolean holder;
+            queue.lock.lock();
+            try {
+                holder = salt.equals(queue.holderSalt);
+                if (holder) {
+                    Waiter next = queue.waiters.peek();
+                    if (next != null && queue.handoffs < maxLocalHandoffs
+                            && redisLock.handoff(key, salt, next.salt, next.expire)) {
+                        queue.waiters.poll();
+                        queue.handoffs++;
+                        queue.holderSalt = next.salt;
+                        queue.ownerExpireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(next.expire);
+                        next.state = HANDED_OFF;
+                        next.condition.signal();
+                        return true;
+                    }
+                    queue.holderSalt = null;
+                }
+            } finally {
+                queue.lock.unlock();
+            }
+            //不是本地记录的持有者时只按redis解锁，不动本地令牌
+            boolean released = redisLock.release(key, salt);
+            if (holder) {
+                queue.lock.lock();
+                try {
+                    //解锁期间令牌已经被超时接管时不再重复交出
+                    if (!queue.acquiring) {
+                        passTurn(queue);
+                    }
+                } finally {
+                    queue.lock.unlock();
+                }
+            }
+            return released;
+        } finally {
+            release(key, queue);
+        }
+    }
+
+    /**
+     * 等待轮到自己，调用时持有 queue.lock
+     */
+    private int awaitTurn(String key, LocalQueue queue, Waiter waiter) throws InterruptedException {
+        try {
+            while (waiter.state == WAITING) {
+                long now = System.currentTimeMillis();
+                if (now >= waiter.deadline) {
+                    queue.waiters.remove(waiter);
+                    return TIMEOUT;
+                }
+                if (queue.acquiring) {
+                    //令牌持有者还在redis抢锁，不能接管，否则本地会有两个线程同时抢锁
+                    waiter.condition.await(waiter.deadline - now, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                if (now >= queue.ownerExpireAt) {
+                    if (queue.holderSalt != null && redisLock.isRenewing(key, queue.holderSalt)) {
+                        queue.ownerExpireAt = now + TimeUnit.SECONDS.toMillis(waiter.expire);
+                    } else {
+                        //持有者超过过期时间还没解锁，redis里的锁已经过期，接管本地令牌
+                        queue.waiters.remove(waiter);
+                        queue.holderSalt = null;
+                        queue.acquiring = true;
+                        return TURN;
+                    }
+                }
+                waiter.condition.await(Math.min(waiter.deadline, queue.ownerExpireAt) - now, TimeUnit.MILLISECONDS);
+            }
+            return waiter.state;
+        } catch (InterruptedException e) {
+            if (waiter.state == WAITING) {
+                queue.waiters.remove(waiter);
+                throw e;
+            }
+            //已经轮到或者已经交接过来了，保留结果，只恢复中断标记
+            Thread.currentThread().interrupt();
+            return waiter.state;
+        }
+    }
+
+    /**
+     * 本地令牌交给下一个等待者，没有等待者时释放，调用时持有 queue.lock
+     */
+    private void passTurn(LocalQueue queue) {
+        queue.holderSalt = null;
+        queue.handoffs = 0;
+        Waiter next = queue.waiters.poll();
+        if (next == null) {
+            queue.owned = false;
+            return;
+        }
+        queue.acquiring = true;
+        next.state = TURN;
+        next.condition.signal();
+    }
+
+    private void release(String key, LocalQueue queue) {
+        queues.computeIfPresent(key, (k, q) -> {
+            if (q != queue) {
+                return q;
+            }
+            q.refs--;
+            q.lock.lock();
+            try {
+                return q.refs == 0 && !q.owned && q.waiters.isEmpty() ? null : q;
+            } finally {
+                q.lock.unlock();
+            }
+        });
+    }
+
+    int queueCount() {
+        return queues.size();
+    }
+
+    private static final class LocalQueue {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        /**
+         * 正在使用本地令牌的调用数，只在 queues 的 compute 里修改，为0且没有令牌持有者和等待者时从map移除
+         */
+        private int refs;
+
+        /**
+         * 是否有线程拿着本地令牌（在redis抢锁或者已经持有锁）
+         */
+        private boolean owned;
+
+        /**
+         * 令牌持有者是否正在redis抢锁，抢锁期间等待者不会接管令牌
+         */
+        private boolean acquiring;
+
+        /**
+         * 本地持有者的salt，还在抢锁时为null
+         */
+        private String holderSalt;
+
+        /**
+         * 令牌持有者加锁成功后的过期时间，过了这个时间还没解锁认为锁已经在redis过期
+         */
+        private long ownerExpireAt;
+
+        /**
+         * 连续本地交接次数
+         */
+        private int handoffs;
+    }
+
+    private static final class Waiter {
+
+        private final String salt;
+
+        private final long expire;
+
+        private final long deadline;
+
+        private final Condition condition;
+
+        private volatile int state = WAITING;
+
+        private Waiter(String salt, long expire, long deadline, Condition condition) {
+            this.salt = salt;
+            this.expire = expire;
+            this.deadline = deadline;
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.ligh.example.redisdemo.impl;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName LockNotifier
+ * @Description 锁释放通知，unLock时往 {@link #CHANNEL} 发布key，本地按key唤醒一个等待者，
+ * 等待者被唤醒后再去redis抢锁，避免所有等待者定时轮询redis
+ * @Author 李光华
+ * @Date 2020/12/16 9:30
+ **/
+public class LockNotifier implements MessageListener {
+
+    /**
+     * 锁释放通知的channel，消息内容为锁的key
+     */
+    public static final String CHANNEL = "redis-lock:release";
+
+    /**
+     * 消息以此开头时唤醒key上所有本地等待者，用于公平锁这种只有指定等待者能拿到锁的场景
+     */
+    public static final String BROADCAST_PREFIX = "*";
+
+    /**
+     * key -> 本地等待队列，先到先唤醒
+     */
+    private final ConcurrentHashMap<String, ArrayDeque<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 创建一个等待者，用完必须调用 {@link Waiter#close()}
+     * @param key
+     * @return
+     */
+    public Waiter waiter(String key) {
+        return new Waiter(key);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(BROADCAST_PREFIX)) {
+            signalAll(body.substring(BROADCAST_PREFIX.length()));
+        } else {
+            signal(body);
+        }
+    }
+
+    /**
+     * 唤醒key上所有等待者
+     * @param key
+     */
+    public void signalAll(String key) {
+        ArrayDeque<Waiter> queue = waiters.get(key);
+        if (queue == null) {
+            return;
+        }
+        ArrayDeque<Waiter> woken;
+        synchronized (queue) {
+            woken = new ArrayDeque<>(queue);
+            queue.clear();
+            for (Waiter waiter : woken) {
+                waiter.queued = false;
+            }
+        }
+        for (Waiter waiter : woken) {
+            waiter.permit.release();
+        }
+    }
+
+    /**
+     * 唤醒key上最早等待的一个等待者
+     * @param key
+     */
+    public void signal(String key) {
+        ArrayDeque<Waiter> queue = waiters.get(key);
+        if (queue == null) {
+            return;
+        }
+        Waiter waiter;
+        synchronized (queue) {
+            waiter = queue.poll();
+            if (waiter != null) {
+                waiter.queued = false;
+            }
+        }
+        if (waiter != null) {
+            waiter.permit.release();
+        }
+    }
+
+    int waiting(String key) {
+        ArrayDeque<Waiter> queue = waiters.get(key);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public final class Waiter implements AutoCloseable {
+
+        private final String key;
+
+        private final Semaphore permit = new Semaphore(0);
+
+        private boolean queued;
+
+        private Waiter(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 进入等待队列，必须在抢锁之前调用，抢锁失败到开始等待之间的通知不会丢失
+         */
+        public void arm() {
+            waiters.compute(key, (k, queue) -> {
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                }
+                synchronized (queue) {
+                    if (!queued) {
+                        queue.add(this);
+                        queued = true;
+                    }
+                }
+                return queue;
+            });
+        }
+
+        /**
+         * 等待通知
+         * @param timeoutMillis 最长等待时间，超时后调用方兜底再抢一次
+         * @return 是否被通知唤醒
+         */
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            return permit.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close() {
+            waiters.computeIfPresent(key, (k, queue) -> {
+                synchronized (queue) {
+                    if (queued) {
+                        queue.remove(this);
+                        queued = false;
+                    }
+                    return queue.isEmpty() ? null : queue;
+                }
+            });
+            // 被唤醒但没有用上的通知转给下一个等待者
+            if (permit.tryAcquire()) {
+                signal(key);
+            }
+        }
+    }
+}
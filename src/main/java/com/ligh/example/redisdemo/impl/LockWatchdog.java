@@ -0,0 +1,165 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IRedisHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * @ClassName LockWatchdog
+ * @Description 锁续期看门狗，持有锁的线程还活着时每隔 lease/3 把锁的过期时间续到 lease，
+ * 这样可以用很短的过期时间，持有者宕机后锁很快自动释放
+ * @Author 李光华
+ * @Date 2020/12/17 10:15
+ **/
+@Slf4j
+public class LockWatchdog {
+
+    /**
+     * 只有salt一致时才续期，返回1表示续期成功
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "end "
+                    + "return 0", Long.class);
+
+    private final IRedisHelper redisHelper;
+
+    private final long leaseSeconds;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * key -> 续期任务
+     */
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public LockWatchdog(IRedisHelper redisHelper, long leaseSeconds) {
+        this(redisHelper, leaseSeconds, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    LockWatchdog(IRedisHelper redisHelper, long leaseSeconds, ScheduledExecutorService scheduler) {
+        this.redisHelper = redisHelper;
+        this.leaseSeconds = leaseSeconds;
+        this.scheduler = scheduler;
+    }
+
+    public long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * 开始为当前线程持有的锁续期
+     * @param key
+     * @param salt
+     */
+    public void watch(String key, String salt) {
+        Lease lease = new Lease(key, salt, Thread.currentThread());
+        long period = Math.max(1L, TimeUnit.SECONDS.toMillis(leaseSeconds) / 3);
+        Lease previous = leases.put(key, lease);
+        if (previous != null) {
+            previous.cancel();
+        }
+        lease.future = scheduler.scheduleAtFixedRate(lease, period, period, TimeUnit.MILLISECONDS);
+        //第一次续期可能在赋值future之前就执行并取消了，这里补上取消
+        if (lease.cancelled) {
+            lease.future.cancel(false);
+        }
+    }
+
+    /**
+     * 停止续期
+     * @param key
+     * @param salt
+     */
+    public void unwatch(String key, String salt) {
+        Lease lease = leases.get(key);
+        if (lease != null && lease.salt.equals(salt)) {
+            lease.cancel();
+        }
+    }
+
+    /**
+     * 是否正在为该持有者续期
+     * @param key
+     * @param salt
+     * @return
+     */
+    public boolean isWatching(String key, String salt) {
+        Lease lease = leases.get(key);
+        return lease != null && lease.salt.equals(salt) && lease.owner.isAlive();
+    }
+
+    Map<String, Lease> leases() {
+        return Collections.unmodifiableMap(leases);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        leases.clear();
+    }
+
+    final class Lease implements Runnable {
+
+        private final String key;
+
+        private final String salt;
+
+        private final Thread owner;
+
+        /**
+         * 在 watch 里调度后才赋值，续期任务或 unwatch 可能先于赋值看到null
+         */
+        private volatile ScheduledFuture<?> future;
+
+        private volatile boolean cancelled;
+
+        private Lease(String key, String salt, Thread owner) {
+            this.key = key;
+            this.salt = salt;
+            this.owner = owner;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            if (!owner.isAlive()) {
+                //持有线程已经结束但没有解锁，不再续期，等锁自然过期
+                log.warn("lock {} owner thread {} is dead, stop renewing", key, owner.getName());
+                cancel();
+                return;
+            }
+            try {
+                Long renewed = redisHelper.eval(RENEW_SCRIPT, Collections.singletonList(key), salt,
+                        TimeUnit.SECONDS.toMillis(leaseSeconds));
+                if (renewed == null || renewed == 0L) {
+                    log.warn("lock {} is no longer held by {}, stop renewing", key, salt);
+                    cancel();
+                }
+            } catch (Exception e) {
+                //网络抖动时下一个周期再试，lease内续期成功即可
+                log.warn("renew lock {} failed: {}", key, e.getMessage());
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            leases.remove(key, this);
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
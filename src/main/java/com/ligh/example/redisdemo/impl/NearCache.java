@@ -0,0 +1,223 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * @ClassName NearCache
+ * @Description RedisHelper的本地近端缓存（L1），缓存反序列化后的对象，按序列化字节数限制总大小
+ * 本地写入时由RedisHelper主动失效，其他节点写入时通过keyspace通知失效
+ * @Author 李光华
+ * @Date 2020/12/8 10:30
+ **/
+public class NearCache implements MessageListener {
+
+    /**
+     * 哈希字段缓存key的分隔符
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final Cache<String, Entry> cache;
+
+    /**
+     * 哈希key -> 已缓存的字段，失效整个哈希时使用
+     */
+    private final ConcurrentHashMap<String, Set<String>> hashFields = new ConcurrentHashMap<>();
+
+    private final List<String> prefixes;
+
+    private final long maxTtlNanos;
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public NearCache(RedisHelperProperties.NearCacheProperties properties) {
+        this.prefixes = properties.getPrefixes();
+        this.maxTtlNanos = TimeUnit.SECONDS.toNanos(properties.getMaxTtlSeconds());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumWeight())
+                .weigher((String key, Entry entry) -> key.length() + entry.weight)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * key是否开启了近端缓存
+     * @param key
+     * @return
+     */
+    public boolean isCacheable(String key) {
+        if (prefixes == null || prefixes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取缓存，未命中时调用loader从redis加载，并发加载同一个key时只会加载一次
+     * @param key
+     * @param loader 返回null表示不缓存
+     * @return
+     */
+    public Object get(String key, Function<String, Entry> loader) {
+        Entry entry = cache.get(key, loader);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * 读取哈希字段缓存，未命中时调用loader从redis加载
+     * @param key
+     * @param field
+     * @param loader 返回null表示不缓存
+     * @return
+     */
+    public Object hget(String key, String field, BiFunction<String, String, Entry> loader) {
+        Entry entry = cache.get(fieldKey(key, field), k -> {
+            Entry loaded = loader.apply(key, field);
+            if (loaded != null) {
+                hashFields.computeIfAbsent(key, h -> ConcurrentHashMap.newKeySet()).add(field);
+            }
+            return loaded;
+        });
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * 构建缓存条目
+     * @param value 反序列化后的值
+     * @param weight 序列化后的字节数
+     * @param pttl redis剩余过期时间，单位 毫秒，-1表示没有过期时间，-2表示key不存在
+     * @return 不需要缓存时返回null
+     */
+    Entry entry(Object value, int weight, Long pttl) {
+        if (value == null || (pttl != null && pttl == -2L)) {
+            return null;
+        }
+        long ttlNanos = maxTtlNanos;
+        if (pttl != null && pttl >= 0) {
+            ttlNanos = Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(pttl));
+        }
+        return new Entry(value, weight, ttlNanos);
+    }
+
+    /**
+     * 失效key对应的缓存，包括该key下缓存的所有哈希字段
+     * @param key
+     */
+    public void invalidate(String key) {
+        invalidations.increment();
+        cache.invalidate(key);
+        Set<String> fields = hashFields.remove(key);
+        if (fields != null) {
+            for (String field : fields) {
+                cache.invalidate(fieldKey(key, field));
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.increment();
+        cache.invalidateAll();
+        hashFields.clear();
+    }
+
+    /**
+     * 命中、未命中、淘汰次数等统计
+     * @return
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 失效次数，包括本地写入和keyspace通知
+     * @return
+     */
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * keyspace通知，channel格式为 __keyspace@{db}__:{key}
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        int index = channel.indexOf(':');
+        if (index < 0) {
+            return;
+        }
+        invalidate(channel.substring(index + 1));
+    }
+
+    private void onRemoval(String key, Entry entry, RemovalCause cause) {
+        if (key == null || !cause.wasEvicted()) {
+            return;
+        }
+        int index = key.indexOf(FIELD_SEPARATOR);
+        if (index > 0) {
+            String hashKey = key.substring(0, index);
+            String field = key.substring(index + 1);
+            hashFields.computeIfPresent(hashKey, (k, fields) -> {
+                fields.remove(field);
+                return fields.isEmpty() ? null : fields;
+            });
+        }
+    }
+
+    private static String fieldKey(String key, String field) {
+        return key + FIELD_SEPARATOR + field;
+    }
+
+    static final class Entry {
+        private final Object value;
+        private final int weight;
+        private final long ttlNanos;
+
+        private Entry(Object value, int weight, long ttlNanos) {
+            this.value = value;
+            this.weight = weight;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
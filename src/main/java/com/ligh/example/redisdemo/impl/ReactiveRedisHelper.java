@@ -0,0 +1,339 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IReactiveRedisHelper;
+import com.ligh.example.redisdemo.IZSetTuple;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName ReactiveRedisHelper
+ * @Description redis常用接口的响应式封装，基于ReactiveRedisTemplate（lettuce reactive api），不占用额外线程
+ * @Author 李光华
+ * @Date 2020/12/22 10:15
+ **/
+@Repository
+public class ReactiveRedisHelper implements IReactiveRedisHelper {
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    private final ReactiveHashOperations<String, String, Object> opsForHash;
+
+    /**
+     * 本地近端缓存，未开启时为null；字符串和哈希表写入后失效
+     */
+    private NearCache nearCache;
+
+    public ReactiveRedisHelper(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.opsForHash = reactiveRedisTemplate.opsForHash();
+    }
+
+    @Autowired(required = false)
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, Object value) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().set(key, value));
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, Object value, long expire) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().set(key, value, Duration.ofSeconds(expire)));
+    }
+
+    @Override
+    public Mono<Boolean> setIfValueAbSent(String key, Object value, long expire) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().setIfAbsent(key, value, Duration.ofSeconds(expire)));
+    }
+
+    @Override
+    public Mono<Object> get(String key) {
+        return reactiveRedisTemplate.opsForValue().get(key);
+    }
+
+    @Override
+    public <T> Mono<T> get(String key, Class<T> clazz) {
+        return get(key).ofType(clazz);
+    }
+
+    @Override
+    public Mono<Object> getSet(String key, Object value) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().getAndSet(key, value));
+    }
+
+    @Override
+    public Mono<List<Object>> mget(List<String> keys) {
+        return reactiveRedisTemplate.opsForValue().multiGet(keys);
+    }
+
+    @Override
+    public Mono<Long> incr(String key) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().increment(key));
+    }
+
+    @Override
+    public Mono<Long> incrby(String key, long increment) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().increment(key, increment));
+    }
+
+    @Override
+    public Mono<Long> decr(String key) {
+        return invalidating(key, reactiveRedisTemplate.opsForValue().decrement(key));
+    }
+
+    @Override
+    public Mono<Boolean> del(String key) {
+        return invalidating(key, reactiveRedisTemplate.delete(key).map(count -> count > 0));
+    }
+
+    @Override
+    public Mono<Boolean> exists(String key) {
+        return reactiveRedisTemplate.hasKey(key);
+    }
+
+    @Override
+    public Mono<Boolean> expire(String key, long expire) {
+        return invalidating(key, reactiveRedisTemplate.expire(key, Duration.ofSeconds(expire)));
+    }
+
+    @Override
+    public Mono<Boolean> persist(String key) {
+        return invalidating(key, reactiveRedisTemplate.persist(key));
+    }
+
+    @Override
+    public Mono<Long> ttl(String key) {
+        return reactiveRedisTemplate.createMono(connection -> connection.keyCommands()
+                .ttl(reactiveRedisTemplate.getSerializationContext().getKeySerializationPair().write(key)));
+    }
+
+    @Override
+    public Mono<Long> listLen(String key) {
+        return reactiveRedisTemplate.opsForList().size(key);
+    }
+
+    @Override
+    public <T> Mono<T> lindex(String key, long index, Class<T> clazz) {
+        return reactiveRedisTemplate.opsForList().index(key, index).ofType(clazz);
+    }
+
+    @Override
+    public <T> Flux<T> lrange(String key, long start, long stop, Class<T> clazz) {
+        return reactiveRedisTemplate.opsForList().range(key, start, stop).ofType(clazz);
+    }
+
+    @Override
+    public Mono<Long> lpush(String key, Object... objects) {
+        return reactiveRedisTemplate.opsForList().leftPushAll(key, objects);
+    }
+
+    @Override
+    public Mono<Long> rpush(String key, Object... objects) {
+        return reactiveRedisTemplate.opsForList().rightPushAll(key, objects);
+    }
+
+    @Override
+    public <T> Mono<T> lpop(String key, Class<T> clazz) {
+        return reactiveRedisTemplate.opsForList().leftPop(key).ofType(clazz);
+    }
+
+    @Override
+    public <T> Mono<T> rpop(String key, Class<T> clazz) {
+        return reactiveRedisTemplate.opsForList().rightPop(key).ofType(clazz);
+    }
+
+    @Override
+    public Mono<Boolean> ltrim(String key, long start, long stop) {
+        return reactiveRedisTemplate.opsForList().trim(key, start, stop);
+    }
+
+    @Override
+    public Mono<Boolean> hset(String key, String field, Object value) {
+        return invalidating(key, opsForHash.put(key, field, value));
+    }
+
+    @Override
+    public Mono<Boolean> hsetnx(String key, String field, Object value) {
+        return invalidating(key, opsForHash.putIfAbsent(key, field, value));
+    }
+
+    @Override
+    public Mono<Object> hget(String key, String field) {
+        return opsForHash.get(key, field);
+    }
+
+    @Override
+    public <T> Mono<T> hget(String key, String field, Class<T> clazz) {
+        return hget(key, field).ofType(clazz);
+    }
+
+    @Override
+    public Mono<Boolean> hmset(String key, Map<String, Object> map) {
+        return invalidating(key, opsForHash.putAll(key, map));
+    }
+
+    @Override
+    public Mono<List<Object>> hmget(String key, List<String> fieldList) {
+        return opsForHash.multiGet(key, fieldList);
+    }
+
+    @Override
+    public Flux<Map.Entry<String, Object>> hgetall(String key) {
+        return opsForHash.entries(key);
+    }
+
+    @Override
+    public Mono<Boolean> hexists(String key, String field) {
+        return opsForHash.hasKey(key, field);
+    }
+
+    @Override
+    public Mono<Long> hdel(String key, String... fields) {
+        return invalidating(key, opsForHash.remove(key, (Object[]) fields));
+    }
+
+    @Override
+    public Mono<Long> hincrby(String key, String field, long increment) {
+        return invalidating(key, opsForHash.increment(key, field, increment));
+    }
+
+    @Override
+    public Flux<String> hkeys(String key) {
+        return opsForHash.keys(key);
+    }
+
+    @Override
+    public Flux<Object> hvals(String key) {
+        return opsForHash.values(key);
+    }
+
+    @Override
+    public Mono<Long> hlen(String key) {
+        return opsForHash.size(key);
+    }
+
+    @Override
+    public Mono<Long> sadd(String key, Object... members) {
+        return reactiveRedisTemplate.opsForSet().add(key, members);
+    }
+
+    @Override
+    public Mono<Long> scard(String key) {
+        return reactiveRedisTemplate.opsForSet().size(key);
+    }
+
+    @Override
+    public Mono<Boolean> sismember(String key, Object member) {
+        return reactiveRedisTemplate.opsForSet().isMember(key, member);
+    }
+
+    @Override
+    public <T> Flux<T> smembers(String key, Class<T> clazz) {
+        return reactiveRedisTemplate.opsForSet().members(key).ofType(clazz);
+    }
+
+    @Override
+    public <T> Mono<T> spop(String key, Class<T> clazz) {
+        return reactiveRedisTemplate.opsForSet().pop(key).ofType(clazz);
+    }
+
+    @Override
+    public Mono<Long> srem(String key, Object... members) {
+        return reactiveRedisTemplate.opsForSet().remove(key, members);
+    }
+
+    @Override
+    public Mono<Boolean> zadd(String key, String member, long score) {
+        return reactiveRedisTemplate.opsForZSet().add(key, member, score);
+    }
+
+    @Override
+    public Mono<Long> zscore(String key, String member) {
+        return reactiveRedisTemplate.opsForZSet().score(key, member).map(Double::longValue);
+    }
+
+    @Override
+    public Mono<Long> zcard(String key) {
+        return reactiveRedisTemplate.opsForZSet().size(key);
+    }
+
+    @Override
+    public Mono<Long> zcount(String key, long min, long max) {
+        return reactiveRedisTemplate.opsForZSet().count(key, Range.closed((double) min, (double) max));
+    }
+
+    @Override
+    public Mono<Long> zincrby(String key, String member, long increment) {
+        return reactiveRedisTemplate.opsForZSet().incrementScore(key, member, increment).map(Double::longValue);
+    }
+
+    @Override
+    public Mono<Long> zrank(String key, String member) {
+        return reactiveRedisTemplate.opsForZSet().rank(key, member);
+    }
+
+    @Override
+    public Mono<Long> zrevrank(String key, String member) {
+        return reactiveRedisTemplate.opsForZSet().reverseRank(key, member);
+    }
+
+    @Override
+    public Flux<String> zrange(String key, long start, long stop) {
+        return reactiveRedisTemplate.opsForZSet().range(key, Range.closed(start, stop)).map(ValueUtil::parseString);
+    }
+
+    @Override
+    public Flux<IZSetTuple> zrangeWithScores(String key, long start, long stop) {
+        return reactiveRedisTemplate.opsForZSet().rangeWithScores(key, Range.closed(start, stop))
+                .map(ReactiveRedisHelper::toTuple);
+    }
+
+    @Override
+    public Flux<String> zrangeByScore(String key, long min, long max) {
+        return reactiveRedisTemplate.opsForZSet().rangeByScore(key, Range.closed((double) min, (double) max))
+                .map(ValueUtil::parseString);
+    }
+
+    @Override
+    public Flux<String> zrevrange(String key, long start, long stop) {
+        return reactiveRedisTemplate.opsForZSet().reverseRange(key, Range.closed(start, stop))
+                .map(ValueUtil::parseString);
+    }
+
+    @Override
+    public Flux<IZSetTuple> zrevrangeWithScores(String key, long start, long stop) {
+        return reactiveRedisTemplate.opsForZSet().reverseRangeWithScores(key, Range.closed(start, stop))
+                .map(ReactiveRedisHelper::toTuple);
+    }
+
+    @Override
+    public Mono<Long> zrem(String key, String... members) {
+        return reactiveRedisTemplate.opsForZSet().remove(key, (Object[]) members);
+    }
+
+    private static IZSetTuple toTuple(ZSetOperations.TypedTuple<Object> tuple) {
+        return new ZSetTuple(ValueUtil.parseString(tuple.getValue()), ValueUtil.parseLong(tuple.getScore()));
+    }
+
+    /**
+     * 写入完成后失效近端缓存
+     */
+    private <T> Mono<T> invalidating(String key, Mono<T> mono) {
+        if (nearCache == null) {
+            return mono;
+        }
+        return mono.doFinally(signal -> nearCache.invalidate(key));
+    }
+}
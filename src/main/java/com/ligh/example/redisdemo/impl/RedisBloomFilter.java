@@ -0,0 +1,493 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IBloomFilter;
+import lombok.Data;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @ClassName RedisBloomFilter
+ * @Description 基于redis bitmap的可扩容布隆过滤器（Scalable Bloom Filter）。
+ * name:0、name:1 ... 为各层bitmap，name:meta 记录当前层和当前层已加入个数；当前层加满后启用下一层，
+ * 每层容量按 growth 倍增、误判率按 tightening 收紧，总误判率约为 fpp / (1 - tightening)。
+ * 元素的hash在客户端计算（64位murmur拆成h1、h2），lua脚本里按 h1 + i * h2 推出k个bit位，一批元素一次往返。
+ * 集群模式下name需要带hash tag（如 {bf:user}），保证所有层在同一个slot
+ * @Author 李光华
+ * @Date 2020/12/28 10:20
+ **/
+public class RedisBloomFilter implements IBloomFilter {
+
+    /**
+     * redis字符串最大512MB
+     */
+    private static final long MAX_BITS = 1L << 32;
+
+    private static final String LAYER_FIELD = "layer";
+
+    private static final String COUNT_FIELD = "count";
+
+    /**
+     * 在已启用的层里查找，找到返回-1，否则写入当前层并返回层号；当前层加满时切换到下一层
+     * KEYS: meta，各层bitmap
+     * ARGV: 层数，每层的bit数、hash个数、容量，每个元素的h1、h2
+     */
+    private static final RedisScript<List> ADD_SCRIPT = new DefaultRedisScript<>(
+            "local layers = tonumber(ARGV[1]) "
+                    + "local current = tonumber(redis.call('hget', KEYS[1], '" + LAYER_FIELD + "') or 0) "
+                    + "local count = tonumber(redis.call('hget', KEYS[1], '" + COUNT_FIELD + "') or 0) "
+                    + "local result = {} "
+                    + "for i = 2 + 3 * layers, #ARGV, 2 do "
+                    + "local h1 = tonumber(ARGV[i]) "
+                    + "local h2 = tonumber(ARGV[i + 1]) "
+                    + "local found = false "
+                    + "for l = 0, current do "
+                    + "local bits = tonumber(ARGV[2 + 3 * l]) "
+                    + "found = true "
+                    + "for j = 0, tonumber(ARGV[3 + 3 * l]) - 1 do "
+                    + "if redis.call('getbit', KEYS[2 + l], (h1 + j * h2) % bits) == 0 then found = false break end "
+                    + "end "
+                    + "if found then break end "
+                    + "end "
+                    + "if found then "
+                    + "result[#result + 1] = -1 "
+                    + "else "
+                    + "local bits = tonumber(ARGV[2 + 3 * current]) "
+                    + "for j = 0, tonumber(ARGV[3 + 3 * current]) - 1 do "
+                    + "redis.call('setbit', KEYS[2 + current], (h1 + j * h2) % bits, 1) "
+                    + "end "
+                    + "result[#result + 1] = current "
+                    + "count = count + 1 "
+                    + "if count >= tonumber(ARGV[4 + 3 * current]) and current + 1 < layers then "
+                    + "current = current + 1 "
+                    + "count = 0 "
+                    + "end "
+                    + "end "
+                    + "end "
+                    + "redis.call('hmset', KEYS[1], '" + LAYER_FIELD + "', current, '" + COUNT_FIELD + "', count) "
+                    + "return result", List.class);
+
+    /**
+     * 在已启用的层里查找，返回1/0，参数同 {@link #ADD_SCRIPT}
+     */
+    private static final RedisScript<List> CONTAINS_SCRIPT = new DefaultRedisScript<>(
+            "local layers = tonumber(ARGV[1]) "
+                    + "local current = tonumber(redis.call('hget', KEYS[1], '" + LAYER_FIELD + "') or 0) "
+                    + "local result = {} "
+                    + "for i = 2 + 3 * layers, #ARGV, 2 do "
+                    + "local h1 = tonumber(ARGV[i]) "
+                    + "local h2 = tonumber(ARGV[i + 1]) "
+                    + "local found = false "
+                    + "for l = 0, current do "
+                    + "local bits = tonumber(ARGV[2 + 3 * l]) "
+                    + "found = true "
+                    + "for j = 0, tonumber(ARGV[3 + 3 * l]) - 1 do "
+                    + "if redis.call('getbit', KEYS[2 + l], (h1 + j * h2) % bits) == 0 then found = false break end "
+                    + "end "
+                    + "if found then break end "
+                    + "end "
+                    + "result[#result + 1] = found and 1 or 0 "
+                    + "end "
+                    + "return result", List.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final String name;
+
+    private final Layer[] layers;
+
+    private final List<String> keys;
+
+    /**
+     * 脚本参数里的层参数部分，每次调用都一样
+     */
+    private final List<String> layerArgs;
+
+    private final boolean localCopy;
+
+    private final long localRefreshMillis;
+
+    /**
+     * 本地副本，未开启或需要重新加载时为null
+     */
+    private volatile Snapshot snapshot;
+
+    public RedisBloomFilter(RedisTemplate<String, Object> redisTemplate, String name, Options options) {
+        if (options.getExpectedInsertions() <= 0 || options.getFpp() <= 0 || options.getFpp() >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive and fpp in (0, 1)");
+        }
+        this.redisTemplate = redisTemplate;
+        this.name = name;
+        this.layers = layers(options);
+        this.keys = new ArrayList<>(layers.length + 1);
+        this.keys.add(name + ":meta");
+        this.layerArgs = new ArrayList<>(layers.length * 3 + 1);
+        this.layerArgs.add(String.valueOf(layers.length));
+        for (int i = 0; i < layers.length; i++) {
+            keys.add(name + ":" + i);
+            layerArgs.add(String.valueOf(layers[i].bits));
+            layerArgs.add(String.valueOf(layers[i].hashes));
+            layerArgs.add(String.valueOf(layers[i].capacity));
+        }
+        this.localCopy = options.isLocalCopy();
+        this.localRefreshMillis = options.getLocalRefreshMillis();
+    }
+
+    @Override
+    public boolean add(String item) {
+        return addAll(Collections.singletonList(item)).get(0);
+    }
+
+    @Override
+    public List<Boolean> addAll(List<String> items) {
+        long[][] hashes = hashes(items);
+        List<?> results = eval(ADD_SCRIPT, hashes);
+        List<Boolean> added = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            int layer = ((Number) results.get(i)).intValue();
+            added.add(layer >= 0);
+            if (layer >= 0) {
+                setLocal(layer, hashes[i]);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean mightContain(String item) {
+        return mightContainAll(Collections.singletonList(item)).get(0);
+    }
+
+    @Override
+    public List<Boolean> mightContainAll(List<String> items) {
+        long[][] hashes = hashes(items);
+        List<Boolean> contains = new ArrayList<>(items.size());
+        if (localCopy) {
+            Snapshot local = localSnapshot();
+            for (long[] hash : hashes) {
+                contains.add(local.contains(hash));
+            }
+            return contains;
+        }
+        List<?> results = eval(CONTAINS_SCRIPT, hashes);
+        for (Object result : results) {
+            contains.add(((Number) result).longValue() == 1L);
+        }
+        return contains;
+    }
+
+    @Override
+    public long count() {
+        List<Object> meta = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            byte[] rawKey = rawKey(keys.get(0));
+            List<byte[]> values = connection.hMGet(rawKey, raw(LAYER_FIELD), raw(COUNT_FIELD));
+            return values == null ? null : new ArrayList<>(values);
+        }, true);
+        int current = parseInt(meta == null ? null : meta.get(0));
+        long count = parseInt(meta == null ? null : meta.get(1));
+        for (int i = 0; i < current && i < layers.length; i++) {
+            count += layers[i].capacity;
+        }
+        return count;
+    }
+
+    @Override
+    public void delete() {
+        redisTemplate.delete(keys);
+        snapshot = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 层数上限
+     * @return
+     */
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    /**
+     * 第一层的bit数
+     * @return
+     */
+    public long getBitSize() {
+        return layers[0].bits;
+    }
+
+    /**
+     * 第一层的hash函数个数
+     * @return
+     */
+    public int getHashCount() {
+        return layers[0].hashes;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<?> eval(RedisScript<List> script, long[][] hashes) {
+        List<Object> args = new ArrayList<>(layerArgs.size() + hashes.length * 2);
+        args.addAll(layerArgs);
+        for (long[] hash : hashes) {
+            args.add(String.valueOf(hash[0]));
+            args.add(String.valueOf(hash[1]));
+        }
+        RedisSerializer serializer = RedisSerializer.string();
+        List<?> results = redisTemplate.execute(script, serializer, serializer, keys, args.toArray());
+        if (results == null || results.size() != hashes.length) {
+            throw new IllegalStateException("unexpected bloom filter result: " + results);
+        }
+        return results;
+    }
+
+    private Snapshot localSnapshot() {
+        Snapshot local = snapshot;
+        if (local != null && System.currentTimeMillis() - local.loadedAt < localRefreshMillis) {
+            return local;
+        }
+        synchronized (this) {
+            local = snapshot;
+            if (local == null || System.currentTimeMillis() - local.loadedAt >= localRefreshMillis) {
+                local = loadSnapshot();
+                snapshot = local;
+            }
+            return local;
+        }
+    }
+
+    /**
+     * 一个pipeline取当前层号和已启用层的bitmap
+     */
+    private Snapshot loadSnapshot() {
+        long loadedAt = System.currentTimeMillis();
+        int current = parseInt(redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hGet(rawKey(keys.get(0)), raw(LAYER_FIELD)), true));
+        int enabled = Math.min(current + 1, layers.length);
+        List<Object> values = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            for (int i = 0; i < enabled; i++) {
+                connection.get(rawKey(keys.get(i + 1)));
+            }
+            return connection.closePipeline();
+        }, true);
+        byte[][] bitmaps = new byte[enabled][];
+        for (int i = 0; i < enabled; i++) {
+            //redis的bitmap按需增长，本地按整层分配，后面本地加入时不用扩容
+            bitmaps[i] = new byte[(int) ((layers[i].bits + 7) >>> 3)];
+            Object value = values == null ? null : values.get(i);
+            if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                System.arraycopy(bytes, 0, bitmaps[i], 0, Math.min(bytes.length, bitmaps[i].length));
+            }
+        }
+        return new Snapshot(bitmaps, loadedAt);
+    }
+
+    /**
+     * 本地加入的元素同步写入本地副本，切换到新层时重新加载
+     */
+    private void setLocal(int layer, long[] hash) {
+        Snapshot local = snapshot;
+        if (local == null) {
+            return;
+        }
+        if (layer >= local.bitmaps.length) {
+            snapshot = null;
+            return;
+        }
+        synchronized (local) {
+            Layer geometry = layers[layer];
+            byte[] bitmap = local.bitmaps[layer];
+            for (int j = 0; j < geometry.hashes; j++) {
+                long offset = geometry.offset(hash, j);
+                bitmap[(int) (offset >>> 3)] |= (byte) (0x80 >>> (offset & 7));
+            }
+        }
+    }
+
+    private byte[] rawKey(String key) {
+        @SuppressWarnings("unchecked")
+        RedisSerializer<String> serializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        return serializer.serialize(key);
+    }
+
+    private static byte[] raw(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int parseInt(Object value) {
+        if (value instanceof byte[]) {
+            return Integer.parseInt(new String((byte[]) value, StandardCharsets.UTF_8));
+        }
+        return 0;
+    }
+
+    /**
+     * 每层容量按growth倍增，误判率按tightening收紧，超过redis字符串上限的层不再启用
+     */
+    private static Layer[] layers(Options options) {
+        List<Layer> layers = new ArrayList<>();
+        double capacity = options.getExpectedInsertions();
+        double fpp = options.getFpp();
+        for (int i = 0; i < Math.max(1, options.getMaxLayers()); i++) {
+            long n = (long) Math.ceil(capacity);
+            long bits = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            if (bits > MAX_BITS) {
+                break;
+            }
+            int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+            layers.add(new Layer(bits, hashes, n));
+            capacity *= Math.max(1D, options.getGrowth());
+            fpp *= options.getTightening();
+        }
+        if (layers.isEmpty()) {
+            throw new IllegalArgumentException("bloom filter exceeds redis string size limit");
+        }
+        return layers.toArray(new Layer[0]);
+    }
+
+    /**
+     * 64位murmur hash拆成两个32位无符号数，h2为奇数，保证 h1 + i * h2 在lua的double里精确计算
+     */
+    private static long[][] hashes(List<String> items) {
+        long[][] hashes = new long[items.size()][];
+        for (int i = 0; i < items.size(); i++) {
+            long hash = murmur64(items.get(i).getBytes(StandardCharsets.UTF_8));
+            hashes[i] = new long[]{hash & 0xFFFFFFFFL, (hash >>> 32) | 1L};
+        }
+        return hashes;
+    }
+
+    /**
+     * MurmurHash64A
+     */
+    private static long murmur64(byte[] data) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        long h = 0x9747b28cL ^ (data.length * m);
+        int blocks = data.length >>> 3;
+        for (int i = 0; i < blocks; i++) {
+            int offset = i << 3;
+            long k = (data[offset] & 0xFFL)
+                    | (data[offset + 1] & 0xFFL) << 8
+                    | (data[offset + 2] & 0xFFL) << 16
+                    | (data[offset + 3] & 0xFFL) << 24
+                    | (data[offset + 4] & 0xFFL) << 32
+                    | (data[offset + 5] & 0xFFL) << 40
+                    | (data[offset + 6] & 0xFFL) << 48
+                    | (data[offset + 7] & 0xFFL) << 56;
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+        int tail = blocks << 3;
+        int remaining = data.length - tail;
+        if (remaining > 0) {
+            for (int i = remaining - 1; i >= 0; i--) {
+                h ^= (data[tail + i] & 0xFFL) << (i << 3);
+            }
+            h *= m;
+        }
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        return h;
+    }
+
+    private static final class Layer {
+
+        private final long bits;
+
+        private final int hashes;
+
+        private final long capacity;
+
+        private Layer(long bits, int hashes, long capacity) {
+            this.bits = bits;
+            this.hashes = hashes;
+            this.capacity = capacity;
+        }
+
+        private long offset(long[] hash, int i) {
+            return (hash[0] + i * hash[1]) % bits;
+        }
+    }
+
+    private final class Snapshot {
+
+        private final byte[][] bitmaps;
+
+        private final long loadedAt;
+
+        private Snapshot(byte[][] bitmaps, long loadedAt) {
+            this.bitmaps = bitmaps;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean contains(long[] hash) {
+            for (int l = 0; l < bitmaps.length; l++) {
+                Layer geometry = layers[l];
+                byte[] bitmap = bitmaps[l];
+                boolean found = true;
+                for (int j = 0; j < geometry.hashes && found; j++) {
+                    long offset = geometry.offset(hash, j);
+                    found = (bitmap[(int) (offset >>> 3)] & (0x80 >>> (offset & 7))) != 0;
+                }
+                if (found) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Data
+    public static class Options {
+
+        /**
+         * 第一层的预计元素个数
+         */
+        private long expectedInsertions = 1_000_000L;
+
+        /**
+         * 第一层的误判率
+         */
+        private double fpp = 0.01D;
+
+        /**
+         * 每层容量是上一层的多少倍
+         */
+        private double growth = 2D;
+
+        /**
+         * 每层误判率是上一层的多少倍
+         */
+        private double tightening = 0.5D;
+
+        /**
+         * 最多多少层，最后一层加满后继续往最后一层加，误判率会升高
+         */
+        private int maxLayers = 8;
+
+        /**
+         * 是否在本地保存一份bitmap，mightContain直接查本地，不访问redis
+         */
+        private boolean localCopy = false;
+
+        /**
+         * 本地副本多久从redis重新加载一次，单位 毫秒；期间其他节点加入的元素在本节点判断为不存在
+         */
+        private long localRefreshMillis = 1000L;
+    }
+}
@@ -0,0 +1,253 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.serializer.SerializationContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName RedisCommandMetrics
+ * @Description RedisHelper每个命令的耗时分布、调用次数、失败次数和value字节数，按命令名和key前缀分组打标签，通过micrometer输出。
+ * 指标在命令第一次调用时注册，之后每次调用只有ThreadLocal、map查找和直方图记录，不分配对象（见 RedisCommandMetricsBenchmark -prof gc）。
+ * RedisHelper内部方法互相调用时只记录最外层的命令。设置了 {@link HotKeyDetector} 时，最外层命令的key同时交给它采样
+ * @Author 李光华
+ * @Date 2020/12/23 9:40
+ **/
+public class RedisCommandMetrics {
+
+    public static final String TIMER_NAME = "redis.helper.command";
+
+    public static final String ERROR_NAME = "redis.helper.command.errors";
+
+    public static final String PAYLOAD_NAME = "redis.helper.command.payload";
+
+    public static final String OTHER_GROUP = "other";
+
+    /**
+     * 不记录任何指标
+     */
+    public static final RedisCommandMetrics NOOP = new RedisCommandMetrics();
+
+    private final MeterRegistry registry;
+
+    private final String[] prefixes;
+
+    private final double[] percentiles;
+
+    private final boolean percentileHistogram;
+
+    /**
+     * 命令名 -> 各分组的指标
+     */
+    private final ConcurrentHashMap<String, CommandMeters> commands = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Frame> frames = ThreadLocal.withInitial(Frame::new);
+
+    /**
+     * 热点key探测，未开启时为null
+     */
+    private HotKeyDetector hotKeyDetector;
+
+    private RedisCommandMetrics() {
+        this.registry = null;
+        this.prefixes = new String[0];
+        this.percentiles = new double[0];
+        this.percentileHistogram = false;
+    }
+
+    /**
+     * @param registry 为null时不记录指标，只做热点key采样
+     * @param groupPrefixes key前缀分组，按顺序匹配第一个，没有匹配的归到 other
+     * @param percentiles 客户端计算的百分位，例如 0.5, 0.99
+     * @param percentileHistogram 是否输出直方图桶，用于服务端（如prometheus）聚合计算百分位
+     */
+    public RedisCommandMetrics(MeterRegistry registry, List<String> groupPrefixes, double[] percentiles,
+                               boolean percentileHistogram) {
+        this.registry = registry;
+        this.prefixes = (groupPrefixes == null ? new ArrayList<String>() : groupPrefixes).toArray(new String[0]);
+        this.percentiles = percentiles == null ? new double[0] : percentiles.clone();
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    public void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        if (this == NOOP) {
+            throw new IllegalStateException("NOOP metrics cannot detect hot keys");
+        }
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    /**
+     * 命令开始
+     * @return 开始时间，传给 {@link #end(String, String, long)}
+     */
+    public long begin() {
+        if (registry == null && hotKeyDetector == null) {
+            return 0L;
+        }
+        Frame frame = frames.get();
+        if (frame.depth++ == 0) {
+            frame.failed = false;
+            SerializationContext.takePayloadBytes();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 标记当前命令失败
+     * @param e
+     * @param <E>
+     * @return 原异常，便于直接 throw
+     */
+    public <E extends Throwable> E failed(E e) {
+        if (registry != null) {
+            frames.get().failed = true;
+        }
+        return e;
+    }
+
+    /**
+     * 命令结束，只有最外层的命令会记录
+     * @param command 命令名
+     * @param key 用于分组的key，多key命令传null，归到 other
+     * @param begin {@link #begin()} 的返回值
+     */
+    public void end(String command, String key, long begin) {
+        if (registry == null && hotKeyDetector == null) {
+            return;
+        }
+        Frame frame = frames.get();
+        if (--frame.depth > 0) {
+            return;
+        }
+        frame.depth = 0;
+        record(command, key, System.nanoTime() - begin, frame.failed, SerializationContext.takePayloadBytes());
+    }
+
+    /**
+     * 记录一次已经计好时的redis访问，用于SCAN游标这类在消费Stream时才去redis取下一批的命令；
+     * 发生在其他命令内部时不记录
+     * @param command 命令名
+     * @param key 用于分组的key
+     * @param elapsedNanos 耗时，单位 纳秒
+     * @param failed 是否失败
+     */
+    public void record(String command, String key, long elapsedNanos, boolean failed) {
+        if (registry == null && hotKeyDetector == null) {
+            return;
+        }
+        if (frames.get().depth > 0) {
+            return;
+        }
+        record(command, key, elapsedNanos, failed, 0L);
+    }
+
+    private void record(String command, String key, long elapsedNanos, boolean failed, long payloadBytes) {
+        if (hotKeyDetector != null && key != null) {
+            hotKeyDetector.record(key);
+        }
+        if (registry == null) {
+            return;
+        }
+        int group = groupIndex(key);
+        CommandMeters commandMeters = commands.get(command);
+        if (commandMeters == null) {
+            commandMeters = commands.computeIfAbsent(command, k -> new CommandMeters(prefixes.length + 1));
+        }
+        GroupMeters meters = commandMeters.groups[group];
+        if (meters == null) {
+            meters = commandMeters.register(command, group);
+        }
+        meters.timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (payloadBytes > 0) {
+            meters.payload.record(payloadBytes);
+        }
+        if (failed) {
+            meters.errors.increment();
+        }
+    }
+
+    int groupIndex(String key) {
+        if (key != null) {
+            for (int i = 0; i < prefixes.length; i++) {
+                if (key.startsWith(prefixes[i])) {
+                    return i;
+                }
+            }
+        }
+        return prefixes.length;
+    }
+
+    /**
+     * 一个命令的各分组指标，分组第一次出现时才注册
+     */
+    private final class CommandMeters {
+
+        private final GroupMeters[] groups;
+
+        private CommandMeters(int size) {
+            this.groups = new GroupMeters[size];
+        }
+
+        private synchronized GroupMeters register(String command, int index) {
+            if (groups[index] == null) {
+                String group = index < prefixes.length ? prefixes[index] : OTHER_GROUP;
+                groups[index] = new GroupMeters(
+                        Timer.builder(TIMER_NAME)
+                                .description("RedisHelper命令耗时")
+                                .tag("command", command)
+                                .tag("group", group)
+                                .publishPercentiles(percentiles)
+                                .publishPercentileHistogram(percentileHistogram)
+                                .register(registry),
+                        Counter.builder(ERROR_NAME)
+                                .description("RedisHelper命令失败次数")
+                                .tag("command", command)
+                                .tag("group", group)
+                                .register(registry),
+                        DistributionSummary.builder(PAYLOAD_NAME)
+                                .description("RedisHelper命令读写的value字节数")
+                                .baseUnit("bytes")
+                                .tag("command", command)
+                                .tag("group", group)
+                                .publishPercentiles(percentiles)
+                                .register(registry));
+            }
+            return groups[index];
+        }
+    }
+
+    private static final class GroupMeters {
+
+        private final Timer timer;
+
+        private final Counter errors;
+
+        private final DistributionSummary payload;
+
+        private GroupMeters(Timer timer, Counter errors, DistributionSummary payload) {
+            this.timer = timer;
+            this.errors = errors;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Frame {
+
+        /**
+         * 嵌套深度，RedisHelper方法内部调用其他方法时大于1
+         */
+        private int depth;
+
+        private boolean failed;
+    }
+}
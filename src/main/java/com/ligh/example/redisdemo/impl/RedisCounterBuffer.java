@@ -0,0 +1,324 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.ICounterBuffer;
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisPipelineException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @ClassName RedisCounterBuffer
+ * @Description 计数器写缓冲（write-behind），每个 key/field/member 一个LongAdder，热点计数器上的并发累加互不竞争；
+ * 每 flushIntervalMillis 或本地计数器个数达到 maxCells 时，把增量按 batchSize 一批用pipeline写入redis。
+ * LongAdder不清零，只记录已写入的部分，刷新期间的累加留到下一次，不会丢；写入失败的增量下一次重试。
+ * 连续 idleFlushes 次没有增量的计数器从本地移除，关闭时刷新一次
+ * @Author 李光华
+ * @Date 2020/12/29 10:30
+ **/
+@Slf4j
+public class RedisCounterBuffer implements ICounterBuffer, AutoCloseable {
+
+    private static final int STRING = 0;
+
+    private static final int HASH = 1;
+
+    private static final int ZSET = 2;
+
+    private final IRedisHelper redisHelper;
+
+    private final int maxCells;
+
+    private final int batchSize;
+
+    private final int idleFlushes;
+
+    private final ConcurrentHashMap<CellKey, Cell> cells = new ConcurrentHashMap<>();
+
+    /**
+     * 上一次刷新时移除的计数器，再等一个刷新周期写入最后的增量，只在flush里访问
+     */
+    private List<Cell> retiring = new ArrayList<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 是否已经提交了一次按数量触发的刷新
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    public RedisCounterBuffer(IRedisHelper redisHelper, RedisHelperProperties.CounterBufferProperties properties) {
+        this.redisHelper = redisHelper;
+        this.maxCells = properties.getMaxCells();
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.idleFlushes = Math.max(1, properties.getIdleFlushes());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-counter-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getFlushIntervalMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void incrby(String key, long increment) {
+        add(new CellKey(STRING, key, null), increment);
+    }
+
+    @Override
+    public void hincrby(String key, String field, long increment) {
+        add(new CellKey(HASH, key, field), increment);
+    }
+
+    @Override
+    public void zincrby(String key, String member, long increment) {
+        add(new CellKey(ZSET, key, member), increment);
+    }
+
+    @Override
+    public long get(String key) {
+        return ValueUtil.parseLong(redisHelper.get(key)) + pending(new CellKey(STRING, key, null));
+    }
+
+    @Override
+    public long hget(String key, String field) {
+        return ValueUtil.parseLong(redisHelper.hget(key, field)) + pending(new CellKey(HASH, key, field));
+    }
+
+    @Override
+    public long zscore(String key, String member) {
+        return redisHelper.zscore(key, member) + pending(new CellKey(ZSET, key, member));
+    }
+
+    @Override
+    public synchronized void flush() {
+        List<Cell> dirty = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        List<Cell> stillRetiring = new ArrayList<>();
+        for (Cell cell : retiring) {
+            collect(cell, dirty, deltas);
+        }
+        for (Cell cell : cells.values()) {
+            if (collect(cell, dirty, deltas)) {
+                cell.idle = 0;
+            } else if (++cell.idle >= idleFlushes) {
+                //先标记再移除，之后的累加会撤回并转到新的计数器上
+                cell.retired = true;
+                cells.remove(cell.id, cell);
+                stillRetiring.add(cell);
+            }
+        }
+        for (int from = 0; from < dirty.size(); from += batchSize) {
+            int to = Math.min(dirty.size(), from + batchSize);
+            if (!write(dirty.subList(from, to), deltas.subList(from, to))) {
+                break;
+            }
+        }
+        for (Cell cell : retiring) {
+            if (cell.adder.sum() != cell.flushed) {
+                stillRetiring.add(cell);
+            }
+        }
+        retiring = stillRetiring;
+    }
+
+    /**
+     * 停止定时刷新，并把剩余增量写入redis；之后的累加直接写redis
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * 本地计数器个数
+     * @return
+     */
+    int cellCount() {
+        return cells.size();
+    }
+
+    private void add(CellKey id, long increment) {
+        if (closed) {
+            writeThrough(id, increment);
+            return;
+        }
+        while (true) {
+            Cell cell = cells.get(id);
+            if (cell == null) {
+                cell = cells.computeIfAbsent(id, Cell::new);
+                if (cells.size() >= maxCells) {
+                    requestFlush();
+                }
+            }
+            cell.adder.add(increment);
+            if (!cell.retired) {
+                return;
+            }
+            //刚好被移除，撤回后加到新的计数器上；移除后还要等一个刷新周期才写入最后的增量
+            cell.adder.add(-increment);
+        }
+    }
+
+    private long pending(CellKey id) {
+        Cell cell = cells.get(id);
+        return cell == null ? 0L : cell.adder.sum() - cell.flushed;
+    }
+
+    /**
+     * @return 是否有增量
+     */
+    private static boolean collect(Cell cell, List<Cell> dirty, List<Long> deltas) {
+        long delta = cell.adder.sum() - cell.flushed;
+        if (delta == 0) {
+            return false;
+        }
+        dirty.add(cell);
+        deltas.add(delta);
+        return true;
+    }
+
+    /**
+     * 一批增量用一个pipeline写入，成功的部分记为已写入
+     * @return 是否全部成功
+     */
+    private boolean write(List<Cell> batch, List<Long> deltas) {
+        List<Object> results;
+        try {
+            redisHelper.pipelined(ops -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    CellKey id = batch.get(i).id;
+                    long delta = deltas.get(i);
+                    if (id.type == STRING) {
+                        ops.opsForValue().increment(id.key, delta);
+                    } else if (id.type == HASH) {
+                        ops.opsForHash().increment(id.key, id.sub, delta);
+                    } else {
+                        ops.opsForZSet().incrementScore(id.key, id.sub, delta);
+                    }
+                }
+            });
+            results = null;
+        } catch (RedisPipelineException e) {
+            log.warn("redis counter flush partially failed: {}", e.getMessage());
+            results = e.getPipelineResult();
+        } catch (RuntimeException e) {
+            log.warn("redis counter flush failed, {} counters will retry: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        boolean allWritten = true;
+        for (int i = 0; i < batch.size(); i++) {
+            if (results != null && (results.size() <= i || results.get(i) instanceof Throwable)) {
+                allWritten = false;
+                continue;
+            }
+            batch.get(i).flushed += deltas.get(i);
+        }
+        return allWritten;
+    }
+
+    private void writeThrough(CellKey id, long increment) {
+        if (id.type == STRING) {
+            redisHelper.incrby(id.key, increment);
+        } else if (id.type == HASH) {
+            redisHelper.pipelined(ops -> ops.opsForHash().increment(id.key, id.sub, increment));
+        } else {
+            redisHelper.zincrby(id.key, id.sub, increment);
+        }
+    }
+
+    private void requestFlush() {
+        if (!flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            flushRequested.set(false);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("redis counter flush failed", e);
+        }
+    }
+
+    private static final class CellKey {
+
+        private final int type;
+
+        private final String key;
+
+        /**
+         * 哈希表的field或有序集合的member，字符串计数器为null
+         */
+        private final String sub;
+
+        private CellKey(int type, String key, String sub) {
+            this.type = type;
+            this.key = key;
+            this.sub = sub;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CellKey)) {
+                return false;
+            }
+            CellKey other = (CellKey) o;
+            return type == other.type && key.equals(other.key) && Objects.equals(sub, other.sub);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * type + key.hashCode()) * 31 + (sub == null ? 0 : sub.hashCode());
+        }
+    }
+
+    private static final class Cell {
+
+        private final CellKey id;
+
+        private final LongAdder adder = new LongAdder();
+
+        /**
+         * 已经写入redis的部分，只在flush里修改
+         */
+        private volatile long flushed;
+
+        /**
+         * 连续没有增量的刷新次数，只在flush里修改
+         */
+        private int idle;
+
+        private volatile boolean retired;
+
+        private Cell(CellKey id) {
+            this.id = id;
+        }
+    }
+}
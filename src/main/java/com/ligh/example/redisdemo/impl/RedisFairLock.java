@@ -0,0 +1,140 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.ILock;
+import com.ligh.example.redisdemo.IRedisHelper;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName RedisFairLock
+ * @Description redis 公平分布式锁，按到达顺序获取
+ * key 为锁本身（value为salt），{key}:queue 为等待队列（zset，score为到达序号），
+ * {key}:timeout 为等待者的存活时间（zset，score为过期时间戳），三个key在同一个slot，可以用于redis集群。等待者每次重试都会续期，
+ * 宕机或放弃的等待者超过 waiterTimeoutMillis 后从队列移除，不会卡住后面的等待者
+ * @Author 李光华
+ * @Date 2020/12/21 10:20
+ **/
+@Service
+public class RedisFairLock extends AbstractRedisLock implements ILock {
+
+    /**
+     * 清理过期等待者；锁空闲且自己在队首（或队列为空）时加锁，否则排队并续期
+     * KEYS: 锁，队列，等待者过期时间
+     * ARGV: salt，lease毫秒，当前时间戳，等待者过期时间戳，等待者存活毫秒，是否排队
+     */
+    private static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "local stale = redis.call('zrangebyscore', KEYS[3], '-inf', ARGV[3]) "
+                    + "for i = 1, #stale do "
+                    + "redis.call('zrem', KEYS[2], stale[i]) "
+                    + "redis.call('zrem', KEYS[3], stale[i]) "
+                    + "end "
+                    + "if redis.call('exists', KEYS[1]) == 0 then "
+                    + "local head = redis.call('zrange', KEYS[2], 0, 0) "
+                    + "if head[1] == nil or head[1] == ARGV[1] then "
+                    + "redis.call('zrem', KEYS[2], ARGV[1]) "
+                    + "redis.call('zrem', KEYS[3], ARGV[1]) "
+                    + "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+                    + "return 1 "
+                    + "end "
+                    + "end "
+                    + "if ARGV[6] ~= '1' then return 0 end "
+                    + "if redis.call('zscore', KEYS[2], ARGV[1]) == false then "
+                    + "local last = redis.call('zrange', KEYS[2], -1, -1, 'WITHSCORES') "
+                    + "local seq = 1 "
+                    + "if last[2] then seq = tonumber(last[2]) + 1 end "
+                    + "redis.call('zadd', KEYS[2], seq, ARGV[1]) "
+                    + "end "
+                    + "redis.call('zadd', KEYS[3], ARGV[4], ARGV[1]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[5]) "
+                    + "redis.call('pexpire', KEYS[3], ARGV[5]) "
+                    + "return 0", Long.class);
+
+    /**
+     * 比较salt后删除，通知所有等待者由队首去抢；锁不存在也算解锁成功
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('get', KEYS[1]) "
+                    + "if value == ARGV[1] then "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('publish', '" + LockNotifier.CHANNEL + "', '"
+                    + LockNotifier.BROADCAST_PREFIX + "' .. KEYS[1]) "
+                    + "return 1 "
+                    + "end "
+                    + "if value == false then return 1 end "
+                    + "return 0", Long.class);
+
+    /**
+     * 放弃等待，退出队列；自己在队首时通知后面的等待者
+     */
+    private static final RedisScript<Long> CANCEL_SCRIPT = new DefaultRedisScript<>(
+            "local head = redis.call('zrange', KEYS[2], 0, 0) "
+                    + "redis.call('zrem', KEYS[2], ARGV[1]) "
+                    + "redis.call('zrem', KEYS[3], ARGV[1]) "
+                    + "if head[1] == ARGV[1] then "
+                    + "redis.call('publish', '" + LockNotifier.CHANNEL + "', '"
+                    + LockNotifier.BROADCAST_PREFIX + "' .. KEYS[1]) "
+                    + "end "
+                    + "return 1", Long.class);
+
+    /**
+     * 等待者存活时间，单位 毫秒，超过这个时间没有重试的等待者被移出队列
+     */
+    private long waiterTimeoutMillis = 5000L;
+
+    public RedisFairLock() {
+    }
+
+    public RedisFairLock(IRedisHelper redisHelper, LockNotifier lockNotifier) {
+        super(redisHelper, lockNotifier);
+    }
+
+    public void setWaiterTimeoutMillis(long waiterTimeoutMillis) {
+        this.waiterTimeoutMillis = waiterTimeoutMillis;
+    }
+
+    @Override
+    protected long pollMillis() {
+        //重试同时也是续期，间隔必须小于等待者存活时间
+        return Math.max(1L, Math.min(fallbackPollMillis, waiterTimeoutMillis / 3));
+    }
+
+    @Override
+    public boolean tryLock(String key, String salt, long maxWaitSeconds) {
+        boolean enqueue = maxWaitSeconds > 0;
+        boolean locked = tryAcquire(key, maxWaitSeconds, () -> attempt(key, salt, enqueue));
+        if (!locked && enqueue) {
+            evalFlag(CANCEL_SCRIPT, keys(key), salt);
+        }
+        return locked;
+    }
+
+    /**
+     * 尝试一次加锁
+     * @param key
+     * @param salt
+     * @param enqueue 失败时是否进入等待队列
+     * @return
+     */
+    boolean attempt(String key, String salt, boolean enqueue) {
+        long now = System.currentTimeMillis();
+        return evalFlag(LOCK_SCRIPT, keys(key), salt, leaseMillis(), now, now + waiterTimeoutMillis,
+                waiterTimeoutMillis, enqueue ? 1 : 0);
+    }
+
+    @Override
+    public boolean unLock(String key, String saltValue) {
+        return evalFlag(UNLOCK_SCRIPT, key, saltValue);
+    }
+
+    /**
+     * 队列和过期时间key与锁在同一个slot
+     */
+    static List<String> keys(String key) {
+        String prefix = slotPrefix(key);
+        return Arrays.asList(key, prefix + ":queue", prefix + ":timeout");
+    }
+}
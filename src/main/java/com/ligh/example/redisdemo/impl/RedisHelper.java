@@ -1,21 +1,34 @@
 package com.ligh.example.redisdemo.impl;
 
+import com.ligh.example.redisdemo.IBloomFilter;
 import com.ligh.example.redisdemo.IRedisHelper;
 import com.ligh.example.redisdemo.IZSetTuple;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
 import com.ligh.example.redisdemo.config.SpringContextUtils;
+import com.ligh.example.redisdemo.serializer.SerializationContext;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.connection.RedisZSetCommands;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @ClassName RedisHelper
@@ -27,16 +40,67 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class RedisHelper implements IRedisHelper {
 
+    /**
+     * delByPattern默认每批key数量
+     */
+    private static final int DEL_BY_PATTERN_BATCH = 1000;
+
+    /**
+     * 一条UNLINK命令最多带多少个key
+     */
+    private static final int UNLINK_CHUNK = 100;
+
+    /**
+     * hget合并时key和field之间的分隔符
+     */
+    private static final char HASH_FIELD_SEPARATOR = '\u0000';
+
     /**
      * 对redis的封装都在这个类里了
      **/
-    private RedisTemplate<String, Object> redisTemplate = SpringContextUtils.getBean("redisTemplate");
+    private RedisTemplate<String, Object> redisTemplate;
 
-    private HashOperations<String, String, Object> opsForHash = SpringContextUtils.getBean("opsForHash");
+    private HashOperations<String, String, Object> opsForHash;
 
     private String keyPrefix;
 
+    /**
+     * 本地近端缓存，未开启时为null
+     */
+    private NearCache nearCache;
+
+    /**
+     * 命令耗时等指标，未配置时不记录
+     */
+    private RedisCommandMetrics metrics = RedisCommandMetrics.NOOP;
+
+    /**
+     * get、hget的并发读合并，未开启时为null
+     */
+    private SingleFlight getFlight;
+
+    private SingleFlight hgetFlight;
+
+    /**
+     * getOrLoad的加载合并，始终开启
+     */
+    private final SingleFlight loadFlight = new SingleFlight();
+
+    /**
+     * 近端缓存未命中时的加载，提前建好避免每次get创建方法引用
+     */
+    private final Function<String, NearCache.Entry> nearCacheLoader = this::loadNearCacheEntry;
+
+    private final BiFunction<String, String, NearCache.Entry> nearCacheHashLoader = this::loadNearCacheEntry;
+
+    /**
+     * getOrLoad的过期抖动和提前加载
+     */
+    private CacheRefresher cacheRefresher = new CacheRefresher(new RedisHelperProperties.LoaderProperties());
+
     public RedisHelper() {
+        this.redisTemplate = SpringContextUtils.getBean("redisTemplate");
+        this.opsForHash = SpringContextUtils.getBean("opsForHash");
     }
 
     public RedisHelper(RedisTemplate<String, Object> redisTemplate, HashOperations<String, String, Object> opsForHash, String keyPrefix) {
@@ -45,6 +109,35 @@ public class RedisHelper implements IRedisHelper {
         this.keyPrefix = keyPrefix;
     }
 
+    @Autowired(required = false)
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(RedisCommandMetrics metrics) {
+        this.metrics = metrics == null ? RedisCommandMetrics.NOOP : metrics;
+    }
+
+    @Autowired(required = false)
+    public void setCacheRefresher(CacheRefresher cacheRefresher) {
+        this.cacheRefresher = cacheRefresher;
+    }
+
+    @Autowired(required = false)
+    public void setProperties(RedisHelperProperties properties) {
+        setSingleFlight(properties.getSingleFlight().isEnabled());
+    }
+
+    /**
+     * 是否合并同一个JVM内对同一个key的并发get、hget，合并后多个线程拿到的是同一个对象
+     * @param enabled
+     */
+    public void setSingleFlight(boolean enabled) {
+        this.getFlight = enabled ? new SingleFlight() : null;
+        this.hgetFlight = enabled ? new SingleFlight() : null;
+    }
+
     /**
      * 序列化
      *
@@ -61,6 +154,95 @@ public class RedisHelper implements IRedisHelper {
         return serializer.serialize(value);
     }
 
+    /**
+     * 序列化value，同时把key告诉序列化器，用于按key前缀统计压缩率
+     * @param key
+     * @param value
+     * @return
+     */
+    private byte[] serializeObject(String key, Object value) {
+        String previous = SerializationContext.enter(key);
+        try {
+            return serializeObject(value);
+        } finally {
+            SerializationContext.restore(previous);
+        }
+    }
+
+    /**
+     * 在key的上下文中执行读写，模板内部的序列化、反序列化能拿到当前key
+     * @param key
+     * @param action
+     * @param <T>
+     * @return
+     */
+    private <T> T withKey(String key, Supplier<T> action) {
+        String previous = SerializationContext.enter(key);
+        try {
+            return action.get();
+        } finally {
+            SerializationContext.restore(previous);
+        }
+    }
+
+    /**
+     * 执行一个命令并记录耗时，异常记为失败后抛出。
+     * 会创建lambda，get、hget、set、hset、incr等高频命令直接内联 metrics.begin()/end()，不经过这里
+     * @param command 指标里的命令名
+     * @param key 用于按key前缀分组和热点探测，多key命令传null
+     * @param action
+     * @param <T>
+     * @return
+     */
+    private <T> T timed(String command, String key, Supplier<T> action) {
+        long begin = metrics.begin();
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            throw metrics.failed(e);
+        } finally {
+            metrics.end(command, key, begin);
+        }
+    }
+
+    private void timedRun(String command, String key, Runnable action) {
+        long begin = metrics.begin();
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            throw metrics.failed(e);
+        } finally {
+            metrics.end(command, key, begin);
+        }
+    }
+
+    /**
+     * 执行一个命令并记录耗时，异常记为失败、打印日志后返回fallback
+     */
+    private <T> T timedOrDefault(String command, String key, T fallback, Supplier<T> action) {
+        long begin = metrics.begin();
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            logFailure(command, key, e);
+            return fallback;
+        } finally {
+            metrics.end(command, key, begin);
+        }
+    }
+
+    /**
+     * 记为失败并打印日志，用于失败时返回默认值的命令
+     */
+    private void logFailure(String command, String key, RuntimeException e) {
+        metrics.failed(e);
+        if (key == null) {
+            log.warn("redis {} failed", command, e);
+        } else {
+            log.warn("redis {} failed, key:{}", command, key, e);
+        }
+    }
+
     private Set<IZSetTuple> deserializeTupleValues(Collection<RedisZSetCommands.Tuple> rawValues) {
         if (rawValues == null) {
             return null;
@@ -108,600 +290,704 @@ public class RedisHelper implements IRedisHelper {
 
     @Override
     public boolean set(String key, Object value) {
-        Boolean result = redisTemplate.execute((redisConnection) ->
-                        redisConnection.set(serializeString(key), serializeObject(value))
-                , true);
-        return ValueUtil.getValue(result);
+        long begin = metrics.begin();
+        try {
+            Boolean result = redisTemplate.execute((redisConnection) ->
+                            redisConnection.set(serializeString(key), serializeObject(key, value))
+                    , true);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        } catch (RuntimeException e) {
+            throw metrics.failed(e);
+        } finally {
+            metrics.end("set", key, begin);
+        }
     }
 
     @Override
     public boolean set(String key, Object value, long expire) {
-        Boolean result = redisTemplate.execute((redisConnection) ->
-                        redisConnection.set(serializeString(key), serializeObject(value), Expiration.seconds(expire)
-                                , RedisStringCommands.SetOption.UPSERT)
-                , true);
-        return ValueUtil.getValue(result);
+        long begin = metrics.begin();
+        try {
+            Boolean result = redisTemplate.execute((redisConnection) ->
+                            redisConnection.set(serializeString(key), serializeObject(key, value), Expiration.seconds(expire)
+                                    , RedisStringCommands.SetOption.UPSERT)
+                    , true);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        } catch (RuntimeException e) {
+            throw metrics.failed(e);
+        } finally {
+            metrics.end("set", key, begin);
+        }
     }
 
     @Override
     public boolean setIfKeyAbSent(String key, Object value) {
-        Boolean result = redisTemplate.execute((redisConnection ->
-                redisConnection.setNX(serializeString(key), serializeObject(value))
-        ), true);
-        return ValueUtil.getValue(result);
+        return timed("setIfKeyAbSent", key, () -> {
+            Boolean result = redisTemplate.execute((redisConnection ->
+                    redisConnection.setNX(serializeString(key), serializeObject(key, value))
+            ), true);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public boolean setIfValueAbSent(String key, Object value, long expire) {
-        Boolean result = redisTemplate.opsForValue().setIfAbsent(key, value, expire, TimeUnit.SECONDS);
-        return ValueUtil.getValue(result);
+        return timed("setIfValueAbSent", key, () -> {
+            Boolean result = redisTemplate.opsForValue().setIfAbsent(key, value, expire, TimeUnit.SECONDS);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public Object get(String key) {
+        long begin = metrics.begin();
+        String previous = SerializationContext.enter(key);
         try {
+            if (nearCache != null && nearCache.isCacheable(key)) {
+                return nearCache.get(key, nearCacheLoader);
+            }
+            SingleFlight flight = getFlight;
+            if (flight != null) {
+                return flight.execute(key, () -> redisTemplate.opsForValue().get(key));
+            }
             return redisTemplate.opsForValue().get(key);
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            logFailure("get", key, e);
             return null;
+        } finally {
+            SerializationContext.restore(previous);
+            metrics.end("get", key, begin);
         }
     }
 
     @Override
     public <T> T get(String key, Class<T> clazz) {
-        try {
-            Object object = redisTemplate.opsForValue().get(key);
-            return ValueUtil.parse(object, clazz);
-        } catch (Exception e) {
-            return null;
+        return ValueUtil.parse(get(key), clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz, IBloomFilter filter) {
+        return timed("get", key, () -> {
+            if (!filter.mightContain(key)) {
+                return null;
+            }
+            return get(key, clazz);
+        });
+    }
+
+    @Override
+    public <T> T getOrLoad(String key, Supplier<T> loader, long expire, Class<T> clazz) {
+        return timed("getOrLoad", key, () -> {
+            T value;
+            long ttlMillis = -1L;
+            if (nearCache != null && nearCache.isCacheable(key)) {
+                //近端缓存自己控制过期，不做提前加载
+                value = get(key, clazz);
+            } else {
+                List<Object> results = getWithTtl(key);
+                value = results == null || results.size() < 2 || !(results.get(0) instanceof byte[]) ? null
+                        : ValueUtil.parse(redisTemplate.getValueSerializer().deserialize((byte[]) results.get(0)), clazz);
+                if (value != null && results.get(1) instanceof Long) {
+                    ttlMillis = (Long) results.get(1);
+                }
+            }
+            if (value != null) {
+                if (cacheRefresher.shouldRefresh(key, ttlMillis)
+                        && !cacheRefresher.refreshAsync(key, () -> loadFlight.execute(key, () -> load(key, loader, expire)))) {
+                    try {
+                        T loaded = loadFlight.execute(key, () -> load(key, loader, expire));
+                        return loaded != null ? loaded : value;
+                    } catch (RuntimeException e) {
+                        //旧值还没过期，提前加载失败时继续用旧值
+                        log.warn("redis getOrLoad early refresh failed, key:{}", key, e);
+                    }
+                }
+                return value;
+            }
+            return loadFlight.execute(key, () -> {
+                //排队期间其他线程可能已经加载过
+                T cached = get(key, clazz);
+                if (cached != null) {
+                    return cached;
+                }
+                return load(key, loader, expire);
+            });
+        });
+    }
+
+    /**
+     * 调用loader并写入缓存，记录加载耗时，过期时间加随机抖动
+     */
+    private <T> T load(String key, Supplier<T> loader, long expire) {
+        long start = System.nanoTime();
+        T loaded = loader.get();
+        cacheRefresher.recordRecompute(key, System.nanoTime() - start);
+        if (loaded != null) {
+            set(key, loaded, cacheRefresher.jitter(expire));
         }
+        return loaded;
     }
 
     @Override
     public <T> List<T> getList(String key, Class<T> clazz) {
-        Object object = get(key);
-        if (object instanceof List) {
-            List<Object> list = (List<Object>) object;
-            return ValueUtil.parseList(list, clazz);
-        }
-        return null;
+        return timed("getList", key, () -> {
+            Object object = get(key);
+            if (object instanceof List) {
+                List<Object> list = (List<Object>) object;
+                return ValueUtil.parseList(list, clazz);
+            }
+            return null;
+        });
     }
 
     @Override
     public String getString(String key) {
-        Object v = get(key);
-        return ValueUtil.parseString(v);
+        return timed("getString", key, () -> {
+            Object v = get(key);
+            return ValueUtil.parseString(v);
+        });
     }
 
     @Override
     public int getInt(String key) {
-        Object v = get(key);
-        return ValueUtil.parseInt(v);
+        return timed("getInt", key, () -> {
+            Object v = get(key);
+            return ValueUtil.parseInt(v);
+        });
     }
 
     @Override
     public long getLong(String key) {
-        Object v = get(key);
-        return ValueUtil.parseLong(v);
+        return timed("getLong", key, () -> {
+            Object v = get(key);
+            return ValueUtil.parseLong(v);
+        });
     }
 
     @Override
     public double getDouble(String key) {
-        Object v = get(key);
-        return ValueUtil.parseDouble(v);
+        return timed("getDouble", key, () -> {
+            Object v = get(key);
+            return ValueUtil.parseDouble(v);
+        });
     }
 
     @Override
     public boolean getBoolean(String key) {
-        Object v = get(key);
-        return ValueUtil.parseBoolean(v);
+        return timed("getBoolean", key, () -> {
+            Object v = get(key);
+            return ValueUtil.parseBoolean(v);
+        });
     }
 
     @Override
     public Object getSet(String key, Object value) {
-        try {
+        return timedOrDefault("getSet", key, null, () -> {
             Object result = redisTemplate.opsForValue().getAndSet(key, value);
+            invalidateNearCache(key);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> T getSet(String key, Object value, Class<T> clazz) {
-        try {
+        return timedOrDefault("getSet", key, null, () -> {
             Object object = redisTemplate.opsForValue().getAndSet(key, value);
+            invalidateNearCache(key);
             return ValueUtil.parse(object, clazz);
-        } catch (Exception e) {
-            return null;
-        }
+        });
     }
 
     @Override
     public boolean expire(String key, long expire) {
-        Boolean result = redisTemplate.expire(key, expire, TimeUnit.SECONDS);
-        return ValueUtil.getValue(result);
+        return timed("expire", key, () -> {
+            Boolean result = redisTemplate.expire(key, expire, TimeUnit.SECONDS);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public boolean expireAt(String key, long expireTimestamp) {
-        Boolean result = redisTemplate.execute(redisConnection ->
-                redisConnection.pExpire(serializeString(key), expireTimestamp), true);
-        return ValueUtil.getValue(result);
+        return timed("expireAt", key, () -> {
+            Boolean result = redisTemplate.execute(redisConnection ->
+                    redisConnection.pExpire(serializeString(key), expireTimestamp), true);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public boolean persist(String key) {
-        Boolean result = redisTemplate.persist(key);
-        return ValueUtil.getValue(result);
+        return timed("persist", key, () -> {
+            Boolean result = redisTemplate.persist(key);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public int listLen(String key) {
-        Long len = redisTemplate.opsForList().size(key);
-        return len == null ? 0 : len.intValue();
+        return timed("listLen", key, () -> {
+            Long len = redisTemplate.opsForList().size(key);
+            return len == null ? 0 : len.intValue();
+        });
     }
 
     @Override
     public <T> T lindex(String key, int index, Class<T> clazz) {
-        try {
+        return timedOrDefault("lindex", key, null, () -> {
             Object result = redisTemplate.opsForList().index(key, index);
             return ValueUtil.parse(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> List<T> lrange(String key, int start, int stop, Class<T> clazz) {
-        try {
+        return timedOrDefault("lrange", key, null, () -> {
             List<Object> result = redisTemplate.opsForList().range(key, start, stop);
             return ValueUtil.parseList(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        });
     }
 
     @Override
     public long lpush(String key, Object... objects) {
-        Long result = redisTemplate.opsForList().leftPushAll(key, objects);
-        return ValueUtil.getValue(result);
+        return timed("lpush", key, () -> {
+            Long result = redisTemplate.opsForList().leftPushAll(key, objects);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public long rpush(String key, Object... objects) {
-        Long result = redisTemplate.opsForList().rightPushAll(key, objects);
-        return ValueUtil.getValue(result);
+        return timed("rpush", key, () -> {
+            Long result = redisTemplate.opsForList().rightPushAll(key, objects);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public Object lpop(String key) {
-        try {
-            return redisTemplate.opsForList().leftPop(key);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        return timedOrDefault("lpop", key, null, () -> redisTemplate.opsForList().leftPop(key));
     }
 
     @Override
     public Object rpop(String key) {
-        try {
-            return redisTemplate.opsForList().rightPop(key);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        return timedOrDefault("rpop", key, null, () -> redisTemplate.opsForList().rightPop(key));
     }
 
     @Override
     public <T> T lpop(String key, Class<T> clazz) {
-        try {
+        return timedOrDefault("lpop", key, null, () -> {
             Object result = redisTemplate.opsForList().leftPop(key);
             return ValueUtil.parse(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> T rpop(String key, Class<T> clazz) {
-        try {
+        return timedOrDefault("rpop", key, null, () -> {
             Object result = redisTemplate.opsForList().rightPop(key);
             return ValueUtil.parse(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public void ltrim(String key, int start, int stop) {
-        redisTemplate.opsForList().trim(key, start, stop);
+        timedRun("ltrim", key, () -> redisTemplate.opsForList().trim(key, start, stop));
     }
 
     @Override
     public boolean hset(String key, String field, Object value) {
-        Boolean result = redisTemplate.execute(redisConnection -> redisConnection.hSet(serializeString(key)
-                , serializeString(field), serializeObject(value)), true);
-        return ValueUtil.getValue(result);
+        long begin = metrics.begin();
+        try {
+            Boolean result = redisTemplate.execute(redisConnection -> redisConnection.hSet(serializeString(key)
+                    , serializeString(field), serializeObject(key, value)), true);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        } catch (RuntimeException e) {
+            throw metrics.failed(e);
+        } finally {
+            metrics.end("hset", key, begin);
+        }
     }
 
     @Override
     public boolean hsetnx(String key, String field, Object value) {
-        Boolean result = redisTemplate.execute((connection) ->
-                        connection.hSetNX(serializeString(key), serializeString(field), serializeObject(value))
-                , true);
-        return ValueUtil.getValue(result);
+        return timed("hsetnx", key, () -> {
+            Boolean result = redisTemplate.execute((connection) ->
+                            connection.hSetNX(serializeString(key), serializeString(field), serializeObject(key, value))
+                    , true);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public Object hget(String key, String field) {
+        long begin = metrics.begin();
+        String previous = SerializationContext.enter(key);
         try {
+            if (nearCache != null && nearCache.isCacheable(key)) {
+                return nearCache.hget(key, field, nearCacheHashLoader);
+            }
+            SingleFlight flight = hgetFlight;
+            if (flight != null) {
+                return flight.execute(key + HASH_FIELD_SEPARATOR + field, () -> opsForHash.get(key, field));
+            }
             return opsForHash.get(key, field);
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            logFailure("hget", key, e);
             return null;
+        } finally {
+            SerializationContext.restore(previous);
+            metrics.end("hget", key, begin);
         }
     }
 
     @Override
     public <T> T hget(String key, String field, Class<T> clazz) {
-        try {
-            Object result = opsForHash.get(key, field);
-            return ValueUtil.parse(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        return ValueUtil.parse(hget(key, field), clazz);
     }
 
     @Override
     public boolean hmset(String key, Map<String, Object> map) {
-        opsForHash.putAll(key, map);
-        return true;
+        return timed("hmset", key, () -> {
+            withKey(key, () -> {
+                opsForHash.putAll(key, map);
+                return null;
+            });
+            invalidateNearCache(key);
+            return true;
+        });
     }
 
     @Override
     public List<Object> hmget(String key, List<String> fieldList) {
-        if (fieldList == null || fieldList.size() == 0) {
-            return null;
-        }
-        try {
+        return timedOrDefault("hmget", key, null, () -> {
+            if (fieldList == null || fieldList.size() == 0) {
+                return null;
+            }
             return opsForHash.multiGet(key, fieldList);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> List<T> hmget(String key, List<String> fieldList, Class<T> clazz) {
-        try {
+        return timedOrDefault("hmget", key, null, () -> {
             List<Object> valueList = opsForHash.multiGet(key, fieldList);
             return ValueUtil.parseList(valueList, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Map<String, Object> hgetall(String key) {
-        try {
-            return opsForHash.entries(key);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        return timedOrDefault("hgetall", key, null, () -> withKey(key, () -> opsForHash.entries(key)));
     }
 
     @Override
     public <T> Map<String, T> hmgetall(String key, Class<T> clazz) {
-        try {
-            Map<String, Object> map = opsForHash.entries(key);
+        return timedOrDefault("hmgetall", key, null, () -> {
+            Map<String, Object> map = withKey(key, () -> opsForHash.entries(key));
             return ValueUtil.parseMap(map, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
+    }
+
+    @Override
+    public <T> Stream<Map.Entry<String, T>> hscan(String key, String match, int count, Class<T> clazz) {
+        return timed("hscan", key, () -> {
+            Cursor<Map.Entry<String, Object>> cursor = opsForHash.scan(key, scanOptions(match, count));
+            return stream("hscan", key, cursor).map(entry ->
+                    new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), ValueUtil.parse(entry.getValue(), clazz)));
+        });
     }
 
     @Override
     public boolean hexists(String key, String field) {
-        Boolean result = opsForHash.hasKey(key, field);
-        return ValueUtil.getValue(result);
+        return timed("hexists", key, () -> {
+            Boolean result = opsForHash.hasKey(key, field);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public int hdel(String key, String... fields) {
-        Long result = opsForHash.delete(key, fields);
-        return ValueUtil.parseInt(result);
+        return timed("hdel", key, () -> {
+            Long result = opsForHash.delete(key, fields);
+            invalidateNearCache(key);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public long hincrby(String key, String field, int increment) {
-        Long result = opsForHash.increment(key, field, increment);
-        return ValueUtil.parseLong(result);
+        long begin = metrics.begin();
+        try {
+            Long result = opsForHash.increment(key, field, increment);
+            invalidateNearCache(key);
+            return ValueUtil.parseLong(result);
+        } catch (RuntimeException e) {
+            throw metrics.failed(e);
+        } finally {
+            metrics.end("hincrby", key, begin);
+        }
     }
 
     @Override
     public Set<String> hkeys(String key) {
-        try {
+        return timedOrDefault("hkeys", key, null, () -> {
             Set<String> result = opsForHash.keys(key);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public List<Object> hvals(String key) {
-        try {
+        return timedOrDefault("hvals", key, null, () -> {
             List<Object> result = opsForHash.values(key);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> List<T> hvals(String key, Class<T> clazz) {
-        try {
+        return timedOrDefault("hvals", key, null, () -> {
             List<Object> result = opsForHash.values(key);
             return ValueUtil.parseList(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public int hlen(String key) {
-        Long result = opsForHash.size(key);
-        return ValueUtil.parseInt(result);
+        return timed("hlen", key, () -> {
+            Long result = opsForHash.size(key);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public int sadd(String key, Object... members) {
-        Long result = redisTemplate.opsForSet().add(key, members);
-        return ValueUtil.parseInt(result);
+        return timed("sadd", key, () -> {
+            Long result = redisTemplate.opsForSet().add(key, members);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public int scard(String key) {
-        Long result = redisTemplate.opsForSet().size(key);
-        return ValueUtil.parseInt(result);
+        return timed("scard", key, () -> {
+            Long result = redisTemplate.opsForSet().size(key);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public boolean sismember(String key, Object member) {
-        Boolean result = redisTemplate.opsForSet().isMember(key, member);
-        return ValueUtil.parseBoolean(result);
+        return timed("sismember", key, () -> {
+            Boolean result = redisTemplate.opsForSet().isMember(key, member);
+            return ValueUtil.parseBoolean(result);
+        });
     }
 
     @Override
     public Set<Object> smembers(String key) {
-        try {
+        return timedOrDefault("smembers", key, null, () -> {
             Set<Object> result = redisTemplate.opsForSet().members(key);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> Set<T> smembers(String key, Class<T> clazz) {
-        try {
+        return timedOrDefault("smembers", key, null, () -> {
             Set<Object> result = redisTemplate.opsForSet().members(key);
             return ValueUtil.parseSet(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
+    }
+
+    @Override
+    public <T> Stream<T> sscan(String key, String match, int count, Class<T> clazz) {
+        return timed("sscan", key, () -> {
+            Cursor<Object> cursor = redisTemplate.opsForSet().scan(key, scanOptions(match, count));
+            return stream("sscan", key, cursor).map(member -> ValueUtil.parse(member, clazz));
+        });
     }
 
     @Override
     public Object srandmember(String key) {
-        try {
+        return timedOrDefault("srandmember", key, null, () -> {
             Object result = redisTemplate.opsForSet().randomMember(key);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> T srandmember(String key, Class<T> clazz) {
-        try {
+        return timedOrDefault("srandmember", key, null, () -> {
             Object result = redisTemplate.opsForSet().randomMember(key);
             return ValueUtil.parse(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public List<Object> srandmember(String key, int count) {
-        try {
+        return timedOrDefault("srandmember", key, null, () -> {
             List<Object> result = redisTemplate.opsForSet().randomMembers(key, count);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> List<T> srandmember(String key, int count, Class<T> clazz) {
-        try {
+        return timedOrDefault("srandmember", key, null, () -> {
             List<Object> result = redisTemplate.opsForSet().randomMembers(key, count);
             return ValueUtil.parseList(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Object spop(String key) {
-        try {
-            return redisTemplate.opsForSet().pop(key);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return timedOrDefault("spop", key, null, () -> redisTemplate.opsForSet().pop(key));
     }
 
     @Override
     public <T> T spop(String key, Class<T> clazz) {
-        try {
+        return timedOrDefault("spop", key, null, () -> {
             Object result = redisTemplate.opsForSet().pop(key);
             return ValueUtil.parse(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public List<Object> spop(String key, int count) {
-        try {
+        return timedOrDefault("spop", key, null, () -> {
             List<Object> result = redisTemplate.opsForSet().pop(key, count);
             return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public <T> List<T> spop(String key, int count, Class<T> clazz) {
-        try {
+        return timedOrDefault("spop", key, null, () -> {
             List<Object> result = redisTemplate.opsForSet().pop(key, count);
             return ValueUtil.parseList(result, clazz);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public int srem(String key, Object... members) {
-        Long result = redisTemplate.opsForSet().remove(key, members);
-        return ValueUtil.parseInt(result);
+        return timed("srem", key, () -> {
+            Long result = redisTemplate.opsForSet().remove(key, members);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public boolean zadd(String key, String member, long score) {
-        Boolean result = redisTemplate.opsForZSet().add(key, member, score);
-        return ValueUtil.parseBoolean(result);
+        return timed("zadd", key, () -> {
+            Boolean result = redisTemplate.opsForZSet().add(key, member, score);
+            return ValueUtil.parseBoolean(result);
+        });
     }
 
     @Override
     public int zadd(String key, Map<String, Long> memberScoreMap) {
-        Set<ZSetOperations.TypedTuple<Object>> sets = new TreeSet<>();
-        for (Map.Entry<String, Long> entry : memberScoreMap.entrySet()) {
-            Double value = ValueUtil.parseDouble(entry.getValue());
-            ZSetOperations.TypedTuple<Object> tuple = new DefaultTypedTuple<>(entry.getKey(), value);
-            sets.add(tuple);
-        }
-        Long result = redisTemplate.opsForZSet().add(key, sets);
-        return ValueUtil.parseInt(result);
+        return timed("zadd", key, () -> {
+            Set<ZSetOperations.TypedTuple<Object>> sets = new TreeSet<>();
+            for (Map.Entry<String, Long> entry : memberScoreMap.entrySet()) {
+                Double value = ValueUtil.parseDouble(entry.getValue());
+                ZSetOperations.TypedTuple<Object> tuple = new DefaultTypedTuple<>(entry.getKey(), value);
+                sets.add(tuple);
+            }
+            Long result = redisTemplate.opsForZSet().add(key, sets);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public long zscore(String key, String member) {
-        try {
-            Double score = redisTemplate.opsForZSet().score(key,member);
-            return ValueUtil.parseLong(score);
-        }catch (Exception e){
-            e.printStackTrace();
-            return 0;
-        }
+        return timedOrDefault("zscore", key, 0L, () -> ValueUtil.parseLong(redisTemplate.opsForZSet().score(key, member)));
     }
 
     @Override
     public int zcard(String key) {
-        Long result = redisTemplate.opsForZSet().zCard(key);
-        return ValueUtil.parseInt(result);
+        return timed("zcard", key, () -> {
+            Long result = redisTemplate.opsForZSet().zCard(key);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public int zcount(String key, long min, long max) {
-        Long result = redisTemplate.opsForZSet().count(key, min, max);
-        return ValueUtil.parseInt(result);
+        return timed("zcount", key, () -> {
+            Long result = redisTemplate.opsForZSet().count(key, min, max);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public long zincr(String key, String member) {
-        try {
+        return timedOrDefault("zincr", key, 0L, () -> {
             Double result = redisTemplate.opsForZSet().incrementScore(key, member, 1);
             return ValueUtil.parseLong(result);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
+        });
     }
 
     @Override
     public long zincrby(String key, String member, long increment) {
+        long begin = metrics.begin();
         try {
             Double result = redisTemplate.opsForZSet().incrementScore(key, member, increment);
             return ValueUtil.parseLong(result);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
+        } catch (RuntimeException e) {
+            logFailure("zincrby", key, e);
+            return 0L;
+        } finally {
+            metrics.end("zincrby", key, begin);
         }
     }
 
     @Override
     public int zrank(String key, String member) {
-        try {
+        return timedOrDefault("zrank", key, 0, () -> {
             Long result = redisTemplate.opsForZSet().rank(key, member);
             return ValueUtil.parseInt(result);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
+        });
     }
 
     @Override
     public Set<String> zrange(String key, long start, long stop) {
-        try {
+        return timedOrDefault("zrange", key, null, () -> {
             Set<Object> result = redisTemplate.opsForZSet().range(key, start, stop);
             return ValueUtil.parseSet(result);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Set<IZSetTuple> zrangeWithScores(String key, long start, long stop) {
-        try {
+        return timedOrDefault("zrangeWithScores", key, null, () -> {
             Set<RedisZSetCommands.Tuple> rawValues = redisTemplate.execute((connection) ->
                  connection.zRangeWithScores(serializeString(key), start, stop)
             , true);
             return this.deserializeTupleValues(rawValues);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
+    }
+
+    @Override
+    public Stream<IZSetTuple> zscan(String key, String match, int count) {
+        return timed("zscan", key, () -> {
+            Cursor<ZSetOperations.TypedTuple<Object>> cursor = redisTemplate.opsForZSet().scan(key, scanOptions(match, count));
+            return stream("zscan", key, cursor).map(tuple ->
+                    new ZSetTuple(ValueUtil.parseString(tuple.getValue()), ValueUtil.parseLong(tuple.getScore())));
+        });
     }
 
     @Override
     public Set<String> zrangeByScore(String key, long min, long max, boolean eqMin, boolean eqMax) {
-        try {
+        return timedOrDefault("zrangeByScore", key, null, () -> {
             Set<byte[]> rawValues = redisTemplate.execute((connection) -> {
                 RedisZSetCommands.Range range = new RedisZSetCommands.Range();
                 range = eqMin ? range.gte(min) : range.gt(min);
@@ -709,15 +995,12 @@ public class RedisHelper implements IRedisHelper {
                 return connection.zRangeByScore(serializeString(key), range);
             }, true);
             return deserializeCollection(rawValues);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Set<IZSetTuple> zrangeByScoreWithScores(String key, long min, long max, boolean eqMin, boolean eqMax) {
-        try {
+        return timedOrDefault("zrangeByScoreWithScores", key, null, () -> {
             Set<RedisZSetCommands.Tuple> rawValues = redisTemplate.execute((connection) -> {
                 RedisZSetCommands.Range range = new RedisZSetCommands.Range();
                 range = eqMin ? range.gte(min) : range.gt(min);
@@ -725,45 +1008,38 @@ public class RedisHelper implements IRedisHelper {
                 return connection.zRangeByScoreWithScores(serializeString(key), range);
             }, true);
             return this.deserializeTupleValues(rawValues);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public int zrevrank(String key, String member) {
-        Long result = redisTemplate.opsForZSet().reverseRank(key, member);
-        return ValueUtil.parseInt(result);
+        return timed("zrevrank", key, () -> {
+            Long result = redisTemplate.opsForZSet().reverseRank(key, member);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public Set<String> zrevrange(String key, long start, long stop) {
-        try {
+        return timedOrDefault("zrevrange", key, null, () -> {
             Set<Object> result = redisTemplate.opsForZSet().reverseRange(key, start, stop);
             return ValueUtil.parseSet(result);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Set<IZSetTuple> zrevrangeWithScores(String key, long start, long stop) {
-        try {
+        return timedOrDefault("zrevrangeWithScores", key, null, () -> {
             Set<RedisZSetCommands.Tuple> rawValues = redisTemplate.execute((connection) ->
                  connection.zRevRangeWithScores(serializeString(key), start, stop)
             , true);
             return this.deserializeTupleValues(rawValues);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Set<String> zrevrangeByScore(String key, long min, long max, boolean eqMin, boolean eqMax) {
-        try {
+        return timedOrDefault("zrevrangeByScore", key, null, () -> {
             Set<byte[]> rawValues = redisTemplate.execute((connection) -> {
                 RedisZSetCommands.Range range = new RedisZSetCommands.Range();
                 range = eqMin ? range.gte(min) : range.gt(min);
@@ -771,15 +1047,12 @@ public class RedisHelper implements IRedisHelper {
                 return connection.zRevRangeByScore(serializeString(key), range);
             }, true);
             return deserializeCollection(rawValues);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public Set<IZSetTuple> zrevrangeByScoreWithScores(String key, long min, long max, boolean eqMin, boolean eqMax) {
-        try {
+        return timedOrDefault("zrevrangeByScoreWithScores", key, null, () -> {
             Set<RedisZSetCommands.Tuple> rawValues = redisTemplate.execute((connection) -> {
                 RedisZSetCommands.Range range = new RedisZSetCommands.Range();
                 range = eqMin ? range.gte(min) : range.gt(min);
@@ -787,83 +1060,448 @@ public class RedisHelper implements IRedisHelper {
                 return connection.zRevRangeByScoreWithScores(serializeString(key), range);
             }, true);
             return this.deserializeTupleValues(rawValues);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+        });
     }
 
     @Override
     public int zrem(String key, String... members) {
-        Long result = redisTemplate.opsForZSet().remove(key, members);
-        return ValueUtil.parseInt(result);
+        return timed("zrem", key, () -> {
+            Long result = redisTemplate.opsForZSet().remove(key, members);
+            return ValueUtil.parseInt(result);
+        });
     }
 
     @Override
     public boolean delByPattern(String pattern) {
-        Boolean result = redisTemplate.delete(pattern + "*");
-        return ValueUtil.getValue(result);
+        return delByPattern(pattern, DEL_BY_PATTERN_BATCH, null) > 0;
+    }
+
+    @Override
+    public long delByPattern(String pattern, int batchSize, LongConsumer progress) {
+        return timed("delByPattern", null, () -> {
+            int size = Math.max(1, batchSize);
+            ScanOptions options = ScanOptions.scanOptions().match(pattern + "*").count(size).build();
+            Long deleted = redisTemplate.execute((RedisCallback<Long>) redisConnection -> {
+                long total = 0;
+                List<byte[]> batch = new ArrayList<>(size);
+                try (Cursor<byte[]> cursor = redisConnection.scan(options)) {
+                    while (cursor.hasNext()) {
+                        batch.add(cursor.next());
+                        if (batch.size() >= size) {
+                            total += unlink(redisConnection, batch);
+                            batch.clear();
+                            if (progress != null) {
+                                progress.accept(total);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("close scan cursor failed, pattern:{}", pattern, e);
+                }
+                if (!batch.isEmpty()) {
+                    total += unlink(redisConnection, batch);
+                    if (progress != null) {
+                        progress.accept(total);
+                    }
+                }
+                return total;
+            }, true);
+            return ValueUtil.getValue(deleted);
+        });
+    }
+
+    /**
+     * 一批key按 UNLINK_CHUNK 分块在一个pipeline里UNLINK，同时失效近端缓存
+     * @param redisConnection
+     * @param keys
+     * @return 删除的key数量
+     */
+    private long unlink(RedisConnection redisConnection, List<byte[]> keys) {
+        redisConnection.openPipeline();
+        for (int from = 0; from < keys.size(); from += UNLINK_CHUNK) {
+            List<byte[]> chunk = keys.subList(from, Math.min(keys.size(), from + UNLINK_CHUNK));
+            redisConnection.unlink(chunk.toArray(new byte[0][]));
+        }
+        long deleted = 0;
+        for (Object result : redisConnection.closePipeline()) {
+            deleted += result instanceof Long ? (Long) result : 0L;
+        }
+        if (nearCache != null) {
+            for (byte[] key : keys) {
+                nearCache.invalidate((String) redisTemplate.getKeySerializer().deserialize(key));
+            }
+        }
+        return deleted;
     }
 
     @Override
     public boolean del(String key) {
-        Boolean result = redisTemplate.delete(key);
-        return ValueUtil.getValue(result);
+        return timed("del", key, () -> {
+            Boolean result = redisTemplate.delete(key);
+            invalidateNearCache(key);
+            return ValueUtil.getValue(result);
+        });
     }
 
     @Override
     public boolean exists(String key) {
-        Boolean isExistKey = redisTemplate.hasKey(key);
-        return isExistKey != null && isExistKey;
+        return timed("exists", key, () -> {
+            Boolean isExistKey = redisTemplate.hasKey(key);
+            return isExistKey != null && isExistKey;
+        });
     }
 
     @Override
     public long incr(String key) {
+        long begin = metrics.begin();
         try {
             Long ret = redisTemplate.opsForValue().increment(key);
+            invalidateNearCache(key);
             return ret == null ? 0 : ret;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
+        } catch (RuntimeException e) {
+            logFailure("incr", key, e);
+            return 0L;
+        } finally {
+            metrics.end("incr", key, begin);
         }
     }
 
     @Override
     public long incrby(String key, long increment) {
+        long begin = metrics.begin();
         try {
             Long ret = redisTemplate.opsForValue().increment(key, increment);
+            invalidateNearCache(key);
             return ret == null ? 0 : ret;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
+        } catch (RuntimeException e) {
+            logFailure("incrby", key, e);
+            return 0L;
+        } finally {
+            metrics.end("incrby", key, begin);
         }
     }
 
     @Override
     public long decr(String key) {
-        try {
+        return timedOrDefault("decr", key, 0L, () -> {
             Long ret = redisTemplate.opsForValue().decrement(key);
+            invalidateNearCache(key);
             return ret == null ? 0 : ret;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
+        });
     }
 
     @Override
     public long ttl(String key) {
-        Long timeout = redisTemplate.execute(new RedisCallback<Long>() {
-            @Nullable
+        return timed("ttl", key, () -> {
+            Long timeout = redisTemplate.execute(new RedisCallback<Long>() {
+                @Nullable
+                @Override
+                public Long doInRedis(RedisConnection connection) throws DataAccessException {
+                    try {
+                        return connection.ttl(serializeString(key));
+                    } catch (Exception e) {
+                        metrics.failed(e);
+                        log.info("hasKey.err", e);
+                    }
+                    return -1L;
+                }
+            });
+            return timeout == null ? -1L : timeout;
+        });
+    }
+
+    @Override
+    public List<Object> mget(List<String> keys) {
+        return timedOrDefault("mget", null, null, () -> {
+            if (keys == null || keys.size() == 0) {
+                return new ArrayList<>();
+            }
+            return redisTemplate.opsForValue().multiGet(keys);
+        });
+    }
+
+    @Override
+    public <T> List<T> mget(List<String> keys, Class<T> clazz) {
+        return timed("mget", null, () -> {
+            List<Object> values = mget(keys);
+            if (values == null) {
+                return null;
+            }
+            List<T> list = new ArrayList<>(values.size());
+            for (Object value : values) {
+                list.add(ValueUtil.parse(value, clazz));
+            }
+            return list;
+        });
+    }
+
+    @Override
+    public boolean mset(Map<String, Object> map, long expire) {
+        return timed("mset", null, () -> {
+            if (map == null || map.size() == 0) {
+                return true;
+            }
+            if (expire <= 0) {
+                Map<byte[], byte[]> rawMap = new LinkedHashMap<>(map.size());
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    rawMap.put(serializeString(entry.getKey()), serializeObject(entry.getKey(), entry.getValue()));
+                }
+                Boolean result = redisTemplate.execute(redisConnection -> redisConnection.mSet(rawMap), true);
+                invalidateNearCache(map.keySet());
+                return ValueUtil.getValue(result);
+            }
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) redisConnection -> {
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    redisConnection.set(serializeString(entry.getKey()), serializeObject(entry.getKey(), entry.getValue())
+                            , Expiration.seconds(expire), RedisStringCommands.SetOption.UPSERT);
+                }
+                return null;
+            });
+            invalidateNearCache(map.keySet());
+            for (Object result : results) {
+                if (!Boolean.TRUE.equals(result)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public List<Map<String, Object>> hmget(List<String> keys, List<String> fieldList) {
+        return timedOrDefault("hmget", null, null, () -> {
+            if (keys == null || keys.size() == 0 || fieldList == null || fieldList.size() == 0) {
+                return new ArrayList<>();
+            }
+            byte[][] rawFields = new byte[fieldList.size()][];
+            for (int i = 0; i < rawFields.length; i++) {
+                rawFields[i] = serializeString(fieldList.get(i));
+            }
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) redisConnection -> {
+                for (String key : keys) {
+                    redisConnection.hMGet(serializeString(key), rawFields);
+                }
+                return null;
+            });
+            List<Map<String, Object>> list = new ArrayList<>(results.size());
+            for (Object result : results) {
+                List<Object> values = (List<Object>) result;
+                Map<String, Object> map = new LinkedHashMap<>(fieldList.size());
+                for (int i = 0; i < fieldList.size(); i++) {
+                    map.put(fieldList.get(i), values == null ? null : values.get(i));
+                }
+                list.add(map);
+            }
+            return list;
+        });
+    }
+
+    @Override
+    public List<Boolean> exists(List<String> keys) {
+        return timed("exists", null, () -> {
+            if (keys == null || keys.size() == 0) {
+                return new ArrayList<>();
+            }
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) redisConnection -> {
+                for (String key : keys) {
+                    redisConnection.exists(serializeString(key));
+                }
+                return null;
+            });
+            return parseBooleanList(results);
+        });
+    }
+
+    @Override
+    public long del(List<String> keys) {
+        return timed("del", null, () -> {
+            if (keys == null || keys.size() == 0) {
+                return 0L;
+            }
+            Long result = redisTemplate.delete(keys);
+            invalidateNearCache(keys);
+            return ValueUtil.getValue(result);
+        });
+    }
+
+    @Override
+    public List<Boolean> expire(List<String> keys, long expire) {
+        return timed("expire", null, () -> {
+            if (keys == null || keys.size() == 0) {
+                return new ArrayList<>();
+            }
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) redisConnection -> {
+                for (String key : keys) {
+                    redisConnection.expire(serializeString(key), expire);
+                }
+                return null;
+            });
+            invalidateNearCache(keys);
+            return parseBooleanList(results);
+        });
+    }
+
+    @Override
+    public List<Object> pipelined(Consumer<RedisOperations<String, Object>> commands) {
+        return timed("pipelined", null, () -> {
+            return redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    commands.accept((RedisOperations<String, Object>) operations);
+                    return null;
+                }
+            });
+        });
+    }
+
+    @Override
+    public long publish(String channel, String message) {
+        return timed("publish", null, () -> {
+            Long receivers = redisTemplate.execute(redisConnection ->
+                    redisConnection.publish(serializeString(channel), serializeString(message)), true);
+            return receivers == null ? 0L : receivers;
+        });
+    }
+
+    @Override
+    public <T> T eval(RedisScript<T> script, List<String> keys, Object... args) {
+        return timed("eval", null, () -> {
+            T result = redisTemplate.execute(script, keys, args);
+            if (keys != null) {
+                invalidateNearCache(keys);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T evalString(RedisScript<T> script, List<String> keys, String... args) {
+        return timed("eval", null, () -> {
+            RedisSerializer<String> serializer = RedisSerializer.string();
+            T result = redisTemplate.execute(script, serializer, (RedisSerializer<T>) (RedisSerializer<?>) serializer,
+                    keys, (Object[]) args);
+            if (keys != null) {
+                invalidateNearCache(keys);
+            }
+            return result;
+        });
+    }
+
+    private static ScanOptions scanOptions(String match, int count) {
+        ScanOptions.ScanOptionsBuilder builder = ScanOptions.scanOptions().count(Math.max(1, count));
+        if (match != null) {
+            builder.match(match);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 把SCAN游标包装成Stream，关闭Stream时关闭游标、归还连接。
+     * 第一批在创建游标时取回，由调用方计时；之后消费Stream时每向redis取一批按command记录一次耗时
+     * @param command 指标里的命令名
+     * @param key
+     * @param cursor
+     * @param <T>
+     * @return
+     */
+    private <T> Stream<T> stream(String command, String key, Cursor<T> cursor) {
+        Iterator<T> iterator = new Iterator<T>() {
             @Override
-            public Long doInRedis(RedisConnection connection) throws DataAccessException {
+            public boolean hasNext() {
+                long cursorId = cursor.getCursorId();
+                long begin = System.nanoTime();
+                boolean failed = true;
                 try {
-                    return connection.ttl(serializeString(key));
-                } catch (Exception e) {
-                    log.info("hasKey.err", e);
+                    boolean hasNext = cursor.hasNext();
+                    failed = false;
+                    return hasNext;
+                } finally {
+                    //游标id变了说明这次去redis取了下一批
+                    if (failed || cursor.getCursorId() != cursorId) {
+                        metrics.record(command, key, System.nanoTime() - begin, failed);
+                    }
                 }
-                return -1L;
             }
-        });
-        return timeout == null ? -1L : timeout;
+
+            @Override
+            public T next() {
+                return cursor.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (IOException e) {
+                        log.warn("close scan cursor failed", e);
+                    }
+                });
+    }
+
+    private void invalidateNearCache(String key) {
+        if (nearCache != null) {
+            nearCache.invalidate(key);
+        }
+    }
+
+    private void invalidateNearCache(Collection<String> keys) {
+        if (nearCache != null) {
+            for (String key : keys) {
+                nearCache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * 近端缓存未命中时加载，GET和PTTL在一个pipeline中完成
+     * @param key
+     * @return
+     */
+    private NearCache.Entry loadNearCacheEntry(String key) {
+        return toNearCacheEntry(getWithTtl(key), redisTemplate.getValueSerializer());
+    }
+
+    /**
+     * GET和PTTL在一个pipeline中完成，value为未反序列化的字节
+     * @param key
+     * @return
+     */
+    private List<Object> getWithTtl(String key) {
+        return redisTemplate.execute((RedisCallback<List<Object>>) redisConnection -> {
+            byte[] rawKey = serializeString(key);
+            redisConnection.openPipeline();
+            redisConnection.get(rawKey);
+            redisConnection.pTtl(rawKey);
+            return redisConnection.closePipeline();
+        }, true);
+    }
+
+    private NearCache.Entry loadNearCacheEntry(String key, String field) {
+        List<Object> results = redisTemplate.execute((RedisCallback<List<Object>>) redisConnection -> {
+            byte[] rawKey = serializeString(key);
+            redisConnection.openPipeline();
+            redisConnection.hGet(rawKey, serializeString(field));
+            redisConnection.pTtl(rawKey);
+            return redisConnection.closePipeline();
+        }, true);
+        return toNearCacheEntry(results, redisTemplate.getHashValueSerializer());
+    }
+
+    private NearCache.Entry toNearCacheEntry(List<Object> results, RedisSerializer<?> serializer) {
+        if (results == null || results.size() < 2 || !(results.get(0) instanceof byte[])) {
+            return null;
+        }
+        byte[] raw = (byte[]) results.get(0);
+        Object value = serializer.deserialize(raw);
+        return nearCache.entry(value, raw.length, (Long) results.get(1));
+    }
+
+    private List<Boolean> parseBooleanList(List<Object> results) {
+        List<Boolean> list = new ArrayList<>(results.size());
+        for (Object result : results) {
+            list.add(result instanceof Boolean ? (Boolean) result : ValueUtil.parseBoolean(result));
+        }
+        return list;
     }
 }
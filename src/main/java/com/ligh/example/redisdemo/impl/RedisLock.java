@@ -2,11 +2,14 @@ package com.ligh.example.redisdemo.impl;
 
 import com.ligh.example.redisdemo.ILock;
 import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @ClassName RedisLock
@@ -14,47 +17,140 @@ import java.util.concurrent.atomic.AtomicLong;
  * @Author 李光华
  * @Date 2020/12/4 16:06
  **/
+@Primary
 @Service
 @Slf4j
-public class RedisLock implements ILock {
+public class RedisLock extends AbstractRedisLock implements ILock {
 
-    @Autowired
-    private IRedisHelper redisHelper;
+    /**
+     * 锁续期看门狗，开启后锁的过期时间为看门狗的lease，持有期间自动续期
+     */
+    private LockWatchdog lockWatchdog;
+
+    /**
+     * 比较salt后删除，并通知等待者；锁不存在也算解锁成功
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('get', KEYS[1]) "
+                    + "if value == ARGV[1] then "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('publish', '" + LockNotifier.CHANNEL + "', KEYS[1]) "
+                    + "return 1 "
+                    + "end "
+                    + "if value == false then return 1 end "
+                    + "return 0", Long.class);
+
+    /**
+     * 本地交接：salt一致时把锁改成下一个持有者的salt并重设过期时间
+     */
+    private static final RedisScript<Long> HANDOFF_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) "
+                    + "return 1 "
+                    + "end "
+                    + "return 0", Long.class);
+
+    private static final int DEFAULT_MAX_LOCAL_HANDOFFS = 5;
+
+    /**
+     * JVM内同key加锁排队，只有队首线程去redis抢锁，为null表示关闭
+     */
+    private LockCoalescer lockCoalescer = new LockCoalescer(this, DEFAULT_MAX_LOCAL_HANDOFFS);
+
+    public RedisLock() {
+    }
+
+    public RedisLock(IRedisHelper redisHelper) {
+        super(redisHelper, null);
+    }
+
+    public RedisLock(IRedisHelper redisHelper, LockNotifier lockNotifier) {
+        super(redisHelper, lockNotifier);
+    }
+
+    @Autowired(required = false)
+    public void setLockWatchdog(LockWatchdog lockWatchdog) {
+        this.lockWatchdog = lockWatchdog;
+    }
+
+    @Override
+    @Autowired(required = false)
+    public void setProperties(RedisHelperProperties properties) {
+        super.setProperties(properties);
+        RedisHelperProperties.LockProperties lock = properties.getLock();
+        setLocalCoalescing(lock.isLocalCoalescing(), lock.getMaxLocalHandoffs());
+    }
+
+    /**
+     * JVM内同key加锁合并
+     * @param enabled 是否开启
+     * @param maxLocalHandoffs 连续本地交接的最大次数，之后真正释放一次，避免其他JVM饿死
+     */
+    public void setLocalCoalescing(boolean enabled, int maxLocalHandoffs) {
+        this.lockCoalescer = enabled ? new LockCoalescer(this, maxLocalHandoffs) : null;
+    }
 
     @Override
     public boolean tryLock(String key, String salt, long maxWaitSeconds) {
-        AtomicLong sleepSeconds = new AtomicLong(0L);
-        long expire = maxWaitSeconds == 0 ? MAX_HOLD_SECONDS : maxWaitSeconds;
-        boolean ret = redisHelper.setIfValueAbSent(key, salt, expire);
-        //不管有多少个线程竞争,最终只会返回给一个为true
-        while (!ret && maxWaitSeconds > 0) {
-            ret = redisHelper.setIfValueAbSent(key, salt, expire);
-            if (!ret && (maxWaitSeconds != sleepSeconds.get())) {
-                try {
-                    Thread.sleep(1000L);
-                } catch (Exception e) {
-                    //不处理
-                }
-                sleepSeconds.getAndIncrement();
-            }
+        long expire = maxWaitSeconds == 0 ? leaseSeconds : maxWaitSeconds;
+        if (lockWatchdog != null) {
+            expire = lockWatchdog.getLeaseSeconds();
+        }
+        long deadline = deadline(maxWaitSeconds);
+        boolean locked;
+        try {
+            locked = lockCoalescer == null ? acquire(key, salt, expire, deadline)
+                    : lockCoalescer.tryLock(key, salt, expire, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (locked && lockWatchdog != null) {
+            lockWatchdog.watch(key, salt);
         }
-        return ret;
+        return locked;
+    }
+
+    /**
+     * 在redis抢锁，直到成功或超过deadline
+     * @param key
+     * @param salt
+     * @param expire 锁过期时间，单位 秒
+     * @param deadline 截止时间戳，单位 毫秒
+     * @return
+     */
+    boolean acquire(String key, String salt, long expire, long deadline) throws InterruptedException {
+        //不管有多少个线程竞争,最终只会返回给一个为true
+        return await(key, deadline, () -> redisHelper.setIfValueAbSent(key, salt, expire));
+    }
+
+    /**
+     * 把锁从当前持有者直接交给下一个持有者
+     */
+    boolean handoff(String key, String fromSalt, String toSalt, long expire) {
+        return evalFlag(HANDOFF_SCRIPT, key, fromSalt, toSalt, expire);
+    }
+
+    /**
+     * 在redis解锁
+     */
+    boolean release(String key, String salt) {
+        //get、比较、del在一个脚本里完成，不会误删其他请求刚加上的锁
+        return evalFlag(UNLOCK_SCRIPT, key, salt);
+    }
+
+    /**
+     * 锁是否由看门狗续期中
+     */
+    boolean isRenewing(String key, String salt) {
+        return lockWatchdog != null && lockWatchdog.isWatching(key, salt);
     }
 
     @Override
     public boolean unLock(String key, String saltValue) {
-        Object object = redisHelper.get(key);
-        if (object == null) {
-            //表示没加锁
-            return true;
-        }
-        String salt = (String) object;
-        if (!salt.equals(saltValue)) {
-            //不是同一个请求加的锁
-            return false;
-        } else {
-            redisHelper.del(key);
-            return false;
+        if (lockWatchdog != null) {
+            lockWatchdog.unwatch(key, saltValue);
         }
+        return lockCoalescer == null ? release(key, saltValue) : lockCoalescer.unLock(key, saltValue);
     }
 }
@@ -0,0 +1,217 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ligh.example.redisdemo.IRateLimiter;
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName RedisRateLimiter
+ * @Description redis 分布式限流，三种算法各是一个lua脚本，返回0表示放行，否则返回最早可能放行的等待毫秒数。
+ * 等待时间只会低估（其他节点的请求只会让它更晚），本地在这段时间内直接拒绝同一个key不少于这次数量的请求，
+ * 放行的请求每次一个往返，被本地拒绝的请求不访问redis。时间戳取自客户端，各节点时钟需要大致同步
+ * @Author 李光华
+ * @Date 2020/12/30 10:10
+ **/
+@Service
+public class RedisRateLimiter implements IRateLimiter {
+
+    /**
+     * KEYS: 桶（hash，tokens为剩余令牌，ts为上次补充时间）
+     * ARGV: 容量，每毫秒补充令牌数，当前时间戳，本次令牌数
+     */
+    private static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local capacity = tonumber(ARGV[1]) "
+                    + "local rate = tonumber(ARGV[2]) "
+                    + "local now = tonumber(ARGV[3]) "
+                    + "local permits = tonumber(ARGV[4]) "
+                    + "local state = redis.call('hmget', KEYS[1], 'tokens', 'ts') "
+                    + "local tokens = tonumber(state[1]) "
+                    + "local ts = tonumber(state[2]) "
+                    + "if tokens == nil or ts == nil then tokens = capacity ts = now end "
+                    + "if now > ts then "
+                    + "tokens = math.min(capacity, tokens + (now - ts) * rate) "
+                    + "ts = now "
+                    + "end "
+                    + "local wait = 0 "
+                    + "if tokens >= permits then "
+                    + "tokens = tokens - permits "
+                    + "else "
+                    + "wait = math.ceil((permits - tokens) / rate) "
+                    + "end "
+                    + "redis.call('hmset', KEYS[1], 'tokens', tokens, 'ts', ts) "
+                    + "redis.call('pexpire', KEYS[1], math.ceil(capacity / rate) + 1000) "
+                    + "return wait", Long.class);
+
+    /**
+     * KEYS: 日志（zset，score为请求时间戳）
+     * ARGV: 上限，窗口毫秒，当前时间戳，本次次数，请求标识
+     */
+    private static final RedisScript<Long> SLIDING_LOG_SCRIPT = new DefaultRedisScript<>(
+            "local limit = tonumber(ARGV[1]) "
+                    + "local window = tonumber(ARGV[2]) "
+                    + "local now = tonumber(ARGV[3]) "
+                    + "local permits = tonumber(ARGV[4]) "
+                    + "redis.call('zremrangebyscore', KEYS[1], '-inf', now - window) "
+                    + "local count = redis.call('zcard', KEYS[1]) "
+                    + "if count + permits <= limit then "
+                    + "for i = 1, permits do "
+                    + "redis.call('zadd', KEYS[1], now, ARGV[5] .. ':' .. i) "
+                    + "end "
+                    + "redis.call('pexpire', KEYS[1], window) "
+                    + "return 0 "
+                    + "end "
+                    //要放行这次请求，最早的 count + permits - limit 条记录必须先过期
+                    + "local index = count + permits - limit - 1 "
+                    + "local oldest = redis.call('zrange', KEYS[1], index, index, 'WITHSCORES') "
+                    + "if oldest[2] == nil then return window end "
+                    + "return math.max(1, tonumber(oldest[2]) + window - now)", Long.class);
+
+    /**
+     * KEYS: 计数（hash，field为窗口序号）
+     * ARGV: 上限，窗口毫秒，当前时间戳，本次次数
+     */
+    private static final RedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>(
+            "local limit = tonumber(ARGV[1]) "
+                    + "local window = tonumber(ARGV[2]) "
+                    + "local now = tonumber(ARGV[3]) "
+                    + "local permits = tonumber(ARGV[4]) "
+                    + "local current = math.floor(now / window) "
+                    + "local counts = redis.call('hmget', KEYS[1], current, current - 1) "
+                    + "local curr = tonumber(counts[1]) or 0 "
+                    + "local prev = tonumber(counts[2]) or 0 "
+                    + "local elapsed = now - current * window "
+                    + "if prev * (window - elapsed) / window + curr + permits <= limit then "
+                    + "redis.call('hincrby', KEYS[1], current, permits) "
+                    + "redis.call('hdel', KEYS[1], current - 2) "
+                    + "redis.call('pexpire', KEYS[1], window * 2) "
+                    + "return 0 "
+                    + "end "
+                    //当前窗口已满时至少等到下一个窗口，否则等上一个窗口的折算计数降下来
+                    + "if curr + permits > limit then return current * window + window - now end "
+                    + "return math.max(1, math.ceil(window - elapsed - (limit - curr - permits) * window / prev))", Long.class);
+
+    private final IRedisHelper redisHelper;
+
+    /**
+     * key -> 本地拒绝到什么时候，未开启本地预判时为null
+     */
+    private Cache<String, Denial> denials;
+
+    public RedisRateLimiter(IRedisHelper redisHelper) {
+        this.redisHelper = redisHelper;
+        setLocalPrecheck(new RedisHelperProperties.RateLimiterProperties());
+    }
+
+    @Autowired(required = false)
+    public void setProperties(RedisHelperProperties properties) {
+        setLocalPrecheck(properties.getRateLimiter());
+    }
+
+    /**
+     * 配置本地预判
+     * @param properties
+     */
+    public void setLocalPrecheck(RedisHelperProperties.RateLimiterProperties properties) {
+        if (!properties.isLocalPrecheck()) {
+            this.denials = null;
+            return;
+        }
+        this.denials = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxLocalKeys())
+                .expireAfter(new Expiry<String, Denial>() {
+                    @Override
+                    public long expireAfterCreate(String key, Denial denial, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, denial.until - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Denial denial, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, denial, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Denial denial, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public boolean tryAcquire(String key, long capacity, double permitsPerSecond, int permits) {
+        if (permits <= 0 || permits > capacity || permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permits must be in [1, capacity] and permitsPerSecond positive");
+        }
+        long now = System.currentTimeMillis();
+        return acquire(key, permits, now, TOKEN_BUCKET_SCRIPT, String.valueOf(capacity),
+                String.valueOf(permitsPerSecond / 1000D), String.valueOf(now), String.valueOf(permits));
+    }
+
+    @Override
+    public boolean tryAcquireSlidingLog(String key, int limit, long windowMillis, int permits) {
+        if (permits <= 0 || permits > limit || windowMillis <= 0) {
+            throw new IllegalArgumentException("permits must be in [1, limit] and windowMillis positive");
+        }
+        long now = System.currentTimeMillis();
+        return acquire(key, permits, now, SLIDING_LOG_SCRIPT, String.valueOf(limit), String.valueOf(windowMillis),
+                String.valueOf(now), String.valueOf(permits), String.valueOf(ThreadLocalRandom.current().nextLong()));
+    }
+
+    @Override
+    public boolean tryAcquireSlidingWindow(String key, long limit, long windowMillis, int permits) {
+        if (permits <= 0 || permits > limit || windowMillis <= 0) {
+            throw new IllegalArgumentException("permits must be in [1, limit] and windowMillis positive");
+        }
+        long now = System.currentTimeMillis();
+        return acquire(key, permits, now, SLIDING_WINDOW_SCRIPT, String.valueOf(limit), String.valueOf(windowMillis),
+                String.valueOf(now), String.valueOf(permits));
+    }
+
+    /**
+     * 先查本地拒绝记录，再执行脚本；等待时间从传给脚本的时间戳算起。
+     * 参数按字符串传，不经过value的序列化器，二进制格式下 tonumber 才能解析
+     */
+    private boolean acquire(String key, int permits, long now, RedisScript<Long> script, String... args) {
+        Cache<String, Denial> local = denials;
+        if (local != null) {
+            Denial denial = local.getIfPresent(key);
+            if (denial != null && permits >= denial.permits && now < denial.until) {
+                return false;
+            }
+        }
+        Long wait = redisHelper.evalString(script, Collections.singletonList(key), args);
+        if (wait == null || wait <= 0) {
+            return true;
+        }
+        if (local != null) {
+            local.put(key, new Denial(now + wait, permits));
+        }
+        return false;
+    }
+
+    private static final class Denial {
+
+        private final long until;
+
+        /**
+         * 被拒绝时请求的数量，更少数量的请求可能更早通过，不在本地拒绝
+         */
+        private final int permits;
+
+        private Denial(long until, int permits) {
+            this.until = until;
+            this.permits = permits;
+        }
+    }
+}
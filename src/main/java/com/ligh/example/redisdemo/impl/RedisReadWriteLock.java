@@ -0,0 +1,187 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IReadWriteLock;
+import com.ligh.example.redisdemo.IRedisHelper;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName RedisReadWriteLock
+ * @Description redis 分布式读写锁，key为hash：mode 为 read/write，r:salt、w:salt 为各持有者的读、写次数；
+ * {key}:readers 为各读者的过期时间（zset，score为过期时间戳），每次加锁前清理过期的读者，
+ * 宕机的读者在lease后自动退出，不会被其他读者的续期一直留住；
+ * {key}:writer 标记有写者在等待，标记存在时不再接纳新的读者（已经持有读锁的可以重入），避免持续的读请求饿死写者。
+ * 三个key在同一个slot
+ * @Author 李光华
+ * @Date 2020/12/18 11:20
+ **/
+@Service
+public class RedisReadWriteLock extends AbstractRedisLock implements IReadWriteLock {
+
+    private static final String PUBLISH = "redis.call('publish', '" + LockNotifier.CHANNEL + "', KEYS[1]) ";
+
+    /**
+     * 清理过期的读者，读模式下没有持有者了就删除
+     * KEYS: 锁，读者过期时间，等待的写者；ARGV[3]: 当前时间戳
+     */
+    private static final String PRUNE = "local stale = redis.call('zrangebyscore', KEYS[2], '-inf', ARGV[3]) "
+            + "for i = 1, #stale do "
+            + "redis.call('hdel', KEYS[1], 'r:' .. stale[i]) "
+            + "redis.call('zrem', KEYS[2], stale[i]) "
+            + "end "
+            + "if #stale > 0 and redis.call('hget', KEYS[1], 'mode') == 'read' and redis.call('hlen', KEYS[1]) == 1 then "
+            + "redis.call('del', KEYS[1]) "
+            + "end ";
+
+    /**
+     * 写锁是自己持有，或者没有写锁且没有写者在等待时加读锁；已经持有读锁的重入不受等待的写者影响
+     * ARGV: salt，lease毫秒，当前时间戳，读者过期时间戳
+     */
+    private static final RedisScript<Long> READ_LOCK_SCRIPT = new DefaultRedisScript<>(
+            PRUNE
+                    + "local mode = redis.call('hget', KEYS[1], 'mode') "
+                    + "if mode == 'write' then "
+                    + "if redis.call('hexists', KEYS[1], 'w:' .. ARGV[1]) == 0 then return 0 end "
+                    + "elseif redis.call('exists', KEYS[3]) == 1 and redis.call('hexists', KEYS[1], 'r:' .. ARGV[1]) == 0 then "
+                    + "return 0 "
+                    + "end "
+                    + "if mode == false then redis.call('hset', KEYS[1], 'mode', 'read') end "
+                    + "redis.call('hincrby', KEYS[1], 'r:' .. ARGV[1], 1) "
+                    + "redis.call('zadd', KEYS[2], ARGV[4], ARGV[1]) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[2]) "
+                    + "return 1", Long.class);
+
+    /**
+     * 读次数减一，减到0时移除过期时间；没有任何持有者时删除并通知等待者
+     */
+    private static final RedisScript<Long> READ_UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], 'r:' .. ARGV[1]) == 0 then "
+                    + "if redis.call('exists', KEYS[1]) == 0 then return 1 end "
+                    + "return 0 "
+                    + "end "
+                    + "if redis.call('hincrby', KEYS[1], 'r:' .. ARGV[1], -1) <= 0 then "
+                    + "redis.call('hdel', KEYS[1], 'r:' .. ARGV[1]) "
+                    + "redis.call('zrem', KEYS[2], ARGV[1]) "
+                    + "end "
+                    + "if redis.call('hlen', KEYS[1]) == 1 then "
+                    + "redis.call('del', KEYS[1], KEYS[2]) "
+                    + PUBLISH
+                    + "end "
+                    + "return 1", Long.class);
+
+    /**
+     * 没有任何持有者或者写锁是自己持有时加写锁，成功时去掉自己的等待标记；
+     * 失败且需要等待时设置等待标记，阻止新的读者进入
+     * ARGV: salt，lease毫秒，当前时间戳，是否等待，等待标记存活毫秒
+     */
+    private static final RedisScript<Long> WRITE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            PRUNE
+                    + "local mode = redis.call('hget', KEYS[1], 'mode') "
+                    + "if mode == false or (mode == 'write' and redis.call('hexists', KEYS[1], 'w:' .. ARGV[1]) == 1) then "
+                    + "redis.call('hset', KEYS[1], 'mode', 'write') "
+                    + "redis.call('hincrby', KEYS[1], 'w:' .. ARGV[1], 1) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "if redis.call('get', KEYS[3]) == ARGV[1] then redis.call('del', KEYS[3]) end "
+                    + "return 1 "
+                    + "end "
+                    + "if ARGV[4] == '1' then redis.call('set', KEYS[3], ARGV[1], 'PX', ARGV[5]) end "
+                    + "return 0", Long.class);
+
+    /**
+     * 写次数减一，减到0时如果自己还持有读锁则降级为读模式，否则删除；两种情况都通知等待者
+     */
+    private static final RedisScript<Long> WRITE_UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], 'w:' .. ARGV[1]) == 0 then "
+                    + "if redis.call('exists', KEYS[1]) == 0 then return 1 end "
+                    + "return 0 "
+                    + "end "
+                    + "if redis.call('hincrby', KEYS[1], 'w:' .. ARGV[1], -1) > 0 then return 1 end "
+                    + "redis.call('hdel', KEYS[1], 'w:' .. ARGV[1]) "
+                    + "if redis.call('hlen', KEYS[1]) == 1 then "
+                    + "redis.call('del', KEYS[1], KEYS[2]) "
+                    + "else "
+                    + "redis.call('hset', KEYS[1], 'mode', 'read') "
+                    + "end "
+                    + PUBLISH
+                    + "return 1", Long.class);
+
+    /**
+     * 写者放弃等待，去掉自己的等待标记并唤醒被挡住的读者
+     */
+    private static final RedisScript<Long> WRITE_CANCEL_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[3]) == ARGV[1] then "
+                    + "redis.call('del', KEYS[3]) "
+                    + "redis.call('publish', '" + LockNotifier.CHANNEL + "', '"
+                    + LockNotifier.BROADCAST_PREFIX + "' .. KEYS[1]) "
+                    + "end "
+                    + "return 1", Long.class);
+
+    /**
+     * 写者等待标记的存活时间，单位 毫秒，等待中的写者每次重试都会续期，宕机后最多这么久读者恢复进入
+     */
+    private long writerWaitMillis = 5000L;
+
+    public RedisReadWriteLock() {
+    }
+
+    public RedisReadWriteLock(IRedisHelper redisHelper, LockNotifier lockNotifier) {
+        super(redisHelper, lockNotifier);
+    }
+
+    public void setWriterWaitMillis(long writerWaitMillis) {
+        this.writerWaitMillis = writerWaitMillis;
+    }
+
+    @Override
+    protected long pollMillis() {
+        //重试同时也是续期等待标记，间隔必须小于标记存活时间
+        return Math.max(1L, Math.min(fallbackPollMillis, writerWaitMillis / 3));
+    }
+
+    @Override
+    public boolean tryReadLock(String key, String salt, long maxWaitSeconds) {
+        boolean locked = tryAcquire(key, maxWaitSeconds, () -> {
+            long now = System.currentTimeMillis();
+            return evalFlag(READ_LOCK_SCRIPT, keys(key), salt, leaseMillis(), now, now + leaseMillis());
+        });
+        if (locked && lockNotifier != null) {
+            //一次释放通知只唤醒一个等待者，读锁不互斥，拿到后接着唤醒下一个
+            lockNotifier.signal(key);
+        }
+        return locked;
+    }
+
+    @Override
+    public boolean unReadLock(String key, String salt) {
+        return evalFlag(READ_UNLOCK_SCRIPT, keys(key), salt);
+    }
+
+    @Override
+    public boolean tryWriteLock(String key, String salt, long maxWaitSeconds) {
+        boolean waiting = maxWaitSeconds > 0;
+        boolean locked = tryAcquire(key, maxWaitSeconds, () -> evalFlag(WRITE_LOCK_SCRIPT, keys(key), salt,
+                leaseMillis(), System.currentTimeMillis(), waiting ? 1 : 0, writerWaitMillis));
+        if (!locked && waiting) {
+            evalFlag(WRITE_CANCEL_SCRIPT, keys(key), salt);
+        }
+        return locked;
+    }
+
+    @Override
+    public boolean unWriteLock(String key, String salt) {
+        return evalFlag(WRITE_UNLOCK_SCRIPT, keys(key), salt);
+    }
+
+    /**
+     * 读者过期时间和写者等待标记与锁在同一个slot
+     */
+    static List<String> keys(String key) {
+        String prefix = slotPrefix(key);
+        return Arrays.asList(key, prefix + ":readers", prefix + ":writer");
+    }
+}
@@ -0,0 +1,73 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.IReentrantLock;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+
+/**
+ * @ClassName RedisReentrantLock
+ * @Description redis 可重入分布式锁，key为hash，field为salt，value为持有次数
+ * 与 RedisLock 的key类型不同，同一个key不能混用
+ * @Author 李光华
+ * @Date 2020/12/18 10:30
+ **/
+@Service
+public class RedisReentrantLock extends AbstractRedisLock implements IReentrantLock {
+
+    /**
+     * 没有持有者或者持有者就是自己时计数加一并续期
+     */
+    private static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[1]) == 1 then "
+                    + "redis.call('hincrby', KEYS[1], ARGV[1], 1) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "return 1 "
+                    + "end "
+                    + "return 0", Long.class);
+
+    /**
+     * 计数减一，减到0时删除并通知等待者；锁不存在也算解锁成功
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then "
+                    + "if redis.call('exists', KEYS[1]) == 0 then return 1 end "
+                    + "return 0 "
+                    + "end "
+                    + "if redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0 then "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "return 1 "
+                    + "end "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('publish', '" + LockNotifier.CHANNEL + "', KEYS[1]) "
+                    + "return 1", Long.class);
+
+    private static final RedisScript<Long> HOLD_COUNT_SCRIPT = new DefaultRedisScript<>(
+            "return tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0')", Long.class);
+
+    public RedisReentrantLock() {
+    }
+
+    public RedisReentrantLock(IRedisHelper redisHelper, LockNotifier lockNotifier) {
+        super(redisHelper, lockNotifier);
+    }
+
+    @Override
+    public boolean tryLock(String key, String salt, long maxWaitSeconds) {
+        return tryAcquire(key, maxWaitSeconds, () -> evalFlag(LOCK_SCRIPT, key, salt, leaseMillis()));
+    }
+
+    @Override
+    public boolean unLock(String key, String saltValue) {
+        return evalFlag(UNLOCK_SCRIPT, key, saltValue, leaseMillis());
+    }
+
+    @Override
+    public int holdCount(String key, String salt) {
+        Long count = redisHelper.eval(HOLD_COUNT_SCRIPT, Collections.singletonList(key), salt);
+        return count == null ? 0 : count.intValue();
+    }
+}
@@ -0,0 +1,210 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IIdGenerator;
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName RedisSegmentIdGenerator
+ * @Description 号段模式ID生成器，每次用 INCRBY key step 从redis领一段ID，本地用AtomicLong无锁发号。
+ * 当前号段用掉 prefetchRatio 后在后台领下一段（双buffer），当前号段用完时直接切换，正常情况下发号不等redis。
+ * 号段长度按消耗速度自适应：一个号段用得比 targetSegmentMillis 的一半还快时翻倍，比两倍还慢时减半。
+ * 节点重启时没用完的号段作废，ID不连续但不会重复
+ * @Author 李光华
+ * @Date 2020/12/31 9:40
+ **/
+@Slf4j
+@Service
+public class RedisSegmentIdGenerator implements IIdGenerator {
+
+    private final IRedisHelper redisHelper;
+
+    private final ConcurrentHashMap<String, SegmentBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final ExecutorService prefetchExecutor;
+
+    private volatile RedisHelperProperties.IdGeneratorProperties properties = new RedisHelperProperties.IdGeneratorProperties();
+
+    public RedisSegmentIdGenerator(IRedisHelper redisHelper) {
+        this.redisHelper = redisHelper;
+        AtomicInteger index = new AtomicInteger();
+        this.prefetchExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "redis-id-prefetch-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Autowired(required = false)
+    public void setProperties(RedisHelperProperties properties) {
+        setProperties(properties.getIdGenerator());
+    }
+
+    public void setProperties(RedisHelperProperties.IdGeneratorProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public long nextId(String key) {
+        SegmentBuffer buffer = buffers.computeIfAbsent(key, SegmentBuffer::new);
+        while (true) {
+            Segment segment = buffer.current;
+            if (segment != null) {
+                long id = segment.cursor.getAndIncrement();
+                if (id <= segment.end) {
+                    //只有发到预取点的那一个线程触发预取
+                    if (id == segment.prefetchAt) {
+                        prefetch(buffer);
+                    }
+                    return id;
+                }
+            }
+            switchSegment(buffer, segment);
+        }
+    }
+
+    /**
+     * 当前的号段长度
+     * @param key
+     * @return
+     */
+    long step(String key) {
+        SegmentBuffer buffer = buffers.get(key);
+        return buffer == null ? 0L : buffer.step;
+    }
+
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private void prefetch(SegmentBuffer buffer) {
+        synchronized (buffer) {
+            if (buffer.next != null || buffer.loading != null) {
+                return;
+            }
+            CompletableFuture<Segment> loading = CompletableFuture.supplyAsync(() -> fetch(buffer), prefetchExecutor);
+            buffer.loading = loading;
+            loading.whenComplete((segment, e) -> {
+                if (e != null) {
+                    log.warn("prefetch id segment failed, key:{}", buffer.key, e);
+                }
+                synchronized (buffer) {
+                    //已经被 switchSegment 等到并用掉的号段不能再放回 next
+                    if (buffer.loading == loading) {
+                        buffer.loading = null;
+                        if (e == null) {
+                            buffer.next = segment;
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 当前号段用完，换成预取的号段；预取还没完成时等它，没有预取时同步领一段
+     */
+    private void switchSegment(SegmentBuffer buffer, Segment exhausted) {
+        synchronized (buffer) {
+            if (buffer.current != exhausted) {
+                return;
+            }
+            Segment next = buffer.next;
+            if (next == null && buffer.loading != null) {
+                try {
+                    next = buffer.loading.join();
+                } catch (CompletionException e) {
+                    //预取失败，下面同步重试一次
+                }
+                //whenComplete回调在等这把锁，不能等它来清，否则新号段到预取点时会因为loading还在而跳过预取
+                buffer.loading = null;
+            }
+            if (next == null) {
+                next = fetch(buffer);
+            }
+            buffer.next = null;
+            buffer.current = next;
+        }
+    }
+
+    /**
+     * 按上一个号段的消耗时间调整长度后领一段
+     */
+    private Segment fetch(SegmentBuffer buffer) {
+        RedisHelperProperties.IdGeneratorProperties config = properties;
+        long now = System.currentTimeMillis();
+        long step = buffer.step == 0 ? config.getInitialStep() : buffer.step;
+        if (buffer.lastFetchAt > 0) {
+            long elapsed = now - buffer.lastFetchAt;
+            if (elapsed < config.getTargetSegmentMillis() / 2) {
+                step = Math.min(config.getMaxStep(), step * 2);
+            } else if (elapsed > config.getTargetSegmentMillis() * 2) {
+                step = Math.max(config.getMinStep(), step / 2);
+            }
+        }
+        long max = redisHelper.incrby(buffer.key, step);
+        if (max <= 0) {
+            throw new IllegalStateException("allocate id segment failed, key:" + buffer.key);
+        }
+        buffer.step = step;
+        buffer.lastFetchAt = now;
+        return new Segment(max - step + 1, max, config.getPrefetchRatio());
+    }
+
+    private static final class SegmentBuffer {
+
+        private final String key;
+
+        private volatile Segment current;
+
+        /**
+         * 预取好的下一个号段
+         */
+        private volatile Segment next;
+
+        /**
+         * 正在后台领取的号段
+         */
+        private volatile CompletableFuture<Segment> loading;
+
+        private volatile long step;
+
+        /**
+         * 上一次领号段的时间，用来估算消耗速度
+         */
+        private volatile long lastFetchAt;
+
+        private SegmentBuffer(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long end;
+
+        /**
+         * 发到这个ID时预取下一段
+         */
+        private final long prefetchAt;
+
+        private final AtomicLong cursor;
+
+        private Segment(long start, long end, double prefetchRatio) {
+            this.end = end;
+            this.prefetchAt = start + (long) ((end - start + 1) * prefetchRatio);
+            this.cursor = new AtomicLong(start);
+        }
+    }
+}
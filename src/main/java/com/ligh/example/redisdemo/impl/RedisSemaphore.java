@@ -0,0 +1,62 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.ISemaphore;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+/**
+ * @ClassName RedisSemaphore
+ * @Description redis 分布式信号量，key为zset，member为许可标识，score为许可的过期时间戳
+ * 每次获取前先清理过期的许可，持有者宕机后许可在 leaseSeconds 后自动收回；时间戳取自客户端，各节点时钟需要大致同步
+ * @Author 李光华
+ * @Date 2020/12/18 14:10
+ **/
+@Service
+public class RedisSemaphore extends AbstractRedisLock implements ISemaphore {
+
+    /**
+     * ARGV: 许可标识，许可总数，当前时间戳，过期时间戳，lease毫秒
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', ARGV[3]) "
+                    + "if redis.call('zscore', KEYS[1], ARGV[1]) == false "
+                    + "and redis.call('zcard', KEYS[1]) >= tonumber(ARGV[2]) then "
+                    + "return 0 "
+                    + "end "
+                    + "redis.call('zadd', KEYS[1], ARGV[4], ARGV[1]) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[5]) "
+                    + "return 1", Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('zrem', KEYS[1], ARGV[1]) == 0 then return 0 end "
+                    + "redis.call('publish', '" + LockNotifier.CHANNEL + "', KEYS[1]) "
+                    + "return 1", Long.class);
+
+    public RedisSemaphore() {
+    }
+
+    public RedisSemaphore(IRedisHelper redisHelper, LockNotifier lockNotifier) {
+        super(redisHelper, lockNotifier);
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String permitId, int maxPermits, long maxWaitSeconds) {
+        return tryAcquire(key, maxWaitSeconds, () -> {
+            long now = System.currentTimeMillis();
+            return evalFlag(ACQUIRE_SCRIPT, key, permitId, maxPermits, now, now + leaseMillis(), leaseMillis());
+        });
+    }
+
+    @Override
+    public boolean release(String key, String permitId) {
+        return evalFlag(RELEASE_SCRIPT, key, permitId);
+    }
+
+    @Override
+    public int availablePermits(String key, int maxPermits) {
+        int used = redisHelper.zcount(key, System.currentTimeMillis(), Long.MAX_VALUE);
+        return Math.max(0, maxPermits - used);
+    }
+}
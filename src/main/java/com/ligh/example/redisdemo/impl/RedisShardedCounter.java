@@ -0,0 +1,177 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.IShardedCounter;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @ClassName RedisShardedCounter
+ * @Description 分片计数器，key:0 ... key:n-1 为子计数器（字符串或哈希表），key:meta 记录写入分片数 shards
+ * 和历史最大分片数 span。写入随机选一个分片，读取时一个pipeline汇总 span 个子key；
+ * 子key名不带hash tag，集群模式下分散在不同slot。没有meta的计数器按 defaultShards 分片。
+ * 分片数在本地缓存 metaRefreshMillis，调整后各节点最多这么久切换到新的分片数；
+ * 缩小分片数时不搬数据，旧的子key不再写入但继续参与汇总，期间没有计数丢失或重复
+ * @Author 李光华
+ * @Date 2021/1/4 10:20
+ **/
+@Service
+public class RedisShardedCounter implements IShardedCounter {
+
+    private static final String SHARDS_FIELD = "shards";
+
+    private static final String SPAN_FIELD = "span";
+
+    /**
+     * span只增不减，没有meta时按默认分片数算
+     * KEYS: meta
+     * ARGV: 新分片数，默认分片数
+     */
+    private static final RedisScript<Long> RESHARD_SCRIPT = new DefaultRedisScript<>(
+            "local span = tonumber(redis.call('hget', KEYS[1], '" + SPAN_FIELD + "')) or tonumber(ARGV[2]) "
+                    + "span = math.max(span, tonumber(ARGV[1])) "
+                    + "redis.call('hmset', KEYS[1], '" + SHARDS_FIELD + "', ARGV[1], '" + SPAN_FIELD + "', span) "
+                    + "return span", Long.class);
+
+    private final IRedisHelper redisHelper;
+
+    private final ConcurrentHashMap<String, Meta> metas = new ConcurrentHashMap<>();
+
+    private volatile RedisHelperProperties.ShardedCounterProperties properties = new RedisHelperProperties.ShardedCounterProperties();
+
+    public RedisShardedCounter(IRedisHelper redisHelper) {
+        this.redisHelper = redisHelper;
+    }
+
+    @Autowired(required = false)
+    public void setProperties(RedisHelperProperties properties) {
+        setProperties(properties.getShardedCounter());
+    }
+
+    public void setProperties(RedisHelperProperties.ShardedCounterProperties properties) {
+        this.properties = properties;
+        metas.clear();
+    }
+
+    @Override
+    public void incrby(String key, long increment) {
+        redisHelper.incrby(shardKey(key, pick(meta(key))), increment);
+    }
+
+    @Override
+    public void hincrby(String key, String field, int increment) {
+        redisHelper.hincrby(shardKey(key, pick(meta(key))), field, increment);
+    }
+
+    @Override
+    public long get(String key) {
+        List<Object> values = redisHelper.mget(shardKeys(key, meta(key).span));
+        long sum = 0;
+        if (values != null) {
+            for (Object value : values) {
+                sum += ValueUtil.parseLong(value);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long hget(String key, String field) {
+        List<Map<String, Object>> results = redisHelper.hmget(shardKeys(key, meta(key).span),
+                Collections.singletonList(field));
+        long sum = 0;
+        if (results != null) {
+            for (Map<String, Object> values : results) {
+                sum += ValueUtil.parseLong(values.get(field));
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void reshard(String key, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive");
+        }
+        Long span = redisHelper.eval(RESHARD_SCRIPT, Collections.singletonList(metaKey(key)),
+                shards, properties.getDefaultShards());
+        metas.put(key, new Meta(shards, span == null ? shards : span.intValue(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void delete(String key) {
+        List<String> keys = shardKeys(key, loadMeta(key).span);
+        keys.add(metaKey(key));
+        redisHelper.del(keys);
+        metas.remove(key);
+    }
+
+    private Meta meta(String key) {
+        Meta meta = metas.get(key);
+        if (meta == null || System.currentTimeMillis() - meta.loadedAt >= properties.getMetaRefreshMillis()) {
+            meta = loadMeta(key);
+            metas.put(key, meta);
+        }
+        return meta;
+    }
+
+    private Meta loadMeta(String key) {
+        List<Object> values = redisHelper.hmget(metaKey(key), Arrays.asList(SHARDS_FIELD, SPAN_FIELD));
+        int defaultShards = properties.getDefaultShards();
+        int shards = values == null || values.get(0) == null ? defaultShards : (int) ValueUtil.parseLong(values.get(0));
+        int span = values == null || values.get(1) == null ? defaultShards : (int) ValueUtil.parseLong(values.get(1));
+        return new Meta(shards, Math.max(shards, span), System.currentTimeMillis());
+    }
+
+    private static int pick(Meta meta) {
+        return meta.shards == 1 ? 0 : ThreadLocalRandom.current().nextInt(meta.shards);
+    }
+
+    private static String metaKey(String key) {
+        return key + ":meta";
+    }
+
+    private static String shardKey(String key, int shard) {
+        return key + ":" + shard;
+    }
+
+    private static List<String> shardKeys(String key, int span) {
+        List<String> keys = new ArrayList<>(span + 1);
+        for (int i = 0; i < span; i++) {
+            keys.add(shardKey(key, i));
+        }
+        return keys;
+    }
+
+    private static final class Meta {
+
+        /**
+         * 写入分片数
+         */
+        private final int shards;
+
+        /**
+         * 汇总时读取的子key个数
+         */
+        private final int span;
+
+        private final long loadedAt;
+
+        private Meta(int shards, int span, long loadedAt) {
+            this.shards = shards;
+            this.span = span;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
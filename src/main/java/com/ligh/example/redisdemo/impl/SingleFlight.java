@@ -0,0 +1,67 @@
+package com.ligh.example.redisdemo.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * @ClassName SingleFlight
+ * @Description 同一个JVM内对同一个key的并发调用合并成一次，第一个线程执行，其他线程等待并共享结果（包括异常）。
+ * 调用结束后立即移除，不缓存结果；共享的结果是同一个对象，调用方不要修改
+ * @Author 李光华
+ * @Date 2020/12/25 9:30
+ **/
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行或者加入正在执行的同key调用
+     * @param key
+     * @param action
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> action) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            return (T) await(inFlight);
+        }
+        try {
+            T result = action.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * 正在执行的key数量
+     * @return
+     */
+    int inFlight() {
+        return calls.size();
+    }
+
+    private static Object await(CompletableFuture<Object> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package com.ligh.example.redisdemo.serializer;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @ClassName BinaryRedisSerializer
+ * @Description 紧凑的二进制value序列化器
+ * 注册过的类只写class id和按字段名排序后的字段值，不写类名和字段名；整数使用zigzag变长编码；
+ * 未注册的类型退回到json（带@class），保证任何对象都可以序列化；未注册的枚举按类名+常量名写入。
+ * json不给final类（UUID等）写@class，注册类字段上的json按字段声明类型解析
+ * 顶层的整数直接写成十进制文本，与json一致，INCR等命令仍然可用
+ * 注意：注册类的字段增删、改名后，需要换一个新的class id
+ * @Author 李光华
+ * @Date 2020/12/14 10:20
+ **/
+public class BinaryRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 二进制格式的首字节，json的首字节一定是ASCII字符，不会与之冲突
+     */
+    public static final byte MAGIC = (byte) 0xB1;
+
+    private static final byte VERSION = 1;
+
+    private static final int T_NULL = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_INT = 3;
+    private static final int T_LONG = 4;
+    private static final int T_DOUBLE = 5;
+    private static final int T_FLOAT = 6;
+    private static final int T_STRING = 7;
+    private static final int T_BYTES = 8;
+    private static final int T_LIST = 9;
+    private static final int T_SET = 10;
+    private static final int T_SORTED_SET = 11;
+    private static final int T_MAP = 12;
+    private static final int T_SORTED_MAP = 13;
+    private static final int T_LOCAL_DATE_TIME = 14;
+    private static final int T_LOCAL_DATE = 15;
+    private static final int T_DATE = 16;
+    private static final int T_BIG_DECIMAL = 17;
+    private static final int T_BIG_INTEGER = 18;
+    private static final int T_SHORT = 19;
+    private static final int T_BYTE = 20;
+    private static final int T_CHAR = 21;
+    private static final int T_ENUM = 22;
+    private static final int T_OBJECT = 23;
+    private static final int T_JSON = 24;
+    private static final int T_ENUM_NAME = 25;
+
+    private final RedisSerializer<Object> jsonSerializer;
+
+    private final Map<Integer, ClassCodec> codecsById = new HashMap<>();
+
+    private final Map<Class<?>, ClassCodec> codecsByClass = new ConcurrentHashMap<>();
+
+    private final Map<String, Class<?>> enumClasses = new ConcurrentHashMap<>();
+
+    /**
+     * @param jsonSerializer 未注册类型和旧数据使用的json序列化器
+     * @param registeredClasses class id -> 类
+     */
+    public BinaryRedisSerializer(RedisSerializer<Object> jsonSerializer, Map<Integer, Class<?>> registeredClasses) {
+        this.jsonSerializer = jsonSerializer;
+        for (Map.Entry<Integer, Class<?>> entry : registeredClasses.entrySet()) {
+            ClassCodec codec = new ClassCodec(entry.getKey(), entry.getValue());
+            if (codecsById.put(codec.id, codec) != null || codecsByClass.put(codec.type, codec) != null) {
+                throw new IllegalArgumentException("Duplicate registration: " + entry);
+            }
+        }
+    }
+
+    /**
+     * 是否是二进制格式
+     * @param bytes
+     * @return
+     */
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return value.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        Output out = new Output(64);
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        write(out, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isBinary(bytes)) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        if (bytes[1] != VERSION) {
+            throw new SerializationException("Unsupported binary version: " + bytes[1]);
+        }
+        Input in = new Input(bytes, 2);
+        return read(in);
+    }
+
+    private void write(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(T_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(T_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(T_INT);
+            out.writeVarLong(zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(T_LONG);
+            out.writeVarLong(zigzag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? T_TRUE : T_FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(T_DOUBLE);
+            out.writeLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(T_FLOAT);
+            out.writeVarLong(Float.floatToIntBits((Float) value) & 0xFFFFFFFFL);
+        } else if (value instanceof Short) {
+            out.writeByte(T_SHORT);
+            out.writeVarLong(zigzag((Short) value));
+        } else if (value instanceof Byte) {
+            out.writeByte(T_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(T_CHAR);
+            out.writeVarLong((Character) value);
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime time = (LocalDateTime) value;
+            out.writeByte(T_LOCAL_DATE_TIME);
+            out.writeVarLong(zigzag(time.toEpochSecond(ZoneOffset.UTC)));
+            out.writeVarLong(time.getNano());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(T_LOCAL_DATE);
+            out.writeVarLong(zigzag(((LocalDate) value).toEpochDay()));
+        } else if (value instanceof Date && value.getClass() == Date.class) {
+            out.writeByte(T_DATE);
+            out.writeVarLong(zigzag(((Date) value).getTime()));
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(T_BIG_DECIMAL);
+            out.writeString(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(T_BIG_INTEGER);
+            out.writeString(value.toString());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(T_BYTES);
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof List) {
+            writeCollection(out, T_LIST, (Collection<?>) value);
+        } else if (value instanceof SortedSet && ((SortedSet<?>) value).comparator() == null) {
+            writeCollection(out, T_SORTED_SET, (Collection<?>) value);
+        } else if (value instanceof Set) {
+            writeCollection(out, T_SET, (Collection<?>) value);
+        } else if (value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() == null) {
+            writeMap(out, T_SORTED_MAP, (Map<?, ?>) value);
+        } else if (value instanceof Map) {
+            writeMap(out, T_MAP, (Map<?, ?>) value);
+        } else if (value instanceof Enum && !codecsByClass.containsKey(((Enum<?>) value).getDeclaringClass())) {
+            out.writeByte(T_ENUM_NAME);
+            out.writeString(((Enum<?>) value).getDeclaringClass().getName());
+            out.writeString(((Enum<?>) value).name());
+        } else {
+            ClassCodec codec = codecsByClass.get(value instanceof Enum ? ((Enum<?>) value).getDeclaringClass() : value.getClass());
+            if (codec == null) {
+                byte[] json = jsonSerializer.serialize(value);
+                out.writeByte(T_JSON);
+                out.writeVarLong(json.length);
+                out.writeBytes(json);
+            } else if (codec.type.isEnum()) {
+                out.writeByte(T_ENUM);
+                out.writeVarLong(codec.id);
+                out.writeString(((Enum<?>) value).name());
+            } else {
+                out.writeByte(T_OBJECT);
+                out.writeVarLong(codec.id);
+                out.writeVarLong(codec.fields.length);
+                for (Field field : codec.fields) {
+                    write(out, codec.get(field, value));
+                }
+            }
+        }
+    }
+
+    private void writeCollection(Output out, int tag, Collection<?> collection) {
+        out.writeByte(tag);
+        out.writeVarLong(collection.size());
+        for (Object item : collection) {
+            write(out, item);
+        }
+    }
+
+    private void writeMap(Output out, int tag, Map<?, ?> map) {
+        out.writeByte(tag);
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            write(out, entry.getKey());
+            write(out, entry.getValue());
+        }
+    }
+
+    private Object read(Input in) {
+        int tag = in.readByte();
+        switch (tag) {
+            case T_NULL:
+                return null;
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_INT:
+                return (int) unzigzag(in.readVarLong());
+            case T_LONG:
+                return unzigzag(in.readVarLong());
+            case T_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case T_FLOAT:
+                return Float.intBitsToFloat((int) in.readVarLong());
+            case T_STRING:
+                return in.readString();
+            case T_SHORT:
+                return (short) unzigzag(in.readVarLong());
+            case T_BYTE:
+                return (byte) in.readByte();
+            case T_CHAR:
+                return (char) in.readVarLong();
+            case T_LOCAL_DATE_TIME:
+                long seconds = unzigzag(in.readVarLong());
+                return LocalDateTime.ofEpochSecond(seconds, (int) in.readVarLong(), ZoneOffset.UTC);
+            case T_LOCAL_DATE:
+                return LocalDate.ofEpochDay(unzigzag(in.readVarLong()));
+            case T_DATE:
+                return new Date(unzigzag(in.readVarLong()));
+            case T_BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            case T_BIG_INTEGER:
+                return new BigInteger(in.readString());
+            case T_BYTES:
+                return in.readBytes((int) in.readVarLong());
+            case T_LIST:
+                int listSize = (int) in.readVarLong();
+                List<Object> list = new ArrayList<>(listSize);
+                for (int i = 0; i < listSize; i++) {
+                    list.add(read(in));
+                }
+                return list;
+            case T_SET:
+            case T_SORTED_SET:
+                int setSize = (int) in.readVarLong();
+                Set<Object> set = tag == T_SET ? new LinkedHashSet<>(setSize * 4 / 3 + 1) : new TreeSet<>();
+                for (int i = 0; i < setSize; i++) {
+                    set.add(read(in));
+                }
+                return set;
+            case T_MAP:
+            case T_SORTED_MAP:
+                int mapSize = (int) in.readVarLong();
+                Map<Object, Object> map = tag == T_MAP ? new LinkedHashMap<>(mapSize * 4 / 3 + 1) : new TreeMap<>();
+                for (int i = 0; i < mapSize; i++) {
+                    Object key = read(in);
+                    map.put(key, read(in));
+                }
+                return map;
+            case T_ENUM:
+                ClassCodec enumCodec = codec((int) in.readVarLong());
+                return enumValue(enumCodec.type, in.readString());
+            case T_OBJECT:
+                ClassCodec codec = codec((int) in.readVarLong());
+                int fieldCount = (int) in.readVarLong();
+                Object object = codec.newInstance();
+                for (int i = 0; i < fieldCount; i++) {
+                    if (i < codec.fields.length) {
+                        codec.set(codec.fields[i], object, readField(in, codec.fields[i].getType()));
+                    } else {
+                        read(in);
+                    }
+                }
+                return object;
+            case T_JSON:
+                return jsonSerializer.deserialize(in.readBytes((int) in.readVarLong()));
+            case T_ENUM_NAME:
+                Class<?> enumType = enumClass(in.readString());
+                return enumValue(enumType, in.readString());
+            default:
+                throw new SerializationException("Unknown binary tag: " + tag);
+        }
+    }
+
+    /**
+     * 读取注册类的字段，json按字段声明类型解析，final类和枚举没有@class也能还原
+     */
+    private Object readField(Input in, Class<?> fieldType) {
+        if (in.peekByte() != T_JSON || !(jsonSerializer instanceof GenericJackson2JsonRedisSerializer)
+                || fieldType == Object.class) {
+            return read(in);
+        }
+        in.readByte();
+        byte[] json = in.readBytes((int) in.readVarLong());
+        return ((GenericJackson2JsonRedisSerializer) jsonSerializer).deserialize(json, fieldType);
+    }
+
+    private Class<?> enumClass(String name) {
+        Class<?> type = enumClasses.get(name);
+        if (type != null) {
+            return type;
+        }
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            type = Class.forName(name, false, classLoader == null ? getClass().getClassLoader() : classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new SerializationException("Unknown enum class: " + name, e);
+        }
+        if (!type.isEnum()) {
+            throw new SerializationException("Not an enum class: " + name);
+        }
+        enumClasses.put(name, type);
+        return type;
+    }
+
+    private ClassCodec codec(int id) {
+        ClassCodec codec = codecsById.get(id);
+        if (codec == null) {
+            throw new SerializationException("Unregistered class id: " + id);
+        }
+        return codec;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 注册类的字段访问，字段按名称排序，保证各节点编码顺序一致
+     */
+    private static final class ClassCodec {
+        private final int id;
+        private final Class<?> type;
+        private final Field[] fields;
+        private final Constructor<?> constructor;
+
+        private ClassCodec(int id, Class<?> type) {
+            this.id = id;
+            this.type = type;
+            if (type.isEnum()) {
+                this.fields = new Field[0];
+                this.constructor = null;
+                return;
+            }
+            List<Field> list = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                        field.setAccessible(true);
+                        list.add(field);
+                    }
+                }
+            }
+            list.sort(Comparator.comparing(Field::getName).thenComparing(f -> f.getDeclaringClass().getName()));
+            this.fields = list.toArray(new Field[0]);
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Registered class needs a no-arg constructor: " + type.getName(), e);
+            }
+        }
+
+        private Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new SerializationException("Cannot instantiate " + type.getName(), e);
+            }
+        }
+
+        private Object get(Field field, Object target) {
+            try {
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                throw new SerializationException("Cannot read " + field, e);
+            }
+        }
+
+        private void set(Field field, Object target, Object value) {
+            if (value == null && field.getType().isPrimitive()) {
+                return;
+            }
+            try {
+                field.set(target, coerce(field.getType(), value));
+            } catch (Exception e) {
+                throw new SerializationException("Cannot write " + field, e);
+            }
+        }
+
+        /**
+         * 解码出的集合、数字类型与字段声明类型不一致时做转换
+         */
+        @SuppressWarnings("unchecked")
+        private static Object coerce(Class<?> fieldType, Object value) throws Exception {
+            if (value == null || fieldType.isInstance(value)) {
+                return value;
+            }
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                if (fieldType == int.class || fieldType == Integer.class) {
+                    return number.intValue();
+                } else if (fieldType == long.class || fieldType == Long.class) {
+                    return number.longValue();
+                } else if (fieldType == double.class || fieldType == Double.class) {
+                    return number.doubleValue();
+                } else if (fieldType == float.class || fieldType == Float.class) {
+                    return number.floatValue();
+                } else if (fieldType == short.class || fieldType == Short.class) {
+                    return number.shortValue();
+                } else if (fieldType == byte.class || fieldType == Byte.class) {
+                    return number.byteValue();
+                }
+            }
+            if (fieldType.isPrimitive()) {
+                return value;
+            }
+            if (value instanceof Collection && Collection.class.isAssignableFrom(fieldType)
+                    && !Modifier.isAbstract(fieldType.getModifiers())) {
+                Collection<Object> collection = (Collection<Object>) fieldType.getDeclaredConstructor().newInstance();
+                collection.addAll((Collection<Object>) value);
+                return collection;
+            }
+            if (value instanceof Map && Map.class.isAssignableFrom(fieldType)
+                    && !Modifier.isAbstract(fieldType.getModifiers())) {
+                Map<Object, Object> map = (Map<Object, Object>) fieldType.getDeclaredConstructor().newInstance();
+                map.putAll((Map<Object, Object>) value);
+                return map;
+            }
+            return value;
+        }
+    }
+
+    private static final class Output {
+        private byte[] buf;
+        private int pos;
+
+        private Output(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        private void writeLong(long v) {
+            ensure(8);
+            for (int i = 7; i >= 0; i--) {
+                buf[pos++] = (byte) (v >>> (i * 8));
+            }
+        }
+
+        private void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buf;
+        private int pos;
+
+        private Input(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        private int peekByte() {
+            if (pos >= buf.length) {
+                throw new SerializationException("Unexpected end of binary value");
+            }
+            return buf[pos];
+        }
+
+        private int readByte() {
+            if (pos >= buf.length) {
+                throw new SerializationException("Unexpected end of binary value");
+            }
+            return buf[pos++];
+        }
+
+        private byte[] readBytes(int len) {
+            if (len < 0 || pos + len > buf.length) {
+                throw new SerializationException("Unexpected end of binary value");
+            }
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return bytes;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new SerializationException("Malformed varint");
+        }
+
+        private long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        private String readString() {
+            int len = (int) readVarLong();
+            if (len < 0 || pos + len > buf.length) {
+                throw new SerializationException("Unexpected end of binary value");
+            }
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.ligh.example.redisdemo.serializer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @ClassName CompressingRedisSerializer
+ * @Description 对超过阈值的value做压缩，压缩后的数据以 MAGIC + 算法 + 原始长度(varint) 开头
+ * 没有压缩头的数据原样交给下层序列化器，压缩和未压缩的数据可以共存；关闭压缩后仍然能读取压缩过的数据
+ * @Author 李光华
+ * @Date 2020/12/15 10:40
+ **/
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 压缩数据的首字节，与json（ASCII）和二进制格式（0xB1）都不冲突
+     */
+    public static final byte MAGIC = (byte) 0xC5;
+
+    public enum Codec {
+        /**
+         * 速度优先
+         */
+        LZ4(1),
+        /**
+         * 压缩率优先
+         */
+        DEFLATE(2);
+
+        private final int id;
+
+        Codec(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 原始长度上限：redis字符串最大512MB
+     */
+    private static final long MAX_RAW_LENGTH = 512L * 1024 * 1024;
+
+    /**
+     * 最大压缩比，deflate理论上限约1032:1，LZ4约255:1，超过的原始长度一定是坏数据
+     */
+    private static final long MAX_RATIO = 1032;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final RedisSerializer<Object> delegate;
+
+    private final Codec codec;
+
+    private final int threshold;
+
+    private final boolean enabled;
+
+    private final CompressionStats stats;
+
+    /**
+     * @param delegate 下层序列化器
+     * @param enabled 是否压缩写入的数据，为false时只解压
+     * @param codec 压缩算法
+     * @param threshold 序列化后超过多少字节才压缩
+     * @param stats 统计
+     */
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, boolean enabled, Codec codec, int threshold,
+                                      CompressionStats stats) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.codec = codec;
+        this.threshold = threshold;
+        this.stats = stats;
+    }
+
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length > 2 && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] raw = delegate.serialize(value);
+        if (!enabled || raw == null || raw.length < threshold) {
+            if (raw != null) {
+                SerializationContext.addPayloadBytes(raw.length);
+            }
+            return raw;
+        }
+        CompressionStats.Group group = stats.group(SerializationContext.currentKey());
+        long start = System.nanoTime();
+        byte[] compressed = compress(raw);
+        group.compressNanos.add(System.nanoTime() - start);
+        if (compressed.length >= raw.length) {
+            group.skipped.increment();
+            SerializationContext.addPayloadBytes(raw.length);
+            return raw;
+        }
+        group.compressed.increment();
+        group.rawBytes.add(raw.length);
+        group.storedBytes.add(compressed.length);
+        SerializationContext.addPayloadBytes(compressed.length);
+        return compressed;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes != null) {
+            SerializationContext.addPayloadBytes(bytes.length);
+        }
+        if (!isCompressed(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+        CompressionStats.Group group = stats.group(SerializationContext.currentKey());
+        long start = System.nanoTime();
+        byte[] raw = decompress(bytes);
+        group.decompressNanos.add(System.nanoTime() - start);
+        group.decompressed.increment();
+        return delegate.deserialize(raw);
+    }
+
+    private byte[] compress(byte[] raw) {
+        byte[] header = header(raw.length);
+        if (codec == Codec.LZ4) {
+            LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+            byte[] out = new byte[header.length + compressor.maxCompressedLength(raw.length)];
+            System.arraycopy(header, 0, out, 0, header.length);
+            int len = compressor.compress(raw, 0, raw.length, out, header.length, out.length - header.length);
+            return Arrays.copyOf(out, header.length + len);
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[header.length + raw.length + 64];
+            System.arraycopy(header, 0, out, 0, header.length);
+            int len = header.length;
+            while (!deflater.finished()) {
+                if (len == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                len += deflater.deflate(out, len, out.length - len);
+            }
+            return Arrays.copyOf(out, len);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        int codecId = bytes[1];
+        int pos = 2;
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= bytes.length || shift > 28) {
+                throw new SerializationException("Malformed compressed value");
+            }
+            int b = bytes[pos++];
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        //分配前校验长度，避免坏数据导致负数长度或者超大数组
+        if (length > MAX_RAW_LENGTH || length > (bytes.length - pos) * MAX_RATIO) {
+            throw new SerializationException("Malformed compressed value, raw length " + length);
+        }
+        int rawLength = (int) length;
+        byte[] raw = new byte[rawLength];
+        if (codecId == Codec.LZ4.id) {
+            //数据来自redis，不可信，用带边界检查的解压
+            LZ4SafeDecompressor decompressor = LZ4_FACTORY.safeDecompressor();
+            int len;
+            try {
+                len = decompressor.decompress(bytes, pos, bytes.length - pos, raw, 0, rawLength);
+            } catch (LZ4Exception e) {
+                throw new SerializationException("Malformed compressed value", e);
+            }
+            if (len != rawLength) {
+                throw new SerializationException("Truncated compressed value");
+            }
+            return raw;
+        }
+        if (codecId == Codec.DEFLATE.id) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(bytes, pos, bytes.length - pos);
+                int len = 0;
+                while (len < rawLength) {
+                    int n = inflater.inflate(raw, len, rawLength - len);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    len += n;
+                }
+                if (len != rawLength) {
+                    throw new SerializationException("Truncated compressed value");
+                }
+                return raw;
+            } catch (DataFormatException e) {
+                throw new SerializationException("Malformed compressed value", e);
+            } finally {
+                inflater.end();
+            }
+        }
+        throw new SerializationException("Unknown compression codec: " + codecId);
+    }
+
+    private byte[] header(int rawLength) {
+        byte[] header = new byte[7];
+        header[0] = MAGIC;
+        header[1] = (byte) codec.id;
+        int pos = 2;
+        int v = rawLength;
+        while ((v & ~0x7F) != 0) {
+            header[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        header[pos++] = (byte) v;
+        return Arrays.copyOf(header, pos);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ligh.example.redisdemo.serializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @ClassName CompressionStats
+ * @Description 按key前缀分组统计压缩率和压缩、解压耗时，没有匹配前缀的key归到 other 组
+ * @Author 李光华
+ * @Date 2020/12/15 10:20
+ **/
+public class CompressionStats {
+
+    public static final String OTHER_GROUP = "other";
+
+    private final List<String> prefixes;
+
+    private final ConcurrentHashMap<String, Group> groups = new ConcurrentHashMap<>();
+
+    public CompressionStats(List<String> prefixes) {
+        this.prefixes = prefixes == null ? new ArrayList<>() : new ArrayList<>(prefixes);
+    }
+
+    String groupOf(String key) {
+        if (key != null) {
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    return prefix;
+                }
+            }
+        }
+        return OTHER_GROUP;
+    }
+
+    Group group(String key) {
+        return groups.computeIfAbsent(groupOf(key), k -> new Group());
+    }
+
+    /**
+     * 各分组的统计快照
+     * @return
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    static final class Group {
+        final LongAdder compressed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder decompressed = new LongAdder();
+        final LongAdder rawBytes = new LongAdder();
+        final LongAdder storedBytes = new LongAdder();
+        final LongAdder compressNanos = new LongAdder();
+        final LongAdder decompressNanos = new LongAdder();
+
+        private Snapshot snapshot() {
+            return new Snapshot(compressed.sum(), skipped.sum(), decompressed.sum(), rawBytes.sum(),
+                    storedBytes.sum(), compressNanos.sum(), decompressNanos.sum());
+        }
+    }
+
+    public static final class Snapshot {
+        /**
+         * 压缩后写入的次数
+         */
+        public final long compressed;
+        /**
+         * 低于阈值或压缩后没有变小而原样写入的次数
+         */
+        public final long skipped;
+        public final long decompressed;
+        /**
+         * 压缩前的总字节数（只统计压缩后写入的值）
+         */
+        public final long rawBytes;
+        public final long storedBytes;
+        public final long compressNanos;
+        public final long decompressNanos;
+
+        Snapshot(long compressed, long skipped, long decompressed, long rawBytes, long storedBytes,
+                 long compressNanos, long decompressNanos) {
+            this.compressed = compressed;
+            this.skipped = skipped;
+            this.decompressed = decompressed;
+            this.rawBytes = rawBytes;
+            this.storedBytes = storedBytes;
+            this.compressNanos = compressNanos;
+            this.decompressNanos = decompressNanos;
+        }
+
+        /**
+         * 压缩率，压缩后大小/压缩前大小
+         * @return
+         */
+        public double ratio() {
+            return rawBytes == 0 ? 1D : (double) storedBytes / rawBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "compressed=" + compressed + ", skipped=" + skipped + ", decompressed=" + decompressed
+                    + ", ratio=" + String.format("%.3f", ratio()) + ", compressMs=" + compressNanos / 1000000
+                    + ", decompressMs=" + decompressNanos / 1000000;
+        }
+    }
+}
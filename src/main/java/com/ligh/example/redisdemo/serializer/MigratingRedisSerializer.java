@@ -0,0 +1,50 @@
+package com.ligh.example.redisdemo.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * @ClassName MigratingRedisSerializer
+ * @Description 按配置的格式写入，读取时根据首字节自动识别json或二进制格式
+ * 切换格式的过程中新旧数据可以共存，回滚到json也能读取已经写入的二进制数据
+ * @Author 李光华
+ * @Date 2020/12/14 15:02
+ **/
+public class MigratingRedisSerializer implements RedisSerializer<Object> {
+
+    public enum Format {
+        /**
+         * 带@class的json，与原来的GenericJackson2JsonRedisSerializer一致
+         */
+        JSON,
+        /**
+         * 紧凑二进制格式，见 {@link BinaryRedisSerializer}
+         */
+        BINARY
+    }
+
+    private final RedisSerializer<Object> jsonSerializer;
+
+    private final BinaryRedisSerializer binarySerializer;
+
+    private final RedisSerializer<Object> writer;
+
+    public MigratingRedisSerializer(RedisSerializer<Object> jsonSerializer, BinaryRedisSerializer binarySerializer, Format format) {
+        this.jsonSerializer = jsonSerializer;
+        this.binarySerializer = binarySerializer;
+        this.writer = format == Format.BINARY ? binarySerializer : jsonSerializer;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        return writer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (BinaryRedisSerializer.isBinary(bytes)) {
+            return binarySerializer.deserialize(bytes);
+        }
+        return jsonSerializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,60 @@
+package com.ligh.example.redisdemo.serializer;
+
+/**
+ * @ClassName SerializationContext
+ * @Description 当前线程正在读写的redis key，序列化器本身拿不到key，需要按key前缀统计时由RedisHelper设置；
+ * 同时累计当前线程序列化、反序列化的value字节数，用于统计每个命令的数据量
+ * @Author 李光华
+ * @Date 2020/12/15 10:05
+ **/
+public final class SerializationContext {
+
+    private static final ThreadLocal<String> CURRENT_KEY = new ThreadLocal<>();
+
+    private static final ThreadLocal<long[]> PAYLOAD_BYTES = ThreadLocal.withInitial(() -> new long[1]);
+
+    private SerializationContext() {
+    }
+
+    /**
+     * 设置当前key
+     * @param key
+     * @return 之前的key，用于 {@link #restore(String)}
+     */
+    public static String enter(String key) {
+        String previous = CURRENT_KEY.get();
+        CURRENT_KEY.set(key);
+        return previous;
+    }
+
+    public static void restore(String previous) {
+        if (previous == null) {
+            CURRENT_KEY.remove();
+        } else {
+            CURRENT_KEY.set(previous);
+        }
+    }
+
+    public static String currentKey() {
+        return CURRENT_KEY.get();
+    }
+
+    /**
+     * 累计value字节数，由序列化器调用
+     * @param bytes
+     */
+    public static void addPayloadBytes(int bytes) {
+        PAYLOAD_BYTES.get()[0] += bytes;
+    }
+
+    /**
+     * 取出累计的value字节数并清零
+     * @return
+     */
+    public static long takePayloadBytes() {
+        long[] payload = PAYLOAD_BYTES.get();
+        long bytes = payload[0];
+        payload[0] = 0;
+        return bytes;
+    }
+}
@@ -0,0 +1,226 @@
+package com.ligh.example.redisdemo.embedded;
+
+import org.luaj.vm2.*;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * @ClassName EmbeddedLuaEngine
+ * @Description 基于luaj的EVAL/EVALSHA实现，redis.call/pcall回调到内嵌redis执行命令
+ * 返回值转换规则与redis一致：number转integer（截断小数），string转bulk，true转1，false/nil转null，
+ * {ok=...}转status，{err=...}转error，数组table转array（遇到nil截止）
+ * @Author 李光华
+ * @Date 2020/12/10 14:20
+ **/
+final class EmbeddedLuaEngine {
+
+    private final Function<List<String>, Object> executor;
+
+    private final Globals globals;
+
+    private final Map<String, LuaValue> scripts = new HashMap<>();
+
+    EmbeddedLuaEngine(Function<List<String>, Object> executor) {
+        this.executor = executor;
+        this.globals = JsePlatform.standardGlobals();
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return redisCall(args, true);
+            }
+        });
+        redis.set("pcall", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return redisCall(args, false);
+            }
+        });
+        redis.set("sha1hex", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue arg) {
+                return LuaValue.valueOf(sha1(toJavaString(arg)));
+            }
+        });
+        redis.set("status_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue arg) {
+                LuaTable table = new LuaTable();
+                table.set("ok", arg);
+                return table;
+            }
+        });
+        redis.set("error_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue arg) {
+                LuaTable table = new LuaTable();
+                table.set("err", arg);
+                return table;
+            }
+        });
+        redis.set("log", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.NONE;
+            }
+        });
+        redis.set("LOG_DEBUG", 0);
+        redis.set("LOG_VERBOSE", 1);
+        redis.set("LOG_NOTICE", 2);
+        redis.set("LOG_WARNING", 3);
+        globals.set("redis", redis);
+    }
+
+    String load(String script) {
+        String sha = sha1(script);
+        if (!scripts.containsKey(sha)) {
+            try {
+                String source = new String(script.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+                scripts.put(sha, globals.load(source, "@user_script"));
+            } catch (LuaError e) {
+                throw new Resp.CommandException("ERR Error compiling script " + e.getMessage());
+            }
+        }
+        return sha;
+    }
+
+    boolean exists(String sha) {
+        return scripts.containsKey(sha);
+    }
+
+    void flush() {
+        scripts.clear();
+    }
+
+    Object eval(String script, List<String> keys, List<String> argv) {
+        return evalsha(load(script), keys, argv);
+    }
+
+    Object evalsha(String sha, List<String> keys, List<String> argv) {
+        LuaValue function = scripts.get(sha);
+        if (function == null) {
+            throw new Resp.CommandException("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        globals.set("KEYS", toLuaArray(keys));
+        globals.set("ARGV", toLuaArray(argv));
+        try {
+            return toReply(function.call());
+        } catch (LuaError e) {
+            LuaValue message = e.getMessageObject();
+            if (message != null && message.istable() && message.get("err").isstring()) {
+                return new Resp.ErrorReply(toJavaString(message.get("err")));
+            }
+            return new Resp.ErrorReply("ERR Error running script: " + e.getMessage());
+        }
+    }
+
+    private Varargs redisCall(Varargs args, boolean raise) {
+        if (args.narg() == 0) {
+            throw new LuaError("Please specify at least one argument for redis.call()");
+        }
+        List<String> command = new ArrayList<>(args.narg());
+        for (int i = 1; i <= args.narg(); i++) {
+            LuaValue arg = args.arg(i);
+            if (!arg.isstring()) {
+                throw new LuaError("Lua redis() command arguments must be strings or integers");
+            }
+            command.add(toJavaString(arg));
+        }
+        Object reply = executor.apply(command);
+        if (reply instanceof Resp.ErrorReply && raise) {
+            LuaTable error = new LuaTable();
+            error.set("err", ((Resp.ErrorReply) reply).message);
+            throw new LuaError(error);
+        }
+        return toLua(reply);
+    }
+
+    private static LuaValue toLua(Object reply) {
+        if (reply == null || reply == Resp.NULL_ARRAY) {
+            return LuaValue.FALSE;
+        } else if (reply instanceof String) {
+            return LuaString.valueOf(((String) reply).getBytes(StandardCharsets.ISO_8859_1));
+        } else if (reply instanceof Long || reply instanceof Integer) {
+            return LuaValue.valueOf(((Number) reply).doubleValue());
+        } else if (reply instanceof Resp.Status) {
+            LuaTable table = new LuaTable();
+            table.set("ok", ((Resp.Status) reply).message);
+            return table;
+        } else if (reply instanceof Resp.ErrorReply) {
+            LuaTable table = new LuaTable();
+            table.set("err", ((Resp.ErrorReply) reply).message);
+            return table;
+        } else if (reply instanceof List) {
+            LuaTable table = new LuaTable();
+            int i = 1;
+            for (Object item : (List<?>) reply) {
+                table.set(i++, toLua(item));
+            }
+            return table;
+        }
+        throw new LuaError("Unsupported reply type: " + reply.getClass());
+    }
+
+    private static Object toReply(LuaValue value) {
+        switch (value.type()) {
+            case LuaValue.TNUMBER:
+                return (long) value.todouble();
+            case LuaValue.TSTRING:
+                return toJavaString(value);
+            case LuaValue.TBOOLEAN:
+                return value.toboolean() ? 1L : null;
+            case LuaValue.TTABLE:
+                LuaValue ok = value.get("ok");
+                if (ok.isstring()) {
+                    return new Resp.Status(toJavaString(ok));
+                }
+                LuaValue err = value.get("err");
+                if (err.isstring()) {
+                    return new Resp.ErrorReply(toJavaString(err));
+                }
+                List<Object> items = new ArrayList<>();
+                for (int i = 1; !value.get(i).isnil(); i++) {
+                    items.add(toReply(value.get(i)));
+                }
+                return items;
+            default:
+                return null;
+        }
+    }
+
+    private static LuaTable toLuaArray(List<String> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.set(i + 1, LuaString.valueOf(values.get(i).getBytes(StandardCharsets.ISO_8859_1)));
+        }
+        return table;
+    }
+
+    private static String toJavaString(LuaValue value) {
+        LuaString s = value.checkstring();
+        return new String(s.m_bytes, s.m_offset, s.m_length, StandardCharsets.ISO_8859_1);
+    }
+
+    static String sha1(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.ISO_8859_1));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ligh.example.redisdemo.embedded;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.io.IOException;
+
+/**
+ * @ClassName EmbeddedRedisConfiguration
+ * @Description 测试时使用内嵌redis，替换application-dev.yml中的远程redis，测试可以离线运行
+ * @Author 李光华
+ * @Date 2020/12/10 17:05
+ **/
+@Configuration
+public class EmbeddedRedisConfiguration {
+
+    @Bean(destroyMethod = "stop")
+    public EmbeddedRedisServer embeddedRedisServer() throws IOException {
+        return EmbeddedRedisServer.start();
+    }
+
+    @Bean
+    public LettuceConnectionFactory redisConnectionFactory(EmbeddedRedisServer embeddedRedisServer) {
+        return new LettuceConnectionFactory(new RedisStandaloneConfiguration(embeddedRedisServer.getHost(), embeddedRedisServer.getPort()));
+    }
+}
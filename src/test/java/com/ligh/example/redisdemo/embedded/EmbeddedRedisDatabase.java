@@ -0,0 +1,1362 @@
+package com.ligh.example.redisdemo.embedded;
+
+import java.util.*;
+
+/**
+ * @ClassName EmbeddedRedisDatabase
+ * @Description 内嵌redis的数据和命令实现，只有一个db，所有命令在同一把锁内串行执行，与redis单线程语义一致
+ * @Author 李光华
+ * @Date 2020/12/10 10:10
+ **/
+final class EmbeddedRedisDatabase {
+
+    private static final String WRONGTYPE = "WRONGTYPE Operation against a key holding the wrong kind of value";
+
+    private static final String NOT_INTEGER = "ERR value is not an integer or out of range";
+
+    private static final String NOT_FLOAT = "ERR value is not a valid float";
+
+    private static final String SYNTAX = "ERR syntax error";
+
+    private static final int MAX_SCAN_CURSORS = 10000;
+
+    /**
+     * 会修改数据的命令，执行后发送keyspace通知
+     */
+    private static final Set<String> WRITE_COMMANDS = new HashSet<>(Arrays.asList(
+            "SET", "SETNX", "SETEX", "PSETEX", "GETSET", "INCR", "INCRBY", "DECR", "DECRBY", "INCRBYFLOAT", "APPEND",
+            "EXPIRE", "PEXPIRE", "EXPIREAT", "PEXPIREAT", "PERSIST",
+            "LPUSH", "RPUSH", "LPOP", "RPOP", "LTRIM",
+            "HSET", "HSETNX", "HMSET", "HDEL", "HINCRBY", "HINCRBYFLOAT",
+            "SADD", "SREM", "SPOP",
+            "ZADD", "ZINCRBY", "ZREM", "ZREMRANGEBYSCORE", "ZREMRANGEBYRANK"));
+
+    private final TreeMap<String, Object> data = new TreeMap<>();
+
+    private final HashMap<String, Long> expires = new HashMap<>();
+
+    /**
+     * SCAN系列命令的游标 -> 上次返回的最后一个元素，删除、新增元素都不会导致遗漏
+     */
+    private final LinkedHashMap<Long, String> scanCursors = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 4187313026429013524L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_SCAN_CURSORS;
+        }
+    };
+
+    private final Map<String, String> config = new HashMap<>();
+
+    private final Random random = new Random();
+
+    private final Publisher publisher;
+
+    private final EmbeddedLuaEngine lua;
+
+    private long cursorSeq;
+
+    EmbeddedRedisDatabase(Publisher publisher) {
+        this.publisher = publisher;
+        this.lua = new EmbeddedLuaEngine(this::execute);
+        config.put("notify-keyspace-events", "");
+    }
+
+    /**
+     * 执行一条命令，返回值为回复对象，见 {@link Resp}
+     * @param args
+     * @return
+     */
+    synchronized Object execute(List<String> args) {
+        try {
+            String name = args.get(0).toUpperCase(Locale.ROOT);
+            Object reply = dispatch(name, args);
+            if (WRITE_COMMANDS.contains(name) && args.size() > 1) {
+                notifyKeyspace(name.toLowerCase(Locale.ROOT), args.get(1));
+            }
+            return reply;
+        } catch (Resp.CommandException e) {
+            return new Resp.ErrorReply(e.getMessage());
+        } catch (RuntimeException e) {
+            return new Resp.ErrorReply("ERR " + e);
+        }
+    }
+
+    synchronized void flushAll() {
+        data.clear();
+        expires.clear();
+        scanCursors.clear();
+    }
+
+    private Object dispatch(String name, List<String> args) {
+        switch (name) {
+            //连接、服务器
+            case "PING":
+                return args.size() > 1 ? args.get(1) : Resp.PONG;
+            case "ECHO":
+                return arg(args, 1);
+            case "SELECT":
+            case "AUTH":
+            case "CLIENT":
+            case "READONLY":
+            case "READWRITE":
+                return "CLIENT".equals(name) && args.size() > 1 && "GETNAME".equalsIgnoreCase(args.get(1)) ? null : Resp.OK;
+            case "HELLO":
+                throw new Resp.CommandException("ERR unknown command `HELLO`");
+            case "COMMAND":
+                return new ArrayList<>();
+            case "INFO":
+                return "# Server\r\nredis_version:6.0.0\r\nredis_mode:standalone\r\n# Keyspace\r\ndb0:keys=" + data.size() + "\r\n";
+            case "CONFIG":
+                return config(args);
+            case "TIME":
+                long micros = System.currentTimeMillis() * 1000L;
+                return Arrays.asList(String.valueOf(micros / 1000000L), String.valueOf(micros % 1000000L));
+            case "DBSIZE":
+                removeExpired();
+                return (long) data.size();
+            case "FLUSHDB":
+            case "FLUSHALL":
+                flushAll();
+                return Resp.OK;
+            case "PUBLISH":
+                return publisher.publish(arg(args, 1), arg(args, 2));
+            //key
+            case "TYPE":
+                return new Resp.Status(typeOf(lookup(arg(args, 1))));
+            case "EXISTS":
+                return exists(args);
+            case "DEL":
+            case "UNLINK":
+                return del(args);
+            case "EXPIRE":
+                return expire(arg(args, 1), now() + parseLong(arg(args, 2)) * 1000L);
+            case "PEXPIRE":
+                return expire(arg(args, 1), now() + parseLong(arg(args, 2)));
+            case "EXPIREAT":
+                return expire(arg(args, 1), parseLong(arg(args, 2)) * 1000L);
+            case "PEXPIREAT":
+                return expire(arg(args, 1), parseLong(arg(args, 2)));
+            case "TTL":
+                long pttl = pttl(arg(args, 1));
+                return pttl < 0 ? pttl : (pttl + 500) / 1000;
+            case "PTTL":
+                return pttl(arg(args, 1));
+            case "PERSIST":
+                return lookup(arg(args, 1)) != null && expires.remove(args.get(1)) != null ? 1L : 0L;
+            case "KEYS":
+                return keys(arg(args, 1));
+            case "SCAN":
+                return scan(args);
+            case "MEMORY":
+                return memory(args);
+            //string
+            case "GET":
+                return getString(arg(args, 1));
+            case "SET":
+                return set(args);
+            case "SETNX":
+                return setString(arg(args, 1), arg(args, 2), true, false, -1) == null ? 0L : 1L;
+            case "SETEX":
+                setString(arg(args, 1), arg(args, 3), false, false, now() + parseLong(arg(args, 2)) * 1000L);
+                return Resp.OK;
+            case "PSETEX":
+                setString(arg(args, 1), arg(args, 3), false, false, now() + parseLong(arg(args, 2)));
+                return Resp.OK;
+            case "GETSET":
+                String old = getString(arg(args, 1));
+                setString(args.get(1), arg(args, 2), false, false, -1);
+                return old;
+            case "MGET":
+                List<Object> values = new ArrayList<>(args.size() - 1);
+                for (int i = 1; i < args.size(); i++) {
+                    Object value = lookup(args.get(i));
+                    values.add(value instanceof String ? value : null);
+                }
+                return values;
+            case "MSET":
+                if (args.size() < 3 || args.size() % 2 == 0) {
+                    throw wrongArgs(name);
+                }
+                for (int i = 1; i < args.size(); i += 2) {
+                    setString(args.get(i), args.get(i + 1), false, false, -1);
+                    notifyKeyspace("set", args.get(i));
+                }
+                return Resp.OK;
+            case "INCR":
+                return incrBy(arg(args, 1), 1L);
+            case "INCRBY":
+                return incrBy(arg(args, 1), parseLong(arg(args, 2)));
+            case "DECR":
+                return incrBy(arg(args, 1), -1L);
+            case "DECRBY":
+                return incrBy(arg(args, 1), -parseLong(arg(args, 2)));
+            case "INCRBYFLOAT":
+                double d = parseDouble(orDefault(getString(arg(args, 1)), "0")) + parseDouble(arg(args, 2));
+                String formatted = formatDouble(d);
+                setString(args.get(1), formatted, false, true, -1);
+                return formatted;
+            case "STRLEN":
+                String str = getString(arg(args, 1));
+                return str == null ? 0L : (long) str.length();
+            case "APPEND":
+                String appended = orDefault(getString(arg(args, 1)), "") + arg(args, 2);
+                setString(args.get(1), appended, false, true, -1);
+                return (long) appended.length();
+            case "GETBIT":
+                return getBit(arg(args, 1), parseLong(arg(args, 2)));
+            case "SETBIT":
+                return setBit(arg(args, 1), parseLong(arg(args, 2)), arg(args, 3));
+            //list
+            case "LPUSH":
+            case "RPUSH":
+                return push(args, "LPUSH".equals(name));
+            case "LPOP":
+            case "RPOP":
+                return pop(args, "LPOP".equals(name));
+            case "LLEN":
+                List<String> llen = getList(arg(args, 1), false);
+                return llen == null ? 0L : (long) llen.size();
+            case "LINDEX":
+                return lindex(arg(args, 1), parseLong(arg(args, 2)));
+            case "LRANGE":
+                return lrange(arg(args, 1), parseLong(arg(args, 2)), parseLong(arg(args, 3)));
+            case "LTRIM":
+                return ltrim(arg(args, 1), parseLong(arg(args, 2)), parseLong(arg(args, 3)));
+            //hash
+            case "HSET":
+            case "HMSET":
+                return hset(args, "HMSET".equals(name));
+            case "HSETNX":
+                return hsetnx(arg(args, 1), arg(args, 2), arg(args, 3));
+            case "HGET":
+                TreeMap<String, String> hget = getHash(arg(args, 1), false);
+                return hget == null ? null : hget.get(arg(args, 2));
+            case "HMGET":
+                return hmget(args);
+            case "HGETALL":
+                return hgetall(arg(args, 1));
+            case "HEXISTS":
+                TreeMap<String, String> hexists = getHash(arg(args, 1), false);
+                return hexists != null && hexists.containsKey(arg(args, 2)) ? 1L : 0L;
+            case "HDEL":
+                return hdel(args);
+            case "HINCRBY":
+                return hincrBy(arg(args, 1), arg(args, 2), parseLong(arg(args, 3)));
+            case "HINCRBYFLOAT":
+                return hincrByFloat(arg(args, 1), arg(args, 2), parseDouble(arg(args, 3)));
+            case "HKEYS":
+                TreeMap<String, String> hkeys = getHash(arg(args, 1), false);
+                return hkeys == null ? new ArrayList<>() : new ArrayList<Object>(hkeys.keySet());
+            case "HVALS":
+                TreeMap<String, String> hvals = getHash(arg(args, 1), false);
+                return hvals == null ? new ArrayList<>() : new ArrayList<Object>(hvals.values());
+            case "HLEN":
+                TreeMap<String, String> hlen = getHash(arg(args, 1), false);
+                return hlen == null ? 0L : (long) hlen.size();
+            case "HSCAN":
+                return hscan(args);
+            //set
+            case "SADD":
+                return sadd(args);
+            case "SREM":
+                return srem(args);
+            case "SCARD":
+                TreeSet<String> scard = getSet(arg(args, 1), false);
+                return scard == null ? 0L : (long) scard.size();
+            case "SISMEMBER":
+                TreeSet<String> sismember = getSet(arg(args, 1), false);
+                return sismember != null && sismember.contains(arg(args, 2)) ? 1L : 0L;
+            case "SMEMBERS":
+                TreeSet<String> smembers = getSet(arg(args, 1), false);
+                return smembers == null ? new ArrayList<>() : new ArrayList<Object>(smembers);
+            case "SRANDMEMBER":
+                return srandmember(args, false);
+            case "SPOP":
+                return srandmember(args, true);
+            case "SSCAN":
+                return sscan(args);
+            //sorted set
+            case "ZADD":
+                return zadd(args);
+            case "ZINCRBY":
+                return formatDouble(zincrBy(arg(args, 1), arg(args, 3), parseDouble(arg(args, 2))));
+            case "ZSCORE":
+                ZSet zscore = getZSet(arg(args, 1), false);
+                Double score = zscore == null ? null : zscore.scores.get(arg(args, 2));
+                return score == null ? null : formatDouble(score);
+            case "ZCARD":
+                ZSet zcard = getZSet(arg(args, 1), false);
+                return zcard == null ? 0L : (long) zcard.scores.size();
+            case "ZCOUNT":
+                return (long) zrangeByScore(arg(args, 1), arg(args, 2), arg(args, 3), false).size();
+            case "ZRANK":
+            case "ZREVRANK":
+                return zrank(arg(args, 1), arg(args, 2), "ZREVRANK".equals(name));
+            case "ZRANGE":
+            case "ZREVRANGE":
+                return zrange(args, "ZREVRANGE".equals(name));
+            case "ZRANGEBYSCORE":
+            case "ZREVRANGEBYSCORE":
+                return zrangeByScore(args, "ZREVRANGEBYSCORE".equals(name));
+            case "ZREM":
+                return zrem(args);
+            case "ZREMRANGEBYSCORE":
+                return zremAll(arg(args, 1), zrangeByScore(args.get(1), arg(args, 2), arg(args, 3), false));
+            case "ZREMRANGEBYRANK":
+                ZSet zremrange = getZSet(arg(args, 1), false);
+                if (zremrange == null) {
+                    return 0L;
+                }
+                return zremAll(args.get(1), slice(new ArrayList<>(zremrange.ordered), parseLong(arg(args, 2)), parseLong(arg(args, 3))));
+            case "ZSCAN":
+                return zscan(args);
+            //script
+            case "EVAL":
+                return lua.eval(arg(args, 1), scriptKeys(args), scriptArgs(args));
+            case "EVALSHA":
+                return lua.evalsha(arg(args, 1).toLowerCase(Locale.ROOT), scriptKeys(args), scriptArgs(args));
+            case "SCRIPT":
+                return script(args);
+            default:
+                throw new Resp.CommandException("ERR unknown command `" + args.get(0) + "`");
+        }
+    }
+
+    // ---------------------------------------------------------------- key
+
+    private long now() {
+        return System.currentTimeMillis();
+    }
+
+    private Object lookup(String key) {
+        Long expireAt = expires.get(key);
+        if (expireAt != null && expireAt <= now()) {
+            expires.remove(key);
+            data.remove(key);
+            notifyKeyspace("expired", key);
+            return null;
+        }
+        return data.get(key);
+    }
+
+    private boolean isExpired(String key, long now) {
+        Long expireAt = expires.get(key);
+        return expireAt != null && expireAt <= now;
+    }
+
+    private void removeExpired() {
+        long now = now();
+        Iterator<Map.Entry<String, Long>> it = expires.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (entry.getValue() <= now) {
+                it.remove();
+                data.remove(entry.getKey());
+            }
+        }
+    }
+
+    private void remove(String key) {
+        data.remove(key);
+        expires.remove(key);
+    }
+
+    private Object exists(List<String> args) {
+        long count = 0;
+        for (int i = 1; i < args.size(); i++) {
+            if (lookup(args.get(i)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Object del(List<String> args) {
+        long count = 0;
+        for (int i = 1; i < args.size(); i++) {
+            String key = args.get(i);
+            if (lookup(key) != null) {
+                remove(key);
+                notifyKeyspace("del", key);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Object expire(String key, long expireAt) {
+        if (lookup(key) == null) {
+            return 0L;
+        }
+        if (expireAt <= now()) {
+            remove(key);
+        } else {
+            expires.put(key, expireAt);
+        }
+        return 1L;
+    }
+
+    private long pttl(String key) {
+        if (lookup(key) == null) {
+            return -2L;
+        }
+        Long expireAt = expires.get(key);
+        return expireAt == null ? -1L : Math.max(0L, expireAt - now());
+    }
+
+    private Object keys(String pattern) {
+        long now = now();
+        List<Object> keys = new ArrayList<>();
+        for (String key : data.keySet()) {
+            if (!isExpired(key, now) && GlobPattern.matches(pattern, key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private Object scan(List<String> args) {
+        String type = null;
+        for (int i = 2; i + 1 < args.size(); i += 2) {
+            if ("TYPE".equalsIgnoreCase(args.get(i))) {
+                type = args.get(i + 1).toLowerCase(Locale.ROOT);
+            }
+        }
+        String filterType = type;
+        long now = now();
+        return scanReply(args, 1, data.navigableKeySet(), (key, items) -> {
+            if (!isExpired(key, now) && (filterType == null || filterType.equals(typeOf(data.get(key))))) {
+                items.add(key);
+            }
+        });
+    }
+
+    private Object memory(List<String> args) {
+        if (!"USAGE".equalsIgnoreCase(arg(args, 1))) {
+            throw new Resp.CommandException("ERR unknown subcommand '" + args.get(1) + "'");
+        }
+        String key = arg(args, 2);
+        Object value = lookup(key);
+        if (value == null) {
+            return null;
+        }
+        //与redis的估算方式近似：key、value本身的长度加上每个元素的固定开销
+        long usage = 48L + key.length();
+        if (value instanceof String) {
+            usage += ((String) value).length();
+        } else if (value instanceof List) {
+            for (String item : (List<String>) value) {
+                usage += 16 + item.length();
+            }
+        } else if (value instanceof TreeMap) {
+            for (Map.Entry<String, String> entry : ((TreeMap<String, String>) value).entrySet()) {
+                usage += 32 + entry.getKey().length() + entry.getValue().length();
+            }
+        } else if (value instanceof TreeSet) {
+            for (String member : (TreeSet<String>) value) {
+                usage += 24 + member.length();
+            }
+        } else if (value instanceof ZSet) {
+            for (String member : ((ZSet) value).scores.keySet()) {
+                usage += 48 + member.length();
+            }
+        }
+        return usage;
+    }
+
+    private String typeOf(Object value) {
+        if (value == null) {
+            return "none";
+        } else if (value instanceof String) {
+            return "string";
+        } else if (value instanceof List) {
+            return "list";
+        } else if (value instanceof TreeMap) {
+            return "hash";
+        } else if (value instanceof TreeSet) {
+            return "set";
+        }
+        return "zset";
+    }
+
+    /**
+     * SCAN/HSCAN/SSCAN/ZSCAN的通用实现
+     * @param args
+     * @param cursorIndex 游标参数的位置
+     * @param elements 有序的元素集合
+     * @param emitter 把符合条件的元素写入回复
+     * @return
+     */
+    private Object scanReply(List<String> args, int cursorIndex, NavigableSet<String> elements,
+                             ScanEmitter emitter) {
+        long cursor = parseLong(arg(args, cursorIndex));
+        String match = null;
+        long count = 10;
+        for (int i = cursorIndex + 1; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if ("MATCH".equals(option)) {
+                match = arg(args, ++i);
+            } else if ("COUNT".equals(option)) {
+                count = parseLong(arg(args, ++i));
+                if (count < 1) {
+                    throw new Resp.CommandException(SYNTAX);
+                }
+            } else if ("TYPE".equals(option)) {
+                i++;
+            } else {
+                throw new Resp.CommandException(SYNTAX);
+            }
+        }
+        List<Object> items = new ArrayList<>();
+        String last = null;
+        if (cursor != 0) {
+            last = scanCursors.remove(cursor);
+            if (last == null || elements == null) {
+                return Arrays.asList("0", items);
+            }
+        }
+        if (elements == null) {
+            return Arrays.asList("0", items);
+        }
+        Iterator<String> it = (last == null ? elements : elements.tailSet(last, false)).iterator();
+        long examined = 0;
+        String lastSeen = null;
+        while (examined < count && it.hasNext()) {
+            lastSeen = it.next();
+            examined++;
+            if (match == null || GlobPattern.matches(match, lastSeen)) {
+                emitter.emit(lastSeen, items);
+            }
+        }
+        String next = "0";
+        if (it.hasNext()) {
+            long id = ++cursorSeq;
+            scanCursors.put(id, lastSeen);
+            next = String.valueOf(id);
+        }
+        return Arrays.asList(next, items);
+    }
+
+    // ---------------------------------------------------------------- string
+
+    private String getString(String key) {
+        Object value = lookup(key);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof String)) {
+            throw new Resp.CommandException(WRONGTYPE);
+        }
+        return (String) value;
+    }
+
+    /**
+     * 写入字符串
+     * @param key
+     * @param value
+     * @param nx 只有不存在时才写入
+     * @param keepTtl 是否保留原有过期时间
+     * @param expireAt 过期时间点，毫秒，小于0表示不过期
+     * @return 没有写入时返回null
+     */
+    private String setString(String key, String value, boolean nx, boolean keepTtl, long expireAt) {
+        if (nx && lookup(key) != null) {
+            return null;
+        }
+        data.put(key, value);
+        if (expireAt >= 0) {
+            expires.put(key, expireAt);
+        } else if (!keepTtl) {
+            expires.remove(key);
+        }
+        return value;
+    }
+
+    private Object set(List<String> args) {
+        String key = arg(args, 1);
+        String value = arg(args, 2);
+        boolean nx = false;
+        boolean xx = false;
+        boolean keepTtl = false;
+        boolean get = false;
+        long expireAt = -1;
+        for (int i = 3; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "NX":
+                    nx = true;
+                    break;
+                case "XX":
+                    xx = true;
+                    break;
+                case "KEEPTTL":
+                    keepTtl = true;
+                    break;
+                case "GET":
+                    get = true;
+                    break;
+                case "EX":
+                    expireAt = now() + parseLong(arg(args, ++i)) * 1000L;
+                    break;
+                case "PX":
+                    expireAt = now() + parseLong(arg(args, ++i));
+                    break;
+                case "EXAT":
+                    expireAt = parseLong(arg(args, ++i)) * 1000L;
+                    break;
+                case "PXAT":
+                    expireAt = parseLong(arg(args, ++i));
+                    break;
+                default:
+                    throw new Resp.CommandException(SYNTAX);
+            }
+        }
+        if (nx && xx) {
+            throw new Resp.CommandException(SYNTAX);
+        }
+        String old = get ? getString(key) : null;
+        boolean present = lookup(key) != null;
+        if ((nx && present) || (xx && !present)) {
+            return get ? old : null;
+        }
+        setString(key, value, false, keepTtl, expireAt);
+        return get ? old : Resp.OK;
+    }
+
+    private Object incrBy(String key, long increment) {
+        String value = getString(key);
+        long current = value == null ? 0L : parseLong(value);
+        long result = current + increment;
+        if (((current ^ result) & (increment ^ result)) < 0) {
+            throw new Resp.CommandException("ERR increment or decrement would overflow");
+        }
+        setString(key, String.valueOf(result), false, true, -1);
+        return result;
+    }
+
+    private long getBit(String key, long offset) {
+        if (offset < 0) {
+            throw new Resp.CommandException("ERR bit offset is not an integer or out of range");
+        }
+        String value = getString(key);
+        int index = (int) (offset >> 3);
+        if (value == null || index >= value.length()) {
+            return 0L;
+        }
+        return (value.charAt(index) >> (7 - (offset & 7))) & 1;
+    }
+
+    /**
+     * 按redis的位序（每个字节高位在前）设置bit，字符串按需用0补齐
+     */
+    private long setBit(String key, long offset, String bit) {
+        if (offset < 0 || offset >= (1L << 32)) {
+            throw new Resp.CommandException("ERR bit offset is not an integer or out of range");
+        }
+        if (!"0".equals(bit) && !"1".equals(bit)) {
+            throw new Resp.CommandException("ERR bit is not an integer or out of range");
+        }
+        String value = orDefault(getString(key), "");
+        int index = (int) (offset >> 3);
+        StringBuilder sb = new StringBuilder(value);
+        while (sb.length() <= index) {
+            sb.append('\0');
+        }
+        int mask = 1 << (7 - (offset & 7));
+        int old = sb.charAt(index);
+        sb.setCharAt(index, (char) ("1".equals(bit) ? old | mask : old & ~mask));
+        setString(key, sb.toString(), false, true, -1);
+        return (old & mask) == 0 ? 0L : 1L;
+    }
+
+    // ---------------------------------------------------------------- list
+
+    private List<String> getList(String key, boolean create) {
+        Object value = lookup(key);
+        if (value == null) {
+            if (!create) {
+                return null;
+            }
+            List<String> list = new ArrayList<>();
+            data.put(key, list);
+            return list;
+        }
+        if (!(value instanceof List)) {
+            throw new Resp.CommandException(WRONGTYPE);
+        }
+        return (List<String>) value;
+    }
+
+    private Object push(List<String> args, boolean left) {
+        if (args.size() < 3) {
+            throw wrongArgs(args.get(0));
+        }
+        List<String> list = getList(args.get(1), true);
+        for (int i = 2; i < args.size(); i++) {
+            if (left) {
+                list.add(0, args.get(i));
+            } else {
+                list.add(args.get(i));
+            }
+        }
+        return (long) list.size();
+    }
+
+    private Object pop(List<String> args, boolean left) {
+        String key = arg(args, 1);
+        List<String> list = getList(key, false);
+        if (args.size() > 2) {
+            long count = parseLong(args.get(2));
+            if (list == null) {
+                return Resp.NULL_ARRAY;
+            }
+            List<Object> items = new ArrayList<>();
+            for (long i = 0; i < count && !list.isEmpty(); i++) {
+                items.add(left ? list.remove(0) : list.remove(list.size() - 1));
+            }
+            removeIfEmpty(key, list);
+            return items;
+        }
+        if (list == null) {
+            return null;
+        }
+        String item = left ? list.remove(0) : list.remove(list.size() - 1);
+        removeIfEmpty(key, list);
+        return item;
+    }
+
+    private Object lindex(String key, long index) {
+        List<String> list = getList(key, false);
+        if (list == null) {
+            return null;
+        }
+        if (index < 0) {
+            index += list.size();
+        }
+        return index < 0 || index >= list.size() ? null : list.get((int) index);
+    }
+
+    private Object lrange(String key, long start, long stop) {
+        List<String> list = getList(key, false);
+        return list == null ? new ArrayList<>() : new ArrayList<Object>(slice(list, start, stop));
+    }
+
+    private Object ltrim(String key, long start, long stop) {
+        List<String> list = getList(key, false);
+        if (list != null) {
+            List<String> kept = new ArrayList<>(slice(list, start, stop));
+            list.clear();
+            list.addAll(kept);
+            removeIfEmpty(key, list);
+        }
+        return Resp.OK;
+    }
+
+    /**
+     * 按redis的规则截取区间，负数表示倒数位置
+     */
+    private static <T> List<T> slice(List<T> list, long start, long stop) {
+        int size = list.size();
+        if (start < 0) {
+            start += size;
+        }
+        if (stop < 0) {
+            stop += size;
+        }
+        if (start < 0) {
+            start = 0;
+        }
+        if (start > stop || start >= size) {
+            return new ArrayList<>();
+        }
+        if (stop >= size) {
+            stop = size - 1;
+        }
+        return list.subList((int) start, (int) stop + 1);
+    }
+
+    // ---------------------------------------------------------------- hash
+
+    private TreeMap<String, String> getHash(String key, boolean create) {
+        Object value = lookup(key);
+        if (value == null) {
+            if (!create) {
+                return null;
+            }
+            TreeMap<String, String> hash = new TreeMap<>();
+            data.put(key, hash);
+            return hash;
+        }
+        if (!(value instanceof TreeMap)) {
+            throw new Resp.CommandException(WRONGTYPE);
+        }
+        return (TreeMap<String, String>) value;
+    }
+
+    private Object hset(List<String> args, boolean hmset) {
+        if (args.size() < 4 || args.size() % 2 != 0) {
+            throw wrongArgs(args.get(0));
+        }
+        TreeMap<String, String> hash = getHash(args.get(1), true);
+        long added = 0;
+        for (int i = 2; i < args.size(); i += 2) {
+            if (hash.put(args.get(i), args.get(i + 1)) == null) {
+                added++;
+            }
+        }
+        return hmset ? Resp.OK : added;
+    }
+
+    private Object hsetnx(String key, String field, String value) {
+        TreeMap<String, String> hash = getHash(key, true);
+        if (hash.containsKey(field)) {
+            return 0L;
+        }
+        hash.put(field, value);
+        return 1L;
+    }
+
+    private Object hmget(List<String> args) {
+        TreeMap<String, String> hash = getHash(arg(args, 1), false);
+        List<Object> values = new ArrayList<>(args.size() - 2);
+        for (int i = 2; i < args.size(); i++) {
+            values.add(hash == null ? null : hash.get(args.get(i)));
+        }
+        return values;
+    }
+
+    private Object hgetall(String key) {
+        TreeMap<String, String> hash = getHash(key, false);
+        List<Object> items = new ArrayList<>();
+        if (hash != null) {
+            for (Map.Entry<String, String> entry : hash.entrySet()) {
+                items.add(entry.getKey());
+                items.add(entry.getValue());
+            }
+        }
+        return items;
+    }
+
+    private Object hdel(List<String> args) {
+        String key = arg(args, 1);
+        TreeMap<String, String> hash = getHash(key, false);
+        if (hash == null) {
+            return 0L;
+        }
+        long count = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (hash.remove(args.get(i)) != null) {
+                count++;
+            }
+        }
+        removeIfEmpty(key, hash);
+        return count;
+    }
+
+    private Object hincrBy(String key, String field, long increment) {
+        TreeMap<String, String> hash = getHash(key, true);
+        String value = hash.get(field);
+        long result = (value == null ? 0L : parseLong(value)) + increment;
+        hash.put(field, String.valueOf(result));
+        return result;
+    }
+
+    private Object hincrByFloat(String key, String field, double increment) {
+        TreeMap<String, String> hash = getHash(key, true);
+        String value = hash.get(field);
+        String result = formatDouble((value == null ? 0D : parseDouble(value)) + increment);
+        hash.put(field, result);
+        return result;
+    }
+
+    private Object hscan(List<String> args) {
+        TreeMap<String, String> hash = getHash(arg(args, 1), false);
+        return scanReply(args, 2, hash == null ? null : hash.navigableKeySet(), (field, items) -> {
+            items.add(field);
+            items.add(hash.get(field));
+        });
+    }
+
+    // ---------------------------------------------------------------- set
+
+    private TreeSet<String> getSet(String key, boolean create) {
+        Object value = lookup(key);
+        if (value == null) {
+            if (!create) {
+                return null;
+            }
+            TreeSet<String> set = new TreeSet<>();
+            data.put(key, set);
+            return set;
+        }
+        if (!(value instanceof TreeSet)) {
+            throw new Resp.CommandException(WRONGTYPE);
+        }
+        return (TreeSet<String>) value;
+    }
+
+    private Object sadd(List<String> args) {
+        if (args.size() < 3) {
+            throw wrongArgs(args.get(0));
+        }
+        TreeSet<String> set = getSet(args.get(1), true);
+        long added = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (set.add(args.get(i))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private Object srem(List<String> args) {
+        String key = arg(args, 1);
+        TreeSet<String> set = getSet(key, false);
+        if (set == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (set.remove(args.get(i))) {
+                removed++;
+            }
+        }
+        removeIfEmpty(key, set);
+        return removed;
+    }
+
+    private Object srandmember(List<String> args, boolean pop) {
+        String key = arg(args, 1);
+        TreeSet<String> set = getSet(key, false);
+        if (args.size() < 3) {
+            if (set == null) {
+                return null;
+            }
+            String member = randomElement(set);
+            if (pop) {
+                set.remove(member);
+                removeIfEmpty(key, set);
+            }
+            return member;
+        }
+        long count = parseLong(args.get(2));
+        List<Object> items = new ArrayList<>();
+        if (set == null) {
+            return items;
+        }
+        if (!pop && count < 0) {
+            //负数表示允许重复
+            List<String> members = new ArrayList<>(set);
+            for (long i = 0; i < -count; i++) {
+                items.add(members.get(random.nextInt(members.size())));
+            }
+            return items;
+        }
+        List<String> members = new ArrayList<>(set);
+        Collections.shuffle(members, random);
+        for (int i = 0; i < count && i < members.size(); i++) {
+            items.add(members.get(i));
+            if (pop) {
+                set.remove(members.get(i));
+            }
+        }
+        removeIfEmpty(key, set);
+        return items;
+    }
+
+    private String randomElement(TreeSet<String> set) {
+        int index = random.nextInt(set.size());
+        Iterator<String> it = set.iterator();
+        for (int i = 0; i < index; i++) {
+            it.next();
+        }
+        return it.next();
+    }
+
+    private Object sscan(List<String> args) {
+        TreeSet<String> set = getSet(arg(args, 1), false);
+        return scanReply(args, 2, set, (member, items) -> items.add(member));
+    }
+
+    // ---------------------------------------------------------------- sorted set
+
+    private ZSet getZSet(String key, boolean create) {
+        Object value = lookup(key);
+        if (value == null) {
+            if (!create) {
+                return null;
+            }
+            ZSet zset = new ZSet();
+            data.put(key, zset);
+            return zset;
+        }
+        if (!(value instanceof ZSet)) {
+            throw new Resp.CommandException(WRONGTYPE);
+        }
+        return (ZSet) value;
+    }
+
+    private Object zadd(List<String> args) {
+        String key = arg(args, 1);
+        boolean nx = false;
+        boolean xx = false;
+        boolean ch = false;
+        boolean incr = false;
+        int i = 2;
+        for (; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            } else if ("CH".equals(option)) {
+                ch = true;
+            } else if ("INCR".equals(option)) {
+                incr = true;
+            } else {
+                break;
+            }
+        }
+        if (i >= args.size() || (args.size() - i) % 2 != 0 || (nx && xx)) {
+            throw new Resp.CommandException(SYNTAX);
+        }
+        ZSet zset = getZSet(key, true);
+        long changed = 0;
+        Double incrResult = null;
+        for (; i < args.size(); i += 2) {
+            double score = parseDouble(args.get(i));
+            String member = args.get(i + 1);
+            Double old = zset.scores.get(member);
+            if ((nx && old != null) || (xx && old == null)) {
+                continue;
+            }
+            if (incr) {
+                score += old == null ? 0D : old;
+                incrResult = score;
+            }
+            if (old == null || old != score) {
+                zset.put(member, score);
+                if (old == null || ch) {
+                    changed++;
+                }
+            }
+        }
+        removeIfEmpty(key, zset.scores);
+        if (incr) {
+            return incrResult == null ? null : formatDouble(incrResult);
+        }
+        return changed;
+    }
+
+    private double zincrBy(String key, String member, double increment) {
+        ZSet zset = getZSet(key, true);
+        Double old = zset.scores.get(member);
+        double score = (old == null ? 0D : old) + increment;
+        zset.put(member, score);
+        return score;
+    }
+
+    private Object zrank(String key, String member, boolean reverse) {
+        ZSet zset = getZSet(key, false);
+        Double score = zset == null ? null : zset.scores.get(member);
+        if (score == null) {
+            return null;
+        }
+        long rank = zset.ordered.headSet(new ZEntry(member, score)).size();
+        return reverse ? zset.scores.size() - 1 - rank : rank;
+    }
+
+    private Object zrange(List<String> args, boolean reverse) {
+        ZSet zset = getZSet(arg(args, 1), false);
+        boolean withScores = args.size() > 4 && "WITHSCORES".equalsIgnoreCase(args.get(4));
+        if (zset == null) {
+            return new ArrayList<>();
+        }
+        List<ZEntry> entries = new ArrayList<>(zset.ordered);
+        if (reverse) {
+            Collections.reverse(entries);
+        }
+        return toReply(slice(entries, parseLong(arg(args, 2)), parseLong(arg(args, 3))), withScores);
+    }
+
+    private Object zrangeByScore(List<String> args, boolean reverse) {
+        String min = reverse ? arg(args, 3) : arg(args, 2);
+        String max = reverse ? arg(args, 2) : arg(args, 3);
+        boolean withScores = false;
+        long offset = 0;
+        long count = -1;
+        for (int i = 4; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if ("WITHSCORES".equals(option)) {
+                withScores = true;
+            } else if ("LIMIT".equals(option)) {
+                offset = parseLong(arg(args, ++i));
+                count = parseLong(arg(args, ++i));
+            } else {
+                throw new Resp.CommandException(SYNTAX);
+            }
+        }
+        List<ZEntry> entries = zrangeByScore(args.get(1), min, max, reverse);
+        if (offset > 0 || count >= 0) {
+            int from = (int) Math.min(offset, entries.size());
+            int to = count < 0 ? entries.size() : (int) Math.min(entries.size(), from + count);
+            entries = entries.subList(from, to);
+        }
+        return toReply(entries, withScores);
+    }
+
+    private List<ZEntry> zrangeByScore(String key, String min, String max, boolean reverse) {
+        ZSet zset = getZSet(key, false);
+        List<ZEntry> entries = new ArrayList<>();
+        if (zset == null) {
+            return entries;
+        }
+        boolean minExclusive = min.startsWith("(");
+        boolean maxExclusive = max.startsWith("(");
+        double minScore = parseDouble(minExclusive ? min.substring(1) : min);
+        double maxScore = parseDouble(maxExclusive ? max.substring(1) : max);
+        for (ZEntry entry : zset.ordered) {
+            if (entry.score > maxScore || (maxExclusive && entry.score == maxScore)) {
+                break;
+            }
+            if (entry.score > minScore || (!minExclusive && entry.score == minScore)) {
+                entries.add(entry);
+            }
+        }
+        if (reverse) {
+            Collections.reverse(entries);
+        }
+        return entries;
+    }
+
+    private Object zrem(List<String> args) {
+        String key = arg(args, 1);
+        ZSet zset = getZSet(key, false);
+        if (zset == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (zset.remove(args.get(i))) {
+                removed++;
+            }
+        }
+        removeIfEmpty(key, zset.scores);
+        return removed;
+    }
+
+    private Object zremAll(String key, List<ZEntry> entries) {
+        ZSet zset = getZSet(key, false);
+        if (zset == null) {
+            return 0L;
+        }
+        List<ZEntry> copy = new ArrayList<>(entries);
+        for (ZEntry entry : copy) {
+            zset.remove(entry.member);
+        }
+        removeIfEmpty(key, zset.scores);
+        return (long) copy.size();
+    }
+
+    private Object zscan(List<String> args) {
+        ZSet zset = getZSet(arg(args, 1), false);
+        return scanReply(args, 2, zset == null ? null : zset.scores.navigableKeySet(), (member, items) -> {
+            items.add(member);
+            items.add(formatDouble(zset.scores.get(member)));
+        });
+    }
+
+    private static List<Object> toReply(List<ZEntry> entries, boolean withScores) {
+        List<Object> items = new ArrayList<>(withScores ? entries.size() * 2 : entries.size());
+        for (ZEntry entry : entries) {
+            items.add(entry.member);
+            if (withScores) {
+                items.add(formatDouble(entry.score));
+            }
+        }
+        return items;
+    }
+
+    // ---------------------------------------------------------------- script / config
+
+    private List<String> scriptKeys(List<String> args) {
+        int numKeys = (int) parseLong(arg(args, 2));
+        if (numKeys < 0 || numKeys > args.size() - 3) {
+            throw new Resp.CommandException("ERR Number of keys can't be greater than number of args");
+        }
+        return new ArrayList<>(args.subList(3, 3 + numKeys));
+    }
+
+    private List<String> scriptArgs(List<String> args) {
+        int numKeys = (int) parseLong(args.get(2));
+        return new ArrayList<>(args.subList(3 + numKeys, args.size()));
+    }
+
+    private Object script(List<String> args) {
+        String sub = arg(args, 1).toUpperCase(Locale.ROOT);
+        switch (sub) {
+            case "LOAD":
+                return lua.load(arg(args, 2));
+            case "EXISTS":
+                List<Object> result = new ArrayList<>();
+                for (int i = 2; i < args.size(); i++) {
+                    result.add(lua.exists(args.get(i).toLowerCase(Locale.ROOT)) ? 1L : 0L);
+                }
+                return result;
+            case "FLUSH":
+                lua.flush();
+                return Resp.OK;
+            default:
+                throw new Resp.CommandException("ERR Unknown SCRIPT subcommand '" + args.get(1) + "'");
+        }
+    }
+
+    private Object config(List<String> args) {
+        String sub = arg(args, 1).toUpperCase(Locale.ROOT);
+        if ("GET".equals(sub)) {
+            String pattern = arg(args, 2);
+            List<Object> result = new ArrayList<>();
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                if (GlobPattern.matches(pattern, entry.getKey())) {
+                    result.add(entry.getKey());
+                    result.add(entry.getValue());
+                }
+            }
+            return result;
+        } else if ("SET".equals(sub)) {
+            config.put(arg(args, 2).toLowerCase(Locale.ROOT), arg(args, 3));
+            return Resp.OK;
+        }
+        return Resp.OK;
+    }
+
+    /**
+     * notify-keyspace-events 包含K时发布 __keyspace@0__:{key}，包含E时发布 __keyevent@0__:{event}
+     */
+    private void notifyKeyspace(String event, String key) {
+        String flags = config.get("notify-keyspace-events");
+        if (flags == null || flags.isEmpty()) {
+            return;
+        }
+        if (flags.indexOf('K') >= 0) {
+            publisher.publish("__keyspace@0__:" + key, event);
+        }
+        if (flags.indexOf('E') >= 0) {
+            publisher.publish("__keyevent@0__:" + event, key);
+        }
+    }
+
+    // ---------------------------------------------------------------- util
+
+    private void removeIfEmpty(String key, Collection<?> collection) {
+        if (collection.isEmpty()) {
+            remove(key);
+        }
+    }
+
+    private void removeIfEmpty(String key, Map<?, ?> map) {
+        if (map.isEmpty()) {
+            remove(key);
+        }
+    }
+
+    private static String arg(List<String> args, int index) {
+        if (index >= args.size()) {
+            throw wrongArgs(args.get(0));
+        }
+        return args.get(index);
+    }
+
+    private static Resp.CommandException wrongArgs(String name) {
+        return new Resp.CommandException("ERR wrong number of arguments for '" + name.toLowerCase(Locale.ROOT) + "' command");
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new Resp.CommandException(NOT_INTEGER);
+        }
+    }
+
+    static double parseDouble(String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        if ("inf".equals(lower) || "+inf".equals(lower)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-inf".equals(lower)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            double d = Double.parseDouble(value);
+            if (Double.isNaN(d)) {
+                throw new Resp.CommandException(NOT_FLOAT);
+            }
+            return d;
+        } catch (NumberFormatException e) {
+            throw new Resp.CommandException(NOT_FLOAT);
+        }
+    }
+
+    static String formatDouble(double d) {
+        if (Double.isInfinite(d)) {
+            return d > 0 ? "inf" : "-inf";
+        }
+        if (d == Math.rint(d) && Math.abs(d) < 1e17) {
+            return String.valueOf((long) d);
+        }
+        return String.valueOf(d);
+    }
+
+    interface Publisher {
+        long publish(String channel, String message);
+    }
+
+    private interface ScanEmitter {
+        void emit(String element, List<Object> items);
+    }
+
+    private static final class ZEntry implements Comparable<ZEntry> {
+        private final String member;
+        private final double score;
+
+        private ZEntry(String member, double score) {
+            this.member = member;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ZEntry o) {
+            int c = Double.compare(score, o.score);
+            return c != 0 ? c : member.compareTo(o.member);
+        }
+    }
+
+    private static final class ZSet {
+        private final TreeMap<String, Double> scores = new TreeMap<>();
+        private final TreeSet<ZEntry> ordered = new TreeSet<>();
+
+        private void put(String member, double score) {
+            Double old = scores.put(member, score);
+            if (old != null) {
+                ordered.remove(new ZEntry(member, old));
+            }
+            ordered.add(new ZEntry(member, score));
+        }
+
+        private boolean remove(String member) {
+            Double old = scores.remove(member);
+            if (old == null) {
+                return false;
+            }
+            ordered.remove(new ZEntry(member, old));
+            return true;
+        }
+    }
+}
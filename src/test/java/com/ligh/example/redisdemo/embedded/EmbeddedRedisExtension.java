@@ -0,0 +1,85 @@
+package com.ligh.example.redisdemo.embedded;
+
+import com.ligh.example.redisdemo.config.RedisConfig;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.impl.RedisHelper;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * @ClassName EmbeddedRedisExtension
+ * @Description 单元测试用的内嵌redis，测试类里用 @RegisterExtension 声明为static字段：
+ * 所有测试前启动服务端、创建连接和默认配置的RedisHelper，每个测试前清空数据，所有测试后关闭
+ * @Author 李光华
+ * @Date 2020/12/10 17:20
+ **/
+public class EmbeddedRedisExtension implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback {
+
+    private EmbeddedRedisServer server;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisConfig redisConfig;
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private RedisHelper redisHelper;
+
+    @Override
+    public void beforeAll(ExtensionContext context) throws Exception {
+        server = EmbeddedRedisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(server.getHost(), server.getPort()));
+        connectionFactory.afterPropertiesSet();
+        redisConfig = new RedisConfig();
+        redisTemplate = redisConfig.redisTemplate(connectionFactory);
+        redisHelper = new RedisHelper(redisTemplate, redisConfig.opsForHash(redisTemplate), null);
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        connectionFactory.destroy();
+        server.close();
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        server.flushAll();
+    }
+
+    /**
+     * 按指定配置（序列化格式、压缩等）创建一个连接同一个服务端的RedisHelper
+     * @param properties
+     * @return
+     */
+    public RedisHelper newRedisHelper(RedisHelperProperties properties) {
+        RedisConfig config = new RedisConfig();
+        config.setProperties(properties);
+        RedisTemplate<String, Object> template = config.redisTemplate(connectionFactory);
+        return new RedisHelper(template, config.opsForHash(template), null);
+    }
+
+    public EmbeddedRedisServer getServer() {
+        return server;
+    }
+
+    public LettuceConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public RedisConfig getRedisConfig() {
+        return redisConfig;
+    }
+
+    public RedisTemplate<String, Object> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    public RedisHelper getRedisHelper() {
+        return redisHelper;
+    }
+}
@@ -0,0 +1,266 @@
+package com.ligh.example.redisdemo.embedded;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName EmbeddedRedisServer
+ * @Description 进程内的RESP2服务端，实现RedisHelper用到的命令子集，供单元测试和基准测试使用，不需要真实的redis
+ * 支持：字符串（EX/PX/NX/XX）、列表、哈希、集合、有序集合、TTL/PERSIST、SCAN系列、EVAL/EVALSHA、发布订阅、keyspace通知
+ * @Author 李光华
+ * @Date 2020/12/10 15:30
+ **/
+@Slf4j
+public class EmbeddedRedisServer implements Closeable {
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private final ServerSocket serverSocket;
+
+    private final EmbeddedRedisDatabase database;
+
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<String, Set<Session>> channels = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Set<Session>> patterns = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    private EmbeddedRedisServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.database = new EmbeddedRedisDatabase(this::publish);
+        Thread acceptor = new Thread(this::acceptLoop, "embedded-redis-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 启动服务，监听127.0.0.1
+     * @param port 0表示随机端口
+     * @return
+     * @throws IOException
+     */
+    public static EmbeddedRedisServer start(int port) throws IOException {
+        EmbeddedRedisServer server = new EmbeddedRedisServer(port);
+        log.info("embedded redis started on port {}", server.getPort());
+        return server;
+    }
+
+    public static EmbeddedRedisServer start() throws IOException {
+        return start(0);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * 清空所有数据
+     */
+    public void flushAll() {
+        database.flushAll();
+    }
+
+    /**
+     * 不经过网络直接执行命令，主要用于测试准备数据
+     * @param args
+     * @return
+     */
+    public Object execute(String... args) {
+        return database.execute(Arrays.asList(args));
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            //忽略
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                sessions.add(session);
+                Thread thread = new Thread(session, "embedded-redis-session-" + THREAD_SEQ.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("embedded redis accept failed", e);
+                }
+            }
+        }
+    }
+
+    long publish(String channel, String message) {
+        long receivers = 0;
+        Set<Session> subscribers = channels.get(channel);
+        if (subscribers != null) {
+            for (Session session : subscribers) {
+                session.push(Arrays.asList("message", channel, message));
+                receivers++;
+            }
+        }
+        for (Map.Entry<String, Set<Session>> entry : patterns.entrySet()) {
+            if (GlobPattern.matches(entry.getKey(), channel)) {
+                for (Session session : entry.getValue()) {
+                    session.push(Arrays.asList("pmessage", entry.getKey(), channel, message));
+                    receivers++;
+                }
+            }
+        }
+        return receivers;
+    }
+
+    private final class Session implements Runnable {
+
+        private final Socket socket;
+
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        private final Set<String> subscribedChannels = new HashSet<>();
+
+        private final Set<String> subscribedPatterns = new HashSet<>();
+
+        private Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<String> args;
+                while ((args = Resp.readCommand(in)) != null) {
+                    if (args.isEmpty()) {
+                        continue;
+                    }
+                    String name = args.get(0).toUpperCase(Locale.ROOT);
+                    if ("QUIT".equals(name)) {
+                        reply(Resp.OK);
+                        return;
+                    }
+                    if (name.endsWith("SUBSCRIBE")) {
+                        subscription(name, args);
+                        continue;
+                    }
+                    if (isSubscribed() && !"PING".equals(name)) {
+                        reply(new Resp.ErrorReply("ERR only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT allowed in this context"));
+                        continue;
+                    }
+                    reply(database.execute(args));
+                }
+            } catch (SocketException | EOFException e) {
+                //客户端断开
+            } catch (IOException e) {
+                log.warn("embedded redis session failed", e);
+            } finally {
+                close();
+            }
+        }
+
+        private synchronized void reply(Object reply) throws IOException {
+            Resp.write(out, reply);
+            //没有后续的pipeline命令时才flush，减少系统调用
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+
+        private synchronized void push(List<String> message) {
+            try {
+                Resp.write(out, message);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private boolean isSubscribed() {
+            return !subscribedChannels.isEmpty() || !subscribedPatterns.isEmpty();
+        }
+
+        private void subscription(String name, List<String> args) throws IOException {
+            boolean pattern = name.startsWith("P");
+            boolean subscribe = !name.contains("UNSUBSCRIBE");
+            Set<String> own = pattern ? subscribedPatterns : subscribedChannels;
+            ConcurrentHashMap<String, Set<Session>> registry = pattern ? patterns : channels;
+            String type = name.toLowerCase(Locale.ROOT);
+            List<String> targets = new ArrayList<>(args.subList(1, args.size()));
+            if (!subscribe && targets.isEmpty()) {
+                targets.addAll(own);
+                if (targets.isEmpty()) {
+                    reply(Arrays.asList(type, null, (long) (subscribedChannels.size() + subscribedPatterns.size())));
+                    return;
+                }
+            }
+            synchronized (this) {
+                for (String target : targets) {
+                    if (subscribe) {
+                        own.add(target);
+                        registry.computeIfAbsent(target, k -> new CopyOnWriteArraySet<>()).add(this);
+                    } else {
+                        own.remove(target);
+                        Set<Session> subscribers = registry.get(target);
+                        if (subscribers != null) {
+                            subscribers.remove(this);
+                        }
+                    }
+                    Resp.write(out, Arrays.asList(type, target, (long) (subscribedChannels.size() + subscribedPatterns.size())));
+                }
+                out.flush();
+            }
+        }
+
+        private void close() {
+            sessions.remove(this);
+            for (String channel : subscribedChannels) {
+                Set<Session> subscribers = channels.get(channel);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            for (String pattern : subscribedPatterns) {
+                Set<Session> subscribers = patterns.get(pattern);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //忽略
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.ligh.example.redisdemo.embedded;
+
+import com.ligh.example.redisdemo.IZSetTuple;
+import com.ligh.example.redisdemo.config.RedisConfig;
+import com.ligh.example.redisdemo.impl.RedisHelper;
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName EmbeddedRedisServerTest
+ * @Description 通过lettuce连接内嵌redis，验证RedisHelper用到的命令
+ * @Author 李光华
+ * @Date 2020/12/11 9:40
+ **/
+class EmbeddedRedisServerTest {
+
+    private static EmbeddedRedisServer server;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private static RedisHelper redisHelper;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = EmbeddedRedisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(server.getHost(), server.getPort()));
+        connectionFactory.afterPropertiesSet();
+        RedisConfig redisConfig = new RedisConfig();
+        redisTemplate = redisConfig.redisTemplate(connectionFactory);
+        redisHelper = new RedisHelper(redisTemplate, redisConfig.opsForHash(redisTemplate), null);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void flush() {
+        server.flushAll();
+    }
+
+    @Test
+    void strings() {
+        Assertions.assertTrue(redisHelper.set("s", "ligh"));
+        Assertions.assertEquals("ligh", redisHelper.getString("s"));
+        Assertions.assertTrue(redisHelper.set("s2", 12, 100));
+        Assertions.assertEquals(12, redisHelper.getInt("s2"));
+        long ttl = redisHelper.ttl("s2");
+        Assertions.assertTrue(ttl > 90 && ttl <= 100);
+        Assertions.assertTrue(redisHelper.persist("s2"));
+        Assertions.assertEquals(-1L, redisHelper.ttl("s2"));
+        Assertions.assertEquals(-2L, redisHelper.ttl("missing"));
+        Assertions.assertFalse(redisHelper.setIfValueAbSent("s", "other", 10));
+        Assertions.assertTrue(redisHelper.setIfValueAbSent("s3", "other", 10));
+        Assertions.assertEquals("ligh", redisHelper.getSet("s", "new"));
+        Assertions.assertEquals(1L, redisHelper.incr("counter"));
+        Assertions.assertEquals(11L, redisHelper.incrby("counter", 10));
+        Assertions.assertEquals(10L, redisHelper.decr("counter"));
+        Assertions.assertTrue(redisHelper.exists("counter"));
+        Assertions.assertTrue(redisHelper.del("counter"));
+        Assertions.assertFalse(redisHelper.exists("counter"));
+    }
+
+    @Test
+    void batch() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", "1");
+        map.put("b", 2);
+        Assertions.assertTrue(redisHelper.mset(map, 60));
+        Assertions.assertEquals(Arrays.asList("1", 2, null), redisHelper.mget(Arrays.asList("a", "b", "c")));
+        Assertions.assertEquals(Arrays.asList(true, false), redisHelper.exists(Arrays.asList("a", "c")));
+        List<Object> results = redisHelper.pipelined(ops -> {
+            ops.opsForValue().get("a");
+            ops.opsForValue().increment("b");
+        });
+        Assertions.assertEquals(Arrays.asList("1", 3L), results);
+        Assertions.assertEquals(2L, redisHelper.del(Arrays.asList("a", "b", "c")));
+    }
+
+    @Test
+    void lists() {
+        Assertions.assertEquals(3L, redisHelper.rpush("l", 1, 2, 3));
+        Assertions.assertEquals(4L, redisHelper.lpush("l", 0));
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3), redisHelper.lrange("l", 0, -1, Integer.class));
+        Assertions.assertEquals(Integer.valueOf(3), redisHelper.lindex("l", -1, Integer.class));
+        redisHelper.ltrim("l", 1, 2);
+        Assertions.assertEquals(2, redisHelper.listLen("l"));
+        Assertions.assertEquals(1, redisHelper.lpop("l"));
+        Assertions.assertEquals(2, redisHelper.rpop("l"));
+        Assertions.assertFalse(redisHelper.exists("l"));
+    }
+
+    @Test
+    void hashes() {
+        Assertions.assertTrue(redisHelper.hset("h", "a", "1"));
+        Map<String, Object> map = new HashMap<>();
+        map.put("b", 2);
+        map.put("c", 3);
+        redisHelper.hmset("h", map);
+        Assertions.assertEquals("1", redisHelper.hget("h", "a"));
+        Assertions.assertEquals(3, redisHelper.hlen("h"));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), redisHelper.hkeys("h"));
+        Assertions.assertEquals(Arrays.asList(2, null), redisHelper.hmget("h", Arrays.asList("b", "x")));
+        Assertions.assertEquals(10L, redisHelper.hincrby("h", "n", 10));
+        Assertions.assertEquals(1, redisHelper.hdel("h", "a"));
+        Assertions.assertFalse(redisHelper.hexists("h", "a"));
+        Assertions.assertEquals(3, redisHelper.hgetall("h").size());
+    }
+
+    @Test
+    void sets() {
+        Assertions.assertEquals(3, redisHelper.sadd("set", "a", "b", "c"));
+        Assertions.assertEquals(3, redisHelper.scard("set"));
+        Assertions.assertTrue(redisHelper.sismember("set", "a"));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), redisHelper.smembers("set"));
+        Assertions.assertNotNull(redisHelper.srandmember("set"));
+        Assertions.assertEquals(2, redisHelper.srandmember("set", 2).size());
+        Assertions.assertEquals(1, redisHelper.srem("set", "a"));
+        Assertions.assertNotNull(redisHelper.spop("set"));
+        Assertions.assertEquals(1, redisHelper.scard("set"));
+    }
+
+    @Test
+    void sortedSets() {
+        Map<String, Long> members = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            members.put("m" + i, (long) i);
+        }
+        Assertions.assertEquals(10, redisHelper.zadd("z", members));
+        Assertions.assertTrue(redisHelper.zadd("z", "m10", 10));
+        Assertions.assertEquals(11, redisHelper.zcard("z"));
+        Assertions.assertEquals(5L, redisHelper.zscore("z", "m5"));
+        Assertions.assertEquals(15L, redisHelper.zincrby("z", "m5", 10));
+        Assertions.assertEquals(10, redisHelper.zrank("z", "m5"));
+        Assertions.assertEquals(0, redisHelper.zrevrank("z", "m5"));
+        Assertions.assertEquals(new LinkedHashSet<>(Arrays.asList("m0", "m1", "m2")), redisHelper.zrange("z", 0, 2));
+        Assertions.assertEquals(new LinkedHashSet<>(Arrays.asList("m5", "m10")), redisHelper.zrevrange("z", 0, 1));
+        Assertions.assertEquals(2, redisHelper.zrangeByScore("z", 1, 4, false, false).size());
+        Assertions.assertEquals(4, redisHelper.zrevrangeByScore("z", 1, 4, true, true).size());
+        Set<IZSetTuple> tuples = redisHelper.zrangeByScoreWithScores("z", 9, 100, true, true);
+        Assertions.assertEquals(9L, tuples.iterator().next().getScore());
+        Assertions.assertEquals(15L, redisHelper.zrevrangeWithScores("z", 0, 0).iterator().next().getScore());
+        Assertions.assertEquals(4, redisHelper.zcount("z", 0, 3));
+        Assertions.assertEquals(2, redisHelper.zrem("z", "m0", "m1"));
+        Assertions.assertEquals(9, redisHelper.zcard("z"));
+    }
+
+    @Test
+    void scan() {
+        for (int i = 0; i < 100; i++) {
+            redisHelper.set("scan:" + i, i);
+        }
+        redisHelper.set("other", 1);
+        Set<String> keys = new HashSet<>();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            try (Cursor<byte[]> cursor = connection.scan(ScanOptions.scanOptions().match("scan:*").count(7).build())) {
+                while (cursor.hasNext()) {
+                    String key = new String(cursor.next());
+                    keys.add(key);
+                    connection.del(key.getBytes());
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        });
+        Assertions.assertEquals(100, keys.size());
+        Assertions.assertTrue(redisHelper.exists("other"));
+    }
+
+    @Test
+    void script() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>(
+                "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+        redisHelper.set("lock", "salt");
+        Assertions.assertEquals(0L, redisTemplate.execute(script, Collections.singletonList("lock"), "other"));
+        Assertions.assertEquals(1L, redisTemplate.execute(script, Collections.singletonList("lock"), "salt"));
+        Assertions.assertFalse(redisHelper.exists("lock"));
+    }
+
+    @Test
+    void publishSubscribe() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((Message message, byte[] pattern) -> received.add(new String(message.getBody())),
+                new ChannelTopic("channel"));
+        container.afterPropertiesSet();
+        container.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            String message = null;
+            while (message == null && System.currentTimeMillis() < deadline) {
+                redisTemplate.convertAndSend("channel", "hello");
+                message = received.poll(100, TimeUnit.MILLISECONDS);
+            }
+            Assertions.assertNotNull(message);
+        } finally {
+            container.stop();
+            container.destroy();
+        }
+    }
+}
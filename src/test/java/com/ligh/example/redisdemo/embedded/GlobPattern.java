@@ -0,0 +1,79 @@
+package com.ligh.example.redisdemo.embedded;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * @ClassName GlobPattern
+ * @Description redis风格的通配符匹配，支持 * ? [abc] [^a] [a-z] 以及 \ 转义
+ * @Author 李光华
+ * @Date 2020/12/10 9:50
+ **/
+final class GlobPattern {
+
+    private static final ConcurrentHashMap<String, Pattern> CACHE = new ConcurrentHashMap<>();
+
+    private GlobPattern() {
+    }
+
+    static boolean matches(String glob, String value) {
+        if ("*".equals(glob)) {
+            return true;
+        }
+        return CACHE.computeIfAbsent(glob, GlobPattern::compile).matcher(value).matches();
+    }
+
+    private static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        i++;
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                    } else {
+                        regex.append("\\\\");
+                    }
+                    break;
+                case '[':
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                        break;
+                    }
+                    regex.append('[');
+                    int j = i + 1;
+                    if (glob.charAt(j) == '^') {
+                        regex.append('^');
+                        j++;
+                    }
+                    for (; j < end; j++) {
+                        char rc = glob.charAt(j);
+                        if (rc == '-' && j > i + 1 && j + 1 < end) {
+                            regex.append('-');
+                        } else {
+                            if ("\\[]^-&".indexOf(rc) >= 0) {
+                                regex.append('\\');
+                            }
+                            regex.append(rc);
+                        }
+                    }
+                    regex.append(']');
+                    i = end;
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            i++;
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
@@ -0,0 +1,159 @@
+package com.ligh.example.redisdemo.embedded;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName Resp
+ * @Description RESP2协议的编解码
+ * 所有字符串都按ISO-8859-1与字节一一对应，保证二进制安全
+ * 回复对象约定：String为bulk string，null为null bulk，Long为integer，List为array，
+ * Status为simple string，ErrorReply为error，NULL_ARRAY为null array
+ * @Author 李光华
+ * @Date 2020/12/10 9:30
+ **/
+final class Resp {
+
+    static final Object NULL_ARRAY = new Object();
+
+    static final Status OK = new Status("OK");
+
+    static final Status PONG = new Status("PONG");
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private Resp() {
+    }
+
+    /**
+     * 读取一条命令，连接关闭时返回null
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static List<String> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            //inline命令，方便telnet调试
+            String line = ((char) type + readLine(in)).trim();
+            return line.isEmpty() ? new ArrayList<>() : Arrays.asList(line.split("\\s+"));
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<String> args = new ArrayList<>(Math.max(count, 0));
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Protocol error: expected '$'");
+            }
+            int len = Integer.parseInt(readLine(in));
+            byte[] buf = new byte[len];
+            readFully(in, buf);
+            if (in.read() != '\r' || in.read() != '\n') {
+                throw new IOException("Protocol error: expected CRLF");
+            }
+            args.add(new String(buf, StandardCharsets.ISO_8859_1));
+        }
+        return args;
+    }
+
+    static void write(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write(bytes("$-1"));
+            out.write(CRLF);
+        } else if (reply == NULL_ARRAY) {
+            out.write(bytes("*-1"));
+            out.write(CRLF);
+        } else if (reply instanceof String) {
+            byte[] data = ((String) reply).getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bytes("$" + data.length));
+            out.write(CRLF);
+            out.write(data);
+            out.write(CRLF);
+        } else if (reply instanceof Long || reply instanceof Integer) {
+            out.write(bytes(":" + reply));
+            out.write(CRLF);
+        } else if (reply instanceof Status) {
+            out.write(bytes("+" + ((Status) reply).message));
+            out.write(CRLF);
+        } else if (reply instanceof ErrorReply) {
+            out.write(bytes("-" + ((ErrorReply) reply).message));
+            out.write(CRLF);
+        } else if (reply instanceof List) {
+            List<?> list = (List<?>) reply;
+            out.write(bytes("*" + list.size()));
+            out.write(CRLF);
+            for (Object item : list) {
+                write(out, item);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported reply type: " + reply.getClass());
+        }
+    }
+
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '\r') {
+                if (in.read() != '\n') {
+                    throw new IOException("Protocol error: expected LF");
+                }
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buf) throws IOException {
+        int offset = 0;
+        while (offset < buf.length) {
+            int n = in.read(buf, offset, buf.length - offset);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            offset += n;
+        }
+    }
+
+    static final class Status {
+        final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+    }
+
+    static final class ErrorReply {
+        final String message;
+
+        ErrorReply(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * 命令执行出错，转换为error回复
+     */
+    static final class CommandException extends RuntimeException {
+        private static final long serialVersionUID = -2981473251563410236L;
+
+        CommandException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IZSetTuple;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @ClassName AsyncRedisHelperTest
+ * @Description 异步接口测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/22 16:10
+ **/
+class AsyncRedisHelperTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final AsyncRedisHelper asyncRedisHelper = new AsyncRedisHelper(new ReactiveRedisHelper(
+            redis.getRedisConfig().reactiveRedisTemplate(redis.getConnectionFactory())));
+
+    @Test
+    void fanOut() {
+        CompletableFuture.allOf(
+                asyncRedisHelper.set("a:str", "v"),
+                asyncRedisHelper.hset("a:hash", "f", 1),
+                asyncRedisHelper.zadd("a:zset", "m1", 1),
+                asyncRedisHelper.zadd("a:zset", "m2", 2)).join();
+
+        // 三个命令同时发出，统一等待
+        CompletableFuture<String> str = asyncRedisHelper.get("a:str", String.class);
+        CompletableFuture<Integer> field = asyncRedisHelper.hget("a:hash", "f", Integer.class);
+        CompletableFuture<List<IZSetTuple>> tuples = asyncRedisHelper.zrangeWithScores("a:zset", 0, -1);
+        CompletableFuture.allOf(str, field, tuples).join();
+
+        Assertions.assertEquals("v", str.join());
+        Assertions.assertEquals(1, field.join());
+        Assertions.assertEquals(2, tuples.join().size());
+        Assertions.assertEquals("m2", tuples.join().get(1).getMember());
+    }
+
+    @Test
+    void emptyResults() {
+        Assertions.assertNull(asyncRedisHelper.get("a:none").join());
+        Assertions.assertNull(asyncRedisHelper.zscore("a:none", "m").join());
+        Assertions.assertTrue(asyncRedisHelper.lrange("a:none", 0, -1, String.class).join().isEmpty());
+        Map<String, Object> entries = asyncRedisHelper.hgetall("a:none").join();
+        Assertions.assertTrue(entries.isEmpty());
+        Assertions.assertEquals(Arrays.asList(null, null), asyncRedisHelper.mget(Arrays.asList("a:x", "a:y")).join());
+    }
+}
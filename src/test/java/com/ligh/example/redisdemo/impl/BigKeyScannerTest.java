@@ -0,0 +1,77 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName BigKeyScannerTest
+ * @Description 大key扫描测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/24 14:00
+ **/
+class BigKeyScannerTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    private final BigKeyScanner scanner = new BigKeyScanner(redis.getRedisTemplate());
+
+    @Test
+    void largestKeysPerTypeAndPrefix() {
+        for (int i = 0; i < 30; i++) {
+            redisHelper.set("user:" + i, "v" + i);
+        }
+        Map<String, Object> bigHash = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            bigHash.put("f" + i, "value-" + i);
+        }
+        redisHelper.hmset("item:big", bigHash);
+        redisHelper.hset("item:small", "f", 1);
+        for (int i = 0; i < 50; i++) {
+            redisHelper.zadd("rank:day", "m" + i, i);
+        }
+        redisHelper.rpush("queue", "a", "b", "c");
+
+        BigKeyScanner.Options options = new BigKeyScanner.Options();
+        options.setBatchSize(7);
+        options.setTopN(3);
+        options.setKeysPerSecond(0);
+        BigKeyReport report = scanner.scan(options);
+
+        Assertions.assertEquals(34, report.getScannedKeys());
+        List<BigKeyReport.BigKey> hashes = report.getTypes().get("hash").getLargest();
+        Assertions.assertEquals("item:big", hashes.get(0).getKey());
+        Assertions.assertEquals(200, hashes.get(0).getLength());
+        Assertions.assertTrue(hashes.get(0).getMemoryBytes() > hashes.get(1).getMemoryBytes());
+        Assertions.assertEquals(3, report.getTypes().get("string").getLargest().size());
+        Assertions.assertEquals(30, report.getTypes().get("string").getCount());
+        Assertions.assertEquals(50, report.getTypes().get("zset").getLargest().get(0).getLength());
+
+        Assertions.assertEquals(30, report.getPrefixes().get("user:").getCount());
+        Assertions.assertEquals(2, report.getPrefixes().get("item:").getCount());
+        Assertions.assertEquals("queue", report.getPrefixes().get(BigKeyReport.NO_PREFIX).getLargest().get(0).getKey());
+        Assertions.assertTrue(report.format().contains("item:big"));
+    }
+
+    @Test
+    void rateLimitAndMaxKeys() {
+        for (int i = 0; i < 40; i++) {
+            redisHelper.set("k:" + i, i);
+        }
+        BigKeyScanner.Options options = new BigKeyScanner.Options();
+        options.setBatchSize(10);
+        options.setKeysPerSecond(100);
+        options.setMaxKeys(30);
+        BigKeyReport report = scanner.scan(options);
+        Assertions.assertEquals(30, report.getScannedKeys());
+        // 30个key按每秒100个限速，前两批之后至少等200ms
+        Assertions.assertTrue(report.getElapsedMillis() >= 200, "elapsed " + report.getElapsedMillis());
+    }
+}
@@ -0,0 +1,79 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName CacheRefresherTest
+ * @Description 过期抖动和XFetch提前加载测试
+ * @Author 李光华
+ * @Date 2020/12/25 16:00
+ **/
+class CacheRefresherTest {
+
+    @Test
+    void jitterOnlyShortensWithinRange() {
+        RedisHelperProperties.LoaderProperties properties = new RedisHelperProperties.LoaderProperties();
+        properties.setTtlJitter(0.2D);
+        CacheRefresher refresher = new CacheRefresher(properties);
+        boolean varied = false;
+        for (int i = 0; i < 1000; i++) {
+            long expire = refresher.jitter(100);
+            Assertions.assertTrue(expire >= 80 && expire <= 100, String.valueOf(expire));
+            varied |= expire != 100;
+        }
+        Assertions.assertTrue(varied);
+        Assertions.assertEquals(1, refresher.jitter(1));
+    }
+
+    @Test
+    void refreshProbabilityGrowsWithRecomputeCost() {
+        CacheRefresher refresher = new CacheRefresher(new RedisHelperProperties.LoaderProperties());
+        //没有本地加载耗时时不提前加载
+        Assertions.assertFalse(refresher.shouldRefresh("k", 1));
+
+        refresher.recordRecompute("k", TimeUnit.MILLISECONDS.toNanos(100));
+        int nearExpiry = 0;
+        int farFromExpiry = 0;
+        for (int i = 0; i < 10_000; i++) {
+            nearExpiry += refresher.shouldRefresh("k", 50) ? 1 : 0;
+            farFromExpiry += refresher.shouldRefresh("k", 60_000) ? 1 : 0;
+        }
+        // P = exp(-ttl / delta)：剩余50ms约61%，剩余60s几乎为0
+        Assertions.assertTrue(nearExpiry > 5000 && nearExpiry < 7000, String.valueOf(nearExpiry));
+        Assertions.assertEquals(0, farFromExpiry);
+        Assertions.assertFalse(refresher.shouldRefresh("k", -1));
+    }
+
+    @Test
+    void backgroundRefreshRunsOncePerKey() throws InterruptedException {
+        RedisHelperProperties.LoaderProperties properties = new RedisHelperProperties.LoaderProperties();
+        properties.setBackgroundRefresh(true);
+        CacheRefresher refresher = new CacheRefresher(properties);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Runnable task = () -> {
+            runs.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        Assertions.assertTrue(refresher.refreshAsync("k", task));
+        Assertions.assertTrue(refresher.refreshAsync("k", task));
+        release.countDown();
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        refresher.shutdown();
+        Assertions.assertEquals(1, runs.get());
+
+        Assertions.assertFalse(new CacheRefresher(new RedisHelperProperties.LoaderProperties()).refreshAsync("k", task));
+    }
+}
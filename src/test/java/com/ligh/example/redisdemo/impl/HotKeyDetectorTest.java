@@ -0,0 +1,59 @@
+package com.ligh.example.redisdemo.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @ClassName HotKeyDetectorTest
+ * @Description 热点key探测测试
+ * @Author 李光华
+ * @Date 2020/12/23 16:30
+ **/
+class HotKeyDetectorTest {
+
+    @Test
+    void heavyHittersAmongManyColdKeys() {
+        HotKeyDetector detector = new HotKeyDetector(1, 3, 60_000L, 4, 1024, 100);
+        for (int i = 0; i < 20_000; i++) {
+            detector.record("cold:" + i);
+            if (i % 10 == 0) {
+                detector.record("hot:1");
+            }
+            if (i % 20 == 0) {
+                detector.record("hot:2");
+            }
+        }
+        List<HotKeyDetector.HotKey> hotKeys = detector.currentHotKeys();
+        Assertions.assertEquals("hot:1", hotKeys.get(0).getKey());
+        Assertions.assertEquals("hot:2", hotKeys.get(1).getKey());
+        // count-min只会高估
+        Assertions.assertTrue(hotKeys.get(0).getCount() >= 2000);
+        Assertions.assertTrue(hotKeys.get(1).getCount() >= 1000);
+        for (HotKeyDetector.HotKey hotKey : hotKeys) {
+            Assertions.assertTrue(hotKey.getKey().startsWith("hot:") || hotKey.getCount() < 1000);
+        }
+    }
+
+    @Test
+    void windowRotationPublishesLastWindow() throws InterruptedException {
+        HotKeyDetector detector = new HotKeyDetector(1, 5, 100L, 4, 256, 10);
+        AtomicReference<List<HotKeyDetector.HotKey>> published = new AtomicReference<>();
+        detector.setListener(published::set);
+        for (int i = 0; i < 50; i++) {
+            detector.record("hot:1");
+        }
+        detector.record("cold:1");
+        Assertions.assertTrue(detector.hotKeys().isEmpty());
+
+        Thread.sleep(150);
+        List<HotKeyDetector.HotKey> hotKeys = detector.hotKeys();
+        Assertions.assertEquals(1, hotKeys.size());
+        Assertions.assertEquals("hot:1", hotKeys.get(0).getKey());
+        Assertions.assertEquals(50, hotKeys.get(0).getCount());
+        Assertions.assertSame(hotKeys, published.get());
+        Assertions.assertTrue(detector.currentHotKeys().isEmpty());
+    }
+}
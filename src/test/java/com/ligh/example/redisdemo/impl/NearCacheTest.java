@@ -0,0 +1,74 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName NearCacheTest
+ * @Description 近端缓存的命中、失效测试，不需要redis
+ * @Author 李光华
+ * @Date 2020/12/8 15:20
+ **/
+class NearCacheTest {
+
+    private NearCache newCache(String... prefixes) {
+        RedisHelperProperties.NearCacheProperties properties = new RedisHelperProperties.NearCacheProperties();
+        Collections.addAll(properties.getPrefixes(), prefixes);
+        return new NearCache(properties);
+    }
+
+    @Test
+    void loadOnceThenHit() {
+        NearCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Object value = cache.get("user:1", k -> {
+                loads.incrementAndGet();
+                return cache.entry("ligh", 4, -1L);
+            });
+            Assertions.assertEquals("ligh", value);
+        }
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(2, cache.stats().hitCount());
+        Assertions.assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void missingKeyIsNotCached() {
+        NearCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("user:1", k -> {
+            loads.incrementAndGet();
+            return cache.entry(null, 0, -2L);
+        });
+        cache.get("user:1", k -> {
+            loads.incrementAndGet();
+            return cache.entry(null, 0, -2L);
+        });
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateDropsHashFields() {
+        NearCache cache = newCache();
+        cache.hget("hash", "a", (k, f) -> cache.entry("1", 1, -1L));
+        cache.hget("hash", "b", (k, f) -> cache.entry("2", 1, -1L));
+        cache.invalidate("hash");
+        Object value = cache.hget("hash", "a", (k, f) -> cache.entry("changed", 7, -1L));
+        Assertions.assertEquals("changed", value);
+        Assertions.assertEquals(1, cache.invalidations());
+    }
+
+    @Test
+    void prefixSwitch() {
+        NearCache cache = newCache("user:", "item:");
+        Assertions.assertTrue(cache.isCacheable("user:1"));
+        Assertions.assertTrue(cache.isCacheable("item:1"));
+        Assertions.assertFalse(cache.isCacheable("order:1"));
+        Assertions.assertTrue(newCache().isCacheable("order:1"));
+    }
+}
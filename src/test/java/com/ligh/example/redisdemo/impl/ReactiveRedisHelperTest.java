@@ -0,0 +1,102 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IZSetTuple;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * @ClassName ReactiveRedisHelperTest
+ * @Description 响应式接口测试，使用内嵌redis，和同步接口读写同一份数据
+ * @Author 李光华
+ * @Date 2020/12/22 11:00
+ **/
+class ReactiveRedisHelperTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    private final ReactiveRedisHelper reactiveRedisHelper = new ReactiveRedisHelper(
+            redis.getRedisConfig().reactiveRedisTemplate(redis.getConnectionFactory()));
+
+    @Test
+    void stringCommands() {
+        Assertions.assertTrue(reactiveRedisHelper.set("r:str", "hello").block());
+        Assertions.assertEquals("hello", redisHelper.get("r:str", String.class));
+        Assertions.assertEquals("hello", reactiveRedisHelper.get("r:str", String.class).block());
+        // 类型不匹配时为空，不报错
+        Assertions.assertNull(reactiveRedisHelper.get("r:str", Integer.class).block());
+        Assertions.assertEquals(-1L, reactiveRedisHelper.ttl("r:str").block());
+        Assertions.assertEquals(-2L, reactiveRedisHelper.ttl("r:none").block());
+
+        Assertions.assertFalse(reactiveRedisHelper.setIfValueAbSent("r:str", "other", 60).block());
+        Assertions.assertEquals(2L, reactiveRedisHelper.incrby("r:num", 2).block());
+        Assertions.assertEquals(3L, reactiveRedisHelper.incr("r:num").block());
+        Assertions.assertEquals(Arrays.asList("hello", 3), reactiveRedisHelper.mget(Arrays.asList("r:str", "r:num")).block());
+
+        Assertions.assertTrue(reactiveRedisHelper.expire("r:str", 60).block());
+        long ttl = reactiveRedisHelper.ttl("r:str").block();
+        Assertions.assertTrue(ttl > 0 && ttl <= 60);
+        Assertions.assertTrue(reactiveRedisHelper.del("r:str").block());
+        Assertions.assertFalse(reactiveRedisHelper.exists("r:str").block());
+    }
+
+    @Test
+    void hashCommands() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("a", "1");
+        map.put("b", 2);
+        Assertions.assertTrue(reactiveRedisHelper.hmset("r:hash", map).block());
+        Assertions.assertEquals(2, redisHelper.hget("r:hash", "b", Integer.class));
+        Assertions.assertEquals("1", reactiveRedisHelper.hget("r:hash", "a", String.class).block());
+        Assertions.assertEquals(5L, reactiveRedisHelper.hincrby("r:hash", "b", 3).block());
+
+        Map<String, Object> entries = reactiveRedisHelper.hgetall("r:hash")
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue).block();
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals(5, entries.get("b"));
+        Assertions.assertEquals(1L, reactiveRedisHelper.hdel("r:hash", "a").block());
+        Assertions.assertEquals(1L, reactiveRedisHelper.hlen("r:hash").block());
+    }
+
+    @Test
+    void listAndSetCommands() {
+        Assertions.assertEquals(3L, reactiveRedisHelper.rpush("r:list", "a", "b", "c").block());
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"),
+                reactiveRedisHelper.lrange("r:list", 0, -1, String.class).collectList().block());
+        Assertions.assertEquals("a", reactiveRedisHelper.lpop("r:list", String.class).block());
+        Assertions.assertEquals(2L, reactiveRedisHelper.listLen("r:list").block());
+
+        Assertions.assertEquals(2L, reactiveRedisHelper.sadd("r:set", "x", "y").block());
+        Assertions.assertTrue(reactiveRedisHelper.sismember("r:set", "x").block());
+        List<String> members = reactiveRedisHelper.smembers("r:set", String.class).sort().collectList().block();
+        Assertions.assertEquals(Arrays.asList("x", "y"), members);
+    }
+
+    @Test
+    void zsetCommands() {
+        reactiveRedisHelper.zadd("r:zset", "a", 3).block();
+        reactiveRedisHelper.zadd("r:zset", "b", 1).block();
+        reactiveRedisHelper.zadd("r:zset", "c", 2).block();
+        Assertions.assertEquals(3L, reactiveRedisHelper.zscore("r:zset", "a").block());
+        Assertions.assertEquals(4L, reactiveRedisHelper.zincrby("r:zset", "c", 2).block());
+        Assertions.assertEquals(2L, reactiveRedisHelper.zcount("r:zset", 1, 3).block());
+        Assertions.assertEquals(0L, reactiveRedisHelper.zrevrank("r:zset", "c").block());
+
+        List<IZSetTuple> tuples = reactiveRedisHelper.zrangeWithScores("r:zset", 0, -1).collectList().block();
+        Assertions.assertEquals(Arrays.asList("b", "a", "c"),
+                tuples.stream().map(IZSetTuple::getMember).collect(Collectors.toList()));
+        Assertions.assertEquals(4L, tuples.get(2).getScore());
+        Assertions.assertEquals(Arrays.asList("c", "a"), reactiveRedisHelper.zrevrange("r:zset", 0, 1).collectList().block());
+        Assertions.assertEquals(1L, reactiveRedisHelper.zrem("r:zset", "a").block());
+        Assertions.assertEquals(2L, reactiveRedisHelper.zcard("r:zset").block());
+    }
+}
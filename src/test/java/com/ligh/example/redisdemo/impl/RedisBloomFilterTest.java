@@ -0,0 +1,91 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName RedisBloomFilterTest
+ * @Description 布隆过滤器测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/28 14:30
+ **/
+class RedisBloomFilterTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisTemplate<String, Object> redisTemplate = redis.getRedisTemplate();
+
+    @Test
+    void scalesPastCapacityWithoutFalseNegatives() {
+        RedisBloomFilter.Options options = new RedisBloomFilter.Options();
+        options.setExpectedInsertions(200);
+        options.setFpp(0.01D);
+        RedisBloomFilter filter = new RedisBloomFilter(redisTemplate, "bf:user", options);
+        Assertions.assertEquals(7, filter.getHashCount());
+
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            items.add("user:" + i);
+        }
+        long added = filter.addAll(items).stream().filter(Boolean::booleanValue).count();
+        Assertions.assertTrue(added > 590, String.valueOf(added));
+        Assertions.assertEquals(added, filter.count());
+        // 超过第一层容量后启用了新层
+        Assertions.assertTrue(redisTemplate.hasKey("bf:user:1"));
+        Assertions.assertFalse(filter.add("user:1"));
+        Assertions.assertTrue(filter.mightContainAll(items).stream().allMatch(Boolean::booleanValue));
+
+        List<String> absent = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            absent.add("absent:" + i);
+        }
+        long falsePositives = filter.mightContainAll(absent).stream().filter(Boolean::booleanValue).count();
+        Assertions.assertTrue(falsePositives < 50, String.valueOf(falsePositives));
+
+        filter.delete();
+        Assertions.assertFalse(filter.mightContain("user:1"));
+        Assertions.assertEquals(0, filter.count());
+    }
+
+    @Test
+    void localCopyAnswersWithoutRedis() throws InterruptedException {
+        RedisBloomFilter.Options options = new RedisBloomFilter.Options();
+        options.setExpectedInsertions(1000);
+        options.setLocalCopy(true);
+        options.setLocalRefreshMillis(200);
+        RedisBloomFilter local = new RedisBloomFilter(redisTemplate, "bf:order", options);
+        RedisBloomFilter.Options remoteOptions = new RedisBloomFilter.Options();
+        remoteOptions.setExpectedInsertions(1000);
+        RedisBloomFilter remote = new RedisBloomFilter(redisTemplate, "bf:order", remoteOptions);
+
+        local.addAll(Arrays.asList("order:1", "order:2"));
+        Assertions.assertEquals(Arrays.asList(true, true, false), local.mightContainAll(Arrays.asList("order:1", "order:2", "order:3")));
+        // 本节点加入的元素立即可见
+        local.add("order:4");
+        Assertions.assertTrue(local.mightContain("order:4"));
+        // 其他节点加入的元素在重新加载后可见
+        remote.add("order:3");
+        Assertions.assertTrue(remote.mightContain("order:4"));
+        Assertions.assertFalse(local.mightContain("order:3"));
+        Thread.sleep(250);
+        Assertions.assertTrue(local.mightContain("order:3"));
+    }
+
+    @Test
+    void rejectsAbsentKeysBeforeGet() {
+        RedisHelper redisHelper = new RedisHelper(redisTemplate, redisTemplate.opsForHash(), null);
+        RedisBloomFilter filter = new RedisBloomFilter(redisTemplate, "bf:goods", new RedisBloomFilter.Options());
+        redisHelper.set("goods:1", "phone");
+        redisHelper.set("goods:2", "pad");
+        filter.add("goods:1");
+        Assertions.assertEquals("phone", redisHelper.get("goods:1", String.class, filter));
+        Assertions.assertNull(redisHelper.get("goods:2", String.class, filter));
+    }
+}
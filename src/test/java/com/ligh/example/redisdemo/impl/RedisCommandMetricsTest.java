@@ -0,0 +1,125 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @ClassName RedisCommandMetricsTest
+ * @Description 命令指标测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/23 11:00
+ **/
+class RedisCommandMetricsTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private SimpleMeterRegistry registry;
+
+    private RedisHelper redisHelper;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        redisHelper = redis.newRedisHelper(new RedisHelperProperties());
+        redisHelper.setMetrics(new RedisCommandMetrics(registry, Collections.singletonList("user:"),
+                new double[]{0.5, 0.99}, false));
+    }
+
+    @Test
+    void timerAndPayloadByGroup() {
+        redisHelper.set("user:1", "abcdefgh");
+        redisHelper.get("user:1");
+        redisHelper.get("order:1");
+
+        Timer set = registry.get(RedisCommandMetrics.TIMER_NAME).tag("command", "set").tag("group", "user:").timer();
+        Assertions.assertEquals(1, set.count());
+        Assertions.assertTrue(set.totalTime(java.util.concurrent.TimeUnit.NANOSECONDS) > 0);
+        Assertions.assertEquals(1, registry.get(RedisCommandMetrics.TIMER_NAME)
+                .tag("command", "get").tag("group", RedisCommandMetrics.OTHER_GROUP).timer().count());
+
+        DistributionSummary payload = registry.get(RedisCommandMetrics.PAYLOAD_NAME)
+                .tag("command", "get").tag("group", "user:").summary();
+        Assertions.assertEquals(1, payload.count());
+        // json序列化后带引号
+        Assertions.assertEquals(10, payload.totalAmount());
+    }
+
+    @Test
+    void nestedCallsRecordedOnce() {
+        redisHelper.set("user:2", 5);
+        Assertions.assertEquals(5, redisHelper.getInt("user:2"));
+        Assertions.assertEquals(1, registry.get(RedisCommandMetrics.TIMER_NAME)
+                .tag("command", "getInt").tag("group", "user:").timer().count());
+        Assertions.assertNull(registry.find(RedisCommandMetrics.TIMER_NAME).tag("command", "get").timer());
+    }
+
+    @Test
+    void swallowedErrorsCounted() {
+        redisHelper.set("user:3", "not a number");
+        Assertions.assertEquals(0, redisHelper.incr("user:3"));
+        Counter errors = registry.get(RedisCommandMetrics.ERROR_NAME).tag("command", "incr").tag("group", "user:").counter();
+        Assertions.assertEquals(1, errors.count());
+        Assertions.assertEquals(0, registry.get(RedisCommandMetrics.ERROR_NAME).tag("command", "set").counter().count());
+    }
+
+    @Test
+    void hotKeysWithoutMeterRegistry() {
+        RedisCommandMetrics metrics = new RedisCommandMetrics(null, null, null, false);
+        HotKeyDetector detector = new HotKeyDetector(1, 5, 60_000L, 4, 256, 3);
+        metrics.setHotKeyDetector(detector);
+        redisHelper.setMetrics(metrics);
+        redisHelper.set("user:4", 4);
+        for (int i = 0; i < 3; i++) {
+            // getInt内部调用get，只按最外层记一次
+            redisHelper.getInt("user:4");
+        }
+        List<HotKeyDetector.HotKey> hotKeys = detector.currentHotKeys();
+        Assertions.assertEquals(1, hotKeys.size());
+        Assertions.assertEquals(4, hotKeys.get(0).getCount());
+    }
+
+    @Test
+    void patternCommandsAreNotKeys() {
+        HotKeyDetector detector = new HotKeyDetector(1, 5, 60_000L, 4, 256, 1);
+        RedisCommandMetrics metrics = new RedisCommandMetrics(registry, Collections.singletonList("user:"),
+                null, false);
+        metrics.setHotKeyDetector(detector);
+        redisHelper.setMetrics(metrics);
+        redisHelper.set("user:5", 5);
+        redisHelper.delByPattern("user:");
+        //模式按多key命令处理，不进热点key，也不归到key分组
+        Assertions.assertEquals(Collections.singletonList("user:5"), detector.currentHotKeys().stream()
+                .map(HotKeyDetector.HotKey::getKey).collect(Collectors.toList()));
+        Assertions.assertEquals(1, registry.get(RedisCommandMetrics.TIMER_NAME)
+                .tag("command", "delByPattern").tag("group", RedisCommandMetrics.OTHER_GROUP).timer().count());
+    }
+
+    @Test
+    void scanBatchesRecordedWhileConsuming() {
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            fields.put("f" + i, i);
+        }
+        redisHelper.hmset("user:scan", fields);
+        try (Stream<Map.Entry<String, Integer>> stream = redisHelper.hscan("user:scan", null, 10, Integer.class)) {
+            Assertions.assertEquals(300, stream.count());
+        }
+        //创建游标时取第一批，之后每取一批记录一次
+        Timer hscan = registry.get(RedisCommandMetrics.TIMER_NAME).tag("command", "hscan").tag("group", "user:").timer();
+        Assertions.assertTrue(hscan.count() > 2, "hscan recorded " + hscan.count());
+    }
+}
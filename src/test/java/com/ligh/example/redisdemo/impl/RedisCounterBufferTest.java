@@ -0,0 +1,89 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName RedisCounterBufferTest
+ * @Description 计数器写缓冲测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/29 15:20
+ **/
+class RedisCounterBufferTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    @Test
+    void concurrentIncrementsAreFlushedInBatches() throws Exception {
+        RedisCounterBuffer buffer = new RedisCounterBuffer(redisHelper, properties());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    buffer.incrby("views:1", 1);
+                    buffer.hincrby("likes", "post:1", 2);
+                    buffer.zincrby("rank", "user:1", 3);
+                    if (i % 2500 == 0) {
+                        //刷新和累加并发进行
+                        buffer.flush();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assertions.assertEquals(80_000, buffer.get("views:1"));
+        Assertions.assertEquals(160_000, buffer.hget("likes", "post:1"));
+        Assertions.assertEquals(240_000, buffer.zscore("rank", "user:1"));
+
+        buffer.flush();
+        Assertions.assertEquals(80_000, redisHelper.get("views:1", Integer.class));
+        Assertions.assertEquals(160_000, redisHelper.hget("likes", "post:1", Integer.class));
+        Assertions.assertEquals(240_000, redisHelper.zscore("rank", "user:1"));
+        buffer.close();
+    }
+
+    @Test
+    void idleCountersAreRetiredAndCloseFlushes() {
+        RedisCounterBuffer buffer = new RedisCounterBuffer(redisHelper, properties());
+        buffer.incrby("views:2", 5);
+        Assertions.assertNull(redisHelper.get("views:2", Integer.class));
+        buffer.flush();
+        Assertions.assertEquals(5, redisHelper.get("views:2", Integer.class));
+        //一次刷新没有增量就移除
+        buffer.flush();
+        Assertions.assertEquals(0, buffer.cellCount());
+
+        buffer.incrby("views:2", 2);
+        Assertions.assertEquals(7, buffer.get("views:2"));
+        buffer.close();
+        Assertions.assertEquals(7, redisHelper.get("views:2", Integer.class));
+        //关闭后直接写redis
+        buffer.incrby("views:2", 1);
+        Assertions.assertEquals(8, redisHelper.get("views:2", Integer.class));
+    }
+
+    private static RedisHelperProperties.CounterBufferProperties properties() {
+        RedisHelperProperties.CounterBufferProperties properties = new RedisHelperProperties.CounterBufferProperties();
+        //测试里手动刷新
+        properties.setFlushIntervalMillis(60_000L);
+        properties.setBatchSize(2);
+        properties.setIdleFlushes(1);
+        return properties;
+    }
+}
@@ -0,0 +1,219 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IZSetTuple;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @ClassName RedisHelperTest
+ * @Description RedisHelper测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/24 16:00
+ **/
+class RedisHelperTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisTemplate<String, Object> redisTemplate = redis.getRedisTemplate();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    @Test
+    void delByPatternScansAndUnlinks() {
+        for (int i = 0; i < 2500; i++) {
+            redisHelper.set("session:" + i, i);
+        }
+        redisHelper.set("sessions", "keep");
+        redisHelper.set("user:1", "keep");
+
+        List<Long> progress = new ArrayList<>();
+        long deleted = redisHelper.delByPattern("session:", 1000, progress::add);
+        Assertions.assertEquals(2500, deleted);
+        Assertions.assertEquals(3, progress.size());
+        Assertions.assertEquals(2500L, progress.get(2));
+        Assertions.assertFalse(redisHelper.exists("session:7"));
+        Assertions.assertTrue(redisHelper.exists("user:1"));
+
+        // 原来的实现会删除字面量 "session*"，现在按前缀匹配
+        Assertions.assertTrue(redisHelper.delByPattern("session"));
+        Assertions.assertFalse(redisHelper.exists("sessions"));
+        Assertions.assertFalse(redisHelper.delByPattern("session"));
+    }
+
+    @Test
+    void scanStreams() {
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            fields.put("f" + i, i);
+        }
+        redisHelper.hmset("big:hash", fields);
+        for (int i = 0; i < 300; i++) {
+            redisHelper.sadd("big:set", "m" + i);
+            redisHelper.zadd("big:zset", "m" + i, i);
+        }
+
+        try (Stream<Map.Entry<String, Integer>> stream = redisHelper.hscan("big:hash", null, 50, Integer.class)) {
+            Map<String, Integer> all = stream.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a));
+            Assertions.assertEquals(500, all.size());
+            Assertions.assertEquals(123, all.get("f123"));
+        }
+        try (Stream<Map.Entry<String, Integer>> stream = redisHelper.hscan("big:hash", "f1?", 50, Integer.class)) {
+            Assertions.assertEquals(10, stream.count());
+        }
+        try (Stream<String> stream = redisHelper.sscan("big:set", null, 64, String.class)) {
+            Assertions.assertEquals(300, stream.distinct().count());
+        }
+        try (Stream<IZSetTuple> stream = redisHelper.zscan("big:zset", null, 64)) {
+            Map<String, Long> scores = stream.collect(Collectors.toMap(IZSetTuple::getMember, IZSetTuple::getScore, (a, b) -> a));
+            Assertions.assertEquals(300, scores.size());
+            Assertions.assertEquals(42L, scores.get("m42"));
+        }
+        // 提前结束也能正常关闭游标
+        try (Stream<IZSetTuple> stream = redisHelper.zscan("big:zset", null, 10)) {
+            Assertions.assertEquals(5, stream.limit(5).count());
+        }
+        try (Stream<String> stream = redisHelper.sscan("none", null, 10, String.class)) {
+            Assertions.assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    void batchCommandsKeepKeyOrder() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("batch:a", "a");
+        map.put("batch:b", 2);
+        Assertions.assertTrue(redisHelper.mset(map, 60));
+        Assertions.assertTrue(redisHelper.ttl("batch:a") > 0);
+        Map<String, Object> persistent = new LinkedHashMap<>();
+        persistent.put("batch:c", "c");
+        Assertions.assertTrue(redisHelper.mset(persistent, 0));
+        Assertions.assertEquals(-1, redisHelper.ttl("batch:c"));
+
+        // 不存在的key在对应位置为null
+        List<String> keys = Arrays.asList("batch:c", "batch:none", "batch:a", "batch:b");
+        Assertions.assertEquals(Arrays.asList("c", null, "a", 2), redisHelper.mget(keys));
+        // 类型不匹配的位置也为null
+        Assertions.assertEquals(Arrays.asList(null, null, null, 2), redisHelper.mget(keys, Integer.class));
+        Assertions.assertEquals(Arrays.asList(true, false, true), redisHelper.exists(Arrays.asList("batch:a", "batch:none", "batch:c")));
+
+        Assertions.assertEquals(Arrays.asList(false, true), redisHelper.expire(Arrays.asList("batch:none", "batch:c"), 30));
+        Assertions.assertTrue(redisHelper.ttl("batch:c") > 0 && redisHelper.ttl("batch:c") <= 30);
+
+        redisHelper.hset("batch:h1", "x", 1);
+        redisHelper.hset("batch:h2", "y", "v");
+        List<Map<String, Object>> hashes = redisHelper.hmget(Arrays.asList("batch:h1", "batch:none", "batch:h2"),
+                Arrays.asList("y", "x"));
+        Assertions.assertEquals(3, hashes.size());
+        Assertions.assertEquals(Arrays.asList("y", "x"), new ArrayList<>(hashes.get(0).keySet()));
+        Assertions.assertEquals(Arrays.asList(null, 1), new ArrayList<>(hashes.get(0).values()));
+        Assertions.assertEquals(Arrays.asList(null, null), new ArrayList<>(hashes.get(1).values()));
+        Assertions.assertEquals(Arrays.asList("v", null), new ArrayList<>(hashes.get(2).values()));
+
+        // pipeline结果按命令顺序返回，不存在的值为null
+        List<Object> results = redisHelper.pipelined(ops -> {
+            ops.opsForValue().get("batch:a");
+            ops.opsForValue().increment("batch:b");
+            ops.opsForValue().get("batch:none");
+            ops.opsForHash().get("batch:h2", "y");
+        });
+        Assertions.assertEquals(Arrays.asList("a", 3L, null, "v"), results);
+        Assertions.assertEquals(3, redisHelper.mget(Collections.singletonList("batch:b")).get(0));
+
+        Assertions.assertEquals(3, redisHelper.del(Arrays.asList("batch:a", "batch:none", "batch:b", "batch:c")));
+        Assertions.assertEquals(Arrays.asList(null, null), redisHelper.mget(Arrays.asList("batch:a", "batch:c")));
+    }
+
+    @Test
+    void batchCommandsAcceptEmptyKeys() {
+        List<String> empty = Collections.emptyList();
+        Assertions.assertTrue(redisHelper.mget(empty).isEmpty());
+        Assertions.assertTrue(redisHelper.mget(null).isEmpty());
+        Assertions.assertTrue(redisHelper.mset(Collections.emptyMap(), 60));
+        Assertions.assertTrue(redisHelper.exists((List<String>) null).isEmpty());
+        Assertions.assertTrue(redisHelper.expire(empty, 10).isEmpty());
+        Assertions.assertTrue(redisHelper.hmget(empty, Collections.singletonList("f")).isEmpty());
+        Assertions.assertEquals(0, redisHelper.del(empty));
+        Assertions.assertTrue(redisHelper.pipelined(ops -> { }).isEmpty());
+    }
+
+    @Test
+    void getOrLoadCoalescesConcurrentMisses() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> redisHelper.getOrLoad("user:name:1", () -> {
+                loads.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "tom";
+            }, 60, String.class)));
+        }
+        executor.shutdown();
+        for (Future<String> result : results) {
+            Assertions.assertEquals("tom", result.get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals("tom", redisHelper.get("user:name:1", String.class));
+        Assertions.assertTrue(redisHelper.ttl("user:name:1") > 0);
+
+        // loader返回null时不写缓存
+        Assertions.assertNull(redisHelper.getOrLoad("user:name:2", () -> null, 60, String.class));
+        Assertions.assertFalse(redisHelper.exists("user:name:2"));
+    }
+
+    @Test
+    void getOrLoadRefreshesEarlyInBackground() throws Exception {
+        RedisHelperProperties.LoaderProperties properties = new RedisHelperProperties.LoaderProperties();
+        properties.setBackgroundRefresh(true);
+        //beta足够大时每次命中都提前加载
+        properties.setBeta(1_000_000D);
+        CacheRefresher cacheRefresher = new CacheRefresher(properties);
+        RedisHelper helper = new RedisHelper(redisTemplate, redisTemplate.opsForHash(), null);
+        helper.setCacheRefresher(cacheRefresher);
+        AtomicInteger version = new AtomicInteger();
+        Supplier<Integer> loader = () -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return version.incrementAndGet();
+        };
+
+        Assertions.assertEquals(1, helper.getOrLoad("score:1", loader, 100, Integer.class));
+        long ttl = helper.ttl("score:1");
+        Assertions.assertTrue(ttl >= 90 && ttl <= 100, String.valueOf(ttl));
+        // 命中后返回旧值，后台重新加载
+        Assertions.assertEquals(1, helper.getOrLoad("score:1", loader, 100, Integer.class));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (helper.get("score:1", Integer.class) != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(2, helper.get("score:1", Integer.class));
+        cacheRefresher.shutdown();
+    }
+}
@@ -0,0 +1,259 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName RedisLockTest
+ * @Description 分布式锁测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/16 14:20
+ **/
+class RedisLockTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private static RedisMessageListenerContainer container;
+
+    private static RedisHelper redisHelper;
+
+    private static LockNotifier lockNotifier;
+
+    @BeforeAll
+    static void subscribe() throws Exception {
+        redisHelper = redis.getRedisHelper();
+        lockNotifier = new LockNotifier();
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redis.getConnectionFactory());
+        container.addMessageListener(lockNotifier, new ChannelTopic(LockNotifier.CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        // 等订阅生效
+        long deadline = System.currentTimeMillis() + 5000;
+        while (redisHelper.publish(LockNotifier.CHANNEL, "warmup") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @AfterAll
+    static void unsubscribe() throws Exception {
+        container.stop();
+        container.destroy();
+    }
+
+    @Test
+    void tryLockWithoutWait() {
+        RedisLock lock = new RedisLock(redisHelper, lockNotifier);
+        Assertions.assertTrue(lock.tryLock("lock:a", "s1", 0));
+        Assertions.assertFalse(lock.tryLock("lock:a", "s2", 0));
+        Assertions.assertFalse(lock.unLock("lock:a", "s2"));
+        Assertions.assertTrue(redisHelper.exists("lock:a"));
+        Assertions.assertTrue(lock.unLock("lock:a", "s1"));
+        Assertions.assertFalse(redisHelper.exists("lock:a"));
+        //没加锁时解锁也算成功
+        Assertions.assertTrue(lock.unLock("lock:a", "s1"));
+    }
+
+    @Test
+    void waiterWakesOnRelease() throws Exception {
+        RedisLock lock = new RedisLock(redisHelper, lockNotifier);
+        //不做本地合并，验证跨JVM时依赖的释放通知
+        lock.setLocalCoalescing(false, 0);
+        lock.setFallbackPollMillis(10000L);
+        Assertions.assertTrue(lock.tryLock("lock:b", "holder", 0));
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            boolean locked = lock.tryLock("lock:b", "waiter", 10);
+            return locked ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : -1L;
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (lockNotifier.waiting("lock:b") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        lock.unLock("lock:b", "holder");
+        long waited = waiter.get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(waited >= 0 && waited < 3000, "waited " + waited);
+        Assertions.assertEquals("waiter", redisHelper.getString("lock:b"));
+        Assertions.assertEquals(0, lockNotifier.waiting("lock:b"));
+    }
+
+    @Test
+    void fallbackPollWithoutNotifier() {
+        RedisLock lock = new RedisLock(redisHelper);
+        lock.setFallbackPollMillis(50L);
+        Assertions.assertTrue(redisHelper.set("lock:c", "holder", 1));
+        long start = System.currentTimeMillis();
+        Assertions.assertTrue(lock.tryLock("lock:c", "waiter", 3));
+        Assertions.assertTrue(System.currentTimeMillis() - start < 2500);
+        // 等待超时返回false，不会一直空转
+        Assertions.assertFalse(lock.tryLock("lock:c", "other", 1));
+    }
+
+    @Test
+    void watchdogRenewsLeaseWhileHeld() throws Exception {
+        LockWatchdog watchdog = new LockWatchdog(redisHelper, 1);
+        try {
+            RedisLock lock = new RedisLock(redisHelper, lockNotifier);
+            lock.setLockWatchdog(watchdog);
+            Assertions.assertTrue(lock.tryLock("lock:e", "holder", 0));
+            Assertions.assertTrue(redisHelper.ttl("lock:e") <= 1);
+            Thread.sleep(2500);
+            //超过lease仍然持有
+            Assertions.assertEquals("holder", redisHelper.getString("lock:e"));
+            Assertions.assertTrue(lock.unLock("lock:e", "holder"));
+            Assertions.assertFalse(redisHelper.exists("lock:e"));
+            Assertions.assertTrue(watchdog.leases().isEmpty());
+        } finally {
+            watchdog.shutdown();
+        }
+    }
+
+    @Test
+    void watchdogStopsWhenOwnerThreadDies() throws Exception {
+        LockWatchdog watchdog = new LockWatchdog(redisHelper, 1);
+        try {
+            RedisLock lock = new RedisLock(redisHelper, lockNotifier);
+            lock.setLockWatchdog(watchdog);
+            Thread owner = new Thread(() -> lock.tryLock("lock:f", "crashed", 0));
+            owner.start();
+            owner.join();
+            Assertions.assertTrue(redisHelper.exists("lock:f"));
+            Thread.sleep(1500);
+            //持有线程结束后不再续期，锁在lease内过期
+            Assertions.assertFalse(redisHelper.exists("lock:f"));
+            Assertions.assertTrue(watchdog.leases().isEmpty());
+        } finally {
+            watchdog.shutdown();
+        }
+    }
+
+    @Test
+    void watchdogCancelsLeaseRenewedBeforeScheduled() {
+        //调度后立即执行一次续期，模拟第一次续期先于 future 赋值
+        ScheduledThreadPoolExecutor eager = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+                command.run();
+                return super.scheduleAtFixedRate(command, initialDelay, period, unit);
+            }
+        };
+        eager.setRemoveOnCancelPolicy(true);
+        LockWatchdog watchdog = new LockWatchdog(redisHelper, 1, eager);
+        try {
+            //key不存在，第一次续期失败并取消
+            watchdog.watch("lock:g", "gone");
+            Assertions.assertFalse(watchdog.isWatching("lock:g", "gone"));
+            Assertions.assertTrue(watchdog.leases().isEmpty());
+            Assertions.assertTrue(eager.getQueue().isEmpty());
+        } finally {
+            watchdog.shutdown();
+        }
+    }
+
+    @Test
+    void localWaitersShareOneRedisContender() throws Exception {
+        AtomicInteger setnx = new AtomicInteger();
+        IRedisHelper counting = (IRedisHelper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{IRedisHelper.class}, (proxy, method, args) -> {
+                    if ("setIfValueAbSent".equals(method.getName())) {
+                        setnx.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(redisHelper, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        RedisLock lock = new RedisLock(counting, lockNotifier);
+        int threads = 20;
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger acquired = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String salt = "salt-" + i;
+                futures.add(executor.submit(() -> {
+                    if (lock.tryLock("lock:g", salt, 20)) {
+                        if (inside.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        acquired.incrementAndGet();
+                        inside.decrementAndGet();
+                        Assertions.assertTrue(lock.unLock("lock:g", salt));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(threads, acquired.get());
+        Assertions.assertEquals(0, overlaps.get());
+        //大部分线程通过本地交接拿到锁，不会每个线程都去redis抢
+        Assertions.assertTrue(setnx.get() < threads, "setnx " + setnx.get());
+        Assertions.assertFalse(redisHelper.exists("lock:g"));
+    }
+
+    @Test
+    void localWaiterTakesOverExpiredHolder() {
+        RedisLock lock = new RedisLock(redisHelper, lockNotifier);
+        //持有者不解锁，锁1秒后在redis过期
+        Assertions.assertTrue(lock.tryLock("lock:h", "forgotten", 1));
+        long start = System.currentTimeMillis();
+        Assertions.assertTrue(lock.tryLock("lock:h", "next", 5));
+        Assertions.assertTrue(System.currentTimeMillis() - start < 4000);
+        Assertions.assertFalse(lock.unLock("lock:h", "forgotten"));
+        Assertions.assertTrue(lock.unLock("lock:h", "next"));
+    }
+
+    @Test
+    void waiterDoesNotTakeOverWhileOwnerIsAcquiring() throws Exception {
+        AtomicInteger contending = new AtomicInteger();
+        AtomicInteger maxContending = new AtomicInteger();
+        IRedisHelper slow = (IRedisHelper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{IRedisHelper.class}, (proxy, method, args) -> {
+                    boolean setnx = "setIfValueAbSent".equals(method.getName());
+                    if (setnx) {
+                        maxContending.accumulateAndGet(contending.incrementAndGet(), Math::max);
+                        Thread.sleep(300);
+                    }
+                    try {
+                        return method.invoke(redisHelper, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (setnx) {
+                            contending.decrementAndGet();
+                        }
+                    }
+                });
+        RedisLock lock = new RedisLock(slow, lockNotifier);
+        //不等待的持有者还在redis抢锁时，等待更久的线程只能排队
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> lock.tryLock("lock:i", "first", 0));
+        Thread.sleep(50);
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> lock.tryLock("lock:i", "second", 5));
+        Assertions.assertTrue(first.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(lock.unLock("lock:i", "first"));
+        Assertions.assertTrue(second.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, maxContending.get());
+        Assertions.assertEquals("second", redisHelper.getString("lock:i"));
+        Assertions.assertTrue(lock.unLock("lock:i", "second"));
+    }
+}
@@ -0,0 +1,244 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @ClassName RedisLockVariantsTest
+ * @Description 可重入锁、读写锁、信号量测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/18 15:30
+ **/
+class RedisLockVariantsTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private static ExecutorService executor;
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    @BeforeAll
+    static void startExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterAll
+    static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void reentrantLock() {
+        RedisReentrantLock lock = new RedisReentrantLock(redisHelper, null);
+        lock.setFallbackPollMillis(50L);
+        Assertions.assertTrue(lock.tryLock("rl", "a", 0));
+        Assertions.assertTrue(lock.tryLock("rl", "a", 0));
+        Assertions.assertEquals(2, lock.holdCount("rl", "a"));
+        Assertions.assertFalse(lock.tryLock("rl", "b", 0));
+        Assertions.assertFalse(lock.unLock("rl", "b"));
+        Assertions.assertTrue(lock.unLock("rl", "a"));
+        Assertions.assertTrue(redisHelper.exists("rl"));
+        Assertions.assertTrue(lock.unLock("rl", "a"));
+        Assertions.assertFalse(redisHelper.exists("rl"));
+        Assertions.assertEquals(0, lock.holdCount("rl", "a"));
+        Assertions.assertTrue(lock.tryLock("rl", "b", 1));
+    }
+
+    @Test
+    void readersShareWritersExclude() {
+        RedisReadWriteLock lock = new RedisReadWriteLock(redisHelper, null);
+        lock.setFallbackPollMillis(50L);
+        Assertions.assertTrue(lock.tryReadLock("rw", "r1", 0));
+        Assertions.assertTrue(lock.tryReadLock("rw", "r2", 0));
+        Assertions.assertTrue(lock.tryReadLock("rw", "r1", 0));
+        Assertions.assertFalse(lock.tryWriteLock("rw", "w", 0));
+        //持有读锁不能升级
+        Assertions.assertFalse(lock.tryWriteLock("rw", "r1", 0));
+        Assertions.assertTrue(lock.unReadLock("rw", "r1"));
+        Assertions.assertTrue(lock.unReadLock("rw", "r1"));
+        Assertions.assertTrue(lock.unReadLock("rw", "r2"));
+        Assertions.assertFalse(redisHelper.exists("rw"));
+
+        Assertions.assertTrue(lock.tryWriteLock("rw", "w", 0));
+        Assertions.assertTrue(lock.tryWriteLock("rw", "w", 0));
+        Assertions.assertFalse(lock.tryReadLock("rw", "r1", 0));
+        Assertions.assertFalse(lock.tryWriteLock("rw", "w2", 0));
+        Assertions.assertFalse(lock.unWriteLock("rw", "w2"));
+        //写锁降级为读锁
+        Assertions.assertTrue(lock.tryReadLock("rw", "w", 0));
+        Assertions.assertTrue(lock.unWriteLock("rw", "w"));
+        Assertions.assertTrue(lock.unWriteLock("rw", "w"));
+        Assertions.assertTrue(lock.tryReadLock("rw", "r1", 0));
+        Assertions.assertFalse(lock.tryWriteLock("rw", "w2", 0));
+        Assertions.assertTrue(lock.unReadLock("rw", "w"));
+        Assertions.assertTrue(lock.unReadLock("rw", "r1"));
+        Assertions.assertTrue(lock.tryWriteLock("rw", "w2", 0));
+    }
+
+    @Test
+    void writerWaitsForReaders() throws Exception {
+        RedisReadWriteLock lock = new RedisReadWriteLock(redisHelper, null);
+        lock.setFallbackPollMillis(50L);
+        Assertions.assertTrue(lock.tryReadLock("rw2", "r", 0));
+        CompletableFuture<Boolean> writer = CompletableFuture.supplyAsync(() -> lock.tryWriteLock("rw2", "w", 5));
+        Thread.sleep(200);
+        Assertions.assertFalse(writer.isDone());
+        Assertions.assertTrue(lock.unReadLock("rw2", "r"));
+        Assertions.assertTrue(writer.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void crashedReaderDoesNotStarveWriter() throws Exception {
+        RedisReadWriteLock lock = new RedisReadWriteLock(redisHelper, null);
+        lock.setFallbackPollMillis(50L);
+        lock.setLeaseSeconds(1);
+        //宕机的读者，不会解锁
+        Assertions.assertTrue(lock.tryReadLock("rw3", "crashed", 0));
+        AtomicBoolean stop = new AtomicBoolean();
+        CompletableFuture<Void> readers = CompletableFuture.runAsync(() -> {
+            //持续的读请求
+            int i = 0;
+            while (!stop.get()) {
+                String salt = "r" + i++;
+                if (lock.tryReadLock("rw3", salt, 0)) {
+                    lock.unReadLock("rw3", salt);
+                }
+            }
+        }, executor);
+        try {
+            long start = System.currentTimeMillis();
+            Assertions.assertTrue(lock.tryWriteLock("rw3", "w", 5));
+            Assertions.assertTrue(System.currentTimeMillis() - start < 3000);
+            Assertions.assertFalse(lock.unReadLock("rw3", "crashed"));
+            Assertions.assertTrue(lock.unWriteLock("rw3", "w"));
+        } finally {
+            stop.set(true);
+            readers.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void waitingWriterBlocksNewReaders() throws Exception {
+        RedisReadWriteLock lock = new RedisReadWriteLock(redisHelper, null);
+        lock.setFallbackPollMillis(50L);
+        Assertions.assertTrue(lock.tryReadLock("rw4", "r1", 0));
+        //不等待的写者不阻挡读者
+        Assertions.assertFalse(lock.tryWriteLock("rw4", "w", 0));
+        Assertions.assertTrue(lock.tryReadLock("rw4", "r2", 0));
+        Assertions.assertTrue(lock.unReadLock("rw4", "r2"));
+
+        CompletableFuture<Boolean> writer = CompletableFuture.supplyAsync(() -> lock.tryWriteLock("rw4", "w", 5), executor);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!redisHelper.exists("{rw4}:writer") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertFalse(lock.tryReadLock("rw4", "r2", 0));
+        //已经持有读锁的可以重入
+        Assertions.assertTrue(lock.tryReadLock("rw4", "r1", 0));
+        Assertions.assertTrue(lock.unReadLock("rw4", "r1"));
+        Assertions.assertFalse(writer.isDone());
+        Assertions.assertTrue(lock.unReadLock("rw4", "r1"));
+        Assertions.assertTrue(writer.get(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(redisHelper.exists("{rw4}:writer"));
+        Assertions.assertTrue(lock.unWriteLock("rw4", "w"));
+
+        //等待超时的写者去掉标记
+        Assertions.assertTrue(lock.tryReadLock("rw4", "r1", 0));
+        Assertions.assertFalse(lock.tryWriteLock("rw4", "w", 1));
+        Assertions.assertFalse(redisHelper.exists("{rw4}:writer"));
+        Assertions.assertTrue(lock.tryReadLock("rw4", "r2", 0));
+    }
+
+    @Test
+    void semaphore() throws Exception {
+        RedisSemaphore semaphore = new RedisSemaphore(redisHelper, null);
+        semaphore.setFallbackPollMillis(50L);
+        Assertions.assertTrue(semaphore.tryAcquire("sem", "p1", 2, 0));
+        Assertions.assertTrue(semaphore.tryAcquire("sem", "p2", 2, 0));
+        //重复获取不额外占用
+        Assertions.assertTrue(semaphore.tryAcquire("sem", "p1", 2, 0));
+        Assertions.assertEquals(0, semaphore.availablePermits("sem", 2));
+        Assertions.assertFalse(semaphore.tryAcquire("sem", "p3", 2, 0));
+        Assertions.assertTrue(semaphore.release("sem", "p1"));
+        Assertions.assertFalse(semaphore.release("sem", "p1"));
+        Assertions.assertEquals(1, semaphore.availablePermits("sem", 2));
+        Assertions.assertTrue(semaphore.tryAcquire("sem", "p3", 2, 0));
+
+        //过期的许可自动收回
+        semaphore.setLeaseSeconds(1);
+        Assertions.assertTrue(semaphore.tryAcquire("sem2", "crashed", 1, 0));
+        long start = System.currentTimeMillis();
+        Assertions.assertTrue(semaphore.tryAcquire("sem2", "next", 1, 3));
+        Assertions.assertTrue(System.currentTimeMillis() - start >= 500);
+    }
+
+    @Test
+    void fairLockGrantsInArrivalOrder() throws Exception {
+        RedisFairLock lock = new RedisFairLock(redisHelper, null);
+        lock.setFallbackPollMillis(20L);
+        Assertions.assertTrue(lock.tryLock("fair", "holder", 0));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String salt = "w" + i;
+            waiters.add(CompletableFuture.supplyAsync(() -> {
+                boolean locked = lock.tryLock("fair", salt, 10);
+                if (locked) {
+                    order.add(salt);
+                    lock.unLock("fair", salt);
+                }
+                return locked;
+            }, executor));
+            //保证到达顺序
+            long deadline = System.currentTimeMillis() + 5000;
+            while (redisHelper.zcard("{fair}:queue") < i + 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+        Assertions.assertFalse(lock.tryLock("fair", "latecomer", 0));
+        Assertions.assertTrue(lock.unLock("fair", "holder"));
+        for (CompletableFuture<Boolean> waiter : waiters) {
+            Assertions.assertTrue(waiter.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(Arrays.asList("w0", "w1", "w2", "w3", "w4"), order);
+        Assertions.assertFalse(redisHelper.exists("{fair}:queue"));
+    }
+
+    @Test
+    void fairLockSkipsStaleWaiters() {
+        RedisFairLock lock = new RedisFairLock(redisHelper, null);
+        lock.setFallbackPollMillis(20L);
+        lock.setWaiterTimeoutMillis(300L);
+        Assertions.assertTrue(lock.tryLock("fair2", "holder", 0));
+        //排队后不再重试，模拟宕机的等待者
+        Assertions.assertFalse(lock.attempt("fair2", "ghost", true));
+        Assertions.assertTrue(lock.unLock("fair2", "holder"));
+        Assertions.assertFalse(lock.tryLock("fair2", "next", 0));
+        long start = System.currentTimeMillis();
+        Assertions.assertTrue(lock.tryLock("fair2", "next", 3));
+        Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    void fairLockKeysShareSlot() {
+        for (String key : Arrays.asList("fair", "order:{42}:lock", "a{b")) {
+            List<String> keys = RedisFairLock.keys(key);
+            int slot = SlotHash.getSlot(key);
+            for (String k : keys) {
+                Assertions.assertEquals(slot, SlotHash.getSlot(k), k);
+            }
+        }
+        Assertions.assertEquals(Arrays.asList("fair", "{fair}:queue", "{fair}:timeout"), RedisFairLock.keys("fair"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RedisFairLock.keys("{}odd"));
+    }
+}
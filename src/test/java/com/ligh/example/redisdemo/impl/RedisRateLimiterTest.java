@@ -0,0 +1,102 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import com.ligh.example.redisdemo.serializer.MigratingRedisSerializer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName RedisRateLimiterTest
+ * @Description 分布式限流测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/30 15:00
+ **/
+class RedisRateLimiterTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    @Test
+    void tokenBucketAllowsBurstThenRefills() throws InterruptedException {
+        RedisRateLimiter limiter = new RedisRateLimiter(redisHelper);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(limiter.tryAcquire("api:login", 5, 10, 1));
+        }
+        Assertions.assertFalse(limiter.tryAcquire("api:login", 5, 10, 1));
+        // 本地记住了拒绝，清掉redis里的桶也还在本地拒绝
+        redisHelper.del("api:login");
+        Assertions.assertFalse(limiter.tryAcquire("api:login", 5, 10, 1));
+        Thread.sleep(120);
+        Assertions.assertTrue(limiter.tryAcquire("api:login", 5, 10, 1));
+
+        RedisHelperProperties.RateLimiterProperties properties = new RedisHelperProperties.RateLimiterProperties();
+        properties.setLocalPrecheck(false);
+        limiter.setLocalPrecheck(properties);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire("api:login", 5, 10, 6));
+    }
+
+    @Test
+    void slidingLogIsExactUnderConcurrency() throws Exception {
+        RedisRateLimiter limiter = new RedisRateLimiter(redisHelper);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    if (limiter.tryAcquireSlidingLog("api:order", 50, 10_000, 1)) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assertions.assertEquals(50, allowed.get());
+        Assertions.assertEquals(50, redisHelper.zcard("api:order"));
+    }
+
+    @Test
+    void slidingLogAndWindowRecoverAfterWindow() throws InterruptedException {
+        RedisRateLimiter limiter = new RedisRateLimiter(redisHelper);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(limiter.tryAcquireSlidingLog("api:sms", 3, 200, 1));
+        }
+        Assertions.assertFalse(limiter.tryAcquireSlidingLog("api:sms", 3, 200, 1));
+        Thread.sleep(220);
+        Assertions.assertTrue(limiter.tryAcquireSlidingLog("api:sms", 3, 200, 1));
+
+        Assertions.assertTrue(limiter.tryAcquireSlidingWindow("api:search", 10, 200, 10));
+        Assertions.assertFalse(limiter.tryAcquireSlidingWindow("api:search", 10, 200, 1));
+        // 两个窗口之后上一个窗口的计数已经不再折算
+        Thread.sleep(420);
+        Assertions.assertTrue(limiter.tryAcquireSlidingWindow("api:search", 10, 200, 10));
+    }
+
+    @Test
+    void scriptsWorkWithBinaryValueFormat() {
+        RedisHelperProperties properties = new RedisHelperProperties();
+        properties.getSerializer().setFormat(MigratingRedisSerializer.Format.BINARY);
+        RedisRateLimiter limiter = new RedisRateLimiter(redis.newRedisHelper(properties));
+        Assertions.assertTrue(limiter.tryAcquire("api:binary:bucket", 2, 0.5, 1));
+        Assertions.assertTrue(limiter.tryAcquire("api:binary:bucket", 2, 0.5, 1));
+        Assertions.assertFalse(limiter.tryAcquire("api:binary:bucket", 2, 0.5, 1));
+        Assertions.assertTrue(limiter.tryAcquireSlidingLog("api:binary:log", 1, 10_000, 1));
+        Assertions.assertFalse(limiter.tryAcquireSlidingLog("api:binary:log", 1, 10_000, 1));
+        Assertions.assertTrue(limiter.tryAcquireSlidingWindow("api:binary:window", 1, 10_000, 1));
+        Assertions.assertFalse(limiter.tryAcquireSlidingWindow("api:binary:window", 1, 10_000, 1));
+    }
+}
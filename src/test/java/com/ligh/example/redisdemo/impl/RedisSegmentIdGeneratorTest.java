@@ -0,0 +1,131 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.IRedisHelper;
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName RedisSegmentIdGeneratorTest
+ * @Description 号段ID生成器测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2020/12/31 14:10
+ **/
+class RedisSegmentIdGeneratorTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    @Test
+    void idsAreUniqueAcrossThreadsAndNodes() throws Exception {
+        RedisHelperProperties.IdGeneratorProperties properties = new RedisHelperProperties.IdGeneratorProperties();
+        properties.setInitialStep(50);
+        properties.setMinStep(50);
+        RedisSegmentIdGenerator node1 = new RedisSegmentIdGenerator(redisHelper);
+        RedisSegmentIdGenerator node2 = new RedisSegmentIdGenerator(redisHelper);
+        node1.setProperties(properties);
+        node2.setProperties(properties);
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            RedisSegmentIdGenerator generator = t % 2 == 0 ? node1 : node2;
+            futures.add(executor.submit(() -> {
+                long last = 0;
+                for (int i = 0; i < 5000; i++) {
+                    long id = generator.nextId("order");
+                    Assertions.assertTrue(id > 0);
+                    Assertions.assertTrue(ids.add(id), "duplicate id " + id);
+                    //同一个节点同一个线程内递增
+                    Assertions.assertTrue(id > last);
+                    last = id;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assertions.assertEquals(40_000, ids.size());
+        node1.shutdown();
+        node2.shutdown();
+    }
+
+    @Test
+    void stepAdaptsToConsumptionRate() throws InterruptedException {
+        RedisHelperProperties.IdGeneratorProperties properties = new RedisHelperProperties.IdGeneratorProperties();
+        properties.setInitialStep(100);
+        properties.setMaxStep(800);
+        RedisSegmentIdGenerator generator = new RedisSegmentIdGenerator(redisHelper);
+        generator.setProperties(properties);
+        Assertions.assertEquals(1, generator.nextId("user"));
+        Assertions.assertEquals(100, generator.step("user"));
+        for (int i = 0; i < 5000; i++) {
+            generator.nextId("user");
+        }
+        Assertions.assertEquals(800, generator.step("user"));
+        //redis里只领到了已经分配出去的号段和预取的一段
+        long allocated = ValueUtil.parseLong(redisHelper.get("user"));
+        Assertions.assertTrue(allocated >= 5001 && allocated <= 5001 + 2 * 800, String.valueOf(allocated));
+
+        //消耗变慢后号段缩短
+        properties.setTargetSegmentMillis(10);
+        for (int round = 0; round < 16; round++) {
+            for (int i = 0; i < 100; i++) {
+                generator.nextId("user");
+            }
+            Thread.sleep(30);
+        }
+        Assertions.assertTrue(generator.step("user") < 800);
+        generator.shutdown();
+    }
+
+    @Test
+    void prefetchResumesAfterWaitingForSlowFetch() {
+        AtomicInteger callerFetches = new AtomicInteger();
+        IRedisHelper slow = (IRedisHelper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{IRedisHelper.class}, (proxy, method, args) -> {
+                    if ("incrby".equals(method.getName())) {
+                        if (!Thread.currentThread().getName().startsWith("redis-id-prefetch")) {
+                            callerFetches.incrementAndGet();
+                        }
+                        Thread.sleep(100);
+                    }
+                    try {
+                        return method.invoke(redisHelper, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        RedisHelperProperties.IdGeneratorProperties properties = new RedisHelperProperties.IdGeneratorProperties();
+        properties.setInitialStep(10);
+        properties.setMinStep(10);
+        properties.setMaxStep(10);
+        //每个号段发出第一个ID就预取，发完时预取通常还没回来，要等它
+        properties.setPrefetchRatio(0);
+        RedisSegmentIdGenerator generator = new RedisSegmentIdGenerator(slow);
+        generator.setProperties(properties);
+        for (int i = 1; i <= 60; i++) {
+            Assertions.assertEquals(i, generator.nextId("slow"));
+        }
+        //只有第一个号段是调用线程同步领的，之后都由预取领取
+        Assertions.assertEquals(1, callerFetches.get());
+        generator.shutdown();
+    }
+}
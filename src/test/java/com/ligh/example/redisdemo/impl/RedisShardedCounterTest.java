@@ -0,0 +1,104 @@
+package com.ligh.example.redisdemo.impl;
+
+import com.ligh.example.redisdemo.config.RedisHelperProperties;
+import com.ligh.example.redisdemo.embedded.EmbeddedRedisExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @ClassName RedisShardedCounterTest
+ * @Description 分片计数器测试，使用内嵌redis
+ * @Author 李光华
+ * @Date 2021/1/4 14:30
+ **/
+class RedisShardedCounterTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final RedisHelper redisHelper = redis.getRedisHelper();
+
+    @Test
+    void concurrentIncrementsSpreadAcrossShards() throws Exception {
+        RedisShardedCounter counter = new RedisShardedCounter(redisHelper);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        counter.incrby("pv", 2);
+                        counter.hincrby("stat", "click", 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(800L, counter.get("pv"));
+        Assertions.assertEquals(400L, counter.hget("stat", "click"));
+        Assertions.assertEquals(0L, counter.hget("stat", "view"));
+        int used = 0;
+        for (int i = 0; i < 8; i++) {
+            if (redisHelper.get("pv:" + i) != null) {
+                used++;
+            }
+        }
+        Assertions.assertTrue(used > 1, "writes should spread over several shards");
+    }
+
+    @Test
+    void reshardKeepsTotalAndIsSeenByOtherNodes() {
+        RedisHelperProperties.ShardedCounterProperties properties = new RedisHelperProperties.ShardedCounterProperties();
+        properties.setDefaultShards(4);
+        properties.setMetaRefreshMillis(0);
+        RedisShardedCounter node1 = new RedisShardedCounter(redisHelper);
+        node1.setProperties(properties);
+        RedisShardedCounter node2 = new RedisShardedCounter(redisHelper);
+        node2.setProperties(properties);
+        for (int i = 0; i < 40; i++) {
+            node1.incrby("pv", 1);
+        }
+
+        node1.reshard("pv", 16);
+        for (int i = 0; i < 200; i++) {
+            node2.incrby("pv", 1);
+        }
+        Assertions.assertEquals(240L, node1.get("pv"));
+        Assertions.assertEquals(240L, node2.get("pv"));
+
+        //缩小后只写第一个分片，已经写到其他分片的计数仍参与汇总
+        node2.reshard("pv", 1);
+        long before = ValueUtil.parseLong(redisHelper.get("pv:0"));
+        for (int i = 0; i < 10; i++) {
+            node1.incrby("pv", 1);
+        }
+        Assertions.assertEquals(before + 10, ValueUtil.parseLong(redisHelper.get("pv:0")));
+        Assertions.assertEquals(250L, node1.get("pv"));
+    }
+
+    @Test
+    void deleteRemovesAllShards() {
+        RedisShardedCounter counter = new RedisShardedCounter(redisHelper);
+        counter.reshard("pv", 16);
+        for (int i = 0; i < 100; i++) {
+            counter.incrby("pv", 1);
+        }
+        counter.reshard("pv", 2);
+        counter.delete("pv");
+        Assertions.assertEquals(0L, counter.get("pv"));
+        for (int i = 0; i < 16; i++) {
+            Assertions.assertNull(redisHelper.get("pv:" + i));
+        }
+        Assertions.assertNull(redisHelper.hget("pv:meta", "span"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.ligh.example.redisdemo.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName SingleFlightTest
+ * @Description 并发调用合并测试
+ * @Author 李光华
+ * @Date 2020/12/25 10:20
+ **/
+class SingleFlightTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void concurrentCallsShareOneInvocation() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Object>> results = submit(() -> flight.execute("k", () -> {
+            invocations.incrementAndGet();
+            await(release);
+            return "v";
+        }));
+        waitUntilAllJoined(flight, invocations);
+        release.countDown();
+        Object first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            Assertions.assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, invocations.get());
+        Assertions.assertEquals(0, flight.inFlight());
+        //调用结束后不缓存结果
+        Assertions.assertEquals("w", flight.execute("k", () -> "w"));
+    }
+
+    @Test
+    void failureIsSharedWithWaiters() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Object>> results = submit(() -> flight.execute("k", () -> {
+            invocations.incrementAndGet();
+            await(release);
+            throw new IllegalStateException("load failed");
+        }));
+        waitUntilAllJoined(flight, invocations);
+        release.countDown();
+        for (Future<Object> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                Assertions.fail();
+            } catch (ExecutionException e) {
+                Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        Assertions.assertEquals(1, invocations.get());
+        Assertions.assertEquals(0, flight.inFlight());
+    }
+
+    private static List<Future<Object>> submit(Callable<Object> call) {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(call));
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    /**
+     * 等第一个线程进入action，再留时间让其他线程加入
+     */
+    private static void waitUntilAllJoined(SingleFlight flight, AtomicInteger invocations) throws InterruptedException {
+        while (invocations.get() == 0 || flight.inFlight() == 0) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
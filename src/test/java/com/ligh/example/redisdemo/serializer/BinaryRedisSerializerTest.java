@@ -0,0 +1,144 @@
+package com.ligh.example.redisdemo.serializer;
+
+import com.ligh.example.redisdemo.config.RedisConfig;
+import lombok.Data;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * @ClassName BinaryRedisSerializerTest
+ * @Description 二进制序列化的往返、兼容json旧数据和体积测试
+ * @Author 李光华
+ * @Date 2020/12/14 16:10
+ **/
+class BinaryRedisSerializerTest {
+
+    private final RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer(new RedisConfig().getObjectMapper());
+
+    private final BinaryRedisSerializer binary = new BinaryRedisSerializer(json, Collections.singletonMap(1, UserDto.class));
+
+    @Data
+    static class UserDto {
+        private long id;
+        private String name;
+        private int age;
+        private boolean vip;
+        private Double balance;
+        private LocalDateTime createTime;
+        private List<String> tags;
+        private Map<String, Long> counters;
+        private transient String ignored;
+    }
+
+    enum Status {
+        ACTIVE,
+        CLOSED {
+            @Override
+            public String toString() {
+                return "closed";
+            }
+        }
+    }
+
+    @Data
+    static class OrderDto {
+        private UUID id;
+        private Status status;
+        private Status previous;
+        private List<Status> history;
+    }
+
+    private static UserDto sample() {
+        UserDto dto = new UserDto();
+        dto.setId(1234567890123L);
+        dto.setName("李光华");
+        dto.setAge(30);
+        dto.setVip(true);
+        dto.setBalance(12.5);
+        dto.setCreateTime(LocalDateTime.of(2020, 12, 14, 16, 10, 5));
+        dto.setTags(Arrays.asList("a", "b", "c"));
+        Map<String, Long> counters = new HashMap<>();
+        counters.put("view", 100L);
+        counters.put("like", -3L);
+        dto.setCounters(counters);
+        dto.setIgnored("x");
+        return dto;
+    }
+
+    @Test
+    void registeredObjectRoundTrip() {
+        UserDto dto = sample();
+        UserDto copy = (UserDto) binary.deserialize(binary.serialize(dto));
+        Assertions.assertNull(copy.getIgnored());
+        copy.setIgnored("x");
+        Assertions.assertEquals(dto, copy);
+    }
+
+    @Test
+    void standardTypesRoundTrip() {
+        List<Object> values = Arrays.asList("s", 1, 2L, 3.5, 1.5f, true, (short) 7, (byte) 8, 'c',
+                new BigDecimal("1.25"), Long.MIN_VALUE, Integer.MIN_VALUE, 0,
+                new TreeSet<>(Arrays.asList("b", "a")), new LinkedHashSet<>(Arrays.asList(3, 1)), null);
+        Object copy = binary.deserialize(binary.serialize(new ArrayList<>(values)));
+        Assertions.assertEquals(values, copy);
+    }
+
+    @Test
+    void topLevelIntegersStayIncrementable() {
+        Assertions.assertArrayEquals("42".getBytes(), binary.serialize(42));
+        Assertions.assertEquals(42, binary.deserialize("42".getBytes()));
+    }
+
+    @Test
+    void unregisteredTypeFallsBackToJson() {
+        Date date = new java.sql.Timestamp(0L);
+        Object copy = binary.deserialize(binary.serialize(Collections.singletonList(date)));
+        Assertions.assertEquals(1, ((List<?>) copy).size());
+    }
+
+    @Test
+    void unregisteredEnumAndFinalFieldsRoundTrip() {
+        Map<Integer, Class<?>> registered = new HashMap<>();
+        registered.put(1, UserDto.class);
+        registered.put(2, OrderDto.class);
+        BinaryRedisSerializer serializer = new BinaryRedisSerializer(json, registered);
+        OrderDto dto = new OrderDto();
+        dto.setId(UUID.randomUUID());
+        dto.setStatus(Status.CLOSED);
+        dto.setPrevious(Status.ACTIVE);
+        dto.setHistory(Arrays.asList(Status.ACTIVE, Status.CLOSED));
+        Assertions.assertEquals(dto, serializer.deserialize(serializer.serialize(dto)));
+        Assertions.assertEquals(Status.CLOSED, serializer.deserialize(serializer.serialize(Status.CLOSED)));
+    }
+
+    @Test
+    void readsBothFormats() {
+        UserDto dto = sample();
+        dto.setIgnored(null);
+        MigratingRedisSerializer jsonWriter = new MigratingRedisSerializer(json, binary, MigratingRedisSerializer.Format.JSON);
+        MigratingRedisSerializer binaryWriter = new MigratingRedisSerializer(json, binary, MigratingRedisSerializer.Format.BINARY);
+        byte[] oldValue = jsonWriter.serialize(dto);
+        byte[] newValue = binaryWriter.serialize(dto);
+        Assertions.assertFalse(BinaryRedisSerializer.isBinary(oldValue));
+        Assertions.assertTrue(BinaryRedisSerializer.isBinary(newValue));
+        Assertions.assertEquals(dto, binaryWriter.deserialize(oldValue));
+        Assertions.assertEquals(dto, jsonWriter.deserialize(newValue));
+    }
+
+    @Test
+    void atLeastTwiceSmallerThanJson() {
+        List<UserDto> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(sample());
+        }
+        int jsonSize = json.serialize(list).length;
+        int binarySize = binary.serialize(list).length;
+        Assertions.assertTrue(binarySize * 2 <= jsonSize, "json=" + jsonSize + " binary=" + binarySize);
+    }
+}
@@ -0,0 +1,144 @@
+package com.ligh.example.redisdemo.serializer;
+
+import com.ligh.example.redisdemo.config.RedisConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName CompressingRedisSerializerTest
+ * @Description 压缩序列化的往返、阈值、与未压缩数据共存和分组统计测试
+ * @Author 李光华
+ * @Date 2020/12/15 14:30
+ **/
+class CompressingRedisSerializerTest {
+
+    private final RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer(new RedisConfig().getObjectMapper());
+
+    private static List<String> largeValue() {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            list.add("item-" + i + "-description");
+        }
+        return list;
+    }
+
+    @Test
+    void roundTripWithEachCodec() {
+        for (CompressingRedisSerializer.Codec codec : CompressingRedisSerializer.Codec.values()) {
+            CompressingRedisSerializer serializer = new CompressingRedisSerializer(json, true, codec, 256,
+                    new CompressionStats(null));
+            List<String> value = largeValue();
+            byte[] raw = json.serialize(value);
+            byte[] bytes = serializer.serialize(value);
+            Assertions.assertTrue(CompressingRedisSerializer.isCompressed(bytes), codec.name());
+            Assertions.assertTrue(bytes.length < raw.length / 2, codec.name());
+            Assertions.assertEquals(value, serializer.deserialize(bytes));
+        }
+    }
+
+    @Test
+    void smallValuesAreNotCompressed() {
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(json, true,
+                CompressingRedisSerializer.Codec.LZ4, 256, new CompressionStats(null));
+        Assertions.assertArrayEquals(json.serialize("small"), serializer.serialize("small"));
+        Assertions.assertArrayEquals(json.serialize(12), serializer.serialize(12));
+    }
+
+    @Test
+    void readsBothCompressedAndPlainValues() {
+        CompressionStats stats = new CompressionStats(null);
+        CompressingRedisSerializer writer = new CompressingRedisSerializer(json, true,
+                CompressingRedisSerializer.Codec.DEFLATE, 256, stats);
+        CompressingRedisSerializer reader = new CompressingRedisSerializer(json, false,
+                CompressingRedisSerializer.Codec.LZ4, 256, stats);
+        List<String> value = largeValue();
+        Assertions.assertEquals(value, reader.deserialize(writer.serialize(value)));
+        Assertions.assertEquals(value, writer.deserialize(json.serialize(value)));
+        Assertions.assertFalse(CompressingRedisSerializer.isCompressed(reader.serialize(value)));
+    }
+
+    @Test
+    void statsGroupedByKeyPrefix() {
+        CompressionStats stats = new CompressionStats(Arrays.asList("user:", "item:"));
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(json, true,
+                CompressingRedisSerializer.Codec.LZ4, 256, stats);
+        String previous = SerializationContext.enter("user:1");
+        try {
+            serializer.deserialize(serializer.serialize(largeValue()));
+            serializer.serialize("small");
+        } finally {
+            SerializationContext.restore(previous);
+        }
+        serializer.serialize(largeValue());
+        Assertions.assertNull(SerializationContext.currentKey());
+
+        Map<String, CompressionStats.Snapshot> snapshot = stats.snapshot();
+        CompressionStats.Snapshot user = snapshot.get("user:");
+        Assertions.assertEquals(1, user.compressed);
+        Assertions.assertEquals(1, user.decompressed);
+        Assertions.assertTrue(user.ratio() < 0.5);
+        Assertions.assertEquals(1, snapshot.get(CompressionStats.OTHER_GROUP).compressed);
+        Assertions.assertFalse(snapshot.containsKey("item:"));
+    }
+
+    @Test
+    void rejectsCorruptRawLength() {
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(json, false,
+                CompressingRedisSerializer.Codec.LZ4, 256, new CompressionStats(null));
+        byte magic = CompressingRedisSerializer.MAGIC;
+        //第5个varint字节写满，int会溢出成负数
+        byte[] negative = {magic, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0};
+        Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(negative));
+        //声明约256MB原始长度，只有1字节数据
+        byte[] oversized = {magic, 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 0};
+        Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(oversized));
+    }
+
+    @Test
+    void rejectsCorruptLz4Block() {
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(json, true,
+                CompressingRedisSerializer.Codec.LZ4, 256, new CompressionStats(null));
+        List<String> value = largeValue();
+        int rawLength = json.serialize(value).length;
+        byte[] bytes = serializer.serialize(value);
+        //MAGIC、算法之后的varint长度占2字节
+        int headerLength = 4;
+        Assertions.assertTrue(rawLength >= 128 && rawLength < 16384);
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 8);
+        Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+
+        //头部声明的长度比实际解压出来的多
+        byte[] longer = bytes.clone();
+        longer[2] = (byte) (((rawLength + 1) & 0x7F) | 0x80);
+        longer[3] = (byte) ((rawLength + 1) >>> 7);
+        Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(longer));
+
+        //数据块中间写坏
+        byte[] garbled = bytes.clone();
+        Arrays.fill(garbled, headerLength + 16, garbled.length, (byte) 0xFF);
+        Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(garbled));
+
+        Assertions.assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void highlyCompressibleValuesRoundTrip() {
+        char[] chars = new char[200_000];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+        for (CompressingRedisSerializer.Codec codec : CompressingRedisSerializer.Codec.values()) {
+            CompressingRedisSerializer serializer = new CompressingRedisSerializer(json, true, codec, 256,
+                    new CompressionStats(null));
+            Assertions.assertEquals(value, serializer.deserialize(serializer.serialize(value)), codec.name());
+        }
+    }
+}